@@ -24,7 +24,6 @@ import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.Path;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Selection;
-import jakarta.persistence.metamodel.EntityType;
 import jakarta.persistence.metamodel.SingularAttribute;
 
 import java.io.Serializable;
@@ -35,7 +34,9 @@ import java.time.temporal.TemporalAccessor;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 @SuppressWarnings({"unused", "resource"})
 public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> implements EntityDao<ENTITY, ID> {
@@ -50,7 +51,9 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
 
     private final EntityDaoSupport support;
 
-    private SingularAttribute<? super ENTITY, ID> idAttribute;
+    private EntityMetadata<ENTITY, ID> entityMetadata;
+
+    private BatchLoader<ENTITY, ID> batchLoader;
 
     protected AbstractEntityDao(
             Class<ENTITY> entityType,
@@ -90,14 +93,21 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return support;
     }
 
-    protected SingularAttribute<? super ENTITY, ID> idAttribute() {
-        if (idAttribute == null) {
-            EntityType<ENTITY> entityMetamodel = em().getEntityManagerFactory().getMetamodel().entity(entityType);
-            idAttribute = entityMetamodel.getId(idType);
+    protected EntityMetadata<ENTITY, ID> entityMetadata() {
+        if (entityMetadata == null) {
+            entityMetadata = support.getEntityMetadata(em(), entityType, idType);
         }
-        return idAttribute;
+        return entityMetadata;
     }
 
+    protected SingularAttribute<? super ENTITY, ID> idAttribute() {
+        return entityMetadata().getIdAttribute();
+    }
+
+    /**
+     * If the support keeps an id filter for the entity type, an id the filter does not know is answered
+     * with null without querying the database, even if the row was meanwhile inserted bypassing the support.
+     */
     @Override
     public ENTITY getById(ID id) {
         return support.getById(em(), entityType, id);
@@ -113,6 +123,11 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return support.getByIdForUpdateSkipLocked(em(), entityType, id);
     }
 
+    @Override
+    public ENTITY getByIdForUpdateNoWait(ID id) {
+        return support.getByIdForUpdateNoWait(em(), entityType, id);
+    }
+
     @Override
     public ENTITY getByIdAndCheckVersion(ID id, short optLockVersion, Function<ENTITY, Short> optLockVersionGetter) {
         return support.getByIdAndCheckVersion(em(), entityType, id, optLockVersion, optLockVersionGetter);
@@ -123,11 +138,62 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return support.getByIdAndCheckVersion(em(), entityType, id, optLockVersion, optLockVersionGetter);
     }
 
+    /**
+     * Ids unknown to the id filter of the support, if any, are left out without querying the database,
+     * see {@link #getById}.
+     */
     @Override
     public List<ENTITY> findByIds(Collection<ID> ids) {
         return support.findByIds(em(), entityType, ids, idAttribute());
     }
 
+    /**
+     * Queues the lookup until the pending ones are resolved together with one {@link #findByIds} query,
+     * see {@link BatchLoader}. Also useful to initialize many lazy associations in one round trip,
+     * by passing their ids, as an entity loaded into the persistence context initializes its proxy.
+     * That does not apply to entities the support returns from a cache instead of loading them.
+     */
+    public CompletableFuture<ENTITY> getByIdLater(ID id) {
+        return batchLoader().load(id);
+    }
+
+    /**
+     * Runs the block and resolves the lookups queued by {@link #getByIdLater} within it.
+     * If the block throws, the queued lookups fail with its exception.
+     */
+    public void batch(Runnable block) {
+        batchLoader().batch(() -> {
+            block.run();
+            return null;
+        });
+    }
+
+    /**
+     * Like {@link #batch(Runnable)}, returning the result of the block.
+     */
+    public <T> T batchGet(Supplier<T> block) {
+        return batchLoader().batch(block);
+    }
+
+    /**
+     * Resolves the lookups queued by {@link #getByIdLater} so far.
+     */
+    public void dispatchPendingLoads() {
+        if (batchLoader != null) {
+            batchLoader.dispatch();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected BatchLoader<ENTITY, ID> batchLoader() {
+        if (batchLoader == null) {
+            batchLoader = new BatchLoader<>(
+                    this::findByIds,
+                    entity -> (ID) em().getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity));
+        }
+        return batchLoader;
+    }
+
     @Override
     public ENTITY getReference(ID id) {
         return support.getReference(em(), entityType, id);
@@ -206,6 +272,20 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return support.getResults(em(), query, offset, limit, queryCacheUsage);
     }
 
+    protected <R> List<R> getResults(CriteriaQuery<R> query, QueryCacheMode queryCacheUsage, String queryCacheRegion) {
+        return support.getResults(em(), query, queryCacheUsage, queryCacheRegion);
+    }
+
+    protected <R> List<R> getResults(
+            CriteriaQuery<R> query,
+            Integer offset,
+            Integer limit,
+            QueryCacheMode queryCacheUsage,
+            String queryCacheRegion
+    ) {
+        return support.getResults(em(), query, offset, limit, queryCacheUsage, queryCacheRegion);
+    }
+
     protected long count(CriteriaQuery<Long> query, QueryCacheMode queryCacheUsage) {
         return support.count(em(), query, queryCacheUsage, idAttribute());
     }
@@ -226,6 +306,10 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return support.getFirstResult(em(), query, queryCachemode);
     }
 
+    protected <R> R getFirstResult(CriteriaQuery<R> query, QueryCacheMode queryCachemode, String queryCacheRegion) {
+        return support.getFirstResult(em(), query, queryCachemode, queryCacheRegion);
+    }
+
     protected <R> R getFirstResultForUpdate(CriteriaQuery<R> query, Duration lockTimeout) {
         return support.getFirstResultForUpdate(em(), query, lockTimeout);
     }
@@ -234,6 +318,14 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return support.getFirstResultForUpdateSkipLocked(em(), query);
     }
 
+    protected <R> R getFirstResultForUpdateNoWait(CriteriaQuery<R> query) {
+        return support.getFirstResultForUpdateNoWait(em(), query);
+    }
+
+    protected QueryPlan explain(CriteriaQuery<?> query, ExplainOptions options) {
+        return support.explain(em(), query, options);
+    }
+
     protected <R> R getUniqueResult(CriteriaQuery<R> query) {
         return support.getUniqueResult(em(), query);
     }
@@ -242,6 +334,10 @@ public abstract class AbstractEntityDao<ENTITY, ID extends Serializable> impleme
         return support.getUniqueResult(em(), query, queryCachemode);
     }
 
+    protected <R> R getUniqueResult(CriteriaQuery<R> query, QueryCacheMode queryCachemode, String queryCacheRegion) {
+        return support.getUniqueResult(em(), query, queryCachemode, queryCacheRegion);
+    }
+
     protected <NUMBER extends Number> Predicate asPredicate(Expression<NUMBER> attribute, NumberFilter numberFilter) {
         return support.asPredicate(cb(), attribute, numberFilter);
     }
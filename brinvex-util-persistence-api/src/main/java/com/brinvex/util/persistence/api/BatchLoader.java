@@ -0,0 +1,183 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.api;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Collects individual id lookups and resolves them together with one batch load,
+ * so that N lookups cost one round trip without restructuring the calling code.
+ * <p>
+ * Pending lookups are dispatched when the outermost {@link #batch} block ends,
+ * on an explicit {@link #dispatch()}, or when a caller blocks on one of the returned futures.
+ * If the outermost block throws, they are completed exceptionally with its exception instead.
+ * Lookups requested from callbacks of completed futures are dispatched in a next round.
+ * <p>
+ * Not thread-safe, like the entity manager behind it.
+ */
+public class BatchLoader<ENTITY, ID extends Serializable> {
+
+    private final class PendingLoad extends CompletableFuture<ENTITY> {
+
+        @Override
+        public ENTITY get() throws InterruptedException, ExecutionException {
+            dispatchIfPending();
+            return super.get();
+        }
+
+        @Override
+        public ENTITY get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            dispatchIfPending();
+            return super.get(timeout, unit);
+        }
+
+        @Override
+        public ENTITY join() {
+            dispatchIfPending();
+            return super.join();
+        }
+
+        private void dispatchIfPending() {
+            if (!isDone()) {
+                dispatch();
+            }
+        }
+    }
+
+    private final Function<Collection<ID>, List<ENTITY>> batchLoad;
+
+    private final Function<ENTITY, ID> idGetter;
+
+    private Map<ID, PendingLoad> pending = new LinkedHashMap<>();
+
+    private int batchDepth;
+
+    private long batchCount;
+
+    private long loadCount;
+
+    /**
+     * @param batchLoad loads the entities with the given ids, missing ones are left out
+     * @param idGetter  returns the id of a loaded entity
+     */
+    public BatchLoader(Function<Collection<ID>, List<ENTITY>> batchLoad, Function<ENTITY, ID> idGetter) {
+        this.batchLoad = batchLoad;
+        this.idGetter = idGetter;
+    }
+
+    /**
+     * Returns a future completed with the entity, or with null if it does not exist,
+     * once the pending lookups are dispatched. Repeated lookups of one id share the future.
+     */
+    public CompletableFuture<ENTITY> load(ID id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Required non-null id");
+        }
+        loadCount++;
+        return pending.computeIfAbsent(id, k -> new PendingLoad());
+    }
+
+    /**
+     * Runs the block and then dispatches the lookups it requested. Nested blocks dispatch with the outermost one.
+     * Lookups still pending when the outermost block throws are failed, not loaded,
+     * as the failure might have left the persistence context unusable.
+     */
+    public <T> T batch(Supplier<T> block) {
+        batchDepth++;
+        T result;
+        try {
+            result = block.get();
+        } catch (RuntimeException | Error e) {
+            if (--batchDepth == 0) {
+                fail(e);
+            }
+            throw e;
+        }
+        if (--batchDepth == 0) {
+            dispatch();
+        }
+        return result;
+    }
+
+    /**
+     * Resolves all pending lookups, including those requested by callbacks in the meantime.
+     */
+    public void dispatch() {
+        while (!pending.isEmpty()) {
+            Map<ID, PendingLoad> loads = pending;
+            pending = new LinkedHashMap<>();
+            List<ENTITY> entities;
+            try {
+                batchCount++;
+                entities = batchLoad.apply(new ArrayList<>(loads.keySet()));
+            } catch (RuntimeException e) {
+                for (PendingLoad load : loads.values()) {
+                    load.completeExceptionally(e);
+                }
+                throw e;
+            }
+            Map<ID, ENTITY> byId = new LinkedHashMap<>(entities.size() * 4 / 3 + 1);
+            for (ENTITY entity : entities) {
+                byId.put(idGetter.apply(entity), entity);
+            }
+            for (Map.Entry<ID, PendingLoad> e : loads.entrySet()) {
+                e.getValue().complete(byId.get(e.getKey()));
+            }
+        }
+    }
+
+    /**
+     * Completes all pending lookups exceptionally, including those requested by callbacks in the meantime.
+     */
+    private void fail(Throwable cause) {
+        while (!pending.isEmpty()) {
+            Map<ID, PendingLoad> loads = pending;
+            pending = new LinkedHashMap<>();
+            for (PendingLoad load : loads.values()) {
+                load.completeExceptionally(cause);
+            }
+        }
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Number of batch loads executed so far.
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Number of lookups requested so far, including repeated ones.
+     */
+    public long getLoadCount() {
+        return loadCount;
+    }
+}
@@ -29,6 +29,11 @@ public interface EntityDao<ENTITY, ID extends Serializable> {
 
     ENTITY getByIdForUpdateSkipLocked(ID id);
 
+    /**
+     * @throws LockNotAvailableException if the row is locked by another transaction
+     */
+    ENTITY getByIdForUpdateNoWait(ID id);
+
     ENTITY getByIdAndCheckVersion(ID id, short optLockVersion, Function<ENTITY, Short> optLockVersionGetter);
 
     ENTITY getByIdAndCheckVersion(ID id, int optLockVersion, Function<ENTITY, Integer> optLockVersionGetter);
@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.api;
+
+import java.util.StringJoiner;
+
+/**
+ * One call of an {@link EntityDaoOperation}, passed to {@link EntityDaoListener#before} and then,
+ * completed with its outcome, to {@link EntityDaoListener#after}. The same instance is passed to all listeners
+ * of the call; it must not be kept after the call.
+ */
+public final class EntityDaoEvent {
+
+    private final EntityDaoOperation operation;
+
+    private final Class<?> entityType;
+
+    private final int idCount;
+
+    private long rowCount = -1;
+
+    private long durationNanos = -1;
+
+    private Throwable failure;
+
+    public EntityDaoEvent(EntityDaoOperation operation, Class<?> entityType, int idCount) {
+        this.operation = operation;
+        this.entityType = entityType;
+        this.idCount = idCount;
+    }
+
+    public void complete(long rowCount, long durationNanos, Throwable failure) {
+        this.rowCount = rowCount;
+        this.durationNanos = durationNanos;
+        this.failure = failure;
+    }
+
+    public EntityDaoOperation getOperation() {
+        return operation;
+    }
+
+    /**
+     * The entity type of by-id and write operations, the type of the first query root for queries.
+     * Null for {@code flush} and {@code flushAndClear}.
+     */
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Number of ids the operation looked up or deleted, zero for queries and writes of a single entity.
+     */
+    public int getIdCount() {
+        return idCount;
+    }
+
+    /**
+     * Rows returned by the operation, or deleted by {@code bulkDeleteByIds}. -1 before completion or on failure.
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * -1 before completion.
+     */
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * The exception thrown by the operation, or by a listener's {@code before} which prevented it. Null on success.
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EntityDaoEvent.class.getSimpleName() + "[", "]")
+                .add("operation=" + operation)
+                .add("entityType=" + (entityType == null ? null : entityType.getSimpleName()))
+                .add("idCount=" + idCount)
+                .add("rowCount=" + rowCount)
+                .add("durationNanos=" + durationNanos)
+                .add("failure=" + failure)
+                .toString();
+    }
+}
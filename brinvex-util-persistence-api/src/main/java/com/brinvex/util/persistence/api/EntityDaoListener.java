@@ -0,0 +1,46 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.api;
+
+/**
+ * Callbacks around the database-bound operations of {@link EntityDaoSupport}, e.g. for tracing spans or auditing.
+ * Implementations are discovered by {@link java.util.ServiceLoader} when the support is created
+ * by {@link EntityDaoSupportFactory}. If none is found, the support is not wrapped and operations cost nothing extra.
+ * <p>
+ * Listeners are called on the thread running the operation, {@code before} in discovery order
+ * and {@code after} in reverse order. Every listener whose {@code before} was called gets {@code after},
+ * even if another listener or the operation threw.
+ * <p>
+ * An exception thrown by {@code before} prevents the operation and propagates to the DAO caller.
+ * An exception thrown by {@code after} propagates to the DAO caller once all listeners have been called,
+ * unless the operation itself failed, in which case it is added as suppressed to the operation's exception.
+ */
+public interface EntityDaoListener {
+
+    /**
+     * Returns a context handed back to {@link #after}, e.g. a tracing span, or null.
+     */
+    default Object before(EntityDaoEvent event) {
+        return null;
+    }
+
+    /**
+     * Called after the operation completed or failed, see {@link EntityDaoEvent#getFailure}.
+     */
+    default void after(EntityDaoEvent event, Object context) {
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.api;
+
+/**
+ * The database-bound {@link EntityDaoSupport} methods reported to {@link EntityDaoListener}s.
+ */
+public enum EntityDaoOperation {
+
+    GET_BY_ID("getById", false),
+    GET_BY_ID_FOR_UPDATE("getByIdForUpdate", false),
+    GET_BY_ID_FOR_UPDATE_SKIP_LOCKED("getByIdForUpdateSkipLocked", false),
+    GET_BY_ID_FOR_UPDATE_NO_WAIT("getByIdForUpdateNoWait", false),
+    GET_BY_ID_AND_CHECK_VERSION("getByIdAndCheckVersion", false),
+    FIND_BY_IDS("findByIds", false),
+    FIND_BY_ID_AS_DTO("findByIdAsDTO", false),
+    GET_RESULTS("getResults", false),
+    COUNT("count", false),
+    GET_UNIQUE_RESULT("getUniqueResult", false),
+    GET_FIRST_RESULT("getFirstResult", false),
+    GET_FIRST_RESULT_FOR_UPDATE("getFirstResultForUpdate", false),
+    GET_FIRST_RESULT_FOR_UPDATE_SKIP_LOCKED("getFirstResultForUpdateSkipLocked", false),
+    GET_FIRST_RESULT_FOR_UPDATE_NO_WAIT("getFirstResultForUpdateNoWait", false),
+    PERSIST("persist", true),
+    MERGE("merge", true),
+    REMOVE("remove", true),
+    FLUSH("flush", true),
+    FLUSH_AND_CLEAR("flushAndClear", true),
+    BULK_DELETE_BY_IDS("bulkDeleteByIds", true);
+
+    private final String methodName;
+
+    private final boolean write;
+
+    EntityDaoOperation(String methodName, boolean write) {
+        this.methodName = methodName;
+        this.write = write;
+    }
+
+    /**
+     * Name of the {@link EntityDaoSupport} method, e.g. {@code getById}.
+     */
+    public String getMethodName() {
+        return methodName;
+    }
+
+    /**
+     * True for operations which change data or write pending changes.
+     */
+    public boolean isWrite() {
+        return write;
+    }
+}
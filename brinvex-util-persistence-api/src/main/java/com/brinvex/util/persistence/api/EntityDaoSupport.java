@@ -37,6 +37,12 @@ import java.util.function.Function;
 
 public interface EntityDaoSupport {
 
+    <ENTITY, ID extends Serializable> EntityMetadata<ENTITY, ID> getEntityMetadata(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Class<ID> idType
+    );
+
     <ENTITY, ID extends Serializable> ENTITY getById(EntityManager em, Class<ENTITY> entityType, ID id);
 
     <ENTITY, ID extends Serializable> ENTITY getByIdForUpdate(
@@ -52,6 +58,12 @@ public interface EntityDaoSupport {
             ID id
     );
 
+    <ENTITY, ID extends Serializable> ENTITY getByIdForUpdateNoWait(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            ID id
+    );
+
     <ENTITY, ID extends Serializable> ENTITY getByIdAndCheckVersion(
             EntityManager em,
             Class<ENTITY> entityType,
@@ -126,6 +138,22 @@ public interface EntityDaoSupport {
             QueryCacheMode queryCacheMode
     );
 
+    <R> List<R> getResults(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            QueryCacheMode queryCacheMode,
+            String queryCacheRegion
+    );
+
+    <R> List<R> getResults(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            Integer offset,
+            Integer limit,
+            QueryCacheMode queryCacheMode,
+            String queryCacheRegion
+    );
+
     <R> CriteriaQuery<R> applySelections(
             CriteriaBuilder cb,
             CriteriaQuery<R> q,
@@ -144,12 +172,16 @@ public interface EntityDaoSupport {
 
     <R> R getUniqueResult(EntityManager em, CriteriaQuery<R> q, QueryCacheMode queryCacheMode);
 
+    <R> R getUniqueResult(EntityManager em, CriteriaQuery<R> q, QueryCacheMode queryCacheMode, String queryCacheRegion);
+
     <R> R getFirstResult(EntityManager em, CriteriaQuery<R> q);
 
     <R> R getFirstResult(EntityManager em, CriteriaQuery<R> q, Integer offset);
 
     <R> R getFirstResult(EntityManager em, CriteriaQuery<R> q, QueryCacheMode queryCacheMode);
 
+    <R> R getFirstResult(EntityManager em, CriteriaQuery<R> q, QueryCacheMode queryCacheMode, String queryCacheRegion);
+
     <R> R getFirstResultForUpdate(
             EntityManager em,
             CriteriaQuery<R> q,
@@ -158,6 +190,14 @@ public interface EntityDaoSupport {
 
     <R> R getFirstResultForUpdateSkipLocked(EntityManager em, CriteriaQuery<R> q);
 
+    <R> R getFirstResultForUpdateNoWait(EntityManager em, CriteriaQuery<R> q);
+
+    /**
+     * Returns the execution plan of the query as the database would run it with the currently bound values.
+     * Supported only on PostgreSQL. Inside a transaction, the plan is taken in a savepoint which is rolled back.
+     */
+    QueryPlan explain(EntityManager em, CriteriaQuery<?> q, ExplainOptions options);
+
     <NUMBER extends Number> Predicate asPredicate(
             CriteriaBuilder cb,
             Expression<NUMBER> attribute,
@@ -0,0 +1,27 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.api;
+
+/**
+ * Wraps the {@link EntityDaoSupport} returned by {@link EntityDaoSupportFactory}.
+ * Implementations are discovered by {@link java.util.ServiceLoader} and applied in discovery order,
+ * so the first one found is the innermost. A decorator may return the given support unchanged.
+ */
+public interface EntityDaoSupportDecorator {
+
+    EntityDaoSupport decorate(EntityDaoSupport entityDaoSupport);
+
+}
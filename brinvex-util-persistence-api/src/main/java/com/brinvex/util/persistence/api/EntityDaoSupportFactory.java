@@ -28,7 +28,7 @@ public enum EntityDaoSupportFactory {
         if (entityDaoSupport == null) {
             ServiceLoader<EntityDaoSupport> loader = ServiceLoader.load(EntityDaoSupport.class);
             for (EntityDaoSupport provider : loader) {
-                this.entityDaoSupport = provider;
+                this.entityDaoSupport = decorate(provider);
                 break;
             }
         }
@@ -37,7 +37,7 @@ public enum EntityDaoSupportFactory {
         }
         try {
             Class<?> defaultImplClass = Class.forName("com.brinvex.util.persistence.impl.EntityDaoSupportImpl");
-            return (EntityDaoSupport) defaultImplClass.getConstructor().newInstance();
+            return decorate((EntityDaoSupport) defaultImplClass.getConstructor().newInstance());
         } catch (ClassNotFoundException
                  | InvocationTargetException
                  | InstantiationException
@@ -49,4 +49,11 @@ public enum EntityDaoSupportFactory {
         throw new IllegalStateException(String.format("Not found any implementation of '%s'", EntityDaoSupport.class));
     }
 
+    private static EntityDaoSupport decorate(EntityDaoSupport entityDaoSupport) {
+        for (EntityDaoSupportDecorator decorator : ServiceLoader.load(EntityDaoSupportDecorator.class)) {
+            entityDaoSupport = decorator.decorate(entityDaoSupport);
+        }
+        return entityDaoSupport;
+    }
+
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.api;
+
+import jakarta.persistence.metamodel.SingularAttribute;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapping of an entity type resolved once per {@link jakarta.persistence.EntityManagerFactory}
+ * and shared by all DAO instances.
+ */
+public interface EntityMetadata<ENTITY, ID extends Serializable> {
+
+    Class<ENTITY> getEntityType();
+
+    String getEntityName();
+
+    SingularAttribute<? super ENTITY, ID> getIdAttribute();
+
+    /**
+     * Returns null if the entity is not versioned.
+     */
+    SingularAttribute<? super ENTITY, ?> getVersionAttribute();
+
+    String getTableName();
+
+    List<String> getIdColumnNames();
+
+    /**
+     * Column names of the mapped non-id attributes, in mapping order.
+     * Attributes without own columns (e.g. collections) are not included.
+     */
+    Map<String, List<String>> getColumnNames();
+
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.api;
+
+import java.util.StringJoiner;
+
+/**
+ * Options of {@link EntityDaoSupport#explain}.
+ */
+public final class ExplainOptions {
+
+    private boolean analyze;
+
+    private boolean buffers;
+
+    /**
+     * If true then the query is executed to report actual rows and times.
+     * It is executed inside a savepoint which is rolled back, but it still takes as long as the query itself.
+     */
+    public ExplainOptions setAnalyze(boolean analyze) {
+        this.analyze = analyze;
+        return this;
+    }
+
+    public boolean isAnalyze() {
+        return analyze;
+    }
+
+    /**
+     * If true then buffer usage is reported, of execution with {@link #setAnalyze analyze}, otherwise of planning.
+     */
+    public ExplainOptions setBuffers(boolean buffers) {
+        this.buffers = buffers;
+        return this;
+    }
+
+    public boolean isBuffers() {
+        return buffers;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ExplainOptions.class.getSimpleName() + "[", "]")
+                .add("analyze=" + analyze)
+                .add("buffers=" + buffers)
+                .toString();
+    }
+}
@@ -15,6 +15,9 @@
  */
 package com.brinvex.util.persistence.api;
 
+/**
+ * The query cache must be enabled in the persistence unit, otherwise all modes behave as {@link #BYPASS_QUERY_CACHE}.
+ */
 public enum QueryCacheMode {
 
     /**
@@ -22,6 +25,26 @@ public enum QueryCacheMode {
      */
     BYPASS_QUERY_CACHE,
 
+    /**
+     * Read from and write to the query cache.
+     */
     USE_QUERY_CACHE,
 
+    /**
+     * Read from the query cache but do not store results of executed queries.
+     */
+    GET_ONLY,
+
+    /**
+     * Execute the query and store the result, without reading from the query cache.
+     */
+    PUT_ONLY,
+
+    /**
+     * Execute the query and overwrite its cached result, but only if the query is already cached in its region,
+     * otherwise the result is not stored. Meant for background jobs keeping cached dashboards warm
+     * without filling the cache with queries nobody reads. Requires a configured query cache region.
+     */
+    REFRESH,
+
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.api;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Execution plan of a query, see {@link EntityDaoSupport#explain}.
+ */
+public final class QueryPlan {
+
+    private final String sql;
+
+    private final List<String> binds;
+
+    private final ExplainOptions options;
+
+    private final QueryPlanNode root;
+
+    private final Duration planningTime;
+
+    private final Duration executionTime;
+
+    private final String rawPlan;
+
+    public QueryPlan(
+            String sql,
+            List<String> binds,
+            ExplainOptions options,
+            QueryPlanNode root,
+            Duration planningTime,
+            Duration executionTime,
+            String rawPlan
+    ) {
+        this.sql = sql;
+        this.binds = List.copyOf(binds);
+        this.options = options;
+        this.root = root;
+        this.planningTime = planningTime;
+        this.executionTime = executionTime;
+        this.rawPlan = rawPlan;
+    }
+
+    /**
+     * The explained SQL with parameter placeholders.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Values bound to the parameters, in order.
+     */
+    public List<String> getBinds() {
+        return binds;
+    }
+
+    public ExplainOptions getOptions() {
+        return options;
+    }
+
+    public QueryPlanNode getRoot() {
+        return root;
+    }
+
+    public double getTotalCost() {
+        return root.getTotalCost();
+    }
+
+    public double getEstimatedRows() {
+        return root.getPlanRows();
+    }
+
+    /**
+     * -1 unless analyzed.
+     */
+    public double getActualRows() {
+        return root.getActualRows();
+    }
+
+    /**
+     * Null if not reported.
+     */
+    public Duration getPlanningTime() {
+        return planningTime;
+    }
+
+    /**
+     * Null unless analyzed.
+     */
+    public Duration getExecutionTime() {
+        return executionTime;
+    }
+
+    /**
+     * The plan as returned by the database.
+     */
+    public String getRawPlan() {
+        return rawPlan;
+    }
+
+    /**
+     * All nodes, depth first.
+     */
+    public List<QueryPlanNode> getNodes() {
+        List<QueryPlanNode> nodes = new ArrayList<>();
+        collect(root, nodes);
+        return nodes;
+    }
+
+    public List<QueryPlanNode> getSequentialScans() {
+        List<QueryPlanNode> seqScans = new ArrayList<>();
+        for (QueryPlanNode node : getNodes()) {
+            if (node.isSequentialScan()) {
+                seqScans.add(node);
+            }
+        }
+        return seqScans;
+    }
+
+    private static void collect(QueryPlanNode node, List<QueryPlanNode> nodes) {
+        nodes.add(node);
+        for (QueryPlanNode child : node.getChildren()) {
+            collect(child, nodes);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", QueryPlan.class.getSimpleName() + "[", "]")
+                .add("sql='" + sql + "'")
+                .add("binds=" + binds)
+                .add("totalCost=" + getTotalCost())
+                .add("estimatedRows=" + getEstimatedRows())
+                .add("actualRows=" + getActualRows())
+                .add("planningTime=" + planningTime)
+                .add("executionTime=" + executionTime)
+                .add("root=" + root)
+                .toString();
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.api;
+
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * One node of a {@link QueryPlan}. Actual values are -1 unless the plan was analyzed,
+ * block counts are -1 unless buffers were requested.
+ */
+public final class QueryPlanNode {
+
+    private final String nodeType;
+
+    private final String relationName;
+
+    private final String alias;
+
+    private final String indexName;
+
+    private final double startupCost;
+
+    private final double totalCost;
+
+    private final double planRows;
+
+    private final double actualRows;
+
+    private final double actualLoops;
+
+    private final double actualTotalTime;
+
+    private final long sharedHitBlocks;
+
+    private final long sharedReadBlocks;
+
+    private final Map<String, Object> properties;
+
+    private final List<QueryPlanNode> children;
+
+    public QueryPlanNode(
+            String nodeType,
+            String relationName,
+            String alias,
+            String indexName,
+            double startupCost,
+            double totalCost,
+            double planRows,
+            double actualRows,
+            double actualLoops,
+            double actualTotalTime,
+            long sharedHitBlocks,
+            long sharedReadBlocks,
+            Map<String, Object> properties,
+            List<QueryPlanNode> children
+    ) {
+        this.nodeType = nodeType;
+        this.relationName = relationName;
+        this.alias = alias;
+        this.indexName = indexName;
+        this.startupCost = startupCost;
+        this.totalCost = totalCost;
+        this.planRows = planRows;
+        this.actualRows = actualRows;
+        this.actualLoops = actualLoops;
+        this.actualTotalTime = actualTotalTime;
+        this.sharedHitBlocks = sharedHitBlocks;
+        this.sharedReadBlocks = sharedReadBlocks;
+        this.properties = properties;
+        this.children = List.copyOf(children);
+    }
+
+    /**
+     * E.g. "Seq Scan", "Index Scan", "Nested Loop".
+     */
+    public String getNodeType() {
+        return nodeType;
+    }
+
+    public String getRelationName() {
+        return relationName;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public boolean isSequentialScan() {
+        return "Seq Scan".equals(nodeType);
+    }
+
+    public double getStartupCost() {
+        return startupCost;
+    }
+
+    public double getTotalCost() {
+        return totalCost;
+    }
+
+    /**
+     * Estimated rows per loop.
+     */
+    public double getPlanRows() {
+        return planRows;
+    }
+
+    /**
+     * Actual rows per loop.
+     */
+    public double getActualRows() {
+        return actualRows;
+    }
+
+    public double getActualLoops() {
+        return actualLoops;
+    }
+
+    /**
+     * Milliseconds per loop.
+     */
+    public double getActualTotalTime() {
+        return actualTotalTime;
+    }
+
+    public long getSharedHitBlocks() {
+        return sharedHitBlocks;
+    }
+
+    public long getSharedReadBlocks() {
+        return sharedReadBlocks;
+    }
+
+    /**
+     * All properties of the node as reported by the database, e.g. "Filter" or "Index Cond", without the child plans.
+     */
+    public Map<String, Object> getProperties() {
+        return properties;
+    }
+
+    public List<QueryPlanNode> getChildren() {
+        return children;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ", QueryPlanNode.class.getSimpleName() + "[", "]")
+                .add("nodeType='" + nodeType + "'");
+        if (relationName != null) {
+            joiner.add("relationName='" + relationName + "'");
+        }
+        if (indexName != null) {
+            joiner.add("indexName='" + indexName + "'");
+        }
+        joiner.add("totalCost=" + totalCost).add("planRows=" + planRows);
+        if (actualLoops >= 0) {
+            joiner.add("actualRows=" + actualRows).add("actualLoops=" + actualLoops);
+        }
+        return joiner.add("children=" + children.size()).toString();
+    }
+}
@@ -0,0 +1,360 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.api;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnitUtil;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.SingularAttribute;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base class for DAOs of small, rarely changing tables (currencies, codes, ...),
+ * which keeps the whole table in memory and answers lookups without any database access.
+ * <p>
+ * The table is loaded on first use into an immutable {@link ReferenceDataSnapshot}.
+ * After {@link #start()}, it is reloaded by the given scheduler every {@code refreshInterval}
+ * and also whenever a check every {@code versionCheckInterval} sees that the row count
+ * or the version column changed. A new snapshot replaces the old one atomically,
+ * so readers never block and never see a partially loaded table.
+ * If a reload fails, the old snapshot stays in use.
+ * <p>
+ * Entities are detached and, unless {@link #copy} is overridden, the lookups return the same instances
+ * to all callers and threads. They must then be treated as read-only: a modification would be seen
+ * by every other caller and would never be persisted. The entities of {@link #snapshot()} are always the shared ones.
+ * <p>
+ * Unlike {@link AbstractEntityDao}, an instance is meant to be a long-lived singleton.
+ */
+@SuppressWarnings("unused")
+public abstract class ReferenceDataDao<ENTITY, ID extends Serializable> implements AutoCloseable {
+
+    protected final Class<ENTITY> entityType;
+
+    protected final Class<ID> idType;
+
+    private final EntityDaoSupport support;
+
+    private final Duration refreshInterval;
+
+    private final Duration versionCheckInterval;
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile EntityMetadata<ENTITY, ID> entityMetadata;
+
+    private volatile ReferenceDataSnapshot<ENTITY, ID> snapshot;
+
+    private final Object loadLock = new Object();
+
+    private final List<ScheduledFuture<?>> scheduledTasks = new ArrayList<>();
+
+    private volatile RuntimeException lastRefreshFailure;
+
+    /**
+     * @param refreshInterval      period of unconditional reloads, null for none
+     * @param versionCheckInterval period of checks for changes, null for none; requires a versioned entity
+     * @param scheduler            runs the background reloads, required unless both intervals are null;
+     *                             owned by the caller, which can share one among all its reference data DAOs
+     */
+    protected ReferenceDataDao(
+            Class<ENTITY> entityType,
+            Class<ID> idType,
+            Duration refreshInterval,
+            Duration versionCheckInterval,
+            ScheduledExecutorService scheduler
+    ) {
+        this(entityType, idType, refreshInterval, versionCheckInterval, scheduler, EntityDaoSupportFactory.INSTANCE.getEntityDaoSupport());
+    }
+
+    protected ReferenceDataDao(
+            Class<ENTITY> entityType,
+            Class<ID> idType,
+            Duration refreshInterval,
+            Duration versionCheckInterval,
+            ScheduledExecutorService scheduler,
+            EntityDaoSupport entityDaoSupport
+    ) {
+        if (scheduler == null && (refreshInterval != null || versionCheckInterval != null)) {
+            throw new IllegalArgumentException("Background reloads require a scheduler: " + entityType.getName());
+        }
+        this.entityType = entityType;
+        this.idType = idType;
+        this.refreshInterval = refreshInterval;
+        this.versionCheckInterval = versionCheckInterval;
+        this.scheduler = scheduler;
+        this.support = entityDaoSupport;
+    }
+
+    protected abstract EntityManagerFactory entityManagerFactory();
+
+    /**
+     * Attributes to build secondary indexes on, for {@link #findBy} and {@link #getUniqueBy}.
+     */
+    protected List<SingularAttribute<? super ENTITY, ?>> indexedAttributes() {
+        return List.of();
+    }
+
+    /**
+     * Creates the instance handed out by the lookups for an entity of the snapshot.
+     * Returns the shared entity itself by default, override it to return a detached copy
+     * if callers may modify the returned entities.
+     */
+    protected ENTITY copy(ENTITY entity) {
+        return entity;
+    }
+
+    public ENTITY getById(ID id) {
+        if (id == null) {
+            throw new IllegalArgumentException("Required non-null id");
+        }
+        ENTITY entity = snapshot().getById(id);
+        return entity == null ? null : copy(entity);
+    }
+
+    public List<ENTITY> findByIds(Collection<ID> ids) {
+        return copyAll(snapshot().findByIds(ids));
+    }
+
+    public List<ENTITY> getAll() {
+        return copyAll(snapshot().getAll());
+    }
+
+    public <V> List<ENTITY> findBy(SingularAttribute<? super ENTITY, V> attribute, V value) {
+        return copyAll(snapshot().findBy(attribute, value));
+    }
+
+    public <V> ENTITY getUniqueBy(SingularAttribute<? super ENTITY, V> attribute, V value) {
+        List<ENTITY> results = findBy(attribute, value);
+        if (results.size() > 1) {
+            throw new IllegalStateException(String.format("Expected unique result: entityType=%s, %s=%s, results=%s",
+                    entityType.getName(), attribute.getName(), value, results.size()));
+        }
+        return results.isEmpty() ? null : results.get(0);
+    }
+
+    /**
+     * Returns the current snapshot, loading it first if this is the first use.
+     */
+    public ReferenceDataSnapshot<ENTITY, ID> snapshot() {
+        ReferenceDataSnapshot<ENTITY, ID> s = snapshot;
+        if (s == null) {
+            synchronized (loadLock) {
+                s = snapshot;
+                if (s == null) {
+                    s = load();
+                    snapshot = s;
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Reloads the table now, in the calling thread.
+     */
+    public void refresh() {
+        synchronized (loadLock) {
+            snapshot = load();
+        }
+    }
+
+    /**
+     * Reloads the table in the calling thread if the row count or the version column changed.
+     * Returns true if it was reloaded.
+     */
+    public boolean refreshIfChanged() {
+        ReferenceDataSnapshot<ENTITY, ID> s = snapshot;
+        if (s == null) {
+            snapshot();
+            return true;
+        }
+        Object versionToken;
+        try (EntityManager em = entityManagerFactory().createEntityManager()) {
+            versionToken = loadVersionToken(em);
+        }
+        if (Objects.equals(versionToken, s.getVersionToken())) {
+            return false;
+        }
+        refresh();
+        return true;
+    }
+
+    /**
+     * Schedules the background reloads. Does nothing if both intervals are null.
+     */
+    public synchronized void start() {
+        if (!scheduledTasks.isEmpty()) {
+            throw new IllegalStateException("Already started");
+        }
+        if (versionCheckInterval != null && versionAttribute() == null) {
+            throw new IllegalStateException("Version check requires a versioned entity: " + entityType.getName());
+        }
+        if (refreshInterval != null) {
+            long periodNanos = refreshInterval.toNanos();
+            scheduledTasks.add(scheduler.scheduleWithFixedDelay(
+                    () -> runRefresh(this::refresh), periodNanos, periodNanos, TimeUnit.NANOSECONDS));
+        }
+        if (versionCheckInterval != null) {
+            long periodNanos = versionCheckInterval.toNanos();
+            scheduledTasks.add(scheduler.scheduleWithFixedDelay(
+                    () -> runRefresh(this::refreshIfChanged), periodNanos, periodNanos, TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * Stops the background reloads. The last snapshot stays available. The scheduler is not shut down.
+     */
+    @Override
+    public synchronized void close() {
+        for (ScheduledFuture<?> task : scheduledTasks) {
+            task.cancel(false);
+        }
+        scheduledTasks.clear();
+    }
+
+    /**
+     * Returns the failure of the last background reload, or null if it succeeded.
+     */
+    public RuntimeException getLastRefreshFailure() {
+        return lastRefreshFailure;
+    }
+
+    protected ReferenceDataSnapshot<ENTITY, ID> load() {
+        List<SingularAttribute<? super ENTITY, ?>> indexedAttributes = indexedAttributes();
+        Object versionToken;
+        List<Object[]> rows;
+        try (EntityManager em = entityManagerFactory().createEntityManager()) {
+            versionToken = versionAttribute() == null ? null : loadVersionToken(em);
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<Object[]> q = cb.createQuery(Object[].class);
+            Root<ENTITY> r = q.from(entityType);
+            List<Selection<?>> selections = new ArrayList<>(1 + indexedAttributes.size());
+            selections.add(r);
+            for (SingularAttribute<? super ENTITY, ?> attribute : indexedAttributes) {
+                selections.add(r.get(attribute));
+            }
+            q.multiselect(selections);
+            rows = support.getResults(em, q);
+            em.clear();
+        }
+
+        PersistenceUnitUtil persistenceUnitUtil = entityManagerFactory().getPersistenceUnitUtil();
+        List<ENTITY> all = new ArrayList<>(rows.size());
+        Map<ID, ENTITY> byId = new HashMap<>(rows.size() * 4 / 3 + 1);
+        List<Map<Object, List<ENTITY>>> indexes = new ArrayList<>(indexedAttributes.size());
+        for (int i = 0; i < indexedAttributes.size(); i++) {
+            indexes.add(new HashMap<>());
+        }
+        for (Object[] row : rows) {
+            ENTITY entity = entityType.cast(row[0]);
+            all.add(entity);
+            byId.put(idType.cast(persistenceUnitUtil.getIdentifier(entity)), entity);
+            for (int i = 0; i < indexes.size(); i++) {
+                indexes.get(i).computeIfAbsent(row[i + 1], k -> new ArrayList<>(1)).add(entity);
+            }
+        }
+        Map<String, Map<Object, List<ENTITY>>> indexesByName = new LinkedHashMap<>();
+        for (int i = 0; i < indexes.size(); i++) {
+            Map<Object, List<ENTITY>> index = indexes.get(i);
+            index.replaceAll((k, v) -> Collections.unmodifiableList(v));
+            indexesByName.put(indexedAttributes.get(i).getName(), Collections.unmodifiableMap(index));
+        }
+        return new ReferenceDataSnapshot<>(
+                Collections.unmodifiableList(all),
+                Collections.unmodifiableMap(byId),
+                indexesByName,
+                versionToken,
+                Instant.now()
+        );
+    }
+
+    /**
+     * Row count together with the sum of a numeric version column or the maximum of a temporal one.
+     * Every insert, update or delete changes it, except for a delete and insert of rows with equal versions.
+     */
+    @SuppressWarnings("unchecked")
+    protected Object loadVersionToken(EntityManager em) {
+        SingularAttribute<? super ENTITY, ?> versionAttribute = versionAttribute();
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Object[]> q = cb.createQuery(Object[].class);
+        Root<ENTITY> r = q.from(entityType);
+        Expression<?> versionAggregate;
+        if (isNumeric(versionAttribute.getJavaType())) {
+            versionAggregate = cb.sum((Expression<Number>) r.get(versionAttribute));
+        } else {
+            versionAggregate = cb.greatest((Expression<Comparable<Object>>) r.get(versionAttribute));
+        }
+        q.multiselect(cb.count(r), versionAggregate);
+        return Arrays.asList(support.getUniqueResult(em, q));
+    }
+
+    protected EntityMetadata<ENTITY, ID> entityMetadata() {
+        EntityMetadata<ENTITY, ID> metadata = entityMetadata;
+        if (metadata == null) {
+            try (EntityManager em = entityManagerFactory().createEntityManager()) {
+                metadata = support.getEntityMetadata(em, entityType, idType);
+            }
+            entityMetadata = metadata;
+        }
+        return metadata;
+    }
+
+    protected SingularAttribute<? super ENTITY, ?> versionAttribute() {
+        return entityMetadata().getVersionAttribute();
+    }
+
+    private List<ENTITY> copyAll(List<ENTITY> entities) {
+        List<ENTITY> copies = new ArrayList<>(entities.size());
+        for (ENTITY entity : entities) {
+            copies.add(copy(entity));
+        }
+        return Collections.unmodifiableList(copies);
+    }
+
+    private void runRefresh(Runnable refresh) {
+        try {
+            refresh.run();
+            lastRefreshFailure = null;
+        } catch (RuntimeException e) {
+            lastRefreshFailure = e;
+        }
+    }
+
+    private static boolean isNumeric(Class<?> type) {
+        return Number.class.isAssignableFrom(type)
+               || type == int.class || type == long.class || type == short.class || type == byte.class;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.api;
+
+import jakarta.persistence.metamodel.SingularAttribute;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable content of a reference data table at one point in time, indexed by id
+ * and by the attributes chosen in {@link ReferenceDataDao#indexedAttributes()}.
+ * The entities are detached and shared by all readers, so they must not be modified.
+ */
+public final class ReferenceDataSnapshot<ENTITY, ID extends Serializable> {
+
+    private final List<ENTITY> all;
+
+    private final Map<ID, ENTITY> byId;
+
+    private final Map<String, Map<Object, List<ENTITY>>> indexes;
+
+    private final Object versionToken;
+
+    private final Instant loadedAt;
+
+    ReferenceDataSnapshot(
+            List<ENTITY> all,
+            Map<ID, ENTITY> byId,
+            Map<String, Map<Object, List<ENTITY>>> indexes,
+            Object versionToken,
+            Instant loadedAt
+    ) {
+        this.all = all;
+        this.byId = byId;
+        this.indexes = indexes;
+        this.versionToken = versionToken;
+        this.loadedAt = loadedAt;
+    }
+
+    public ENTITY getById(ID id) {
+        return byId.get(id);
+    }
+
+    public List<ENTITY> findByIds(Collection<ID> ids) {
+        return ids.stream().distinct().map(byId::get).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
+    public List<ENTITY> getAll() {
+        return all;
+    }
+
+    /**
+     * The attribute must be one of the indexed attributes. A null value matches entities with null.
+     */
+    public <V> List<ENTITY> findBy(SingularAttribute<? super ENTITY, V> attribute, V value) {
+        Map<Object, List<ENTITY>> index = indexes.get(attribute.getName());
+        if (index == null) {
+            throw new IllegalArgumentException("Not indexed attribute: " + attribute.getName());
+        }
+        return index.getOrDefault(value, List.of());
+    }
+
+    public int size() {
+        return all.size();
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    Object getVersionToken() {
+        return versionToken;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.benchmark.dm.Employee;
+import com.brinvex.util.persistence.benchmark.dm.Salary;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Session;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The {@code Employee}/{@code Salary} model, a copy of the one of the impl tests, recreated and seeded once per trial.
+ * <p>
+ * Employees have ids {@code 1..employeeCount}. Each has {@code salariesPerEmployee} salaries dated
+ * {@link #FIRST_SALARY_DATE} plus {@code 0..salariesPerEmployee-1} days, with ids following the employee order.
+ * The connection is taken from the system properties {@code benchmark.jdbc.url}, {@code benchmark.jdbc.user}
+ * and {@code benchmark.jdbc.password}, by default the database of the {@code docker} directory.
+ */
+@State(Scope.Benchmark)
+public class BenchmarkDatabase {
+
+    public static final LocalDate FIRST_SALARY_DATE = LocalDate.parse("2023-01-01");
+
+    @Param("1000")
+    public int employeeCount;
+
+    @Param("10")
+    public int salariesPerEmployee;
+
+    private EntityManagerFactory emf;
+
+    private EntityDaoSupport support;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        emf = createEntityManagerFactory();
+        support = createEntityDaoSupport();
+        seed();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        emf.close();
+    }
+
+    public EntityManager createEntityManager() {
+        return emf.createEntityManager();
+    }
+
+    public EntityDaoSupport support() {
+        return support;
+    }
+
+    public long randomEmployeeId() {
+        return ThreadLocalRandom.current().nextLong(1, employeeCount + 1);
+    }
+
+    public long randomSalaryId() {
+        return ThreadLocalRandom.current().nextLong(1, (long) employeeCount * salariesPerEmployee + 1);
+    }
+
+    public LocalDate randomSalaryDate() {
+        return FIRST_SALARY_DATE.plusDays(ThreadLocalRandom.current().nextInt(salariesPerEmployee));
+    }
+
+    public static String jdbcUrl() {
+        return System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:15432/brinvex_util_persistence");
+    }
+
+    public static String jdbcUser() {
+        return System.getProperty("benchmark.jdbc.user", "postgres");
+    }
+
+    public static String jdbcPassword() {
+        return System.getProperty("benchmark.jdbc.password", "postgres123");
+    }
+
+    protected EntityDaoSupport createEntityDaoSupport() {
+        return new EntityDaoSupportImpl();
+    }
+
+    protected EntityManagerFactory createEntityManagerFactory() {
+        return new Configuration()
+                .addAnnotatedClass(Employee.class)
+                .addAnnotatedClass(Salary.class)
+                .setProperty("jakarta.persistence.jdbc.driver", "org.postgresql.Driver")
+                .setProperty("jakarta.persistence.jdbc.url", jdbcUrl())
+                .setProperty("jakarta.persistence.jdbc.user", jdbcUser())
+                .setProperty("jakarta.persistence.jdbc.password", jdbcPassword())
+                .setProperty("jakarta.persistence.schema-generation.database.action", "drop-and-create")
+                .setProperty("hibernate.connection.pool_size", System.getProperty("benchmark.jdbc.poolSize", "20"))
+                .buildSessionFactory();
+    }
+
+    @SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+    private void seed() {
+        try (EntityManager em = emf.createEntityManager()) {
+            em.getTransaction().begin();
+            em.unwrap(Session.class).doWork(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.executeUpdate(
+                            "insert into Employee (id, name, validFrom, validTo, version) " +
+                            "select g, 'Employee ' || g, timestamp '2023-01-01', timestamp '2200-01-01', 0 " +
+                            "from generate_series(1, " + employeeCount + ") g");
+                    statement.executeUpdate(
+                            "insert into Salary (id, employee_id, date, amount) " +
+                            "select (e - 1) * " + salariesPerEmployee + " + s + 1, e, " +
+                            "date '" + FIRST_SALARY_DATE + "' + s, 1000 + s " +
+                            "from generate_series(1, " + employeeCount + ") e, " +
+                            "generate_series(0, " + (salariesPerEmployee - 1) + ") s");
+                    statement.execute("analyze Employee");
+                    statement.execute("analyze Salary");
+                }
+            });
+            em.getTransaction().commit();
+        }
+    }
+}
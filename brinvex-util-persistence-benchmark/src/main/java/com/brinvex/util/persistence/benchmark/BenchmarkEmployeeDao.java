@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import com.brinvex.util.persistence.api.AbstractEntityDao;
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.benchmark.dm.Employee;
+import jakarta.persistence.EntityManager;
+
+public class BenchmarkEmployeeDao extends AbstractEntityDao<Employee, Long> {
+
+    private final EntityManager em;
+
+    public BenchmarkEmployeeDao(EntityManager em, EntityDaoSupport entityDaoSupport) {
+        super(Employee.class, Long.class, entityDaoSupport);
+        this.em = em;
+    }
+
+    @Override
+    protected EntityManager entityManager() {
+        return em;
+    }
+}
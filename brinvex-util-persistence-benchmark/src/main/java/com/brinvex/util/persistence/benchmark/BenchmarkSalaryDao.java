@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import com.brinvex.util.persistence.api.AbstractEntityDao;
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.benchmark.dm.Employee;
+import com.brinvex.util.persistence.benchmark.dm.Employee_;
+import com.brinvex.util.persistence.benchmark.dm.Salary;
+import com.brinvex.util.persistence.benchmark.dm.Salary_;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class BenchmarkSalaryDao extends AbstractEntityDao<Salary, Long> {
+
+    private final EntityManager em;
+
+    public BenchmarkSalaryDao(EntityManager em, EntityDaoSupport entityDaoSupport) {
+        super(Salary.class, Long.class, entityDaoSupport);
+        this.em = em;
+    }
+
+    @Override
+    protected EntityManager entityManager() {
+        return em;
+    }
+
+    public List<Salary> findByEmployeeId(long employeeId, boolean fetchEmployee) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        if (fetchEmployee) {
+            Join<Salary, Employee> employeeJoin = fetchJoin(r, Salary_.employee);
+            q.where(cb.equal(employeeJoin.get(Employee_.id), employeeId));
+        } else {
+            q.where(cb.equal(r.get(Salary_.employee).get(Employee_.id), employeeId));
+        }
+        return getResults(q);
+    }
+
+    public long countByEmployeeId(long employeeId) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Long> q = cb.createQuery(Long.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.select(cb.count(r));
+        q.where(cb.equal(r.get(Salary_.employee).get(Employee_.id), employeeId));
+        return count(q);
+    }
+
+    public Salary getByEmployeeIdAndDate(long employeeId, LocalDate date) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.where(
+                cb.equal(r.get(Salary_.employee).get(Employee_.id), employeeId),
+                cb.equal(r.get(Salary_.date), date)
+        );
+        return getUniqueResult(q);
+    }
+
+    public Salary findFirstForUpdateSkipLocked(long employeeId) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.where(cb.equal(r.get(Salary_.employee).get(Employee_.id), employeeId));
+        return getFirstResultForUpdateSkipLocked(q);
+    }
+
+    public Salary findForUpdateSkipLocked(long employeeId, LocalDate date) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.where(
+                cb.equal(r.get(Salary_.employee).get(Employee_.id), employeeId),
+                cb.equal(r.get(Salary_.date), date)
+        );
+        return getFirstResultForUpdateSkipLocked(q);
+    }
+}
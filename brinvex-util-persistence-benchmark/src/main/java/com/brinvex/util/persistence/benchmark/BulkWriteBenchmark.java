@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import com.brinvex.util.persistence.benchmark.dm.Employee;
+import com.brinvex.util.persistence.benchmark.dm.Salary;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ways of inserting {@code rows} salaries into an empty table, each in one transaction:
+ * <ul>
+ * <li>{@code persist} - {@code persist} of every entity, flushed at commit
+ * <li>{@code persistFlushClear} - {@code persist} with {@code flushAndClear} every {@code windowSize} entities
+ * <li>{@code persistJdbcBatch} - the same with Hibernate JDBC batching of {@code windowSize} statements
+ * <li>{@code jdbcBatch} - plain JDBC {@code addBatch}/{@code executeBatch} of {@code windowSize} inserts
+ * <li>{@code multiRowUpsert} - {@code insert ... values (...), (...) on conflict (id) do update} of {@code windowSize} rows
+ * <li>{@code copy} - PostgreSQL {@code COPY ... FROM STDIN}, streamed in chunks of {@code windowSize} rows
+ * </ul>
+ * Each measured iteration is one such transaction, its score is the time it took. The heap high-water mark and the WAL
+ * volume are reported by {@link HeapHighWaterProfiler} and {@link WalProfiler}:
+ * {@code java -jar benchmarks.jar BulkWrite -prof com.brinvex.util.persistence.benchmark.HeapHighWaterProfiler
+ * -prof com.brinvex.util.persistence.benchmark.WalProfiler}.
+ * <p>
+ * The table is truncated before each iteration, outside the measured time. The {@code persist} strategy keeps all
+ * entities in the persistence context, so a million rows need a heap of a few GB, hence the fork's {@code -Xmx4g}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class BulkWriteBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    @Param({"persist", "persistFlushClear", "persistJdbcBatch", "jdbcBatch", "multiRowUpsert", "copy"})
+    public String strategy;
+
+    @Param("1000")
+    public int windowSize;
+
+    private int employeeCount;
+
+    @Setup(Level.Iteration)
+    public void truncate(BenchmarkDatabase db) {
+        employeeCount = db.employeeCount;
+        try (EntityManager em = db.createEntityManager()) {
+            em.getTransaction().begin();
+            execute(em, "truncate Salary");
+            em.getTransaction().commit();
+        }
+    }
+
+    @Benchmark
+    public void insert(BenchmarkDatabase db) {
+        try (EntityManager em = db.createEntityManager()) {
+            em.getTransaction().begin();
+            switch (strategy) {
+                case "persist":
+                    persist(em, db, 0, false);
+                    break;
+                case "persistFlushClear":
+                    persist(em, db, windowSize, false);
+                    break;
+                case "persistJdbcBatch":
+                    persist(em, db, windowSize, true);
+                    break;
+                case "jdbcBatch":
+                    jdbcBatch(em);
+                    break;
+                case "multiRowUpsert":
+                    multiRowUpsert(em);
+                    break;
+                case "copy":
+                    copy(em);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown strategy: " + strategy);
+            }
+            em.getTransaction().commit();
+        }
+    }
+
+    private void persist(EntityManager em, BenchmarkDatabase db, int flushClearWindow, boolean jdbcBatching) {
+        if (jdbcBatching) {
+            em.unwrap(Session.class).setJdbcBatchSize(flushClearWindow);
+        }
+        BenchmarkSalaryDao salaryDao = new BenchmarkSalaryDao(em, db.support());
+        BenchmarkEmployeeDao employeeDao = new BenchmarkEmployeeDao(em, db.support());
+        for (int i = 0; i < rows; i++) {
+            Employee employee = employeeDao.getReference(employeeId(i));
+            Salary salary = new Salary(null, date(i), amount(i));
+            salary.setEmployee(employee);
+            salaryDao.persist(salary);
+            if (flushClearWindow > 0 && (i + 1) % flushClearWindow == 0) {
+                salaryDao.flushAndClear();
+            }
+        }
+    }
+
+    private void jdbcBatch(EntityManager em) {
+        em.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "insert into Salary (id, employee_id, date, amount) values (?, ?, ?, ?)")) {
+                for (int i = 0; i < rows; i++) {
+                    statement.setLong(1, i + 1);
+                    statement.setLong(2, employeeId(i));
+                    statement.setObject(3, date(i));
+                    statement.setBigDecimal(4, amount(i));
+                    statement.addBatch();
+                    if ((i + 1) % windowSize == 0 || i == rows - 1) {
+                        statement.executeBatch();
+                    }
+                }
+            }
+        });
+    }
+
+    private void multiRowUpsert(EntityManager em) {
+        em.unwrap(Session.class).doWork(connection -> {
+            for (int from = 0; from < rows; from += windowSize) {
+                int to = Math.min(rows, from + windowSize);
+                StringBuilder sql = new StringBuilder("insert into Salary (id, employee_id, date, amount) values ");
+                for (int i = from; i < to; i++) {
+                    sql.append(i == from ? "(?, ?, ?, ?)" : ", (?, ?, ?, ?)");
+                }
+                sql.append(" on conflict (id) do update set " +
+                           "employee_id = excluded.employee_id, date = excluded.date, amount = excluded.amount");
+                try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                    int position = 1;
+                    for (int i = from; i < to; i++) {
+                        statement.setLong(position++, i + 1);
+                        statement.setLong(position++, employeeId(i));
+                        statement.setObject(position++, date(i));
+                        statement.setBigDecimal(position++, amount(i));
+                    }
+                    statement.executeUpdate();
+                }
+            }
+        });
+    }
+
+    private void copy(EntityManager em) {
+        em.unwrap(Session.class).doWork(connection -> {
+            CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI()
+                    .copyIn("copy Salary (id, employee_id, date, amount) from stdin (format csv)");
+            try {
+                StringBuilder chunk = new StringBuilder();
+                for (int i = 0; i < rows; i++) {
+                    chunk.append(i + 1).append(',')
+                            .append(employeeId(i)).append(',')
+                            .append(date(i)).append(',')
+                            .append(amount(i)).append('\n');
+                    if ((i + 1) % windowSize == 0 || i == rows - 1) {
+                        byte[] bytes = chunk.toString().getBytes(StandardCharsets.UTF_8);
+                        copyIn.writeToCopy(bytes, 0, bytes.length);
+                        chunk.setLength(0);
+                    }
+                }
+                copyIn.endCopy();
+            } finally {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        });
+    }
+
+    private long employeeId(int i) {
+        return i % employeeCount + 1;
+    }
+
+    private static LocalDate date(int i) {
+        return BenchmarkDatabase.FIRST_SALARY_DATE.plusDays(i % 3650);
+    }
+
+    private static BigDecimal amount(int i) {
+        return BigDecimal.valueOf(1000 + i % 1000);
+    }
+
+    private static void execute(EntityManager em, String sql) {
+        em.unwrap(Session.class).doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        });
+    }
+}
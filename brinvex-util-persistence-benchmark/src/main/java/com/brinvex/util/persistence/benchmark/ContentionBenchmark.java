@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import com.brinvex.util.persistence.benchmark.dm.Employee;
+import com.brinvex.util.persistence.benchmark.dm.Salary;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PessimisticLockException;
+import jakarta.persistence.RollbackException;
+import org.hibernate.StaleStateException;
+import org.hibernate.exception.LockAcquisitionException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares locking strategies for updating hot rows, with several threads competing for a skewed set of keys.
+ * <p>
+ * Each operation picks an employee, one of the first {@code hotKeyCount} ids with probability {@code hotKeyProbability}
+ * and any employee otherwise, and changes it (or, for {@code firstResultForUpdateSkipLocked}, one of its salaries)
+ * in a transaction held open for {@code txMillis}:
+ * <ul>
+ * <li>{@code forUpdate} - {@code getByIdForUpdate}, waits up to {@code lockTimeoutMillis}
+ * <li>{@code forUpdateSkipLocked} - {@code getByIdForUpdateSkipLocked}, picks another key if the row is locked
+ * <li>{@code firstResultForUpdateSkipLocked} - {@code getFirstResultForUpdateSkipLocked} of any salary of the employee,
+ * picks another key if all are locked
+ * <li>{@code optimistic} - reads the version, waits {@code txMillis}, then {@code getByIdAndCheckVersion} and commits,
+ * starting over on a version conflict
+ * </ul>
+ * Throughput and the latency distribution (p50, p99, ...) come from the two benchmark modes; timeouts, skips,
+ * conflicts, retries and failures from {@link ContentionCounters}. Threads are set by {@code -t},
+ * the other parameters by {@code -p}, e.g. {@code java -jar benchmarks.jar Contention -t 16 -p hotKeyCount=1}.
+ * The connection pool must not be smaller than the thread count, see {@code benchmark.jdbc.poolSize}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+
+    @Param("10")
+    public int hotKeyCount;
+
+    @Param("0.9")
+    public double hotKeyProbability;
+
+    @Param({"0", "5"})
+    public int txMillis;
+
+    @Param("1000")
+    public int lockTimeoutMillis;
+
+    @Param("3")
+    public int maxRetries;
+
+    private Duration lockTimeout;
+
+    @Setup
+    public void setUp(BenchmarkDatabase db) {
+        if (hotKeyCount < 1 || hotKeyCount > db.employeeCount) {
+            throw new IllegalArgumentException("Illegal hotKeyCount: " + hotKeyCount);
+        }
+        lockTimeout = Duration.ofMillis(lockTimeoutMillis);
+    }
+
+    @Benchmark
+    public boolean forUpdate(BenchmarkDatabase db, DaoSession session, ContentionCounters counters) {
+        BenchmarkEmployeeDao employeeDao = session.employeeDao();
+        long employeeId = nextKey(db);
+        try {
+            session.inTx(() -> {
+                Employee employee = employeeDao.getByIdForUpdate(employeeId, lockTimeout);
+                hold();
+                employee.setName(nextName());
+                return employee;
+            });
+        } catch (RuntimeException e) {
+            if (!isLockFailure(e)) {
+                throw e;
+            }
+            counters.timeouts++;
+            counters.failures++;
+            return false;
+        }
+        counters.committed++;
+        return true;
+    }
+
+    @Benchmark
+    public boolean forUpdateSkipLocked(BenchmarkDatabase db, DaoSession session, ContentionCounters counters) {
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (attempt > 0) {
+                counters.retries++;
+            }
+            BenchmarkEmployeeDao employeeDao = session.employeeDao();
+            long employeeId = nextKey(db);
+            Employee changed = session.inTx(() -> {
+                Employee employee = employeeDao.getByIdForUpdateSkipLocked(employeeId);
+                if (employee != null) {
+                    hold();
+                    employee.setName(nextName());
+                }
+                return employee;
+            });
+            if (changed != null) {
+                counters.committed++;
+                return true;
+            }
+            counters.skipped++;
+        }
+        counters.failures++;
+        return false;
+    }
+
+    @Benchmark
+    public boolean firstResultForUpdateSkipLocked(BenchmarkDatabase db, DaoSession session, ContentionCounters counters) {
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (attempt > 0) {
+                counters.retries++;
+            }
+            BenchmarkSalaryDao salaryDao = session.salaryDao();
+            long employeeId = nextKey(db);
+            Salary changed = session.inTx(() -> {
+                Salary salary = salaryDao.findFirstForUpdateSkipLocked(employeeId);
+                if (salary != null) {
+                    hold();
+                    salary.setAmount(salary.getAmount().add(BigDecimal.ONE));
+                }
+                return salary;
+            });
+            if (changed != null) {
+                counters.committed++;
+                return true;
+            }
+            counters.skipped++;
+        }
+        counters.failures++;
+        return false;
+    }
+
+    @Benchmark
+    public boolean optimistic(BenchmarkDatabase db, DaoSession session, ContentionCounters counters) {
+        long employeeId = nextKey(db);
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (attempt > 0) {
+                counters.retries++;
+            }
+            short version = session.employeeDao().getById(employeeId).getVersion();
+            hold();
+            BenchmarkEmployeeDao employeeDao = session.employeeDao();
+            try {
+                session.inTx(() -> {
+                    Employee employee = employeeDao.getByIdAndCheckVersion(employeeId, version, Employee::getVersion);
+                    employee.setName(nextName());
+                    return employee;
+                });
+            } catch (RuntimeException e) {
+                if (!isVersionConflict(e)) {
+                    throw e;
+                }
+                counters.conflicts++;
+                continue;
+            }
+            counters.committed++;
+            return true;
+        }
+        counters.failures++;
+        return false;
+    }
+
+    private long nextKey(BenchmarkDatabase db) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (random.nextDouble() < hotKeyProbability) {
+            return random.nextLong(1, hotKeyCount + 1);
+        }
+        return db.randomEmployeeId();
+    }
+
+    private void hold() {
+        if (txMillis > 0) {
+            try {
+                Thread.sleep(txMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static String nextName() {
+        return "Employee " + ThreadLocalRandom.current().nextInt();
+    }
+
+    private static boolean isLockFailure(RuntimeException e) {
+        Throwable cause = e instanceof RollbackException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof LockTimeoutException
+               || cause instanceof PessimisticLockException
+               || cause instanceof org.hibernate.PessimisticLockException
+               || cause instanceof LockAcquisitionException;
+    }
+
+    private static boolean isVersionConflict(RuntimeException e) {
+        Throwable cause = e instanceof RollbackException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof OptimisticLockException
+               || cause instanceof StaleStateException;
+    }
+}
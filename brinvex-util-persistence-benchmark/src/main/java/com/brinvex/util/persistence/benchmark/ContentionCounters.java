@@ -0,0 +1,71 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Outcomes of the {@link ContentionBenchmark} operations, reported by JMH next to the primary result
+ * as totals per iteration.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.EVENTS)
+public class ContentionCounters {
+
+    /**
+     * Operations which changed a row and committed.
+     */
+    public long committed;
+
+    /**
+     * Pessimistic locks not acquired within the lock timeout.
+     */
+    public long timeouts;
+
+    /**
+     * Skip-locked lookups which returned nothing.
+     */
+    public long skipped;
+
+    /**
+     * Optimistic version checks which failed, at read or at commit.
+     */
+    public long conflicts;
+
+    /**
+     * Attempts repeated after a skip or a conflict.
+     */
+    public long retries;
+
+    /**
+     * Operations which gave up after the last retry or timed out.
+     */
+    public long failures;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        committed = 0;
+        timeouts = 0;
+        skipped = 0;
+        conflicts = 0;
+        retries = 0;
+        failures = 0;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityTransaction;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.function.Supplier;
+
+/**
+ * An entity manager and DAOs of one benchmark thread, open for one iteration.
+ * Operations run outside of a transaction unless wrapped by {@link #inTx} or {@link #inRolledBackTx}
+ * and start with an empty persistence context, so that every lookup reaches the database.
+ */
+@State(Scope.Thread)
+public class DaoSession {
+
+    private EntityManager em;
+
+    private BenchmarkSalaryDao salaryDao;
+
+    private BenchmarkEmployeeDao employeeDao;
+
+    @Setup(Level.Iteration)
+    public void open(BenchmarkDatabase db) {
+        em = db.createEntityManager();
+        salaryDao = new BenchmarkSalaryDao(em, db.support());
+        employeeDao = new BenchmarkEmployeeDao(em, db.support());
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        em.close();
+    }
+
+    public BenchmarkSalaryDao salaryDao() {
+        em.clear();
+        return salaryDao;
+    }
+
+    public BenchmarkEmployeeDao employeeDao() {
+        em.clear();
+        return employeeDao;
+    }
+
+    /**
+     * Runs the operation in a transaction which is committed, or rolled back if the operation fails.
+     */
+    public <T> T inTx(Supplier<T> operation) {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        T result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException e) {
+            if (tx.isActive()) {
+                tx.rollback();
+            }
+            throw e;
+        }
+        tx.commit();
+        return result;
+    }
+
+    public <T> T inRolledBackTx(Supplier<T> operation) {
+        EntityTransaction tx = em.getTransaction();
+        tx.begin();
+        try {
+            return operation.get();
+        } finally {
+            tx.rollback();
+        }
+    }
+}
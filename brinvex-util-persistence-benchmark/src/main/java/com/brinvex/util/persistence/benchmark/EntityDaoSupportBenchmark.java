@@ -0,0 +1,86 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import com.brinvex.util.persistence.benchmark.dm.Salary;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-threaded latency of the core {@code EntityDaoSupport} operations, including the database round trips.
+ * The locking operations run in their own transaction which is rolled back.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EntityDaoSupportBenchmark {
+
+    private static final Duration LOCK_TIMEOUT = Duration.ofSeconds(1);
+
+    @Benchmark
+    public Salary getById(BenchmarkDatabase db, DaoSession session) {
+        return session.salaryDao().getById(db.randomSalaryId());
+    }
+
+    @Benchmark
+    public List<Salary> getResults(BenchmarkDatabase db, DaoSession session) {
+        return session.salaryDao().findByEmployeeId(db.randomEmployeeId(), false);
+    }
+
+    @Benchmark
+    public List<Salary> getResultsWithFetchJoin(BenchmarkDatabase db, DaoSession session) {
+        return session.salaryDao().findByEmployeeId(db.randomEmployeeId(), true);
+    }
+
+    @Benchmark
+    public long count(BenchmarkDatabase db, DaoSession session) {
+        return session.salaryDao().countByEmployeeId(db.randomEmployeeId());
+    }
+
+    @Benchmark
+    public Salary getUniqueResult(BenchmarkDatabase db, DaoSession session) {
+        return session.salaryDao().getByEmployeeIdAndDate(db.randomEmployeeId(), db.randomSalaryDate());
+    }
+
+    @Benchmark
+    public Salary getByIdForUpdate(BenchmarkDatabase db, DaoSession session) {
+        BenchmarkSalaryDao salaryDao = session.salaryDao();
+        return session.inRolledBackTx(() -> salaryDao.getByIdForUpdate(db.randomSalaryId(), LOCK_TIMEOUT));
+    }
+
+    @Benchmark
+    public Salary getByIdForUpdateSkipLocked(BenchmarkDatabase db, DaoSession session) {
+        BenchmarkSalaryDao salaryDao = session.salaryDao();
+        return session.inRolledBackTx(() -> salaryDao.getByIdForUpdateSkipLocked(db.randomSalaryId()));
+    }
+
+    @Benchmark
+    public Salary getFirstResultForUpdateSkipLocked(BenchmarkDatabase db, DaoSession session) {
+        BenchmarkSalaryDao salaryDao = session.salaryDao();
+        return session.inRolledBackTx(() -> salaryDao.findForUpdateSkipLocked(db.randomEmployeeId(), db.randomSalaryDate()));
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reports the heap high-water mark of each iteration:
+ * <ul>
+ * <li>{@code heap.peakUsed} - sum of the peak usages of the heap memory pools, an upper bound of the peak heap usage
+ * <li>{@code heap.peakAfterGc} - largest heap usage right after a collection, i.e. the peak of the live data
+ * </ul>
+ * Enabled by {@code -prof com.brinvex.util.persistence.benchmark.HeapHighWaterProfiler}.
+ */
+public class HeapHighWaterProfiler implements InternalProfiler {
+
+    private final Set<String> heapPoolNames = new HashSet<>();
+
+    private final AtomicLong peakAfterGc = new AtomicLong();
+
+    private final NotificationListener gcListener = (notification, handback) -> {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> poolUsage : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if (heapPoolNames.contains(poolUsage.getKey())) {
+                used += poolUsage.getValue().getUsed();
+            }
+        }
+        peakAfterGc.accumulateAndGet(used, Math::max);
+    };
+
+    public HeapHighWaterProfiler() {
+        for (MemoryPoolMXBean pool : heapPools()) {
+            heapPoolNames.add(pool.getName());
+        }
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter) {
+                ((NotificationEmitter) gc).addNotificationListener(gcListener, null, null);
+            }
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return "Heap high-water mark";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        for (MemoryPoolMXBean pool : heapPools()) {
+            pool.resetPeakUsage();
+        }
+        peakAfterGc.set(0);
+    }
+
+    @Override
+    public List<? extends Result<?>> afterIteration(
+            BenchmarkParams benchmarkParams,
+            IterationParams iterationParams,
+            IterationResult result
+    ) {
+        long peakUsed = 0;
+        for (MemoryPoolMXBean pool : heapPools()) {
+            peakUsed += pool.getPeakUsage().getUsed();
+        }
+        return List.of(
+                new ScalarResult("heap.peakUsed", peakUsed / (1024.0 * 1024.0), "MB", AggregationPolicy.MAX),
+                new ScalarResult("heap.peakAfterGc", peakAfterGc.get() / (1024.0 * 1024.0), "MB", AggregationPolicy.MAX)
+        );
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>(ManagementFactory.getMemoryPoolMXBeans());
+        pools.removeIf(pool -> pool.getType() != MemoryType.HEAP);
+        return pools;
+    }
+}
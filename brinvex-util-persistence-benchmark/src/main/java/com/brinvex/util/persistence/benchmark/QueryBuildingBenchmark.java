@@ -0,0 +1,120 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.explain.QueryExplainer;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.criteria.CriteriaQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU cost of building DAO queries, without a database: criteria construction with the {@code EntityDaoSupport}
+ * helpers ({@code build}), plus creating the executable query ({@code createQuery}), plus translating it
+ * to SQL the way Hibernate does before the first execution ({@code translate}). Hibernate caches the translation
+ * of an executed query, so {@code translate} is the cost of a cache miss.
+ * <p>
+ * Allocation rates are reported when run with the GC profiler: {@code java -jar benchmarks.jar QueryBuilding -prof gc}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryBuildingBenchmark {
+
+    @Param({"byEmployeeId", "byEmployeeIdWithFetchJoin", "inCollection", "betweenLeftInclRightExcl", "dayDiff", "applySelections"})
+    public String query;
+
+    @Param("100")
+    public int collectionSize;
+
+    private final QueryExplainer queryExplainer = new QueryExplainer();
+
+    private EntityManager em;
+
+    private QueryBuildingDao dao;
+
+    private List<LocalDate> dates;
+
+    @Setup(Level.Trial)
+    public void setUp(OfflineSessionFactory sessionFactory) {
+        em = sessionFactory.createEntityManager();
+        dao = new QueryBuildingDao(em, new EntityDaoSupportImpl());
+        dates = new ArrayList<>(collectionSize);
+        for (int i = 0; i < collectionSize; i++) {
+            dates.add(BenchmarkDatabase.FIRST_SALARY_DATE.plusDays(i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        em.close();
+    }
+
+    @Benchmark
+    public CriteriaQuery<?> build() {
+        return criteria();
+    }
+
+    @Benchmark
+    public Query createQuery() {
+        return em.createQuery(criteria());
+    }
+
+    @Benchmark
+    public String translate() {
+        return queryExplainer.toSql(em, em.createQuery(criteria()));
+    }
+
+    private CriteriaQuery<?> criteria() {
+        switch (query) {
+            case "byEmployeeId":
+                return dao.byEmployeeId(1, false);
+            case "byEmployeeIdWithFetchJoin":
+                return dao.byEmployeeId(1, true);
+            case "inCollection":
+                return dao.byDates(1, dates);
+            case "betweenLeftInclRightExcl":
+                return dao.validEmployees(BenchmarkDatabase.FIRST_SALARY_DATE);
+            case "dayDiff":
+                return dao.validFromDayDiff(1, 2);
+            case "applySelections":
+                return dao.byIdAsDTO(1);
+            default:
+                throw new IllegalArgumentException("Unknown query: " + query);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import com.brinvex.util.persistence.api.AbstractEntityDao;
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.benchmark.dm.Employee;
+import com.brinvex.util.persistence.benchmark.dm.Employee_;
+import com.brinvex.util.persistence.benchmark.dm.Salary;
+import com.brinvex.util.persistence.benchmark.dm.Salary_;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Root;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Builds the criteria of typical DAO queries, like those of the impl tests, without executing them.
+ */
+public class QueryBuildingDao extends AbstractEntityDao<Salary, Long> {
+
+    private final EntityManager em;
+
+    public QueryBuildingDao(EntityManager em, EntityDaoSupport entityDaoSupport) {
+        super(Salary.class, Long.class, entityDaoSupport);
+        this.em = em;
+    }
+
+    @Override
+    protected EntityManager entityManager() {
+        return em;
+    }
+
+    public CriteriaQuery<Salary> byEmployeeId(long employeeId, boolean fetchEmployee) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        if (fetchEmployee) {
+            Join<Salary, Employee> employeeJoin = fetchJoin(r, Salary_.employee);
+            q.where(cb.equal(employeeJoin.get(Employee_.id), employeeId));
+        } else {
+            q.where(cb.equal(r.get(Salary_.employee).get(Employee_.id), employeeId));
+        }
+        return q;
+    }
+
+    public CriteriaQuery<Salary> byDates(long employeeId, Collection<LocalDate> dates) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.where(
+                cb.equal(r.get(Salary_.employee).get(Employee_.id), employeeId),
+                inCollection(r.get(Salary_.date), dates)
+        );
+        return q;
+    }
+
+    public CriteriaQuery<Employee> validEmployees(LocalDate date) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Employee> q = cb.createQuery(Employee.class);
+        Root<Employee> r = q.from(Employee.class);
+        q.where(betweenLeftInclRightExcl(r.get(Employee_.validFrom), r.get(Employee_.validTo), date));
+        return q;
+    }
+
+    public CriteriaQuery<Integer> validFromDayDiff(long employeeId1, long employeeId2) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Integer> q = cb.createQuery(Integer.class);
+        Root<Employee> r1 = q.from(Employee.class);
+        Root<Employee> r2 = q.from(Employee.class);
+        q.where(
+                cb.equal(r1.get(Employee_.id), employeeId1),
+                cb.equal(r2.get(Employee_.id), employeeId2)
+        );
+        q.select(dayDiff(r1.get(Employee_.validFrom), r2.get(Employee_.validFrom)));
+        return q;
+    }
+
+    public CriteriaQuery<Salary> byIdAsDTO(long salaryId) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.where(cb.equal(r.get(Salary_.id), salaryId));
+        return applySelections(q, Salary.class, List.of(r.get(Salary_.id), r.get(Salary_.date), r.get(Salary_.amount)));
+    }
+}
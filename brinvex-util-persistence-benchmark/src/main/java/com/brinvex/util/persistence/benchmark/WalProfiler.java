@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.benchmark;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Reports the PostgreSQL write-ahead log volume generated during each iteration, measured as the distance
+ * of {@code pg_current_wal_lsn()} before and after it. The WAL is shared by the whole cluster,
+ * so concurrent activity, e.g. autovacuum, is included.
+ * <ul>
+ * <li>{@code wal.bytesPerOp} - WAL bytes per benchmark operation
+ * <li>{@code wal.bytesPerRow} - the same divided by the {@code rows} parameter, if the benchmark has one
+ * </ul>
+ * Enabled by {@code -prof com.brinvex.util.persistence.benchmark.WalProfiler}. Connects the same way
+ * as {@link BenchmarkDatabase}.
+ */
+public class WalProfiler implements InternalProfiler {
+
+    private String startLsn;
+
+    @Override
+    public String getDescription() {
+        return "PostgreSQL WAL volume";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        startLsn = query("select pg_current_wal_lsn()::text", null);
+    }
+
+    @Override
+    public List<? extends Result<?>> afterIteration(
+            BenchmarkParams benchmarkParams,
+            IterationParams iterationParams,
+            IterationResult result
+    ) {
+        double walBytes = Double.parseDouble(query("select pg_wal_lsn_diff(pg_current_wal_lsn(), ?::pg_lsn)::text", startLsn));
+        long ops = Math.max(1, result.getMetadata().getMeasuredOps());
+        double bytesPerOp = walBytes / ops;
+        ScalarResult perOp = new ScalarResult("wal.bytesPerOp", bytesPerOp, "B/op", AggregationPolicy.AVG);
+        String rows = benchmarkParams.getParam("rows");
+        if (rows == null) {
+            return List.of(perOp);
+        }
+        return List.of(perOp, new ScalarResult("wal.bytesPerRow", bytesPerOp / Long.parseLong(rows), "B/row", AggregationPolicy.AVG));
+    }
+
+    private static String query(String sql, String parameter) {
+        try (Connection connection = DriverManager.getConnection(
+                BenchmarkDatabase.jdbcUrl(), BenchmarkDatabase.jdbcUser(), BenchmarkDatabase.jdbcPassword());
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            if (parameter != null) {
+                statement.setString(1, parameter);
+            }
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getString(1);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("WAL position not available", e);
+        }
+    }
+}
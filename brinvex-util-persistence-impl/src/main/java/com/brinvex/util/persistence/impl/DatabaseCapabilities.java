@@ -0,0 +1,145 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.dialect.Database;
+import org.hibernate.dialect.DatabaseVersion;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import java.util.StringJoiner;
+
+/**
+ * What the database behind an {@link EntityManagerFactory} supports,
+ * resolved from the Hibernate dialect once per factory instance.
+ */
+public class DatabaseCapabilities {
+
+    /**
+     * PostgreSQL wire protocol carries the parameter count as a 16-bit integer.
+     */
+    private static final int POSTGRESQL_MAX_BIND_PARAMETERS = Short.MAX_VALUE;
+
+    private static final int SQLSERVER_MAX_BIND_PARAMETERS = 2100;
+
+    private static final FactoryScoped<DatabaseCapabilities> CACHE = new FactoryScoped<>(DatabaseCapabilities::new);
+
+    private final Database database;
+
+    private final String dialectName;
+
+    private final DatabaseVersion version;
+
+    private final boolean supportsSkipLocked;
+
+    private final boolean supportsNoWait;
+
+    private final boolean supportsArrays;
+
+    private final int maxBindParameters;
+
+    private DatabaseCapabilities(EntityManagerFactory emf) {
+        Dialect dialect = emf.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        this.database = detectDatabase(dialect);
+        this.dialectName = dialect.getClass().getName();
+        this.version = dialect.getVersion();
+        this.supportsSkipLocked = dialect.supportsSkipLocked();
+        this.supportsNoWait = dialect.supportsNoWait();
+        this.supportsArrays = dialect.supportsStandardArrays();
+        this.maxBindParameters = detectMaxBindParameters(dialect, database);
+    }
+
+    public static DatabaseCapabilities of(EntityManagerFactory emf) {
+        return CACHE.get(emf);
+    }
+
+    /**
+     * Returns null if the database is neither PostgreSQL nor SQL Server.
+     */
+    public Database getDatabase() {
+        return database;
+    }
+
+    public boolean isPostgresql() {
+        return Database.POSTGRESQL.equals(database);
+    }
+
+    public String getDialectName() {
+        return dialectName;
+    }
+
+    public DatabaseVersion getVersion() {
+        return version;
+    }
+
+    public boolean isSupportsSkipLocked() {
+        return supportsSkipLocked;
+    }
+
+    public boolean isSupportsNoWait() {
+        return supportsNoWait;
+    }
+
+    public boolean isSupportsArrays() {
+        return supportsArrays;
+    }
+
+    /**
+     * Maximum number of bind parameters in one statement, {@link Integer#MAX_VALUE} if not known.
+     */
+    public int getMaxBindParameters() {
+        return maxBindParameters;
+    }
+
+    private static Database detectDatabase(Dialect dialect) {
+        String dialectSimpleName = dialect.getClass().getSimpleName();
+        if (dialectSimpleName.contains("PostgreSQL")) {
+            return Database.POSTGRESQL;
+        } else if (dialectSimpleName.contains("SQLServer")) {
+            return Database.SQLSERVER;
+        } else {
+            return null;
+        }
+    }
+
+    private static int detectMaxBindParameters(Dialect dialect, Database database) {
+        int limit = dialect.getParameterCountLimit();
+        if (limit > 0) {
+            return limit;
+        }
+        if (Database.POSTGRESQL.equals(database)) {
+            return POSTGRESQL_MAX_BIND_PARAMETERS;
+        } else if (Database.SQLSERVER.equals(database)) {
+            return SQLSERVER_MAX_BIND_PARAMETERS;
+        } else {
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", DatabaseCapabilities.class.getSimpleName() + "[", "]")
+                .add("database=" + database)
+                .add("dialectName='" + dialectName + "'")
+                .add("version=" + version)
+                .add("supportsSkipLocked=" + supportsSkipLocked)
+                .add("supportsNoWait=" + supportsNoWait)
+                .add("supportsArrays=" + supportsArrays)
+                .add("maxBindParameters=" + maxBindParameters)
+                .toString();
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl;
+
+import com.brinvex.util.persistence.impl.cache.CacheInvalidationBus;
+import com.brinvex.util.persistence.impl.cache.CacheInvalidationConf;
+import com.brinvex.util.persistence.impl.cache.EntityCacheConf;
+import com.brinvex.util.persistence.impl.cache.IdFilterConf;
+import com.brinvex.util.persistence.impl.cache.QueryCacheRegionConf;
+import com.brinvex.util.persistence.impl.diagnostics.AutoExplain;
+import com.brinvex.util.persistence.impl.diagnostics.AutoExplainConf;
+import com.brinvex.util.persistence.impl.diagnostics.NPlusOneDetector;
+import com.brinvex.util.persistence.impl.diagnostics.NPlusOneDetectorConf;
+import com.brinvex.util.persistence.impl.diagnostics.SlowQueryLog;
+import com.brinvex.util.persistence.impl.diagnostics.SlowQueryLogConf;
+import com.brinvex.util.persistence.impl.diagnostics.TransactionProfiler;
+import com.brinvex.util.persistence.impl.diagnostics.TransactionProfilerConf;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+public class EntityDaoSupportConf {
+
+    private MetricRegistry metricRegistry = MetricRegistry.getDefault();
+    private Duration lockBlockerProbeDelay;
+    private boolean skipLockedRowProbe = false;
+    private int lockWaitObservationCapacity = 100;
+    private final Map<Class<?>, EntityCacheConf<?>> entityCaches = new LinkedHashMap<>();
+    private final Map<String, QueryCacheRegionConf> queryCacheRegions = new LinkedHashMap<>();
+    private final Map<Class<?>, IdFilterConf<?>> idFilters = new LinkedHashMap<>();
+    private CacheInvalidationConf cacheInvalidation;
+    private boolean requestCoalescing = false;
+    private Duration requestCoalescingTimeout = Duration.ofSeconds(5);
+    private SlowQueryLogConf slowQueryLog;
+    private NPlusOneDetectorConf nPlusOneDetector;
+    private TransactionProfilerConf transactionProfiler;
+    private AutoExplainConf autoExplain;
+
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    public EntityDaoSupportConf setMetricRegistry(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+        return this;
+    }
+
+    public Duration getLockBlockerProbeDelay() {
+        return lockBlockerProbeDelay;
+    }
+
+    /**
+     * If a pessimistic lock is still not acquired after this delay then the blocking sessions
+     * are looked up on a separate connection and recorded as a {@link LockWaitObservation}.
+     * Supported only on PostgreSQL. Null (default) disables the probe.
+     * <p>
+     * When enabled, every pessimistic lock costs one extra round trip to read the backend PID.
+     */
+    public EntityDaoSupportConf setLockBlockerProbeDelay(Duration lockBlockerProbeDelay) {
+        this.lockBlockerProbeDelay = lockBlockerProbeDelay;
+        return this;
+    }
+
+    public boolean isSkipLockedRowProbe() {
+        return skipLockedRowProbe;
+    }
+
+    /**
+     * If enabled then an empty result of {@code getByIdForUpdateSkipLocked} is followed by an existence check
+     * without a lock, so that rows skipped because of contention are counted separately from missing rows.
+     */
+    public EntityDaoSupportConf setSkipLockedRowProbe(boolean skipLockedRowProbe) {
+        this.skipLockedRowProbe = skipLockedRowProbe;
+        return this;
+    }
+
+    public int getLockWaitObservationCapacity() {
+        return lockWaitObservationCapacity;
+    }
+
+    public EntityDaoSupportConf setLockWaitObservationCapacity(int lockWaitObservationCapacity) {
+        this.lockWaitObservationCapacity = lockWaitObservationCapacity;
+        return this;
+    }
+
+    public Map<Class<?>, EntityCacheConf<?>> getEntityCaches() {
+        return Collections.unmodifiableMap(entityCaches);
+    }
+
+    /**
+     * Enables the read-through cache of {@code getById} and {@code findByIds} for one entity type.
+     * Cached entities are detached, see {@link EntityCacheConf#setCopier}, so the cache is consulted only
+     * outside a transaction or in a read-only session ({@code Session#setDefaultReadOnly}).
+     * Inside any other transaction, and always for {@code getByIdAndCheckVersion}, entities are loaded
+     * into the persistence context.
+     * Entries are invalidated by {@code persist}, {@code merge}, {@code remove} and {@code bulkDeleteByIds}
+     * of the same support instance, both immediately and after the transaction completes.
+     * Changes made in any other way, e.g. by dirty checking of a managed entity, are not seen by the cache.
+     */
+    public EntityDaoSupportConf addEntityCache(EntityCacheConf<?> entityCacheConf) {
+        if (entityCacheConf.getCopier() == null) {
+            throw new IllegalArgumentException("Copier is required for mutable entity type: "
+                                               + entityCacheConf.getEntityType().getName());
+        }
+        this.entityCaches.put(entityCacheConf.getEntityType(), entityCacheConf);
+        return this;
+    }
+
+    public Map<String, QueryCacheRegionConf> getQueryCacheRegions() {
+        return Collections.unmodifiableMap(queryCacheRegions);
+    }
+
+    /**
+     * Adds TTL and size limits to a query cache region used with a {@code queryCacheRegion} argument.
+     * Regions without such configuration are managed by the cache provider alone.
+     */
+    public EntityDaoSupportConf addQueryCacheRegion(QueryCacheRegionConf queryCacheRegionConf) {
+        this.queryCacheRegions.put(queryCacheRegionConf.getName(), queryCacheRegionConf);
+        return this;
+    }
+
+    public Map<Class<?>, IdFilterConf<?>> getIdFilters() {
+        return Collections.unmodifiableMap(idFilters);
+    }
+
+    /**
+     * Enables answering {@code getById} and {@code findByIds} of missing ids in memory for one entity type.
+     * The filter is built in the background from all ids in the table on first use and kept current
+     * by {@code persist} and {@code merge} of the same support instance and by invalidations of other nodes.
+     * Rows inserted in any other way (native SQL, other applications, nodes without cache invalidation)
+     * are reported as missing without querying the database until the next rebuild, see {@link IdFilterConf}.
+     * Enable it only for tables whose inserts all go through this library.
+     */
+    public EntityDaoSupportConf addIdFilter(IdFilterConf<?> idFilterConf) {
+        this.idFilters.put(idFilterConf.getEntityType(), idFilterConf);
+        return this;
+    }
+
+    public CacheInvalidationConf getCacheInvalidation() {
+        return cacheInvalidation;
+    }
+
+    /**
+     * Propagates invalidations caused by writes of this support instance to the other application nodes
+     * and applies theirs to the local caches, see {@link CacheInvalidationBus}. Supported only on PostgreSQL.
+     * Null (default) disables the propagation.
+     */
+    public EntityDaoSupportConf setCacheInvalidation(CacheInvalidationConf cacheInvalidation) {
+        this.cacheInvalidation = cacheInvalidation;
+        return this;
+    }
+
+    public boolean isRequestCoalescing() {
+        return requestCoalescing;
+    }
+
+    /**
+     * If enabled then concurrent identical lookups share one database load:
+     * {@code getById} of an entity type with an entity cache and queries in
+     * {@link com.brinvex.util.persistence.api.QueryCacheMode#USE_QUERY_CACHE} mode (when the query cache is enabled).
+     * Callers which waited for another one's load get a detached copy from the entity cache,
+     * or execute the query against the freshly filled query cache.
+     */
+    public EntityDaoSupportConf setRequestCoalescing(boolean requestCoalescing) {
+        this.requestCoalescing = requestCoalescing;
+        return this;
+    }
+
+    public Duration getRequestCoalescingTimeout() {
+        return requestCoalescingTimeout;
+    }
+
+    /**
+     * How long a caller waits for another one's load before loading by itself.
+     */
+    public EntityDaoSupportConf setRequestCoalescingTimeout(Duration requestCoalescingTimeout) {
+        this.requestCoalescingTimeout = requireNonNull(requestCoalescingTimeout);
+        return this;
+    }
+
+    public SlowQueryLogConf getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    /**
+     * Logs slow queries and aggregates statistics of all queries issued by this support instance,
+     * see {@link SlowQueryLog}. Null (default) disables it.
+     */
+    public EntityDaoSupportConf setSlowQueryLog(SlowQueryLogConf slowQueryLog) {
+        this.slowQueryLog = slowQueryLog;
+        return this;
+    }
+
+    public NPlusOneDetectorConf getNPlusOneDetector() {
+        return nPlusOneDetector;
+    }
+
+    /**
+     * Detects selects repeated within one transaction and attributes them to the DAO calls
+     * which loaded the owning entities, see {@link NPlusOneDetector}. Null (default) disables it.
+     */
+    public EntityDaoSupportConf setNPlusOneDetector(NPlusOneDetectorConf nPlusOneDetector) {
+        this.nPlusOneDetector = nPlusOneDetector;
+        return this;
+    }
+
+    public TransactionProfilerConf getTransactionProfiler() {
+        return transactionProfiler;
+    }
+
+    /**
+     * Breaks the time of each transaction using this support instance down into database, hydration,
+     * flush and other time, see {@link TransactionProfiler}. Null (default) disables it.
+     */
+    public EntityDaoSupportConf setTransactionProfiler(TransactionProfilerConf transactionProfiler) {
+        this.transactionProfiler = transactionProfiler;
+        return this;
+    }
+
+    public AutoExplainConf getAutoExplain() {
+        return autoExplain;
+    }
+
+    /**
+     * Captures the plans of slow selects, see {@link AutoExplain}. Supported only on PostgreSQL.
+     * Null (default) disables it.
+     */
+    public EntityDaoSupportConf setAutoExplain(AutoExplainConf autoExplain) {
+        this.autoExplain = autoExplain;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EntityDaoSupportConf.class.getSimpleName() + "[", "]")
+                .add("lockBlockerProbeDelay=" + lockBlockerProbeDelay)
+                .add("skipLockedRowProbe=" + skipLockedRowProbe)
+                .add("lockWaitObservationCapacity=" + lockWaitObservationCapacity)
+                .add("entityCaches=" + entityCaches.values())
+                .add("queryCacheRegions=" + queryCacheRegions.values())
+                .add("idFilters=" + idFilters.values())
+                .add("cacheInvalidation=" + cacheInvalidation)
+                .add("requestCoalescing=" + requestCoalescing)
+                .add("requestCoalescingTimeout=" + requestCoalescingTimeout)
+                .add("slowQueryLog=" + slowQueryLog)
+                .add("nPlusOneDetector=" + nPlusOneDetector)
+                .add("transactionProfiler=" + transactionProfiler)
+                .add("autoExplain=" + autoExplain)
+                .toString();
+    }
+}
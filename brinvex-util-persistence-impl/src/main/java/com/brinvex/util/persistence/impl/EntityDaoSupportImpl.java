@@ -16,11 +16,36 @@
 package com.brinvex.util.persistence.impl;
 
 import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.api.EntityMetadata;
+import com.brinvex.util.persistence.api.ExplainOptions;
+import com.brinvex.util.persistence.api.LockNotAvailableException;
 import com.brinvex.util.persistence.api.NumberFilter;
 import com.brinvex.util.persistence.api.QueryCacheMode;
+import com.brinvex.util.persistence.api.QueryPlan;
+import com.brinvex.util.persistence.impl.cache.CacheInvalidationBus;
+import com.brinvex.util.persistence.impl.cache.CacheInvalidationConf;
+import com.brinvex.util.persistence.impl.cache.EntityCache;
+import com.brinvex.util.persistence.impl.cache.EntityCacheConf;
+import com.brinvex.util.persistence.impl.cache.IdFilter;
+import com.brinvex.util.persistence.impl.cache.IdFilterConf;
+import com.brinvex.util.persistence.impl.cache.QueryCacheRegion;
+import com.brinvex.util.persistence.impl.cache.QueryCacheRegionConf;
+import com.brinvex.util.persistence.impl.cache.SingleFlight;
+import com.brinvex.util.persistence.impl.diagnostics.AutoExplain;
+import com.brinvex.util.persistence.impl.diagnostics.NPlusOneDetector;
+import com.brinvex.util.persistence.impl.diagnostics.QueryDiagnostics;
+import com.brinvex.util.persistence.impl.diagnostics.SlowQueryLog;
+import com.brinvex.util.persistence.impl.diagnostics.TransactionProfiler;
+import com.brinvex.util.persistence.impl.explain.QueryExplainer;
+import com.brinvex.util.persistence.impl.jfr.BulkEvent;
+import com.brinvex.util.persistence.impl.jfr.FlushEvent;
+import com.brinvex.util.persistence.impl.jfr.LockEvent;
+import com.brinvex.util.persistence.impl.jfr.LockTimeoutEvent;
 import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.LockModeType;
 import jakarta.persistence.OptimisticLockException;
+import jakarta.persistence.PersistenceUnitUtil;
 import jakarta.persistence.TypedQuery;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaDelete;
@@ -33,14 +58,19 @@ import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
 import jakarta.persistence.criteria.Selection;
 import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.Cache;
+import org.hibernate.CacheMode;
+import org.hibernate.Hibernate;
 import org.hibernate.LockMode;
 import org.hibernate.Session;
-import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
 import org.hibernate.dialect.Database;
-import org.hibernate.dialect.Dialect;
-import org.hibernate.internal.SessionImpl;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.jpa.HibernateHints;
 import org.hibernate.jpa.SpecHints;
+import org.hibernate.persister.entity.EntityPersister;
 import org.hibernate.query.Query;
 import org.hibernate.query.criteria.HibernateCriteriaBuilder;
 import org.hibernate.query.criteria.JpaFunction;
@@ -50,26 +80,263 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static java.lang.String.format;
 import static java.util.Objects.requireNonNull;
 
 @SuppressWarnings("DuplicatedCode")
-public class EntityDaoSupportImpl implements EntityDaoSupport {
+public class EntityDaoSupportImpl implements EntityDaoSupport, AutoCloseable {
 
-    private static final Map<String, Database> PU_2_DATABASE = new ConcurrentHashMap<>();
+    private static final EntityMetadataRegistry ENTITY_METADATA_REGISTRY = new EntityMetadataRegistry();
+
+    protected final EntityDaoSupportConf conf;
+
+    protected final LockContentionMonitor lockContentionMonitor;
+
+    private final Map<Class<?>, EntityCacheConf<?>> entityCacheConfs;
+
+    private final FactoryScoped<Map<Class<?>, EntityCache<?>>> entityCaches;
+
+    private final Map<String, QueryCacheRegionConf> queryCacheRegionConfs;
+
+    private final FactoryScoped<Map<String, QueryCacheRegion>> queryCacheRegions;
+
+    private final Map<Class<?>, IdFilterConf<?>> idFilterConfs;
+
+    private final FactoryScoped<Map<Class<?>, IdFilter>> idFilters;
+
+    private final FactoryScoped<SingleFlight> singleFlights;
+
+    protected final QueryExplainer queryExplainer;
+
+    protected final QueryDiagnostics queryDiagnostics;
+
+    private final CacheInvalidationBus cacheInvalidationBus;
+
+    public EntityDaoSupportImpl() {
+        this(new EntityDaoSupportConf());
+    }
+
+    public EntityDaoSupportImpl(EntityDaoSupportConf conf) {
+        this.conf = requireNonNull(conf);
+        this.lockContentionMonitor = new LockContentionMonitor(conf);
+        this.entityCacheConfs = Map.copyOf(conf.getEntityCaches());
+        this.entityCaches = new FactoryScoped<>(emf -> createEntityCaches());
+        this.queryCacheRegionConfs = Map.copyOf(conf.getQueryCacheRegions());
+        this.queryCacheRegions = new FactoryScoped<>(this::createQueryCacheRegions);
+        this.idFilterConfs = Map.copyOf(conf.getIdFilters());
+        this.idFilters = new FactoryScoped<>(this::createIdFilters);
+        this.singleFlights = !conf.isRequestCoalescing() ? null : new FactoryScoped<>(
+                emf -> new SingleFlight(conf.getMetricRegistry(), conf.getRequestCoalescingTimeout()));
+        this.queryExplainer = new QueryExplainer();
+        this.queryDiagnostics = new QueryDiagnostics(
+                conf.getSlowQueryLog() == null ? null : new SlowQueryLog(conf.getSlowQueryLog(), conf.getMetricRegistry()),
+                conf.getNPlusOneDetector() == null ? null : new NPlusOneDetector(conf.getNPlusOneDetector(), conf.getMetricRegistry()),
+                conf.getTransactionProfiler() == null ? null : new TransactionProfiler(conf.getTransactionProfiler(), conf.getMetricRegistry()),
+                conf.getAutoExplain() == null ? null : new AutoExplain(conf.getAutoExplain(), queryExplainer, conf.getMetricRegistry()));
+        this.cacheInvalidationBus = conf.getCacheInvalidation() == null ? null : startCacheInvalidationBus(conf.getCacheInvalidation());
+    }
+
+    public EntityDaoSupportConf getConf() {
+        return conf;
+    }
+
+    public LockContentionMonitor getLockContentionMonitor() {
+        return lockContentionMonitor;
+    }
+
+    /**
+     * Returns null if the slow query log is not enabled.
+     */
+    public SlowQueryLog getSlowQueryLog() {
+        return queryDiagnostics.getSlowQueryLog();
+    }
+
+    /**
+     * Returns null if the N+1 query detector is not enabled.
+     */
+    public NPlusOneDetector getNPlusOneDetector() {
+        return queryDiagnostics.getNPlusOneDetector();
+    }
+
+    /**
+     * Returns null if transaction profiling is not enabled.
+     */
+    public TransactionProfiler getTransactionProfiler() {
+        return queryDiagnostics.getTransactionProfiler();
+    }
+
+    /**
+     * Returns null if auto-explain is not enabled.
+     */
+    public AutoExplain getAutoExplain() {
+        return queryDiagnostics.getAutoExplain();
+    }
+
+    /**
+     * Returns null if caching is not enabled for the given entity type.
+     */
+    @SuppressWarnings("unchecked")
+    public <ENTITY> EntityCache<ENTITY> getEntityCache(EntityManagerFactory emf, Class<ENTITY> entityType) {
+        if (entityCacheConfs.isEmpty()) {
+            return null;
+        }
+        return (EntityCache<ENTITY>) entityCaches.get(emf).get(entityType);
+    }
+
+    /**
+     * Returns null if the region is not configured.
+     */
+    public QueryCacheRegion getQueryCacheRegion(EntityManagerFactory emf, String regionName) {
+        if (queryCacheRegionConfs.isEmpty()) {
+            return null;
+        }
+        return queryCacheRegions.get(emf).get(regionName);
+    }
+
+    /**
+     * Returns null if the id filter is not enabled for the given entity type.
+     */
+    public IdFilter getIdFilter(EntityManagerFactory emf, Class<?> entityType) {
+        if (idFilterConfs.isEmpty()) {
+            return null;
+        }
+        return idFilters.get(emf).get(entityType);
+    }
+
+    /**
+     * Rebuilds the id filter from a fresh snapshot of ids, e.g. after rows were inserted
+     * by other applications. Returns false if another rebuild is in progress.
+     */
+    public boolean rebuildIdFilter(EntityManagerFactory emf, Class<?> entityType) {
+        IdFilter idFilter = getIdFilter(emf, entityType);
+        if (idFilter == null) {
+            throw new IllegalArgumentException("Id filter is not enabled for entity type: " + entityType.getName());
+        }
+        return rebuildIdFilter(emf, idFilter);
+    }
+
+    /**
+     * Returns null if cache invalidation between nodes is not enabled.
+     */
+    public CacheInvalidationBus getCacheInvalidationBus() {
+        return cacheInvalidationBus;
+    }
+
+    /**
+     * Stops the cache invalidation listener and the id filter rebuilds, waiting until they release their connections.
+     * Closing the factory does the same, so this is needed only when the support is dropped earlier.
+     */
+    @Override
+    public void close() {
+        if (cacheInvalidationBus != null) {
+            cacheInvalidationBus.close();
+        }
+        for (Map<Class<?>, IdFilter> filters : idFilters.values()) {
+            for (IdFilter idFilter : filters.values()) {
+                idFilter.stopRebuilds();
+            }
+        }
+    }
+
+    /**
+     * Returns null if request coalescing is not enabled.
+     */
+    public SingleFlight getSingleFlight(EntityManagerFactory emf) {
+        return singleFlights == null ? null : singleFlights.get(emf);
+    }
+
+    /**
+     * Drops all cached entities and query results of the given type, on this node and,
+     * once the current transaction commits, on the other nodes.
+     * Meant for writes made without this support, e.g. bulk updates.
+     */
+    public void invalidateEntityType(EntityManager em, Class<?> entityType) {
+        EntityManagerFactory emf = em.getEntityManagerFactory();
+        EntityCache<?> cache = getEntityCache(emf, entityType);
+        if (cache != null) {
+            cache.invalidateAll();
+            em.unwrap(SessionImplementor.class)
+                    .getActionQueue()
+                    .registerProcess((success, session) -> cache.invalidateAll());
+        }
+        publishInvalidation(em, entityType, null);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> EntityMetadata<ENTITY, ID> getEntityMetadata(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Class<ID> idType
+    ) {
+        return ENTITY_METADATA_REGISTRY.get(em.getEntityManagerFactory(), entityType, idType);
+    }
 
     @Override
     public <ENTITY, ID extends Serializable> ENTITY getById(EntityManager em, Class<ENTITY> entityType, ID id) {
+        return getById(em, entityType, id, readableEntityCache(em, entityType));
+    }
+
+    /**
+     * @param cache null to load from the database
+     */
+    protected <ENTITY, ID extends Serializable> ENTITY getById(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            ID id,
+            EntityCache<ENTITY> cache
+    ) {
         if (id == null) {
             throw new IllegalArgumentException("Required non-null id");
         }
-        return em.find(entityType, id);
+        IdFilter idFilter = idFilter(em, entityType);
+        if (idFilter != null && !mightExist(em, idFilter, id)) {
+            return getManaged(em, entityType, id);
+        }
+        ENTITY entity;
+        if (cache == null) {
+            entity = find(em, entityType, id, () -> em.find(entityType, id));
+        } else {
+            entity = getManaged(em, entityType, id);
+            if (entity != null) {
+                return entity;
+            }
+            entity = cache.get(id);
+            if (entity != null) {
+                return entity;
+            }
+            SingleFlight singleFlight = getSingleFlight(em.getEntityManagerFactory());
+            if (singleFlight == null) {
+                entity = loadAndCache(em, cache, entityType, id);
+            } else {
+                entity = singleFlight.execute(
+                        entityType.getSimpleName(),
+                        List.of(entityType, id),
+                        () -> loadAndCache(em, cache, entityType, id),
+                        leaderEntity -> {
+                            if (leaderEntity == null) {
+                                return null;
+                            }
+                            ENTITY cached = cache.get(id);
+                            return cached != null ? cached : find(em, entityType, id, () -> em.find(entityType, id));
+                        });
+            }
+        }
+        if (entity == null && idFilter != null) {
+            idFilter.recordFalsePositives(1);
+        }
+        return entity;
     }
 
     @Override
@@ -82,9 +349,23 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
         if (id == null) {
             throw new IllegalArgumentException("Required non-null id");
         }
+        LockEvent lockEvent = new LockEvent();
+        lockEvent.begin();
         setTransactionScopedLockTimeout(em, lockTimeout);
-        ENTITY entity = em.find(entityType, id, LockModeType.PESSIMISTIC_WRITE);
+        String operation = "getByIdForUpdate";
+        ScheduledFuture<?> blockerProbe = beginLockWait(em, operation, entityType);
+        long startNanos = System.nanoTime();
+        ENTITY entity;
+        try {
+            entity = find(em, entityType, id, () -> em.find(entityType, id, LockModeType.PESSIMISTIC_WRITE));
+        } catch (RuntimeException e) {
+            lockContentionMonitor.failWait(operation, entityType, startNanos, blockerProbe, e);
+            lockEvent.end(operation, entityType, lockTimeout.toMillis(), lockOutcome(e));
+            throw e;
+        }
+        lockContentionMonitor.endWait(operation, entityType, startNanos, blockerProbe, false);
         setTransactionScopedLockTimeout(em, Duration.ZERO);
+        lockEvent.end(operation, entityType, lockTimeout.toMillis(), entity == null ? LockEvent.EMPTY : LockEvent.ACQUIRED);
         return entity;
     }
 
@@ -98,7 +379,52 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
             throw new IllegalArgumentException("Required non-null id");
         }
         Session hibSession = em.unwrap(Session.class);
-        return hibSession.get(entityType, id, LockMode.UPGRADE_SKIPLOCKED);
+        String operation = "getByIdForUpdateSkipLocked";
+        LockEvent lockEvent = new LockEvent();
+        lockEvent.begin();
+        long startNanos = System.nanoTime();
+        ENTITY entity;
+        try {
+            entity = find(em, entityType, id, () -> hibSession.get(entityType, id, LockMode.UPGRADE_SKIPLOCKED));
+        } catch (RuntimeException e) {
+            lockContentionMonitor.failWait(operation, entityType, startNanos, null, e);
+            lockEvent.end(operation, entityType, -1, lockOutcome(e));
+            throw e;
+        }
+        lockContentionMonitor.endWait(operation, entityType, startNanos, null, entity == null);
+        lockEvent.end(operation, entityType, -1, entity == null ? LockEvent.EMPTY : LockEvent.ACQUIRED);
+        if (entity == null && conf.isSkipLockedRowProbe() && exists(em, entityType, id)) {
+            lockContentionMonitor.rowSkipped(operation, entityType);
+        }
+        return entity;
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> ENTITY getByIdForUpdateNoWait(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            ID id
+    ) {
+        if (id == null) {
+            throw new IllegalArgumentException("Required non-null id");
+        }
+        checkNoWaitSupported(em);
+        Session hibSession = em.unwrap(Session.class);
+        String operation = "getByIdForUpdateNoWait";
+        LockEvent lockEvent = new LockEvent();
+        lockEvent.begin();
+        long startNanos = System.nanoTime();
+        ENTITY entity;
+        try {
+            entity = find(em, entityType, id, () -> hibSession.get(entityType, id, LockMode.UPGRADE_NOWAIT));
+        } catch (RuntimeException e) {
+            lockContentionMonitor.failWait(operation, entityType, startNanos, null, e);
+            lockEvent.end(operation, entityType, -1, lockOutcome(e));
+            throw asLockNotAvailable(e, entityType);
+        }
+        lockContentionMonitor.endWait(operation, entityType, startNanos, null, false);
+        lockEvent.end(operation, entityType, -1, entity == null ? LockEvent.EMPTY : LockEvent.ACQUIRED);
+        return entity;
     }
 
     @Override
@@ -108,11 +434,92 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
             Collection<ID> ids,
             SingularAttribute<? super ENTITY, ID> idAttribute
     ) {
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<ENTITY> q = cb.createQuery(entityType);
-        Root<ENTITY> r = q.from(entityType);
-        q.where(inCollection(cb, r.get(idAttribute), ids));
-        return getResults(em, q);
+        IdFilter idFilter = ids == null ? null : idFilter(em, entityType);
+        if (idFilter == null) {
+            return findByIdsCached(em, entityType, ids, idAttribute);
+        }
+        List<ID> candidateIds = new ArrayList<>();
+        for (ID id : ids instanceof Set ? ids : new LinkedHashSet<>(ids)) {
+            if (mightExist(em, idFilter, id) || getManaged(em, entityType, id) != null) {
+                candidateIds.add(id);
+            }
+        }
+        if (candidateIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<ENTITY> results = findByIdsCached(em, entityType, candidateIds, idAttribute);
+        idFilter.recordFalsePositives(candidateIds.size() - results.size());
+        return results;
+    }
+
+    protected <ENTITY, ID extends Serializable> List<ENTITY> findByIdsCached(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            SingularAttribute<? super ENTITY, ID> idAttribute
+    ) {
+        EntityCache<ENTITY> cache = ids == null ? null : readableEntityCache(em, entityType);
+        if (cache == null) {
+            return loadByIds(em, entityType, ids, idAttribute);
+        }
+        Collection<ID> distinctIds = ids instanceof Set ? ids : new LinkedHashSet<>(ids);
+        List<ENTITY> results = new ArrayList<>(distinctIds.size());
+        List<ID> missingIds = new ArrayList<>();
+        for (ID id : distinctIds) {
+            ENTITY entity = getManaged(em, entityType, id);
+            if (entity == null) {
+                entity = cache.get(id);
+            }
+            if (entity != null) {
+                results.add(entity);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            long invalidationStamp = cache.getInvalidationStamp();
+            PersistenceUnitUtil persistenceUnitUtil = em.getEntityManagerFactory().getPersistenceUnitUtil();
+            for (ENTITY entity : loadByIds(em, entityType, missingIds, idAttribute)) {
+                cache.put(persistenceUnitUtil.getIdentifier(entity), entity, invalidationStamp);
+                results.add(entity);
+            }
+        }
+        return results;
+    }
+
+    protected <ENTITY, ID extends Serializable> ENTITY loadAndCache(
+            EntityManager em,
+            EntityCache<ENTITY> cache,
+            Class<ENTITY> entityType,
+            ID id
+    ) {
+        long invalidationStamp = cache.getInvalidationStamp();
+        ENTITY entity = find(em, entityType, id, () -> em.find(entityType, id));
+        if (entity != null) {
+            cache.put(id, entity, invalidationStamp);
+        }
+        return entity;
+    }
+
+    protected <ENTITY, ID extends Serializable> List<ENTITY> loadByIds(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            SingularAttribute<? super ENTITY, ID> idAttribute
+    ) {
+        int maxBindParameters = capabilities(em).getMaxBindParameters();
+        if (ids == null || ids.size() <= maxBindParameters) {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<ENTITY> q = cb.createQuery(entityType);
+            Root<ENTITY> r = q.from(entityType);
+            q.where(inCollection(cb, r.get(idAttribute), ids));
+            return getResults(em, q);
+        }
+        List<ENTITY> results = new ArrayList<>(ids.size());
+        for (List<ID> idsChunk : chunks(ids, maxBindParameters)) {
+            results.addAll(loadByIds(em, entityType, idsChunk, idAttribute));
+        }
+        return results;
     }
 
     @Override
@@ -133,7 +540,7 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
             int optLockVersion,
             Function<ENTITY, Integer> optLockVersionGetter
     ) {
-        ENTITY ent = getById(em, entityType, id);
+        ENTITY ent = getById(em, entityType, id, null);
         if (ent == null) {
             return null;
         }
@@ -186,7 +593,11 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
         if (entity == null) {
             throw new IllegalArgumentException("Required non-null entity");
         }
+        queryDiagnostics.touch(em);
         em.persist(entity);
+        invalidateCachedEntity(em, entity);
+        addToIdFilter(em, entity);
+        publishInvalidation(em, entity);
     }
 
     @Override
@@ -194,7 +605,12 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
         if (entity == null) {
             throw new IllegalArgumentException("Required non-null entity");
         }
-        return em.merge(entity);
+        queryDiagnostics.touch(em);
+        ENTITY mergedEntity = em.merge(entity);
+        invalidateCachedEntity(em, mergedEntity);
+        addToIdFilter(em, mergedEntity);
+        publishInvalidation(em, mergedEntity);
+        return mergedEntity;
     }
 
     @Override
@@ -204,7 +620,17 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
 
     @Override
     public void flush(EntityManager em) {
-        em.flush();
+        queryDiagnostics.touch(em);
+        FlushEvent event = new FlushEvent();
+        long managedEntities = event.isEnabled() ? managedEntities(em) : -1;
+        event.begin();
+        boolean failed = true;
+        try {
+            em.flush();
+            failed = false;
+        } finally {
+            event.end(managedEntities, false, failed);
+        }
     }
 
     @Override
@@ -214,8 +640,18 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
 
     @Override
     public void flushAndClear(EntityManager em) {
-        em.flush();
-        em.clear();
+        queryDiagnostics.touch(em);
+        FlushEvent event = new FlushEvent();
+        long managedEntities = event.isEnabled() ? managedEntities(em) : -1;
+        event.begin();
+        boolean failed = true;
+        try {
+            em.flush();
+            em.clear();
+            failed = false;
+        } finally {
+            event.end(managedEntities, true, failed);
+        }
     }
 
     @Override
@@ -223,6 +659,8 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
         if (entity == null) {
             throw new IllegalArgumentException("Required non-null entity");
         }
+        invalidateCachedEntity(em, entity);
+        publishInvalidation(em, entity);
         em.remove(entity);
     }
 
@@ -239,11 +677,48 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
         if (ids.isEmpty()) {
             return 0;
         }
+        EntityCache<ENTITY> cache = entityCache(em, entityType);
+        if (cache != null) {
+            for (ID id : ids) {
+                invalidateCachedEntity(em, cache, id);
+            }
+        }
+        if (cacheInvalidationBus != null) {
+            for (ID id : ids) {
+                publishInvalidation(em, entityType, id);
+            }
+        }
+        BulkEvent event = new BulkEvent();
+        event.begin();
+        int deleted = -1;
+        try {
+            int maxBindParameters = capabilities(em).getMaxBindParameters();
+            if (ids.size() > maxBindParameters) {
+                int chunksDeleted = 0;
+                for (List<ID> idsChunk : chunks(ids, maxBindParameters)) {
+                    chunksDeleted += deleteByIds(em, entityType, idAttribute, idsChunk);
+                }
+                deleted = chunksDeleted;
+            } else {
+                deleted = deleteByIds(em, entityType, idAttribute, ids);
+            }
+            return deleted;
+        } finally {
+            event.end("bulkDeleteByIds", entityType, ids.size(), deleted);
+        }
+    }
+
+    protected <ENTITY, ID extends Serializable> int deleteByIds(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            Collection<ID> ids
+    ) {
         CriteriaBuilder cb = em.getCriteriaBuilder();
         CriteriaDelete<ENTITY> q = cb.createCriteriaDelete(entityType);
         Root<ENTITY> r = q.from(entityType);
         q.where(r.get(idAttribute).in(ids));
-        return em.createQuery(q).executeUpdate();
+        return executeUpdate(em, em.createQuery(q));
     }
 
     @Override
@@ -255,21 +730,19 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
 
     @Override
     public <R> List<R> getResults(EntityManager em, CriteriaQuery<R> query) {
-        return em.createQuery(query).getResultList();
+        return getResultList(em, em.createQuery(query));
     }
 
     @Override
     public <R> List<R> getResults(EntityManager em, CriteriaQuery<R> query, Integer offset, Integer limit) {
         TypedQuery<R> typedQuery = em.createQuery(query);
         applyOffsetAndLimit(typedQuery, offset, limit);
-        return typedQuery.getResultList();
+        return getResultList(em, typedQuery);
     }
 
     @Override
     public <R> List<R> getResults(EntityManager em, CriteriaQuery<R> query, QueryCacheMode queryCacheMode) {
-        TypedQuery<R> typedQuery = em.createQuery(query);
-        applyQueryCacheHint(typedQuery, queryCacheMode);
-        return typedQuery.getResultList();
+        return getResults(em, query, queryCacheMode, null);
     }
 
     @Override
@@ -279,11 +752,35 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
             Integer offset,
             Integer limit,
             QueryCacheMode queryCacheMode
+    ) {
+        return getResults(em, query, offset, limit, queryCacheMode, null);
+    }
+
+    @Override
+    public <R> List<R> getResults(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            QueryCacheMode queryCacheMode,
+            String queryCacheRegion
+    ) {
+        TypedQuery<R> typedQuery = em.createQuery(query);
+        applyQueryCacheHint(em, typedQuery, queryCacheMode, queryCacheRegion);
+        return getResultList(em, typedQuery, queryCacheMode);
+    }
+
+    @Override
+    public <R> List<R> getResults(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            Integer offset,
+            Integer limit,
+            QueryCacheMode queryCacheMode,
+            String queryCacheRegion
     ) {
         TypedQuery<R> typedQuery = em.createQuery(query);
-        applyQueryCacheHint(typedQuery, queryCacheMode);
         applyOffsetAndLimit(typedQuery, offset, limit);
-        return typedQuery.getResultList();
+        applyQueryCacheHint(em, typedQuery, queryCacheMode, queryCacheRegion);
+        return getResultList(em, typedQuery, queryCacheMode);
     }
 
     @Override
@@ -321,7 +818,7 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
         query.select(cb.count(r.get(idAttribute)));
         TypedQuery<Long> typedQuery = em.createQuery(query);
         applyQueryCacheHint(typedQuery, queryCacheMode);
-        return typedQuery.getSingleResult();
+        return getSingleResult(em, typedQuery);
     }
 
 
@@ -341,13 +838,23 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
      */
     @Override
     public <R> R getUniqueResult(EntityManager em, CriteriaQuery<R> q, QueryCacheMode queryCacheMode) {
+        return getUniqueResult(em, q, queryCacheMode, null);
+    }
+
+    @Override
+    public <R> R getUniqueResult(
+            EntityManager em,
+            CriteriaQuery<R> q,
+            QueryCacheMode queryCacheMode,
+            String queryCacheRegion
+    ) {
         TypedQuery<R> typedQuery = em
                 .createQuery(q)
                 .setMaxResults(2);
 
-        applyQueryCacheHint(typedQuery, queryCacheMode);
+        applyQueryCacheHint(em, typedQuery, queryCacheMode, queryCacheRegion);
 
-        List<R> records = typedQuery.getResultList();
+        List<R> records = getResultList(em, typedQuery, queryCacheMode);
         int recordSize = records.size();
         switch (recordSize) {
             case 0:
@@ -371,7 +878,7 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
                 .setFirstResult(offset == null ? 0 : offset)
                 .setMaxResults(1);
 
-        List<R> records = typedQuery.getResultList();
+        List<R> records = getResultList(em, typedQuery);
         int recordSize = records.size();
         switch (recordSize) {
             case 0:
@@ -385,13 +892,23 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
 
     @Override
     public <R> R getFirstResult(EntityManager em, CriteriaQuery<R> q, QueryCacheMode queryCacheMode) {
+        return getFirstResult(em, q, queryCacheMode, null);
+    }
+
+    @Override
+    public <R> R getFirstResult(
+            EntityManager em,
+            CriteriaQuery<R> q,
+            QueryCacheMode queryCacheMode,
+            String queryCacheRegion
+    ) {
         TypedQuery<R> typedQuery = em
                 .createQuery(q)
                 .setMaxResults(1);
 
-        applyQueryCacheHint(typedQuery, queryCacheMode);
+        applyQueryCacheHint(em, typedQuery, queryCacheMode, queryCacheRegion);
 
-        List<R> records = typedQuery.getResultList();
+        List<R> records = getResultList(em, typedQuery, queryCacheMode);
         int recordSize = records.size();
         switch (recordSize) {
             case 0:
@@ -416,7 +933,10 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
             The effects of SET LOCAL last only till the end of the current transaction
              */
             long timeoutInMillis = timeout.toMillis();
+            LockTimeoutEvent event = new LockTimeoutEvent();
+            event.begin();
             em.createNativeQuery("set local lock_timeout = " + timeoutInMillis).executeUpdate();
+            event.end(timeoutInMillis);
         } else {
             throw new IllegalStateException("Unsupported database: " + database);
         }
@@ -473,6 +993,8 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
     ) {
         requireNonNull(lockTimeout, "Expecting non-null lockTimeout");
 
+        LockEvent lockEvent = new LockEvent();
+        lockEvent.begin();
         setTransactionScopedLockTimeout(em, lockTimeout);
         TypedQuery<R> typedQuery = em
                 .createQuery(q)
@@ -480,7 +1002,19 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
                 .setLockMode(LockModeType.PESSIMISTIC_WRITE)
                 .setHint(SpecHints.HINT_SPEC_LOCK_TIMEOUT, Long.toString(lockTimeout.toMillis()));
 
-        List<R> records = typedQuery.getResultList();
+        String operation = "getFirstResultForUpdate";
+        Class<?> entityType = rootType(q);
+        ScheduledFuture<?> blockerProbe = beginLockWait(em, operation, entityType);
+        long startNanos = System.nanoTime();
+        List<R> records;
+        try {
+            records = getResultList(em, typedQuery);
+        } catch (RuntimeException e) {
+            lockContentionMonitor.failWait(operation, entityType, startNanos, blockerProbe, e);
+            lockEvent.end(operation, entityType, lockTimeout.toMillis(), lockOutcome(e));
+            throw e;
+        }
+        lockContentionMonitor.endWait(operation, entityType, startNanos, blockerProbe, false);
         int recordSize = records.size();
         R result;
         switch (recordSize) {
@@ -494,6 +1028,7 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
                 throw new AssertionError(format("Expecting zero or one record, but found %s", recordSize));
         }
         setTransactionScopedLockTimeout(em, Duration.ZERO);
+        lockEvent.end(operation, entityType, lockTimeout.toMillis(), result == null ? LockEvent.EMPTY : LockEvent.ACQUIRED);
         return result;
     }
 
@@ -505,7 +1040,21 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
 
         asHibernateQuery(typedQuery).setHibernateLockMode(LockMode.UPGRADE_SKIPLOCKED);
 
-        List<R> records = typedQuery.getResultList();
+        String operation = "getFirstResultForUpdateSkipLocked";
+        Class<?> entityType = rootType(q);
+        LockEvent lockEvent = new LockEvent();
+        lockEvent.begin();
+        long startNanos = System.nanoTime();
+        List<R> records;
+        try {
+            records = getResultList(em, typedQuery);
+        } catch (RuntimeException e) {
+            lockContentionMonitor.failWait(operation, entityType, startNanos, null, e);
+            lockEvent.end(operation, entityType, -1, lockOutcome(e));
+            throw e;
+        }
+        lockContentionMonitor.endWait(operation, entityType, startNanos, null, records.isEmpty());
+        lockEvent.end(operation, entityType, -1, records.isEmpty() ? LockEvent.EMPTY : LockEvent.ACQUIRED);
         int recordSize = records.size();
         switch (recordSize) {
             case 0:
@@ -517,24 +1066,141 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
         }
     }
 
+    @Override
+    public <R> R getFirstResultForUpdateNoWait(EntityManager em, CriteriaQuery<R> q) {
+        checkNoWaitSupported(em);
+        TypedQuery<R> typedQuery = em
+                .createQuery(q)
+                .setMaxResults(1);
+
+        asHibernateQuery(typedQuery).setHibernateLockMode(LockMode.UPGRADE_NOWAIT);
+
+        String operation = "getFirstResultForUpdateNoWait";
+        Class<?> entityType = rootType(q);
+        LockEvent lockEvent = new LockEvent();
+        lockEvent.begin();
+        long startNanos = System.nanoTime();
+        List<R> records;
+        try {
+            records = getResultList(em, typedQuery);
+        } catch (RuntimeException e) {
+            lockContentionMonitor.failWait(operation, entityType, startNanos, null, e);
+            lockEvent.end(operation, entityType, -1, lockOutcome(e));
+            throw asLockNotAvailable(e, entityType);
+        }
+        lockContentionMonitor.endWait(operation, entityType, startNanos, null, false);
+        lockEvent.end(operation, entityType, -1, records.isEmpty() ? LockEvent.EMPTY : LockEvent.ACQUIRED);
+        int recordSize = records.size();
+        switch (recordSize) {
+            case 0:
+                return null;
+            case 1:
+                return records.get(0);
+            default:
+                throw new AssertionError(format("Expecting zero or one record, but found %s", recordSize));
+        }
+    }
+
+    @Override
+    public QueryPlan explain(EntityManager em, CriteriaQuery<?> q, ExplainOptions options) {
+        requireNonNull(options, "Expecting non-null options");
+        if (!capabilities(em).isPostgresql()) {
+            throw new IllegalStateException("Unsupported database: " + getDatabase(em));
+        }
+        return queryExplainer.explain(em, em.createQuery(q), options);
+    }
+
+    /**
+     * Executes a query whose cache hints are already applied.
+     * Concurrent identical queries using the query cache are coalesced if enabled:
+     * followers wait for the leader and then execute against the query cache it has filled.
+     */
+    protected <R> List<R> getResultList(EntityManager em, TypedQuery<R> typedQuery, QueryCacheMode queryCacheMode) {
+        if (queryCacheMode != QueryCacheMode.USE_QUERY_CACHE || singleFlights == null) {
+            return getResultList(em, typedQuery);
+        }
+        EntityManagerFactory emf = em.getEntityManagerFactory();
+        if (!emf.unwrap(SessionFactoryImplementor.class).getSessionFactoryOptions().isQueryCacheEnabled()) {
+            return getResultList(em, typedQuery);
+        }
+        return getSingleFlight(emf).execute(
+                "query",
+                QueryFingerprint.of(typedQuery),
+                () -> getResultList(em, typedQuery),
+                leaderResults -> getResultList(em, typedQuery));
+    }
+
+    protected <R> List<R> getResultList(EntityManager em, TypedQuery<R> typedQuery) {
+        return queryDiagnostics.getResultList(em, typedQuery);
+    }
+
+    protected <R> R getSingleResult(EntityManager em, TypedQuery<R> typedQuery) {
+        return queryDiagnostics.getSingleResult(em, typedQuery);
+    }
+
+    protected int executeUpdate(EntityManager em, jakarta.persistence.Query query) {
+        return queryDiagnostics.executeUpdate(em, query);
+    }
+
+    protected <ENTITY> ENTITY find(EntityManager em, Class<ENTITY> entityType, Object id, Supplier<ENTITY> load) {
+        return queryDiagnostics.find(em, entityType, id, load);
+    }
+
     protected <R> Query<R> asHibernateQuery(TypedQuery<R> typedQuery) {
         return (Query<R>) typedQuery;
     }
 
     protected <R> void applyQueryCacheHint(TypedQuery<R> typedQuery, QueryCacheMode queryCacheMode) {
-        if (queryCacheMode != null) {
-            switch (queryCacheMode) {
-                case USE_QUERY_CACHE: {
-                    typedQuery.setHint(HibernateHints.HINT_CACHEABLE, "true");
-                    break;
+        applyQueryCacheHint(null, typedQuery, queryCacheMode, null);
+    }
+
+    /**
+     * Must be called after the first and max results are set.
+     */
+    protected <R> void applyQueryCacheHint(
+            EntityManager em,
+            TypedQuery<R> typedQuery,
+            QueryCacheMode queryCacheMode,
+            String queryCacheRegion
+    ) {
+        if (queryCacheMode == null || queryCacheMode == QueryCacheMode.BYPASS_QUERY_CACHE) {
+            return;
+        }
+        typedQuery.setHint(HibernateHints.HINT_CACHEABLE, "true");
+        QueryCacheRegion region = null;
+        if (queryCacheRegion != null) {
+            typedQuery.setHint(HibernateHints.HINT_CACHE_REGION, queryCacheRegion);
+            region = getQueryCacheRegion(em.getEntityManagerFactory(), queryCacheRegion);
+        }
+        switch (queryCacheMode) {
+            case USE_QUERY_CACHE: {
+                if (region != null && region.beforeRead(QueryFingerprint.of(typedQuery))) {
+                    typedQuery.setHint(HibernateHints.HINT_CACHE_MODE, CacheMode.REFRESH);
                 }
-                case BYPASS_QUERY_CACHE: {
-                    //no-op
-                    break;
+                break;
+            }
+            case GET_ONLY: {
+                boolean expired = region != null && region.isExpired(QueryFingerprint.of(typedQuery));
+                typedQuery.setHint(HibernateHints.HINT_CACHE_MODE, expired ? CacheMode.IGNORE : CacheMode.GET);
+                break;
+            }
+            case PUT_ONLY: {
+                if (region != null) {
+                    region.beforeWrite(QueryFingerprint.of(typedQuery));
                 }
-                default:
-                    throw new IllegalStateException("Unsupported value: " + queryCacheMode);
+                typedQuery.setHint(HibernateHints.HINT_CACHE_MODE, CacheMode.PUT);
+                break;
+            }
+            case REFRESH: {
+                if (region == null) {
+                    throw new IllegalArgumentException("Query cache mode REFRESH requires a configured region, given: " + queryCacheRegion);
+                }
+                boolean cached = region.beforeRefresh(QueryFingerprint.of(typedQuery));
+                typedQuery.setHint(HibernateHints.HINT_CACHE_MODE, cached ? CacheMode.REFRESH : CacheMode.IGNORE);
+                break;
             }
+            default:
+                throw new IllegalStateException("Unsupported value: " + queryCacheMode);
         }
     }
 
@@ -684,24 +1350,347 @@ public class EntityDaoSupportImpl implements EntityDaoSupport {
         return (HibernateCriteriaBuilder) cb;
     }
 
+    protected DatabaseCapabilities capabilities(EntityManager em) {
+        return DatabaseCapabilities.of(em.getEntityManagerFactory());
+    }
+
     protected Database getDatabase(EntityManager em) {
-        Map<String, Object> emfProps = em.getEntityManagerFactory().getProperties();
-        String puName = (String) emfProps.get(AvailableSettings.PERSISTENCE_UNIT_NAME);
-        requireNonNull(puName);
-        return PU_2_DATABASE.computeIfAbsent(puName, k -> detectDatabase(em));
-    }
-
-    protected Database detectDatabase(EntityManager em) {
-        Dialect dialect = ((SessionImpl) em.getDelegate()).getJdbcServices().getDialect();
-        Class<? extends Dialect> dialectClass = dialect.getClass();
-        String dialectSimpleName = dialectClass.getSimpleName();
-        if (dialectSimpleName.contains("PostgreSQL")) {
-            return Database.POSTGRESQL;
-        } else if (dialectSimpleName.contains("SQLServer")) {
-            return Database.SQLSERVER;
+        DatabaseCapabilities capabilities = capabilities(em);
+        Database database = capabilities.getDatabase();
+        if (database == null) {
+            throw new IllegalStateException("Unsupported dialect: " + capabilities.getDialectName());
+        }
+        return database;
+    }
+
+    /**
+     * Both PostgreSQL and SQL Server dialects render {@link LockMode#UPGRADE_NOWAIT} natively,
+     * so no emulation via a short lock timeout is needed.
+     */
+    protected void checkNoWaitSupported(EntityManager em) {
+        DatabaseCapabilities capabilities = capabilities(em);
+        if (!capabilities.isSupportsNoWait()) {
+            throw new IllegalStateException("Unsupported dialect: " + capabilities.getDialectName());
+        }
+    }
+
+    protected RuntimeException asLockNotAvailable(RuntimeException e, Class<?> entityType) {
+        if (lockContentionMonitor.isLockFailure(e)) {
+            return new LockNotAvailableException("Lock not available: " + entityType.getSimpleName(), e);
+        }
+        return e;
+    }
+
+    protected <ENTITY> EntityCache<ENTITY> entityCache(EntityManager em, Class<ENTITY> entityType) {
+        if (entityCacheConfs.isEmpty()) {
+            return null;
+        }
+        return getEntityCache(em.getEntityManagerFactory(), entityType);
+    }
+
+    /**
+     * Returns null inside a transaction which is not read-only. Cached entities are detached copies,
+     * changes made to them would never be flushed and their version might be stale.
+     */
+    protected <ENTITY> EntityCache<ENTITY> readableEntityCache(EntityManager em, Class<ENTITY> entityType) {
+        EntityCache<ENTITY> cache = entityCache(em, entityType);
+        if (cache == null) {
+            return null;
+        }
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        return session.isTransactionInProgress() && !session.isDefaultReadOnly() ? null : cache;
+    }
+
+    /**
+     * Returns the entity if it is already in the persistence context, without hitting the database.
+     */
+    protected <ENTITY> ENTITY getManaged(EntityManager em, Class<ENTITY> entityType, Object id) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        EntityPersister persister = session.getFactory().getMappingMetamodel().getEntityDescriptor(entityType);
+        Object entity = session.getPersistenceContextInternal().getEntity(session.generateEntityKey(id, persister));
+        return entityType.cast(entity);
+    }
+
+    protected void invalidateCachedEntity(EntityManager em, Object entity) {
+        if (entityCacheConfs.isEmpty()) {
+            return;
+        }
+        EntityCache<?> cache = getEntityCache(em.getEntityManagerFactory(), Hibernate.getClass(entity));
+        if (cache == null) {
+            return;
+        }
+        Object id = em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+        if (id != null) {
+            invalidateCachedEntity(em, cache, id);
+        }
+    }
+
+    /**
+     * Invalidates now and once more after the transaction completes,
+     * to drop a value which a concurrent reader might have cached in the meantime from the old committed state.
+     */
+    protected void invalidateCachedEntity(EntityManager em, EntityCache<?> cache, Object id) {
+        cache.invalidate(id);
+        em.unwrap(SessionImplementor.class)
+                .getActionQueue()
+                .registerProcess((success, session) -> cache.invalidate(id));
+    }
+
+    protected IdFilter idFilter(EntityManager em, Class<?> entityType) {
+        if (idFilterConfs.isEmpty()) {
+            return null;
+        }
+        return getIdFilter(em.getEntityManagerFactory(), entityType);
+    }
+
+    /**
+     * Does not wait for the filter to be built in the background, every id might exist until then.
+     */
+    protected boolean mightExist(EntityManager em, IdFilter idFilter, Object id) {
+        return idFilter.mightContain(id);
+    }
+
+    /**
+     * Reads the ids in a separate read-only transaction, outside the caller's persistence context.
+     */
+    protected boolean rebuildIdFilter(EntityManagerFactory emf, IdFilter idFilter) {
+        String entityName = emf.getMetamodel().entity(idFilter.getEntityType()).getName();
+        try (EntityManager snapshotEm = emf.createEntityManager()) {
+            snapshotEm.getTransaction().begin();
+            try {
+                snapshotEm.unwrap(Session.class).setDefaultReadOnly(true);
+                return idFilter.rebuild(
+                        () -> snapshotEm.createQuery("select count(e) from " + entityName + " e", Long.class).getSingleResult(),
+                        sink -> snapshotEm.createQuery("select id(e) from " + entityName + " e", Object.class)
+                                .setHint(HibernateHints.HINT_FETCH_SIZE, 10_000)
+                                .getResultStream()
+                                .forEach(sink)
+                );
+            } finally {
+                snapshotEm.getTransaction().rollback();
+            }
+        }
+    }
+
+    /**
+     * Adds now, so that the entity is visible to this transaction, and once more after commit,
+     * in case a rebuild started in between took its snapshot before the row became visible.
+     */
+    protected void addToIdFilter(EntityManager em, Object entity) {
+        if (idFilterConfs.isEmpty()) {
+            return;
+        }
+        IdFilter idFilter = getIdFilter(em.getEntityManagerFactory(), Hibernate.getClass(entity));
+        if (idFilter == null) {
+            return;
+        }
+        Object id = em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+        if (id == null) {
+            return;
+        }
+        idFilter.add(id);
+        em.unwrap(SessionImplementor.class)
+                .getActionQueue()
+                .registerProcess((success, session) -> {
+                    if (success) {
+                        idFilter.add(id);
+                    }
+                });
+    }
+
+    protected void publishInvalidation(EntityManager em, Object entity) {
+        if (cacheInvalidationBus == null) {
+            return;
+        }
+        Object id = em.getEntityManagerFactory().getPersistenceUnitUtil().getIdentifier(entity);
+        if (id != null) {
+            publishInvalidation(em, Hibernate.getClass(entity), id);
+        }
+    }
+
+    /**
+     * @param id null means all entities of the given type
+     */
+    protected void publishInvalidation(EntityManager em, Class<?> entityType, Object id) {
+        if (cacheInvalidationBus != null) {
+            cacheInvalidationBus.publish(em, entityType, id);
+        }
+    }
+
+    /**
+     * Applies an invalidation received from another node.
+     *
+     * @param ids null means all entities of the given type
+     */
+    protected void invalidateLocalCaches(EntityManagerFactory emf, Class<?> entityType, Collection<Object> ids) {
+        EntityCache<?> cache = getEntityCache(emf, entityType);
+        IdFilter idFilter = getIdFilter(emf, entityType);
+        jakarta.persistence.Cache secondLevelCache = emf.getCache();
+        if (ids == null) {
+            if (cache != null) {
+                cache.invalidateAll();
+            }
+            secondLevelCache.evict(entityType);
         } else {
-            throw new IllegalStateException("Unsupported dialect: " + dialectClass.getName());
+            for (Object id : ids) {
+                if (cache != null) {
+                    cache.invalidate(id);
+                }
+                if (idFilter != null) {
+                    idFilter.add(id);
+                }
+                secondLevelCache.evict(entityType, id);
+            }
+        }
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        if (sessionFactory.getSessionFactoryOptions().isQueryCacheEnabled()) {
+            String[] querySpaces = Arrays.stream(sessionFactory.getMappingMetamodel().getEntityDescriptor(entityType).getQuerySpaces())
+                    .map(String::valueOf)
+                    .toArray(String[]::new);
+            try (SessionImplementor session = (SessionImplementor) sessionFactory.openSession()) {
+                sessionFactory.getCache().getTimestampsCache().invalidate(querySpaces, session);
+            }
+        }
+    }
+
+    /**
+     * Called whenever invalidations from other nodes might have been missed.
+     * Id filters are rebuilt, as rows inserted elsewhere in the meantime would be unknown to them.
+     */
+    protected void invalidateAllLocalCaches(EntityManagerFactory emf) {
+        if (!entityCacheConfs.isEmpty()) {
+            for (EntityCache<?> cache : entityCaches.get(emf).values()) {
+                cache.invalidateAll();
+            }
+        }
+        if (!idFilterConfs.isEmpty()) {
+            for (IdFilter idFilter : idFilters.get(emf).values()) {
+                if (idFilter.isReady()) {
+                    rebuildIdFilter(emf, idFilter);
+                }
+            }
+        }
+        emf.getCache().evictAll();
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        if (sessionFactory.getSessionFactoryOptions().isQueryCacheEnabled()) {
+            sessionFactory.getCache().evictQueryRegions();
+        }
+    }
+
+    /**
+     * Called last by the constructor, the bus delivers invalidations from its own thread as soon as it is started.
+     */
+    private CacheInvalidationBus startCacheInvalidationBus(CacheInvalidationConf cacheInvalidationConf) {
+        EntityManagerFactory emf = cacheInvalidationConf.getEntityManagerFactory();
+        if (emf == null) {
+            throw new IllegalArgumentException("Cache invalidation requires an entity manager factory");
+        }
+        if (!DatabaseCapabilities.of(emf).isPostgresql()) {
+            throw new IllegalStateException("Cache invalidation between nodes is supported only on PostgreSQL");
+        }
+        CacheInvalidationBus bus = new CacheInvalidationBus(emf, cacheInvalidationConf, conf.getMetricRegistry(),
+                new CacheInvalidationBus.InvalidationHandler() {
+                    @Override
+                    public void invalidate(Class<?> entityType, Collection<Object> ids) {
+                        invalidateLocalCaches(emf, entityType, ids);
+                    }
+
+                    @Override
+                    public void invalidateAll() {
+                        invalidateAllLocalCaches(emf);
+                    }
+                });
+        bus.start();
+        return bus;
+    }
+
+    /**
+     * Filters are built in the background, starting now. Rebuilds stop when the factory starts closing.
+     */
+    private Map<Class<?>, IdFilter> createIdFilters(EntityManagerFactory emf) {
+        Map<Class<?>, IdFilter> filters = new HashMap<>();
+        emf.unwrap(SessionFactoryImplementor.class).addObserver(new SessionFactoryObserver() {
+            @Override
+            public void sessionFactoryClosing(SessionFactory factory) {
+                filters.values().forEach(IdFilter::stopRebuilds);
+            }
+        });
+        for (IdFilterConf<?> idFilterConf : idFilterConfs.values()) {
+            IdFilter idFilter = new IdFilter(idFilterConf, conf.getMetricRegistry());
+            filters.put(idFilterConf.getEntityType(), idFilter);
+            idFilter.startRebuilds(() -> {
+                try {
+                    if (emf.isOpen()) {
+                        rebuildIdFilter(emf, idFilter);
+                        return;
+                    }
+                } catch (RuntimeException e) {
+                    if (emf.isOpen()) {
+                        throw e;
+                    }
+                }
+                idFilter.stopRebuilds();
+            });
+        }
+        return filters;
+    }
+
+    private Map<String, QueryCacheRegion> createQueryCacheRegions(EntityManagerFactory emf) {
+        Map<String, QueryCacheRegion> regions = new HashMap<>();
+        for (QueryCacheRegionConf regionConf : queryCacheRegionConfs.values()) {
+            String regionName = regionConf.getName();
+            regions.put(regionName, new QueryCacheRegion(regionConf, conf.getMetricRegistry(),
+                    () -> emf.getCache().unwrap(Cache.class).evictQueryRegion(regionName)));
+        }
+        return regions;
+    }
+
+    private Map<Class<?>, EntityCache<?>> createEntityCaches() {
+        Map<Class<?>, EntityCache<?>> caches = new HashMap<>();
+        for (EntityCacheConf<?> entityCacheConf : entityCacheConfs.values()) {
+            caches.put(entityCacheConf.getEntityType(), new EntityCache<>(entityCacheConf, conf.getMetricRegistry()));
+        }
+        return caches;
+    }
+
+    protected ScheduledFuture<?> beginLockWait(EntityManager em, String operation, Class<?> entityType) {
+        if (conf.getLockBlockerProbeDelay() == null || !capabilities(em).isPostgresql()) {
+            return null;
+        }
+        return lockContentionMonitor.beginWait(em, operation, entityType);
+    }
+
+    protected <ENTITY, ID extends Serializable> boolean exists(EntityManager em, Class<ENTITY> entityType, ID id) {
+        EntityMetadata<ENTITY, ?> metadata = ENTITY_METADATA_REGISTRY.get(em.getEntityManagerFactory(), entityType, id.getClass());
+        String entityName = metadata.getEntityName();
+        return !em.createQuery("select 1 from " + entityName + " e where id(e) = :id")
+                .setParameter("id", id)
+                .setMaxResults(1)
+                .getResultList()
+                .isEmpty();
+    }
+
+    protected Class<?> rootType(CriteriaQuery<?> q) {
+        Set<Root<?>> roots = q.getRoots();
+        return roots.isEmpty() ? q.getResultType() : roots.iterator().next().getJavaType();
+    }
+
+    protected String lockOutcome(RuntimeException e) {
+        return lockContentionMonitor.isLockFailure(e) ? LockEvent.TIMEOUT : LockEvent.FAILED;
+    }
+
+    protected long managedEntities(EntityManager em) {
+        return em.unwrap(SessionImplementor.class).getPersistenceContextInternal().getNumberOfManagedEntities();
+    }
+
+    protected <E> List<List<E>> chunks(Collection<E> items, int chunkSize) {
+        List<E> itemList = items instanceof List ? (List<E>) items : new ArrayList<>(items);
+        int size = itemList.size();
+        List<List<E>> chunks = new ArrayList<>((size + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < size; from += chunkSize) {
+            chunks.add(itemList.subList(from, Math.min(size, from + chunkSize)));
         }
+        return chunks;
     }
 
     protected <R> void applyOffsetAndLimit(TypedQuery<R> typedQuery, Integer offset, Integer limit) {
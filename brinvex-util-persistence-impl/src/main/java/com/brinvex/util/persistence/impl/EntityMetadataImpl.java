@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl;
+
+import com.brinvex.util.persistence.api.EntityMetadata;
+import jakarta.persistence.metamodel.SingularAttribute;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+class EntityMetadataImpl<ENTITY, ID extends Serializable> implements EntityMetadata<ENTITY, ID> {
+
+    private final Class<ENTITY> entityType;
+
+    private final String entityName;
+
+    private final SingularAttribute<? super ENTITY, ID> idAttribute;
+
+    private final SingularAttribute<? super ENTITY, ?> versionAttribute;
+
+    private final String tableName;
+
+    private final List<String> idColumnNames;
+
+    private final Map<String, List<String>> columnNames;
+
+    EntityMetadataImpl(
+            Class<ENTITY> entityType,
+            String entityName,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            SingularAttribute<? super ENTITY, ?> versionAttribute,
+            String tableName,
+            List<String> idColumnNames,
+            Map<String, List<String>> columnNames
+    ) {
+        this.entityType = entityType;
+        this.entityName = entityName;
+        this.idAttribute = idAttribute;
+        this.versionAttribute = versionAttribute;
+        this.tableName = tableName;
+        this.idColumnNames = idColumnNames;
+        this.columnNames = columnNames;
+    }
+
+    @Override
+    public Class<ENTITY> getEntityType() {
+        return entityType;
+    }
+
+    @Override
+    public String getEntityName() {
+        return entityName;
+    }
+
+    @Override
+    public SingularAttribute<? super ENTITY, ID> getIdAttribute() {
+        return idAttribute;
+    }
+
+    @Override
+    public SingularAttribute<? super ENTITY, ?> getVersionAttribute() {
+        return versionAttribute;
+    }
+
+    @Override
+    public String getTableName() {
+        return tableName;
+    }
+
+    @Override
+    public List<String> getIdColumnNames() {
+        return idColumnNames;
+    }
+
+    @Override
+    public Map<String, List<String>> getColumnNames() {
+        return columnNames;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EntityMetadataImpl.class.getSimpleName() + "[", "]")
+                .add("entityName='" + entityName + "'")
+                .add("tableName='" + tableName + "'")
+                .add("idColumnNames=" + idColumnNames)
+                .add("columnNames=" + columnNames)
+                .toString();
+    }
+}
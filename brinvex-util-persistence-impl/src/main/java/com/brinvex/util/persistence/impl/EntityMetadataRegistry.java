@@ -0,0 +1,101 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl;
+
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.EntityType;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves {@link EntityMetadataImpl} once per entity manager factory and entity type.
+ * <p>
+ * Metadata of a factory is kept in its own {@link ClassValue}, so it becomes unreachable
+ * together with the factory once the factory is closed and evicted from {@link FactoryScoped}.
+ */
+class EntityMetadataRegistry {
+
+    private final FactoryScoped<ClassValue<EntityMetadataImpl<?, ?>>> factories = new FactoryScoped<>(emf ->
+            new ClassValue<>() {
+                @Override
+                protected EntityMetadataImpl<?, ?> computeValue(Class<?> type) {
+                    return resolve(emf, type);
+                }
+            });
+
+    @SuppressWarnings("unchecked")
+    <ENTITY, ID extends Serializable> EntityMetadataImpl<ENTITY, ID> get(
+            EntityManagerFactory emf,
+            Class<ENTITY> entityType,
+            Class<ID> idType
+    ) {
+        EntityMetadataImpl<ENTITY, ID> metadata = (EntityMetadataImpl<ENTITY, ID>) factories.get(emf).get(entityType);
+        Class<?> mappedIdType = metadata.getIdAttribute().getJavaType();
+        if (mappedIdType != idType) {
+            //Throws IllegalArgumentException if the id type does not match
+            emf.getMetamodel().entity(entityType).getId(idType);
+        }
+        return metadata;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static EntityMetadataImpl<?, ?> resolve(EntityManagerFactory emf, Class<?> entityType) {
+        EntityType<?> entityMetamodel = emf.getMetamodel().entity(entityType);
+        SingularAttribute idAttribute = entityMetamodel.getId(entityMetamodel.getIdType().getJavaType());
+        SingularAttribute versionAttribute = null;
+        if (entityMetamodel.hasVersionAttribute()) {
+            for (SingularAttribute<?, ?> attribute : entityMetamodel.getSingularAttributes()) {
+                if (attribute.isVersion()) {
+                    versionAttribute = attribute;
+                    break;
+                }
+            }
+        }
+
+        EntityPersister persister = emf.unwrap(SessionFactoryImplementor.class)
+                .getMappingMetamodel()
+                .getEntityDescriptor(entityType);
+        if (!(persister instanceof AbstractEntityPersister)) {
+            throw new IllegalStateException("Unsupported entity persister: " + persister.getClass().getName());
+        }
+        AbstractEntityPersister entityPersister = (AbstractEntityPersister) persister;
+        Map<String, List<String>> columnNames = new LinkedHashMap<>();
+        for (String propertyName : entityPersister.getPropertyNames()) {
+            String[] propertyColumnNames = entityPersister.getPropertyColumnNames(propertyName);
+            if (propertyColumnNames != null && propertyColumnNames.length > 0) {
+                columnNames.put(propertyName, List.of(propertyColumnNames));
+            }
+        }
+
+        return new EntityMetadataImpl<>(
+                (Class) entityType,
+                entityMetamodel.getName(),
+                idAttribute,
+                versionAttribute,
+                entityPersister.getTableName(),
+                List.of(entityPersister.getIdentifierColumnNames()),
+                Collections.unmodifiableMap(columnNames)
+        );
+    }
+}
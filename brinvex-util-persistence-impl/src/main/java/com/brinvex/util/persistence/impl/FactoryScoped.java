@@ -0,0 +1,76 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Lazily created state bound to an {@link EntityManagerFactory} instance.
+ * Factories are compared by identity and state of closed factories is dropped
+ * whenever state for a new factory is created.
+ */
+class FactoryScoped<T> {
+
+    private static final class Slot<T> {
+        private final EntityManagerFactory emf;
+        private final T value;
+
+        private Slot(EntityManagerFactory emf, T value) {
+            this.emf = emf;
+            this.value = value;
+        }
+    }
+
+    private final Function<EntityManagerFactory, T> factory;
+
+    private final Map<EntityManagerFactory, Slot<T>> slots = new ConcurrentHashMap<>();
+
+    private volatile Slot<T> last;
+
+    FactoryScoped(Function<EntityManagerFactory, T> factory) {
+        this.factory = factory;
+    }
+
+    T get(EntityManagerFactory emf) {
+        Slot<T> slot = last;
+        if (slot == null || slot.emf != emf) {
+            slot = slots.get(emf);
+            if (slot == null) {
+                slots.keySet().removeIf(f -> !f.isOpen());
+                slot = slots.computeIfAbsent(emf, f -> new Slot<>(f, factory.apply(f)));
+            }
+            last = slot;
+        }
+        return slot.value;
+    }
+
+    /**
+     * State created so far, including that of closed factories not dropped yet.
+     */
+    List<T> values() {
+        List<T> values = new ArrayList<>();
+        for (Slot<T> slot : slots.values()) {
+            values.add(slot.value);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,497 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl;
+
+import com.brinvex.util.persistence.api.EntityDaoOperation;
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.api.EntityMetadata;
+import com.brinvex.util.persistence.api.ExplainOptions;
+import com.brinvex.util.persistence.api.NumberFilter;
+import com.brinvex.util.persistence.api.QueryCacheMode;
+import com.brinvex.util.persistence.api.QueryPlan;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.SingularAttribute;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAccessor;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Base of decorators of another {@link EntityDaoSupport}. Every database-bound method is routed
+ * through {@link #intercept}; methods which only build criteria expressions or do not touch the database,
+ * e.g. {@code getReference}, are delegated directly.
+ */
+public abstract class ForwardingEntityDaoSupport implements EntityDaoSupport {
+
+    protected static final ToLongFunction<Object> NO_ROWS = r -> 0;
+
+    protected static final ToLongFunction<Object> SINGLE_ROW = r -> r == null ? 0 : 1;
+
+    protected static final ToLongFunction<List<?>> LIST_ROWS = List::size;
+
+    protected static final ToLongFunction<Integer> AFFECTED_ROWS = Integer::longValue;
+
+    protected final EntityDaoSupport delegate;
+
+    protected ForwardingEntityDaoSupport(EntityDaoSupport delegate) {
+        this.delegate = requireNonNull(delegate);
+    }
+
+    public EntityDaoSupport getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> EntityMetadata<ENTITY, ID> getEntityMetadata(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Class<ID> idType
+    ) {
+        return delegate.getEntityMetadata(em, entityType, idType);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> ENTITY getById(EntityManager em, Class<ENTITY> entityType, ID id) {
+        return intercept(EntityDaoOperation.GET_BY_ID, entityType, 1,
+                () -> delegate.getById(em, entityType, id), SINGLE_ROW);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> ENTITY getByIdForUpdate(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            ID id,
+            Duration lockTimeout
+    ) {
+        return intercept(EntityDaoOperation.GET_BY_ID_FOR_UPDATE, entityType, 1,
+                () -> delegate.getByIdForUpdate(em, entityType, id, lockTimeout), SINGLE_ROW);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> ENTITY getByIdForUpdateSkipLocked(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            ID id
+    ) {
+        return intercept(EntityDaoOperation.GET_BY_ID_FOR_UPDATE_SKIP_LOCKED, entityType, 1,
+                () -> delegate.getByIdForUpdateSkipLocked(em, entityType, id), SINGLE_ROW);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> ENTITY getByIdForUpdateNoWait(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            ID id
+    ) {
+        return intercept(EntityDaoOperation.GET_BY_ID_FOR_UPDATE_NO_WAIT, entityType, 1,
+                () -> delegate.getByIdForUpdateNoWait(em, entityType, id), SINGLE_ROW);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> ENTITY getByIdAndCheckVersion(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            ID id,
+            short optLockVersion,
+            Function<ENTITY, Short> optLockVersionGetter
+    ) {
+        return intercept(EntityDaoOperation.GET_BY_ID_AND_CHECK_VERSION, entityType, 1,
+                () -> delegate.getByIdAndCheckVersion(em, entityType, id, optLockVersion, optLockVersionGetter),
+                SINGLE_ROW);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> ENTITY getByIdAndCheckVersion(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            ID id,
+            int optLockVersion,
+            Function<ENTITY, Integer> optLockVersionGetter
+    ) {
+        return intercept(EntityDaoOperation.GET_BY_ID_AND_CHECK_VERSION, entityType, 1,
+                () -> delegate.getByIdAndCheckVersion(em, entityType, id, optLockVersion, optLockVersionGetter),
+                SINGLE_ROW);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> List<ENTITY> findByIds(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            Collection<ID> ids,
+            SingularAttribute<? super ENTITY, ID> idAttribute
+    ) {
+        return intercept(EntityDaoOperation.FIND_BY_IDS, entityType, ids.size(),
+                () -> delegate.findByIds(em, entityType, ids, idAttribute), LIST_ROWS);
+    }
+
+    @Override
+    public <ENTITY, ID, DTO> DTO findByIdAsDTO(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            ID id,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            Class<DTO> dtoType,
+            List<SingularAttribute<ENTITY, ?>> constructorParameters
+    ) {
+        return intercept(EntityDaoOperation.FIND_BY_ID_AS_DTO, entityType, 1,
+                () -> delegate.findByIdAsDTO(em, entityType, id, idAttribute, dtoType, constructorParameters),
+                SINGLE_ROW);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> ENTITY getReference(EntityManager em, Class<ENTITY> entityType, ID id) {
+        return delegate.getReference(em, entityType, id);
+    }
+
+    @Override
+    public <ENTITY> void persist(EntityManager em, ENTITY entity) {
+        intercept(EntityDaoOperation.PERSIST, entity.getClass(), 0, () -> {
+            delegate.persist(em, entity);
+            return null;
+        }, NO_ROWS);
+    }
+
+    @Override
+    public <ENTITY> ENTITY merge(EntityManager em, ENTITY entity) {
+        return intercept(EntityDaoOperation.MERGE, entity.getClass(), 0, () -> delegate.merge(em, entity), NO_ROWS);
+    }
+
+    @Override
+    public <ENTITY> void detach(EntityManager em, ENTITY entity) {
+        delegate.detach(em, entity);
+    }
+
+    @Override
+    public void flush(EntityManager em) {
+        intercept(EntityDaoOperation.FLUSH, null, 0, () -> {
+            delegate.flush(em);
+            return null;
+        }, NO_ROWS);
+    }
+
+    @Override
+    public void clear(EntityManager em) {
+        delegate.clear(em);
+    }
+
+    @Override
+    public void flushAndClear(EntityManager em) {
+        intercept(EntityDaoOperation.FLUSH_AND_CLEAR, null, 0, () -> {
+            delegate.flushAndClear(em);
+            return null;
+        }, NO_ROWS);
+    }
+
+    @Override
+    public <ENTITY> void remove(EntityManager em, ENTITY entity) {
+        intercept(EntityDaoOperation.REMOVE, entity.getClass(), 0, () -> {
+            delegate.remove(em, entity);
+            return null;
+        }, NO_ROWS);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> int bulkDeleteByIds(
+            EntityManager em,
+            Class<ENTITY> entityType,
+            SingularAttribute<? super ENTITY, ID> idAttribute,
+            Collection<ID> ids
+    ) {
+        return intercept(EntityDaoOperation.BULK_DELETE_BY_IDS, entityType, ids.size(),
+                () -> delegate.bulkDeleteByIds(em, entityType, idAttribute, ids), AFFECTED_ROWS);
+    }
+
+    @Override
+    public <F, T> Join<F, T> fetchJoin(From<?, F> from, SingularAttribute<? super F, T> attribute) {
+        return delegate.fetchJoin(from, attribute);
+    }
+
+    @Override
+    public <R> List<R> getResults(EntityManager em, CriteriaQuery<R> query) {
+        return intercept(EntityDaoOperation.GET_RESULTS, rootType(query), 0,
+                () -> delegate.getResults(em, query), LIST_ROWS);
+    }
+
+    @Override
+    public <R> List<R> getResults(EntityManager em, CriteriaQuery<R> query, Integer offset, Integer limit) {
+        return intercept(EntityDaoOperation.GET_RESULTS, rootType(query), 0,
+                () -> delegate.getResults(em, query, offset, limit), LIST_ROWS);
+    }
+
+    @Override
+    public <R> List<R> getResults(EntityManager em, CriteriaQuery<R> query, QueryCacheMode queryCacheMode) {
+        return intercept(EntityDaoOperation.GET_RESULTS, rootType(query), 0,
+                () -> delegate.getResults(em, query, queryCacheMode), LIST_ROWS);
+    }
+
+    @Override
+    public <R> List<R> getResults(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            Integer offset,
+            Integer limit,
+            QueryCacheMode queryCacheMode
+    ) {
+        return intercept(EntityDaoOperation.GET_RESULTS, rootType(query), 0,
+                () -> delegate.getResults(em, query, offset, limit, queryCacheMode), LIST_ROWS);
+    }
+
+    @Override
+    public <R> List<R> getResults(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            QueryCacheMode queryCacheMode,
+            String queryCacheRegion
+    ) {
+        return intercept(EntityDaoOperation.GET_RESULTS, rootType(query), 0,
+                () -> delegate.getResults(em, query, queryCacheMode, queryCacheRegion), LIST_ROWS);
+    }
+
+    @Override
+    public <R> List<R> getResults(
+            EntityManager em,
+            CriteriaQuery<R> query,
+            Integer offset,
+            Integer limit,
+            QueryCacheMode queryCacheMode,
+            String queryCacheRegion
+    ) {
+        return intercept(EntityDaoOperation.GET_RESULTS, rootType(query), 0,
+                () -> delegate.getResults(em, query, offset, limit, queryCacheMode, queryCacheRegion), LIST_ROWS);
+    }
+
+    @Override
+    public <R> CriteriaQuery<R> applySelections(
+            CriteriaBuilder cb,
+            CriteriaQuery<R> q,
+            Class<R> resultType,
+            Collection<Selection<?>> selections
+    ) {
+        return delegate.applySelections(cb, q, resultType, selections);
+    }
+
+    @Override
+    public <ENTITY, ID extends Serializable> long count(
+            EntityManager em,
+            CriteriaQuery<Long> query,
+            QueryCacheMode queryCacheMode,
+            SingularAttribute<? super ENTITY, ID> idAttribute
+    ) {
+        return intercept(EntityDaoOperation.COUNT, rootType(query), 0,
+                () -> delegate.count(em, query, queryCacheMode, idAttribute), SINGLE_ROW);
+    }
+
+    @Override
+    public <R> R getUniqueResult(EntityManager em, CriteriaQuery<R> q) {
+        return intercept(EntityDaoOperation.GET_UNIQUE_RESULT, rootType(q), 0,
+                () -> delegate.getUniqueResult(em, q), SINGLE_ROW);
+    }
+
+    @Override
+    public <R> R getUniqueResult(EntityManager em, CriteriaQuery<R> q, QueryCacheMode queryCacheMode) {
+        return intercept(EntityDaoOperation.GET_UNIQUE_RESULT, rootType(q), 0,
+                () -> delegate.getUniqueResult(em, q, queryCacheMode), SINGLE_ROW);
+    }
+
+    @Override
+    public <R> R getUniqueResult(
+            EntityManager em,
+            CriteriaQuery<R> q,
+            QueryCacheMode queryCacheMode,
+            String queryCacheRegion
+    ) {
+        return intercept(EntityDaoOperation.GET_UNIQUE_RESULT, rootType(q), 0,
+                () -> delegate.getUniqueResult(em, q, queryCacheMode, queryCacheRegion), SINGLE_ROW);
+    }
+
+    @Override
+    public <R> R getFirstResult(EntityManager em, CriteriaQuery<R> q) {
+        return intercept(EntityDaoOperation.GET_FIRST_RESULT, rootType(q), 0,
+                () -> delegate.getFirstResult(em, q), SINGLE_ROW);
+    }
+
+    @Override
+    public <R> R getFirstResult(EntityManager em, CriteriaQuery<R> q, Integer offset) {
+        return intercept(EntityDaoOperation.GET_FIRST_RESULT, rootType(q), 0,
+                () -> delegate.getFirstResult(em, q, offset), SINGLE_ROW);
+    }
+
+    @Override
+    public <R> R getFirstResult(EntityManager em, CriteriaQuery<R> q, QueryCacheMode queryCacheMode) {
+        return intercept(EntityDaoOperation.GET_FIRST_RESULT, rootType(q), 0,
+                () -> delegate.getFirstResult(em, q, queryCacheMode), SINGLE_ROW);
+    }
+
+    @Override
+    public <R> R getFirstResult(
+            EntityManager em,
+            CriteriaQuery<R> q,
+            QueryCacheMode queryCacheMode,
+            String queryCacheRegion
+    ) {
+        return intercept(EntityDaoOperation.GET_FIRST_RESULT, rootType(q), 0,
+                () -> delegate.getFirstResult(em, q, queryCacheMode, queryCacheRegion), SINGLE_ROW);
+    }
+
+    @Override
+    public <R> R getFirstResultForUpdate(EntityManager em, CriteriaQuery<R> q, Duration lockTimeout) {
+        return intercept(EntityDaoOperation.GET_FIRST_RESULT_FOR_UPDATE, rootType(q), 0,
+                () -> delegate.getFirstResultForUpdate(em, q, lockTimeout), SINGLE_ROW);
+    }
+
+    @Override
+    public <R> R getFirstResultForUpdateSkipLocked(EntityManager em, CriteriaQuery<R> q) {
+        return intercept(EntityDaoOperation.GET_FIRST_RESULT_FOR_UPDATE_SKIP_LOCKED, rootType(q), 0,
+                () -> delegate.getFirstResultForUpdateSkipLocked(em, q), SINGLE_ROW);
+    }
+
+    @Override
+    public <R> R getFirstResultForUpdateNoWait(EntityManager em, CriteriaQuery<R> q) {
+        return intercept(EntityDaoOperation.GET_FIRST_RESULT_FOR_UPDATE_NO_WAIT, rootType(q), 0,
+                () -> delegate.getFirstResultForUpdateNoWait(em, q), SINGLE_ROW);
+    }
+
+    @Override
+    public QueryPlan explain(EntityManager em, CriteriaQuery<?> q, ExplainOptions options) {
+        return delegate.explain(em, q, options);
+    }
+
+    @Override
+    public <NUMBER extends Number> Predicate asPredicate(
+            CriteriaBuilder cb,
+            Expression<NUMBER> attribute,
+            NumberFilter numberFilter
+    ) {
+        return delegate.asPredicate(cb, attribute, numberFilter);
+    }
+
+    @Override
+    public <E> Predicate inCollection(CriteriaBuilder cb, Expression<E> attribute, Collection<E> filterItems) {
+        return delegate.inCollection(cb, attribute, filterItems);
+    }
+
+    @Override
+    public Predicate betweenLeftInclRightExcl(
+            CriteriaBuilder cb,
+            Path<LocalDateTime> leftAttribute,
+            Path<LocalDateTime> rightAttribute,
+            LocalDate testDate
+    ) {
+        return delegate.betweenLeftInclRightExcl(cb, leftAttribute, rightAttribute, testDate);
+    }
+
+    @Override
+    public Predicate betweenLeftInclRightExcl(
+            CriteriaBuilder cb,
+            Path<LocalDateTime> leftAttribute,
+            Path<LocalDateTime> rightAttribute,
+            LocalDateTime testDate
+    ) {
+        return delegate.betweenLeftInclRightExcl(cb, leftAttribute, rightAttribute, testDate);
+    }
+
+    @Override
+    public <T extends Number> Expression<T> sum(
+            CriteriaBuilder cb,
+            Expression<T> expression1,
+            Expression<T> expression2,
+            Expression<T> expression3
+    ) {
+        return delegate.sum(cb, expression1, expression2, expression3);
+    }
+
+    @Override
+    public Expression<Integer> least(CriteriaBuilder cb, Integer literal1, Expression<Integer> expression2) {
+        return delegate.least(cb, literal1, expression2);
+    }
+
+    @Override
+    public Expression<Integer> greatest(CriteriaBuilder cb, Integer literal1, Expression<Integer> expression2) {
+        return delegate.greatest(cb, literal1, expression2);
+    }
+
+    @Override
+    public Expression<Integer> day(CriteriaBuilder cb, Expression<? extends TemporalAccessor> datetimeExpression) {
+        return delegate.day(cb, datetimeExpression);
+    }
+
+    @Override
+    public Expression<Integer> month(CriteriaBuilder cb, Expression<? extends TemporalAccessor> datetimeExpression) {
+        return delegate.month(cb, datetimeExpression);
+    }
+
+    @Override
+    public Expression<Integer> year(CriteriaBuilder cb, Expression<? extends TemporalAccessor> datetimeExpression) {
+        return delegate.year(cb, datetimeExpression);
+    }
+
+    @Override
+    public Expression<Integer> epochSeconds(
+            CriteriaBuilder cb,
+            Expression<? extends TemporalAccessor> datetimeExpression
+    ) {
+        return delegate.epochSeconds(cb, datetimeExpression);
+    }
+
+    @Override
+    public Expression<Integer> dayDiff(
+            CriteriaBuilder cb,
+            Expression<? extends TemporalAccessor> leftDatetimeExpression,
+            Expression<? extends TemporalAccessor> rightDatetimeExpression
+    ) {
+        return delegate.dayDiff(cb, leftDatetimeExpression, rightDatetimeExpression);
+    }
+
+    /**
+     * Runs the given call of the delegate.
+     *
+     * @param entityType the entity type of by-id and write operations, the type of the first query root for queries,
+     *                   null for {@code flush} and {@code flushAndClear}
+     * @param idCount    number of ids looked up or deleted, zero for queries and writes of a single entity
+     * @param rowCounter counts the rows returned by the call
+     */
+    protected abstract <R> R intercept(
+            EntityDaoOperation operation,
+            Class<?> entityType,
+            int idCount,
+            Supplier<R> call,
+            ToLongFunction<? super R> rowCounter
+    );
+
+    protected Class<?> rootType(CriteriaQuery<?> q) {
+        Set<Root<?>> roots = q.getRoots();
+        return roots.isEmpty() ? q.getResultType() : roots.iterator().next().getJavaType();
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl;
+
+import com.brinvex.util.persistence.impl.metrics.LatencyHistogram;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.LockTimeoutException;
+import jakarta.persistence.PessimisticLockException;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.exception.LockAcquisitionException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records how long pessimistic locks take to acquire and how often they fail or skip rows.
+ * <p>
+ * Metrics, per operation and entity type (e.g. {@code lock.wait.getByIdForUpdate.Salary}):
+ * <ul>
+ * <li>{@code lock.wait.*} - histogram of the locking statement duration, whatever its outcome
+ * <li>{@code lock.timeouts.*} - lock could not be acquired within the timeout, or at once for NOWAIT
+ * <li>{@code lock.empty.*} - skip-locked variant returned nothing
+ * <li>{@code lock.skipped.*} - skip-locked variant returned nothing although the row exists
+ * (only with {@link EntityDaoSupportConf#setSkipLockedRowProbe})
+ * <li>{@code lock.blocked.*} - wait still in progress when the blocker probe ran
+ * (only with {@link EntityDaoSupportConf#setLockBlockerProbeDelay})
+ * </ul>
+ */
+public class LockContentionMonitor {
+
+    private static final class LockMetrics {
+        private final LatencyHistogram wait;
+        private final LongAdder timeouts;
+        private final LongAdder empty;
+        private final LongAdder skipped;
+        private final LongAdder blocked;
+
+        private LockMetrics(MetricRegistry registry, String operation, Class<?> entityType) {
+            String suffix = "." + operation + "." + entityType.getSimpleName();
+            this.wait = registry.histogram("lock.wait" + suffix);
+            this.timeouts = registry.counter("lock.timeouts" + suffix);
+            this.empty = registry.counter("lock.empty" + suffix);
+            this.skipped = registry.counter("lock.skipped" + suffix);
+            this.blocked = registry.counter("lock.blocked" + suffix);
+        }
+    }
+
+    private static final SharedScheduler PROBE_SCHEDULER = new SharedScheduler("brinvex-lock-blocker-probe");
+
+    private final MetricRegistry metricRegistry;
+
+    private final Duration blockerProbeDelay;
+
+    private final int observationCapacity;
+
+    private final Deque<LockWaitObservation> observations = new ArrayDeque<>();
+
+    /**
+     * Backend pid of the connection a session holds during its transaction, dropped when the transaction completes.
+     */
+    private final Map<SessionImplementor, Integer> backendPids = new ConcurrentHashMap<>();
+
+    private final LongAdder probeFailures;
+
+    private final ClassValue<ConcurrentMap<String, LockMetrics>> lockMetrics = new ClassValue<>() {
+        @Override
+        protected ConcurrentMap<String, LockMetrics> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    public LockContentionMonitor(EntityDaoSupportConf conf) {
+        this.metricRegistry = conf.getMetricRegistry();
+        this.blockerProbeDelay = conf.getLockBlockerProbeDelay();
+        this.observationCapacity = conf.getLockWaitObservationCapacity();
+        this.probeFailures = metricRegistry.counter("lock.blockerProbe.failures");
+    }
+
+    /**
+     * Returns the most recent lock waits seen by the blocker probe, oldest first.
+     */
+    public List<LockWaitObservation> getRecentObservations() {
+        synchronized (observations) {
+            return new ArrayList<>(observations);
+        }
+    }
+
+    /**
+     * Must be called right before the locking statement and only on PostgreSQL.
+     * Returns a handle which has to be passed to {@link #endWait} or {@link #failWait}, possibly null.
+     */
+    ScheduledFuture<?> beginWait(EntityManager em, String operation, Class<?> entityType) {
+        if (blockerProbeDelay == null) {
+            return null;
+        }
+        int waiterPid = backendPid(em);
+        EntityManagerFactory emf = em.getEntityManagerFactory();
+        long startNanos = System.nanoTime();
+        return PROBE_SCHEDULER.get().schedule(
+                () -> probeBlockers(emf, operation, entityType, waiterPid, startNanos),
+                blockerProbeDelay.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    void endWait(String operation, Class<?> entityType, long startNanos, ScheduledFuture<?> probe, boolean empty) {
+        cancelProbe(probe);
+        LockMetrics metrics = lockMetrics(operation, entityType);
+        metrics.wait.record(System.nanoTime() - startNanos);
+        if (empty) {
+            metrics.empty.increment();
+        }
+    }
+
+    void failWait(String operation, Class<?> entityType, long startNanos, ScheduledFuture<?> probe, RuntimeException failure) {
+        cancelProbe(probe);
+        LockMetrics metrics = lockMetrics(operation, entityType);
+        metrics.wait.record(System.nanoTime() - startNanos);
+        if (isLockFailure(failure)) {
+            metrics.timeouts.increment();
+        }
+    }
+
+    void rowSkipped(String operation, Class<?> entityType) {
+        lockMetrics(operation, entityType).skipped.increment();
+    }
+
+    protected boolean isLockFailure(RuntimeException e) {
+        return e instanceof LockTimeoutException
+               || e instanceof PessimisticLockException
+               || e instanceof org.hibernate.PessimisticLockException
+               || e instanceof LockAcquisitionException;
+    }
+
+    @SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+    protected void probeBlockers(
+            EntityManagerFactory emf,
+            String operation,
+            Class<?> entityType,
+            int waiterPid,
+            long startNanos
+    ) {
+        List<LockWaitObservation.BlockingSession> blockingSessions = new ArrayList<>();
+        try (EntityManager probeEm = emf.createEntityManager()) {
+            @SuppressWarnings("unchecked")
+            List<Object[]> rows = probeEm.createNativeQuery(
+                            "select a.pid, a.state, left(a.query, 1000) " +
+                            "from pg_stat_activity a " +
+                            "where a.pid = any(pg_blocking_pids(?1))")
+                    .setParameter(1, waiterPid)
+                    .getResultList();
+            for (Object[] row : rows) {
+                blockingSessions.add(new LockWaitObservation.BlockingSession(
+                        ((Number) row[0]).intValue(), (String) row[1], (String) row[2]));
+            }
+        } catch (RuntimeException e) {
+            probeFailures.increment();
+            return;
+        }
+        if (blockingSessions.isEmpty()) {
+            return;
+        }
+        lockMetrics(operation, entityType).blocked.increment();
+        LockWaitObservation observation = new LockWaitObservation(
+                Instant.now(),
+                operation,
+                entityType,
+                waiterPid,
+                Duration.ofNanos(System.nanoTime() - startNanos),
+                blockingSessions
+        );
+        synchronized (observations) {
+            if (observations.size() >= observationCapacity) {
+                observations.pollFirst();
+            }
+            observations.addLast(observation);
+        }
+    }
+
+    @SuppressWarnings({"SqlDialectInspection", "SqlNoDataSourceInspection"})
+    private int backendPid(EntityManager em) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        Integer pid = backendPids.get(session);
+        if (pid == null) {
+            pid = ((Number) em.createNativeQuery("select pg_backend_pid()").getSingleResult()).intValue();
+            if (session.isTransactionInProgress()) {
+                backendPids.put(session, pid);
+                session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> backendPids.remove(session));
+            }
+        }
+        return pid;
+    }
+
+    private LockMetrics lockMetrics(String operation, Class<?> entityType) {
+        ConcurrentMap<String, LockMetrics> byOperation = lockMetrics.get(entityType);
+        LockMetrics metrics = byOperation.get(operation);
+        if (metrics == null) {
+            metrics = byOperation.computeIfAbsent(operation, op -> new LockMetrics(metricRegistry, op, entityType));
+        }
+        return metrics;
+    }
+
+    private static void cancelProbe(ScheduledFuture<?> probe) {
+        if (probe != null) {
+            probe.cancel(false);
+        }
+    }
+}
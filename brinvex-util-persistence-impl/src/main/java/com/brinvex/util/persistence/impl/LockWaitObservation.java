@@ -0,0 +1,134 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * A pessimistic lock wait which was still in progress when the blocker probe ran,
+ * together with the sessions blocking it.
+ */
+public class LockWaitObservation {
+
+    public static class BlockingSession {
+
+        private final int pid;
+
+        private final String state;
+
+        private final String query;
+
+        public BlockingSession(int pid, String state, String query) {
+            this.pid = pid;
+            this.state = state;
+            this.query = query;
+        }
+
+        public int getPid() {
+            return pid;
+        }
+
+        /**
+         * State as reported by pg_stat_activity, e.g. "idle in transaction".
+         */
+        public String getState() {
+            return state;
+        }
+
+        /**
+         * The last statement of the blocking session, possibly truncated.
+         */
+        public String getQuery() {
+            return query;
+        }
+
+        @Override
+        public String toString() {
+            return new StringJoiner(", ", BlockingSession.class.getSimpleName() + "[", "]")
+                    .add("pid=" + pid)
+                    .add("state='" + state + "'")
+                    .add("query='" + query + "'")
+                    .toString();
+        }
+    }
+
+    private final Instant observedAt;
+
+    private final String operation;
+
+    private final Class<?> entityType;
+
+    private final int waiterPid;
+
+    private final Duration waitedSoFar;
+
+    private final List<BlockingSession> blockingSessions;
+
+    public LockWaitObservation(
+            Instant observedAt,
+            String operation,
+            Class<?> entityType,
+            int waiterPid,
+            Duration waitedSoFar,
+            List<BlockingSession> blockingSessions
+    ) {
+        this.observedAt = observedAt;
+        this.operation = operation;
+        this.entityType = entityType;
+        this.waiterPid = waiterPid;
+        this.waitedSoFar = waitedSoFar;
+        this.blockingSessions = List.copyOf(blockingSessions);
+    }
+
+    public Instant getObservedAt() {
+        return observedAt;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
+    public int getWaiterPid() {
+        return waiterPid;
+    }
+
+    public Duration getWaitedSoFar() {
+        return waitedSoFar;
+    }
+
+    public List<BlockingSession> getBlockingSessions() {
+        return blockingSessions;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", LockWaitObservation.class.getSimpleName() + "[", "]")
+                .add("observedAt=" + observedAt)
+                .add("operation='" + operation + "'")
+                .add("entityType=" + entityType.getSimpleName())
+                .add("waiterPid=" + waiterPid)
+                .add("waitedSoFar=" + waitedSoFar)
+                .add("blockingSessions=" + blockingSessions)
+                .toString();
+    }
+}
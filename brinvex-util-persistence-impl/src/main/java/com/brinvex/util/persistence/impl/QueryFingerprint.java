@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl;
+
+import com.brinvex.util.persistence.impl.diagnostics.SqlFingerprint;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.cache.spi.QueryKey;
+import org.hibernate.query.spi.DomainQueryExecutionContext;
+import org.hibernate.query.spi.SqmQuery;
+
+import java.util.Objects;
+
+/**
+ * Identifies a query execution by the query, its parameter values and its row range,
+ * similarly to the key Hibernate uses in the query cache.
+ */
+final class QueryFingerprint {
+
+    private final String hql;
+
+    private final QueryKey.ParameterBindingsMemento parameterBindings;
+
+    private final int firstResult;
+
+    private final int maxResults;
+
+    private final int hashCode;
+
+    private QueryFingerprint(String hql, QueryKey.ParameterBindingsMemento parameterBindings, int firstResult, int maxResults) {
+        this.hql = hql;
+        this.parameterBindings = parameterBindings;
+        this.firstResult = firstResult;
+        this.maxResults = maxResults;
+        this.hashCode = Objects.hash(hql, parameterBindings, firstResult, maxResults);
+    }
+
+    static QueryFingerprint of(TypedQuery<?> typedQuery) {
+        if (!(typedQuery instanceof SqmQuery) || !(typedQuery instanceof DomainQueryExecutionContext)) {
+            throw new IllegalArgumentException("Unsupported query type: " + typedQuery.getClass().getName());
+        }
+        DomainQueryExecutionContext executionContext = (DomainQueryExecutionContext) typedQuery;
+        return new QueryFingerprint(
+                SqlFingerprint.normalizeAliases(((SqmQuery) typedQuery).getSqmStatement().toHqlString()),
+                executionContext.getQueryParameterBindings().generateQueryKeyMemento(executionContext.getSession()),
+                typedQuery.getFirstResult(),
+                typedQuery.getMaxResults()
+        );
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QueryFingerprint)) {
+            return false;
+        }
+        QueryFingerprint that = (QueryFingerprint) o;
+        return hashCode == that.hashCode
+               && firstResult == that.firstResult
+               && maxResults == that.maxResults
+               && hql.equals(that.hql)
+               && Objects.equals(parameterBindings, that.parameterBindings);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+}
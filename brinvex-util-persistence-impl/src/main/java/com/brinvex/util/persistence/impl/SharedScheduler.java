@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * Single daemon thread for the background tasks of one kind of component, created on first use
+ * and shared by all its instances. Cancelled tasks are removed from the queue right away.
+ */
+public final class SharedScheduler {
+
+    private final String threadName;
+
+    private volatile ScheduledExecutorService scheduler;
+
+    public SharedScheduler(String threadName) {
+        this.threadName = threadName;
+    }
+
+    public ScheduledExecutorService get() {
+        ScheduledExecutorService s = scheduler;
+        if (s == null) {
+            synchronized (this) {
+                s = scheduler;
+                if (s == null) {
+                    ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                        Thread t = new Thread(r, threadName);
+                        t.setDaemon(true);
+                        return t;
+                    });
+                    executor.setRemoveOnCancelPolicy(true);
+                    s = executor;
+                    scheduler = s;
+                }
+            }
+        }
+        return s;
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.cache;
+
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.action.spi.BeforeTransactionCompletionProcess;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.descriptor.java.JavaType;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Propagates cache invalidations between application nodes sharing one PostgreSQL database.
+ * <p>
+ * Invalidations registered during a transaction are collected and sent with {@code pg_notify}
+ * right before it commits, so other nodes receive them only if and when the transaction commits.
+ * Each node listens on a dedicated connection taken from the Hibernate connection provider
+ * and passes the invalidations of other nodes to an {@link InvalidationHandler}.
+ * Notifications might have been missed whenever the listener (re)connects,
+ * so the handler is then asked to invalidate everything.
+ * The listener stops and returns its connection when the bus is closed,
+ * at the latest when the factory starts closing, before its connection pool is stopped.
+ * <p>
+ * Metrics: {@code invalidation.published} and {@code invalidation.received} (notifications),
+ * {@code invalidation.listenerFailures}.
+ */
+public class CacheInvalidationBus implements AutoCloseable {
+
+    public interface InvalidationHandler {
+
+        /**
+         * @param ids null means all entities of the given type
+         */
+        void invalidate(Class<?> entityType, Collection<Object> ids);
+
+        void invalidateAll();
+    }
+
+    private static final String ALL_IDS = "*";
+
+    /**
+     * PostgreSQL limits the payload to 8000 bytes.
+     */
+    private static final int MAX_PAYLOAD_BYTES = 7_900;
+
+    private static final long CLOSE_GRACE_MILLIS = 5_000;
+
+    private static final class Batch {
+        private final Map<Class<?>, Set<Object>> ids = new LinkedHashMap<>();
+        private final Set<Class<?>> allIds = new LinkedHashSet<>();
+    }
+
+    private final SessionFactoryImplementor sessionFactory;
+
+    private final CacheInvalidationConf conf;
+
+    private final InvalidationHandler handler;
+
+    private final Map<SessionImplementor, Batch> batches = new ConcurrentHashMap<>();
+
+    private final Thread listenerThread;
+
+    private volatile boolean closed;
+
+    private volatile boolean listening;
+
+    private final LongAdder published;
+
+    private final LongAdder received;
+
+    private final LongAdder listenerFailures;
+
+    public CacheInvalidationBus(
+            EntityManagerFactory emf,
+            CacheInvalidationConf conf,
+            MetricRegistry metricRegistry,
+            InvalidationHandler handler
+    ) {
+        this.sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        this.conf = conf;
+        this.handler = handler;
+        this.published = metricRegistry.counter("invalidation.published");
+        this.received = metricRegistry.counter("invalidation.received");
+        this.listenerFailures = metricRegistry.counter("invalidation.listenerFailures");
+        this.listenerThread = new Thread(this::listen, "brinvex-cache-invalidation-listener");
+        this.listenerThread.setDaemon(true);
+    }
+
+    public void start() {
+        sessionFactory.addObserver(new SessionFactoryObserver() {
+            @Override
+            public void sessionFactoryClosing(SessionFactory factory) {
+                close();
+            }
+        });
+        listenerThread.start();
+    }
+
+    /**
+     * True once the listener connection is established.
+     */
+    public boolean isListening() {
+        return listening;
+    }
+
+    /**
+     * Registers an invalidation to be published when the transaction of the given entity manager commits.
+     *
+     * @param id null means all entities of the given type
+     */
+    public void publish(EntityManager em, Class<?> entityType, Object id) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        Batch batch = batches.get(session);
+        if (batch == null) {
+            batch = new Batch();
+            batches.put(session, batch);
+            session.getActionQueue().registerProcess((BeforeTransactionCompletionProcess) s -> send(s, batches.remove(s)));
+            session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> batches.remove(session));
+        }
+        if (id == null) {
+            batch.allIds.add(entityType);
+            batch.ids.remove(entityType);
+        } else if (!batch.allIds.contains(entityType)) {
+            batch.ids.computeIfAbsent(entityType, k -> new LinkedHashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * Stops the listener and waits until it has released its connection.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        listenerThread.interrupt();
+        if (listenerThread.isAlive() && Thread.currentThread() != listenerThread) {
+            try {
+                listenerThread.join(conf.getPollTimeout().toMillis() + CLOSE_GRACE_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void send(SessionImplementor session, Batch batch) {
+        if (batch == null) {
+            return;
+        }
+        List<String> payloads = encode(batch);
+        session.doWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("select pg_notify(?, ?)")) {
+                for (String payload : payloads) {
+                    ps.setString(1, conf.getChannel());
+                    ps.setString(2, payload);
+                    ps.execute();
+                }
+            }
+        });
+        published.add(payloads.size());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<String> encode(Batch batch) {
+        String header = conf.getNodeId();
+        int maxLineBytes = MAX_PAYLOAD_BYTES - utf8Length(header) - 1;
+
+        List<String> lines = new ArrayList<>();
+        for (Class<?> entityType : batch.allIds) {
+            lines.add(entityType.getName() + "\t" + ALL_IDS);
+        }
+        for (Map.Entry<Class<?>, Set<Object>> e : batch.ids.entrySet()) {
+            String entityName = e.getKey().getName();
+            JavaType idJavaType = persister(e.getKey()).getIdentifierMapping().getJavaType();
+            List<String> typeLines = new ArrayList<>();
+            StringBuilder line = new StringBuilder(entityName);
+            int lineBytes = utf8Length(entityName);
+            for (Object id : e.getValue()) {
+                String idString = idJavaType.toString(id);
+                int idBytes = utf8Length(idString);
+                if (idString.indexOf('\t') >= 0 || idString.indexOf('\n') >= 0 || idString.equals(ALL_IDS)
+                    || utf8Length(entityName) + 1 + idBytes > maxLineBytes) {
+                    typeLines.clear();
+                    line.setLength(0);
+                    line.append(entityName).append('\t').append(ALL_IDS);
+                    break;
+                }
+                if (lineBytes + 1 + idBytes > maxLineBytes) {
+                    typeLines.add(line.toString());
+                    line.setLength(0);
+                    line.append(entityName);
+                    lineBytes = utf8Length(entityName);
+                }
+                line.append('\t').append(idString);
+                lineBytes += 1 + idBytes;
+            }
+            typeLines.add(line.toString());
+            lines.addAll(typeLines);
+        }
+
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(header);
+        int payloadBytes = utf8Length(header);
+        for (String line : lines) {
+            int lineBytes = utf8Length(line);
+            if (payloadBytes + 1 + lineBytes > MAX_PAYLOAD_BYTES) {
+                payloads.add(payload.toString());
+                payload.setLength(0);
+                payload.append(header);
+                payloadBytes = utf8Length(header);
+            }
+            payload.append('\n').append(line);
+            payloadBytes += 1 + lineBytes;
+        }
+        payloads.add(payload.toString());
+        return payloads;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private void receive(String payload) {
+        String[] lines = payload.split("\n");
+        if (lines[0].equals(conf.getNodeId())) {
+            return;
+        }
+        received.increment();
+        for (int i = 1; i < lines.length; i++) {
+            String[] parts = lines[i].split("\t");
+            EntityPersister persister = sessionFactory.getMappingMetamodel().findEntityDescriptor(parts[0]);
+            if (persister == null) {
+                continue;
+            }
+            Class<?> entityType = persister.getMappedClass();
+            if (parts.length == 2 && parts[1].equals(ALL_IDS)) {
+                handler.invalidate(entityType, null);
+                continue;
+            }
+            JavaType idJavaType = persister.getIdentifierMapping().getJavaType();
+            List<Object> ids = new ArrayList<>(parts.length - 1);
+            for (int j = 1; j < parts.length; j++) {
+                ids.add(idJavaType.fromString(parts[j]));
+            }
+            handler.invalidate(entityType, ids);
+        }
+    }
+
+    private void listen() {
+        ConnectionProvider connectionProvider = sessionFactory.getServiceRegistry().getService(ConnectionProvider.class);
+        while (!closed && sessionFactory.isOpen()) {
+            Connection connection = null;
+            try {
+                connection = connectionProvider.getConnection();
+                connection.setAutoCommit(true);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("listen " + conf.getChannel());
+                }
+                handler.invalidateAll();
+                listening = true;
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                int pollTimeoutMillis = (int) Math.max(1, conf.getPollTimeout().toMillis());
+                while (!closed && sessionFactory.isOpen()) {
+                    PGNotification[] notifications = pgConnection.getNotifications(pollTimeoutMillis);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                listening = false;
+                if (closed || !sessionFactory.isOpen()) {
+                    break;
+                }
+                listenerFailures.increment();
+                try {
+                    TimeUnit.MILLISECONDS.sleep(conf.getReconnectDelay().toMillis());
+                } catch (InterruptedException ie) {
+                    break;
+                }
+            } finally {
+                listening = false;
+                release(connectionProvider, connection);
+            }
+        }
+    }
+
+    private void release(ConnectionProvider connectionProvider, Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("unlisten *");
+        } catch (SQLException | RuntimeException ignored) {
+            // The connection is broken, the pool is expected to discard it
+        }
+        try {
+            connectionProvider.closeConnection(connection);
+        } catch (SQLException | RuntimeException ignored) {
+            // Nothing else to do
+        }
+    }
+
+    private EntityPersister persister(Class<?> entityType) {
+        return sessionFactory.getMappingMetamodel().getEntityDescriptor(entityType);
+    }
+
+    private static int utf8Length(String s) {
+        return s.getBytes(StandardCharsets.UTF_8).length;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.cache;
+
+import jakarta.persistence.EntityManagerFactory;
+
+import java.time.Duration;
+import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+public class CacheInvalidationConf {
+
+    private static final Pattern CHANNEL_PATTERN = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+    private EntityManagerFactory entityManagerFactory;
+    private String channel = "brinvex_cache_invalidation";
+    private String nodeId = UUID.randomUUID().toString();
+    private Duration pollTimeout = Duration.ofMillis(500);
+    private Duration reconnectDelay = Duration.ofSeconds(5);
+
+    public EntityManagerFactory getEntityManagerFactory() {
+        return entityManagerFactory;
+    }
+
+    /**
+     * Required. The factory whose caches are kept in sync with the other nodes.
+     * Its bus starts listening when the support is created and stops when the support or the factory is closed.
+     */
+    public CacheInvalidationConf setEntityManagerFactory(EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = requireNonNull(entityManagerFactory);
+        return this;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
+
+    /**
+     * PostgreSQL notification channel shared by all nodes. Lower case identifier.
+     */
+    public CacheInvalidationConf setChannel(String channel) {
+        if (channel == null || !CHANNEL_PATTERN.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Illegal channel: " + channel);
+        }
+        this.channel = channel;
+        return this;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * Identifies this node, so that it ignores its own notifications. Random by default.
+     */
+    public CacheInvalidationConf setNodeId(String nodeId) {
+        if (nodeId == null || nodeId.isEmpty() || nodeId.indexOf('\n') >= 0) {
+            throw new IllegalArgumentException("Illegal nodeId: " + nodeId);
+        }
+        this.nodeId = nodeId;
+        return this;
+    }
+
+    public Duration getPollTimeout() {
+        return pollTimeout;
+    }
+
+    /**
+     * How long the listener waits for notifications before checking whether it should stop.
+     */
+    public CacheInvalidationConf setPollTimeout(Duration pollTimeout) {
+        this.pollTimeout = requireNonNull(pollTimeout);
+        return this;
+    }
+
+    public Duration getReconnectDelay() {
+        return reconnectDelay;
+    }
+
+    public CacheInvalidationConf setReconnectDelay(Duration reconnectDelay) {
+        this.reconnectDelay = requireNonNull(reconnectDelay);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", CacheInvalidationConf.class.getSimpleName() + "[", "]")
+                .add("channel='" + channel + "'")
+                .add("nodeId='" + nodeId + "'")
+                .add("pollTimeout=" + pollTimeout)
+                .add("reconnectDelay=" + reconnectDelay)
+                .toString();
+    }
+}
@@ -0,0 +1,225 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.cache;
+
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.UnaryOperator;
+
+/**
+ * Bounded cache of detached entities of one type, keyed by id.
+ * <p>
+ * Reads are lock-free. When the cache is full, the least recently used entry competes with the new one
+ * and the one accessed more often recently (estimated by a {@link FrequencySketch}) is kept,
+ * so that a scan over many rarely used ids does not flush the popular ones.
+ * <p>
+ * A value loaded before an invalidation is never stored after it. Callers take
+ * {@link #getInvalidationStamp()} before loading and pass it to {@link #put}.
+ * <p>
+ * Metrics, per entity type (e.g. {@code cache.hits.Salary}):
+ * {@code cache.hits.*}, {@code cache.misses.*}, {@code cache.evictions.*}, {@code cache.rejections.*}
+ * (new entry not admitted) and {@code cache.invalidations.*}.
+ */
+public class EntityCache<ENTITY> {
+
+    private static final class Entry<E> {
+        private final E value;
+        private final long expiresAtNanos;
+
+        private Entry(E value, long expiresAtNanos) {
+            this.value = value;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+    }
+
+    private final Class<ENTITY> entityType;
+
+    private final UnaryOperator<ENTITY> copier;
+
+    private final long maximumSize;
+
+    private final long timeToLiveNanos;
+
+    private final Map<Object, Entry<ENTITY>> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Guarded by {@link #lock}. Reads reorder it only if the lock is free, so the order is an approximation.
+     */
+    private final LinkedHashMap<Object, Boolean> accessOrder = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final FrequencySketch sketch;
+
+    private final AtomicLong invalidationStamp = new AtomicLong();
+
+    private final LongAdder hits;
+
+    private final LongAdder misses;
+
+    private final LongAdder evictions;
+
+    private final LongAdder rejections;
+
+    private final LongAdder invalidations;
+
+    public EntityCache(EntityCacheConf<ENTITY> conf, MetricRegistry metricRegistry) {
+        if (conf.getCopier() == null) {
+            throw new IllegalArgumentException("Copier is required for mutable entity type: " + conf.getEntityType().getName());
+        }
+        this.entityType = conf.getEntityType();
+        this.copier = conf.getCopier();
+        this.maximumSize = conf.getMaximumSize();
+        Duration timeToLive = conf.getTimeToLive();
+        this.timeToLiveNanos = timeToLive == null ? 0 : timeToLive.toNanos();
+        this.sketch = new FrequencySketch(maximumSize);
+        String suffix = "." + entityType.getSimpleName();
+        this.hits = metricRegistry.counter("cache.hits" + suffix);
+        this.misses = metricRegistry.counter("cache.misses" + suffix);
+        this.evictions = metricRegistry.counter("cache.evictions" + suffix);
+        this.rejections = metricRegistry.counter("cache.rejections" + suffix);
+        this.invalidations = metricRegistry.counter("cache.invalidations" + suffix);
+    }
+
+    public Class<ENTITY> getEntityType() {
+        return entityType;
+    }
+
+    /**
+     * Returns a copy of the cached entity or null.
+     */
+    public ENTITY get(Object id) {
+        sketch.increment(id);
+        Entry<ENTITY> entry = entries.get(id);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        if (timeToLiveNanos > 0 && System.nanoTime() - entry.expiresAtNanos > 0) {
+            lock.lock();
+            try {
+                if (entries.remove(id, entry)) {
+                    accessOrder.remove(id);
+                }
+            } finally {
+                lock.unlock();
+            }
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        if (lock.tryLock()) {
+            try {
+                accessOrder.get(id);
+            } finally {
+                lock.unlock();
+            }
+        }
+        return copier.apply(entry.value);
+    }
+
+    public long getInvalidationStamp() {
+        return invalidationStamp.get();
+    }
+
+    /**
+     * Stores a copy of the given entity unless an invalidation happened since the given stamp was taken.
+     */
+    public void put(Object id, ENTITY entity, long stamp) {
+        Entry<ENTITY> entry = new Entry<>(copier.apply(entity), System.nanoTime() + timeToLiveNanos);
+        lock.lock();
+        try {
+            if (invalidationStamp.get() != stamp) {
+                return;
+            }
+            entries.put(id, entry);
+            accessOrder.put(id, Boolean.TRUE);
+            if (accessOrder.size() > maximumSize) {
+                evict(id);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(Object id) {
+        lock.lock();
+        try {
+            invalidationStamp.incrementAndGet();
+            entries.remove(id);
+            accessOrder.remove(id);
+        } finally {
+            lock.unlock();
+        }
+        invalidations.increment();
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            invalidationStamp.incrementAndGet();
+            entries.clear();
+            accessOrder.clear();
+        } finally {
+            lock.unlock();
+        }
+        invalidations.increment();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long requestCount = hitCount + misses.sum();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    private void evict(Object candidate) {
+        Iterator<Object> it = accessOrder.keySet().iterator();
+        Object victim = it.next();
+        if (sketch.frequency(candidate) > sketch.frequency(victim)) {
+            it.remove();
+            entries.remove(victim);
+            evictions.increment();
+        } else {
+            accessOrder.remove(candidate);
+            entries.remove(candidate);
+            rejections.increment();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.cache;
+
+import org.hibernate.annotations.Immutable;
+
+import java.time.Duration;
+import java.util.StringJoiner;
+import java.util.function.UnaryOperator;
+
+import static java.util.Objects.requireNonNull;
+
+public class EntityCacheConf<ENTITY> {
+
+    private final Class<ENTITY> entityType;
+    private long maximumSize = 10_000;
+    private Duration timeToLive = Duration.ofMinutes(10);
+    private UnaryOperator<ENTITY> copier;
+
+    public EntityCacheConf(Class<ENTITY> entityType) {
+        this.entityType = requireNonNull(entityType);
+        if (entityType.isAnnotationPresent(Immutable.class)) {
+            this.copier = UnaryOperator.identity();
+        }
+    }
+
+    public Class<ENTITY> getEntityType() {
+        return entityType;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public EntityCacheConf<ENTITY> setMaximumSize(long maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Illegal maximumSize: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        return this;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Entries expire after this duration since they were loaded. Null means no expiration.
+     */
+    public EntityCacheConf<ENTITY> setTimeToLive(Duration timeToLive) {
+        if (timeToLive != null && (timeToLive.isNegative() || timeToLive.isZero())) {
+            throw new IllegalArgumentException("Illegal timeToLive: " + timeToLive);
+        }
+        this.timeToLive = timeToLive;
+        return this;
+    }
+
+    public UnaryOperator<ENTITY> getCopier() {
+        return copier;
+    }
+
+    /**
+     * Creates a detached copy of an entity. The cache stores a copy of every loaded entity
+     * and hands out a new copy on every hit, so that neither the cached value nor other callers
+     * observe modifications of a returned instance.
+     * <p>
+     * Required unless the entity type is annotated with {@link Immutable},
+     * in which case instances are shared as they are.
+     */
+    public EntityCacheConf<ENTITY> setCopier(UnaryOperator<ENTITY> copier) {
+        this.copier = copier;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", EntityCacheConf.class.getSimpleName() + "[", "]")
+                .add("entityType=" + entityType.getSimpleName())
+                .add("maximumSize=" + maximumSize)
+                .add("timeToLive=" + timeToLive)
+                .toString();
+    }
+}
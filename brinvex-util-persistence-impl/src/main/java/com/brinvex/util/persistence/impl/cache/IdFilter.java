@@ -0,0 +1,315 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.cache;
+
+import com.brinvex.util.persistence.impl.SharedScheduler;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Bloom filter of the ids of one entity type, answering "certainly missing" without a database round trip.
+ * <p>
+ * The filter is built from a snapshot of all ids and every id added with {@link #add} afterwards is recorded.
+ * Ids are never removed, so a deleted row only costs one more false positive.
+ * Until the filter is built, every id is reported as possibly present.
+ * Builds run in a shared background thread, see {@link #startRebuilds}.
+ * <p>
+ * Metrics, per entity type (e.g. {@code idFilter.negatives.Employee}):
+ * {@code idFilter.negatives.*} (lookup answered as missing in memory),
+ * {@code idFilter.falsePositives.*} (id passed the filter but no row was found),
+ * {@code idFilter.builds.*} and {@code idFilter.buildFailures.*}.
+ */
+public class IdFilter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IdFilter.class);
+
+    private static final double LN2 = Math.log(2);
+
+    private static final SharedScheduler REBUILD_SCHEDULER = new SharedScheduler("brinvex-id-filter-rebuild");
+
+    private static final class Bits {
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+        private final LongAdder insertions = new LongAdder();
+
+        private Bits(long expectedIds, double falsePositiveRate) {
+            long bits = (long) Math.ceil(-expectedIds * Math.log(falsePositiveRate) / (LN2 * LN2));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (bits + 63) >>> 6));
+            this.words = new AtomicLongArray(wordCount);
+            this.bitCount = (long) wordCount << 6;
+            this.hashCount = (int) Math.max(1, Math.min(30, Math.round((double) bitCount / expectedIds * LN2)));
+        }
+
+        private void add(long hash) {
+            long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash + i * h2, bitCount);
+                int wordIndex = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word = words.get(wordIndex);
+                while ((word & mask) == 0 && !words.compareAndSet(wordIndex, word, word | mask)) {
+                    word = words.get(wordIndex);
+                }
+            }
+            insertions.increment();
+        }
+
+        private boolean mightContain(long hash) {
+            long h2 = mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                long bit = Math.floorMod(hash + i * h2, bitCount);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private final Class<?> entityType;
+
+    private final long expectedSize;
+
+    private final double falsePositiveRate;
+
+    private final Duration rebuildInterval;
+
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    /**
+     * Guarded by this.
+     */
+    private ScheduledFuture<?> scheduledRebuilds;
+
+    /**
+     * Held while a scheduled rebuild runs, so that {@link #stopRebuilds} can wait for it.
+     */
+    private final ReentrantLock rebuildTaskLock = new ReentrantLock();
+
+    private volatile boolean rebuildsStopped;
+
+    private volatile Bits current;
+
+    private volatile Bits building;
+
+    private final LongAdder negatives;
+
+    private final LongAdder falsePositives;
+
+    private final LongAdder builds;
+
+    private final LongAdder buildFailures;
+
+    public IdFilter(IdFilterConf<?> conf, MetricRegistry metricRegistry) {
+        this.entityType = conf.getEntityType();
+        this.expectedSize = conf.getExpectedSize();
+        this.falsePositiveRate = conf.getFalsePositiveRate();
+        this.rebuildInterval = conf.getRebuildInterval();
+        String entityName = entityType.getSimpleName();
+        this.negatives = metricRegistry.counter("idFilter.negatives." + entityName);
+        this.falsePositives = metricRegistry.counter("idFilter.falsePositives." + entityName);
+        this.builds = metricRegistry.counter("idFilter.builds." + entityName);
+        this.buildFailures = metricRegistry.counter("idFilter.buildFailures." + entityName);
+    }
+
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
+    public boolean isReady() {
+        return current != null;
+    }
+
+    public boolean isRebuilding() {
+        return rebuildLock.isLocked();
+    }
+
+    /**
+     * Returns false only if no row with the given id existed when the filter was built
+     * and the id has not been added since.
+     */
+    public boolean mightContain(Object id) {
+        Bits bits = current;
+        if (bits == null || bits.mightContain(hash(id))) {
+            return true;
+        }
+        negatives.increment();
+        return false;
+    }
+
+    public void add(Object id) {
+        long hash = hash(id);
+        // Building first: once building is cleared, current already holds the rebuilt bits
+        Bits next = building;
+        if (next != null) {
+            next.add(hash);
+        }
+        Bits bits = current;
+        if (bits != null) {
+            bits.add(hash);
+        }
+    }
+
+    public void recordFalsePositives(int count) {
+        if (count > 0) {
+            falsePositives.add(count);
+        }
+    }
+
+    /**
+     * Replaces the filter with one built from a fresh snapshot of ids.
+     * The old filter, if any, keeps answering until the new one is complete.
+     * Ids added concurrently are recorded in both.
+     * Returns false without doing anything if another rebuild is in progress.
+     *
+     * @param idCounter  returns the current number of rows, used for sizing
+     * @param idSnapshot passes the id of every row to the given consumer
+     */
+    public boolean rebuild(LongSupplier idCounter, Consumer<Consumer<Object>> idSnapshot) {
+        if (!rebuildLock.tryLock()) {
+            return false;
+        }
+        try {
+            long expectedIds = Math.max(expectedSize, 2 * idCounter.getAsLong());
+            Bits next = new Bits(expectedIds, falsePositiveRate);
+            building = next;
+            try {
+                idSnapshot.accept(id -> next.add(hash(id)));
+                current = next;
+            } finally {
+                building = null;
+            }
+            builds.increment();
+            return true;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Runs the given rebuild, which is expected to call {@link #rebuild}, in the background right away
+     * and then repeatedly with the configured {@link IdFilterConf#setRebuildInterval rebuild interval}.
+     * A failed rebuild is logged and the filter keeps its previous state until the next one.
+     */
+    public synchronized void startRebuilds(Runnable rebuild) {
+        if (scheduledRebuilds != null) {
+            throw new IllegalStateException("Rebuilds already started: " + entityType.getName());
+        }
+        Runnable task = () -> {
+            rebuildTaskLock.lock();
+            try {
+                if (!rebuildsStopped) {
+                    rebuild.run();
+                }
+            } catch (RuntimeException e) {
+                buildFailures.increment();
+                LOG.warn("Id filter rebuild failed: {}", entityType.getName(), e);
+            } finally {
+                rebuildTaskLock.unlock();
+            }
+        };
+        ScheduledExecutorService scheduler = REBUILD_SCHEDULER.get();
+        scheduledRebuilds = rebuildInterval == null
+                ? scheduler.schedule(task, 0, TimeUnit.NANOSECONDS)
+                : scheduler.scheduleWithFixedDelay(task, 0, rebuildInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Cancels the rebuilds scheduled by {@link #startRebuilds}.
+     * A rebuild already running is completed before this method returns,
+     * unless it is the rebuild calling this method.
+     */
+    public void stopRebuilds() {
+        synchronized (this) {
+            rebuildsStopped = true;
+            if (scheduledRebuilds != null) {
+                scheduledRebuilds.cancel(false);
+            }
+        }
+        if (!rebuildTaskLock.isHeldByCurrentThread()) {
+            rebuildTaskLock.lock();
+            rebuildTaskLock.unlock();
+        }
+    }
+
+    /**
+     * Memory used by the bit array.
+     */
+    public long getFootprintBytes() {
+        Bits bits = current;
+        return bits == null ? 0 : (long) bits.words.length() * Long.BYTES;
+    }
+
+    public long getInsertionCount() {
+        Bits bits = current;
+        return bits == null ? 0 : bits.insertions.sum();
+    }
+
+    /**
+     * Estimated from the number of insertions, which includes duplicates and ids of rolled back inserts.
+     * Grows above the configured rate once more ids are inserted than the filter was sized for.
+     */
+    public double getExpectedFalsePositiveRate() {
+        Bits bits = current;
+        if (bits == null) {
+            return 1;
+        }
+        return Math.pow(1 - Math.exp(-bits.hashCount * (double) bits.insertions.sum() / bits.bitCount), bits.hashCount);
+    }
+
+    public long getNegativeCount() {
+        return negatives.sum();
+    }
+
+    public long getFalsePositiveCount() {
+        return falsePositives.sum();
+    }
+
+    private static long hash(Object id) {
+        long value;
+        if (id instanceof Long || id instanceof Integer || id instanceof Short || id instanceof Byte) {
+            value = ((Number) id).longValue();
+        } else if (id instanceof UUID) {
+            UUID uuid = (UUID) id;
+            value = uuid.getMostSignificantBits() ^ mix(uuid.getLeastSignificantBits());
+        } else {
+            value = id.hashCode();
+        }
+        return mix(value);
+    }
+
+    private static long mix(long x) {
+        x ^= x >>> 33;
+        x *= 0xFF51AFD7ED558CCDL;
+        x ^= x >>> 33;
+        x *= 0xC4CEB9FE1A85EC53L;
+        x ^= x >>> 33;
+        return x;
+    }
+}
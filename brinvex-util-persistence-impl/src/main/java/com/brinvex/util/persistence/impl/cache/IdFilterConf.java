@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.cache;
+
+import java.time.Duration;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The filter learns about new rows only from {@code persist} and {@code merge} of the support it belongs to
+ * and from invalidations of other nodes, so all inserts must go through DAOs using that support.
+ * Rows inserted in any other way, e.g. by cascades, plain {@code EntityManager#persist}, native SQL,
+ * other applications or nodes without {@link CacheInvalidationConf cache invalidation}, are reported as missing
+ * without querying the database until the next rebuild, so {@code getById} returns null for them.
+ * Call {@code EntityDaoSupportImpl#rebuildIdFilter} after such inserts if they must be visible sooner.
+ */
+public class IdFilterConf<ENTITY> {
+
+    private final Class<ENTITY> entityType;
+    private long expectedSize = 100_000;
+    private double falsePositiveRate = 0.01;
+    private Duration rebuildInterval = Duration.ofMinutes(5);
+
+    public IdFilterConf(Class<ENTITY> entityType) {
+        this.entityType = requireNonNull(entityType);
+    }
+
+    public Class<ENTITY> getEntityType() {
+        return entityType;
+    }
+
+    public long getExpectedSize() {
+        return expectedSize;
+    }
+
+    /**
+     * Minimum number of ids the filter is sized for. The filter is sized for at least twice
+     * the number of rows found when it is built, to leave room for inserts.
+     */
+    public IdFilterConf<ENTITY> setExpectedSize(long expectedSize) {
+        if (expectedSize < 1) {
+            throw new IllegalArgumentException("Illegal expectedSize: " + expectedSize);
+        }
+        this.expectedSize = expectedSize;
+        return this;
+    }
+
+    public double getFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * Target probability that a missing id is not recognized as missing and has to be looked up in the database.
+     * Lower rates cost more memory, about 1.2 bytes per id at 0.01 and 1.8 bytes per id at 0.001.
+     */
+    public IdFilterConf<ENTITY> setFalsePositiveRate(double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("Illegal falsePositiveRate: " + falsePositiveRate);
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        return this;
+    }
+
+    public Duration getRebuildInterval() {
+        return rebuildInterval;
+    }
+
+    /**
+     * Delay between the end of one background rebuild from a fresh snapshot of ids and the start of the next one.
+     * Bounds how long a row inserted bypassing the support stays unknown, 5 minutes by default.
+     * Null means the filter is built only once.
+     */
+    public IdFilterConf<ENTITY> setRebuildInterval(Duration rebuildInterval) {
+        if (rebuildInterval != null && (rebuildInterval.isNegative() || rebuildInterval.isZero())) {
+            throw new IllegalArgumentException("Illegal rebuildInterval: " + rebuildInterval);
+        }
+        this.rebuildInterval = rebuildInterval;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", IdFilterConf.class.getSimpleName() + "[", "]")
+                .add("entityType=" + entityType.getSimpleName())
+                .add("expectedSize=" + expectedSize)
+                .add("falsePositiveRate=" + falsePositiveRate)
+                .add("rebuildInterval=" + rebuildInterval)
+                .toString();
+    }
+}
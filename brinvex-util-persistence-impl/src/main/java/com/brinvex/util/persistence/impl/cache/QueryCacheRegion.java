@@ -0,0 +1,139 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.cache;
+
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks when the results of queries in a query cache region were stored,
+ * to enforce the TTL and flush threshold of {@link QueryCacheRegionConf} on top of the cache provider.
+ * <p>
+ * Metrics: {@code queryCache.refreshes.<region>} (expired result re-executed)
+ * and {@code queryCache.flushes.<region>} (region flushed because it reached the threshold).
+ */
+public class QueryCacheRegion {
+
+    private final String name;
+
+    private final long timeToLiveNanos;
+
+    private final int flushThreshold;
+
+    private final Runnable regionEvictor;
+
+    private final Map<Object, AtomicLong> storedAtNanos = new ConcurrentHashMap<>();
+
+    private final LongAdder refreshes;
+
+    private final LongAdder flushes;
+
+    /**
+     * @param regionEvictor evicts the region from the cache provider
+     */
+    public QueryCacheRegion(QueryCacheRegionConf conf, MetricRegistry metricRegistry, Runnable regionEvictor) {
+        this.name = conf.getName();
+        Duration timeToLive = conf.getTimeToLive();
+        this.timeToLiveNanos = timeToLive == null ? 0 : timeToLive.toNanos();
+        this.flushThreshold = conf.getFlushThreshold();
+        this.regionEvictor = regionEvictor;
+        this.refreshes = metricRegistry.counter("queryCache.refreshes." + name);
+        this.flushes = metricRegistry.counter("queryCache.flushes." + name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Called before a query is executed in a mode which reads from and writes to the cache.
+     * Returns true if the caller has to refresh the cached result.
+     * Only one of the concurrent callers seeing an expired result gets true.
+     */
+    public boolean beforeRead(Object queryKey) {
+        long now = System.nanoTime();
+        AtomicLong storedAt = storedAtNanos.get(queryKey);
+        if (storedAt == null) {
+            track(queryKey, now);
+            return false;
+        }
+        if (timeToLiveNanos == 0) {
+            return false;
+        }
+        long stored = storedAt.get();
+        if (now - stored > timeToLiveNanos && storedAt.compareAndSet(stored, now)) {
+            refreshes.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called before a query is executed in a mode which reads from the cache without writing.
+     * Returns true if the cached result is older than the TTL, so the caller has to treat it as a miss.
+     */
+    public boolean isExpired(Object queryKey) {
+        if (timeToLiveNanos == 0) {
+            return false;
+        }
+        AtomicLong storedAt = storedAtNanos.get(queryKey);
+        return storedAt != null && System.nanoTime() - storedAt.get() > timeToLiveNanos;
+    }
+
+    /**
+     * Called before a query is executed in a mode which writes to the cache without reading.
+     */
+    public void beforeWrite(Object queryKey) {
+        long now = System.nanoTime();
+        AtomicLong storedAt = storedAtNanos.get(queryKey);
+        if (storedAt == null) {
+            track(queryKey, now);
+        } else {
+            storedAt.set(now);
+        }
+    }
+
+    /**
+     * Called before a query is executed in a mode which overwrites only results which are already cached.
+     * Returns false if the query is not cached, so the caller must not store the result.
+     */
+    public boolean beforeRefresh(Object queryKey) {
+        AtomicLong storedAt = storedAtNanos.get(queryKey);
+        if (storedAt == null) {
+            return false;
+        }
+        storedAt.set(System.nanoTime());
+        return true;
+    }
+
+    public int size() {
+        return storedAtNanos.size();
+    }
+
+    private void track(Object queryKey, long now) {
+        if (storedAtNanos.size() >= flushThreshold) {
+            storedAtNanos.clear();
+            regionEvictor.run();
+            flushes.increment();
+        }
+        storedAtNanos.putIfAbsent(queryKey, new AtomicLong(now));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.cache;
+
+import java.time.Duration;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+public class QueryCacheRegionConf {
+
+    private final String name;
+    private Duration timeToLive;
+    private int flushThreshold = 1_000;
+
+    public QueryCacheRegionConf(String name) {
+        this.name = requireNonNull(name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Duration getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Once a cached result is older than this, the next caller using
+     * {@link com.brinvex.util.persistence.api.QueryCacheMode#USE_QUERY_CACHE} re-executes the query and
+     * overwrites the cached result, while concurrent callers keep reading the old one.
+     * {@link com.brinvex.util.persistence.api.QueryCacheMode#GET_ONLY} callers execute the query instead of reading
+     * an expired result.
+     * Null (default) leaves expiration to the cache provider.
+     */
+    public QueryCacheRegionConf setTimeToLive(Duration timeToLive) {
+        if (timeToLive != null && (timeToLive.isNegative() || timeToLive.isZero())) {
+            throw new IllegalArgumentException("Illegal timeToLive: " + timeToLive);
+        }
+        this.timeToLive = timeToLive;
+        return this;
+    }
+
+    public int getFlushThreshold() {
+        return flushThreshold;
+    }
+
+    /**
+     * Number of distinct queries (query and parameter values) cached in the region at which the whole region
+     * is flushed, after which every query misses once. Hibernate cannot evict a single query result,
+     * so this is a safety net against unbounded growth, not an LRU bound. Size the cache provider region
+     * to evict single entries earlier and keep this well above the expected number of distinct queries.
+     */
+    public QueryCacheRegionConf setFlushThreshold(int flushThreshold) {
+        if (flushThreshold < 1) {
+            throw new IllegalArgumentException("Illegal flushThreshold: " + flushThreshold);
+        }
+        this.flushThreshold = flushThreshold;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", QueryCacheRegionConf.class.getSimpleName() + "[", "]")
+                .add("name='" + name + "'")
+                .add("timeToLive=" + timeToLive)
+                .add("flushThreshold=" + flushThreshold)
+                .toString();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.cache;
+
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical loads: the first caller of a key (the leader) loads,
+ * callers arriving while the load is in flight (followers) wait for it and derive their result
+ * from the leader's one, typically by reading what the leader has just put into a cache.
+ * <p>
+ * A follower loads by itself if the leader fails, as the failure belongs to the leader's transaction,
+ * or if the leader does not finish within the timeout.
+ * <p>
+ * Metrics, per label (e.g. {@code singleFlight.followers.Employee}):
+ * {@code singleFlight.leaders.*}, {@code singleFlight.followers.*} and {@code singleFlight.timeouts.*}.
+ */
+public class SingleFlight {
+
+    private final class LabelMetrics {
+        private final LongAdder leaders;
+        private final LongAdder followers;
+        private final LongAdder timeouts;
+
+        private LabelMetrics(String label) {
+            this.leaders = metricRegistry.counter("singleFlight.leaders." + label);
+            this.followers = metricRegistry.counter("singleFlight.followers." + label);
+            this.timeouts = metricRegistry.counter("singleFlight.timeouts." + label);
+        }
+    }
+
+    private final Map<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<String, LabelMetrics> labelMetrics = new ConcurrentHashMap<>();
+
+    private final MetricRegistry metricRegistry;
+
+    private final long timeoutNanos;
+
+    public SingleFlight(MetricRegistry metricRegistry, Duration timeout) {
+        this.metricRegistry = metricRegistry;
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * @param label  metric label, e.g. the entity name
+     * @param load   loads the result, called by the leader and by followers which cannot use the leader's result
+     * @param follow derives a follower's result from the leader's one
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String label, Object key, Supplier<T> load, Function<? super T, ? extends T> follow) {
+        LabelMetrics metrics = labelMetrics.computeIfAbsent(label, LabelMetrics::new);
+        CompletableFuture<Object> own = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, own);
+        if (leader == null) {
+            metrics.leaders.increment();
+            try {
+                T result = load.get();
+                own.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                own.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlight.remove(key, own);
+            }
+        }
+        Object leaderResult;
+        try {
+            leaderResult = leader.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            metrics.timeouts.increment();
+            return load.get();
+        } catch (ExecutionException e) {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a coalesced load", e);
+        }
+        metrics.followers.increment();
+        return follow.apply((T) leaderResult);
+    }
+
+    /**
+     * Share of calls with the given label served by waiting for another caller's load, 0 if none.
+     */
+    public double getCoalescingRate(String label) {
+        LabelMetrics metrics = labelMetrics.get(label);
+        if (metrics == null) {
+            return 0;
+        }
+        long followers = metrics.followers.sum();
+        long total = followers + metrics.leaders.sum();
+        return total == 0 ? 0 : (double) followers / total;
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
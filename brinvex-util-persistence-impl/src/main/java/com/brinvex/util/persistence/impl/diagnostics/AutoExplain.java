@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import com.brinvex.util.persistence.api.ExplainOptions;
+import com.brinvex.util.persistence.api.QueryPlan;
+import com.brinvex.util.persistence.api.QueryPlanNode;
+import com.brinvex.util.persistence.impl.explain.QueryExplainer;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Captures the plans of selects slower than a threshold, by explaining them right after they complete.
+ * Supported only on PostgreSQL.
+ * <p>
+ * Captured plans are logged at WARN level by the {@code com.brinvex.util.persistence.impl.diagnostics.AutoExplain}
+ * logger and counted by the {@code autoExplain.count} metric. Plans which could not be taken are counted
+ * by {@code autoExplain.failures} and logged at DEBUG level; they never fail the query.
+ * <p>
+ * The EXPLAIN runs synchronously, on the caller's thread and connection within its transaction, so it adds
+ * a round trip to an already slow DAO call; with {@link ExplainOptions#setAnalyze analyze} the query is even
+ * executed once more. Therefore at most one query is explained per {@link AutoExplainConf#setMinInterval interval},
+ * slow selects in between are only counted by {@code autoExplain.skipped}.
+ */
+public class AutoExplain {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AutoExplain.class);
+
+    private final long thresholdNanos;
+
+    private final ExplainOptions options;
+
+    private final int recentCapacity;
+
+    private final long minIntervalNanos;
+
+    private final AtomicLong lastExplainNanos;
+
+    private final QueryExplainer explainer;
+
+    private final LongAdder explained;
+
+    private final LongAdder failures;
+
+    private final LongAdder skipped;
+
+    private final Deque<ExplainedQuery> recentExplainedQueries = new ArrayDeque<>();
+
+    public AutoExplain(AutoExplainConf conf, QueryExplainer explainer, MetricRegistry metricRegistry) {
+        this.thresholdNanos = conf.getThreshold().toNanos();
+        this.options = conf.getOptions();
+        this.recentCapacity = conf.getRecentCapacity();
+        this.minIntervalNanos = conf.getMinInterval().toNanos();
+        this.lastExplainNanos = new AtomicLong(System.nanoTime() - minIntervalNanos);
+        this.explainer = explainer;
+        this.explained = metricRegistry.counter("autoExplain.count");
+        this.failures = metricRegistry.counter("autoExplain.failures");
+        this.skipped = metricRegistry.counter("autoExplain.skipped");
+    }
+
+    /**
+     * Returns the most recent slow selects with their plans, oldest first.
+     */
+    public List<ExplainedQuery> getRecentExplainedQueries() {
+        synchronized (recentExplainedQueries) {
+            return new ArrayList<>(recentExplainedQueries);
+        }
+    }
+
+    public void reset() {
+        synchronized (recentExplainedQueries) {
+            recentExplainedQueries.clear();
+        }
+    }
+
+    /**
+     * Called after a query completed successfully. Explains it if it is a select slower than the threshold.
+     */
+    public void queryExecuted(EntityManager em, Query query, long nanos) {
+        if (nanos < thresholdNanos || !explainer.isExplainable(query)) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = lastExplainNanos.get();
+        if (now - last < minIntervalNanos || !lastExplainNanos.compareAndSet(last, now)) {
+            skipped.increment();
+            return;
+        }
+        QueryPlan plan;
+        try {
+            plan = explainer.explain(em, query, options);
+        } catch (RuntimeException e) {
+            failures.increment();
+            LOG.debug("Could not explain slow query", e);
+            return;
+        }
+        DaoCallSite callSite = DaoCallSite.find();
+        ExplainedQuery explainedQuery = new ExplainedQuery(
+                Instant.now(),
+                Duration.ofNanos(nanos),
+                callSite == null ? null : callSite.callSite,
+                plan
+        );
+        explained.increment();
+        synchronized (recentExplainedQueries) {
+            if (recentExplainedQueries.size() >= recentCapacity) {
+                recentExplainedQueries.pollFirst();
+            }
+            if (recentCapacity > 0) {
+                recentExplainedQueries.addLast(explainedQuery);
+            }
+        }
+        log(explainedQuery);
+    }
+
+    protected void log(ExplainedQuery explainedQuery) {
+        if (!LOG.isWarnEnabled()) {
+            return;
+        }
+        QueryPlan plan = explainedQuery.getPlan();
+        StringJoiner seqScans = new StringJoiner(", ");
+        for (QueryPlanNode seqScan : plan.getSequentialScans()) {
+            seqScans.add(seqScan.getRelationName());
+        }
+        LOG.warn("Slow query took {} ms at {}: total cost {}, estimated rows {}, sequential scans [{}]\n{}\nbinds: {}\n{}",
+                explainedQuery.getDuration().toMillis(),
+                explainedQuery.getCallSite(),
+                plan.getTotalCost(),
+                plan.getEstimatedRows(),
+                seqScans,
+                plan.getSql(),
+                plan.getBinds(),
+                plan.getRawPlan());
+    }
+}
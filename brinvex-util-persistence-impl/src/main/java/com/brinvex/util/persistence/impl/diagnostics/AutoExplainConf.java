@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import com.brinvex.util.persistence.api.ExplainOptions;
+
+import java.time.Duration;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+public class AutoExplainConf {
+
+    private Duration threshold = Duration.ofSeconds(1);
+    private ExplainOptions options = new ExplainOptions();
+    private int recentCapacity = 100;
+    private Duration minInterval = Duration.ofSeconds(1);
+
+    public Duration getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Selects taking at least this long are explained right after they complete.
+     */
+    public AutoExplainConf setThreshold(Duration threshold) {
+        this.threshold = requireNonNull(threshold);
+        return this;
+    }
+
+    public ExplainOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * With {@link ExplainOptions#setAnalyze analyze}, every slow query is executed once more.
+     */
+    public AutoExplainConf setOptions(ExplainOptions options) {
+        this.options = requireNonNull(options);
+        return this;
+    }
+
+    public int getRecentCapacity() {
+        return recentCapacity;
+    }
+
+    public AutoExplainConf setRecentCapacity(int recentCapacity) {
+        this.recentCapacity = recentCapacity;
+        return this;
+    }
+
+    public Duration getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * Minimum time between two explains on this node, limiting the extra load on the database.
+     * Zero explains every slow select.
+     */
+    public AutoExplainConf setMinInterval(Duration minInterval) {
+        if (minInterval == null || minInterval.isNegative()) {
+            throw new IllegalArgumentException("Illegal minInterval: " + minInterval);
+        }
+        this.minInterval = minInterval;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", AutoExplainConf.class.getSimpleName() + "[", "]")
+                .add("threshold=" + threshold)
+                .add("options=" + options)
+                .add("recentCapacity=" + recentCapacity)
+                .add("minInterval=" + minInterval)
+                .toString();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hands the SQL generated by Hibernate to the {@link SlowQueryLog} and the {@link NPlusOneDetector}.
+ * Register it in the persistence unit:
+ * <pre>
+ * &lt;property name="hibernate.session_factory.statement_inspector"
+ *           value="com.brinvex.util.persistence.impl.diagnostics.CapturingStatementInspector"/&gt;
+ * </pre>
+ * Without it, slow calls are still logged, but with the HQL instead of the SQL, and no N+1 queries are detected.
+ * The SQL is returned unchanged; an application inspector can extend this class and call {@code super}.
+ */
+public class CapturingStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        SqlCapture capture = SqlCapture.CURRENT.get();
+        if (capture != null) {
+            capture.statementPrepared(sql);
+        }
+        NPlusOneDetector.statementPrepared(sql);
+        return sql;
+    }
+}
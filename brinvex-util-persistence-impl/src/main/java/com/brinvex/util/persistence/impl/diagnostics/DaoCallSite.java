@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import com.brinvex.util.persistence.api.AbstractEntityDao;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.cache.EntityCache;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.tx.TxExecutor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.Iterator;
+import java.util.Set;
+
+/**
+ * The DAO method on the current stack and the frame which called into the persistence layer.
+ */
+final class DaoCallSite {
+
+    private static final Set<String> LIBRARY_PACKAGES = Set.of(
+            AbstractEntityDao.class.getPackageName(),
+            EntityDaoSupportImpl.class.getPackageName(),
+            EntityCache.class.getPackageName(),
+            MetricRegistry.class.getPackageName(),
+            TxExecutor.class.getPackageName(),
+            DaoCallSite.class.getPackageName()
+    );
+
+    private static final StackWalker STACK_WALKER = StackWalker.getInstance(StackWalker.Option.RETAIN_CLASS_REFERENCE);
+
+    final String daoType;
+
+    final String daoMethod;
+
+    final String callSite;
+
+    private DaoCallSite(StackWalker.StackFrame daoFrame, StackWalker.StackFrame callerFrame) {
+        StackWalker.StackFrame frame = callerFrame != null ? callerFrame : daoFrame;
+        this.daoType = daoFrame.getClassName();
+        this.daoMethod = daoFrame.getMethodName();
+        this.callSite = frame.getClassName() + "." + frame.getMethodName() + ":" + frame.getLineNumber();
+    }
+
+    /**
+     * Finds the innermost {@link AbstractEntityDao} subclass frame. If the call went through a method
+     * inherited from {@link AbstractEntityDao}, its caller is the call site. Returns null if no DAO is on the stack.
+     */
+    static DaoCallSite find() {
+        return STACK_WALKER.walk(frames -> {
+            StackWalker.StackFrame daoFrame = null;
+            Iterator<StackWalker.StackFrame> iterator = frames.iterator();
+            while (iterator.hasNext()) {
+                StackWalker.StackFrame frame = iterator.next();
+                Class<?> declaringClass = frame.getDeclaringClass();
+                boolean dao = AbstractEntityDao.class.isAssignableFrom(declaringClass);
+                if (dao && declaringClass != AbstractEntityDao.class) {
+                    return new DaoCallSite(frame, null);
+                }
+                if (dao) {
+                    daoFrame = frame;
+                } else if (daoFrame != null) {
+                    return new DaoCallSite(daoFrame, frame);
+                }
+            }
+            return daoFrame == null ? null : new DaoCallSite(daoFrame, null);
+        });
+    }
+
+    /**
+     * Returns the first frame outside of the persistence library, Hibernate and statement inspectors,
+     * e.g. code touching a lazy proxy.
+     */
+    static String findApplicationFrame() {
+        return STACK_WALKER.walk(frames -> frames
+                .filter(f -> !isInfrastructure(f.getClassName())
+                             && !StatementInspector.class.isAssignableFrom(f.getDeclaringClass()))
+                .findFirst()
+                .map(f -> f.getClassName() + "." + f.getMethodName() + ":" + f.getLineNumber())
+                .orElse(null));
+    }
+
+    private static boolean isInfrastructure(String className) {
+        if (className.startsWith("org.hibernate.")
+            || className.startsWith("java.")
+            || className.startsWith("jdk.")
+            || className.startsWith("sun.")
+            || className.startsWith("net.bytebuddy.")
+            || className.contains("$HibernateProxy$")) {
+            return true;
+        }
+        int lastDot = className.lastIndexOf('.');
+        return lastDot > 0 && LIBRARY_PACKAGES.contains(className.substring(0, lastDot));
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import com.brinvex.util.persistence.api.QueryPlan;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.StringJoiner;
+
+/**
+ * A slow select together with its plan, captured by {@link AutoExplain}.
+ */
+public class ExplainedQuery {
+
+    private final Instant observedAt;
+
+    private final Duration duration;
+
+    private final String callSite;
+
+    private final QueryPlan plan;
+
+    public ExplainedQuery(Instant observedAt, Duration duration, String callSite, QueryPlan plan) {
+        this.observedAt = observedAt;
+        this.duration = duration;
+        this.callSite = callSite;
+        this.plan = plan;
+    }
+
+    public Instant getObservedAt() {
+        return observedAt;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Where the DAO was called from, e.g. {@code com.acme.OrderService.list:42}, null if no DAO was on the stack.
+     */
+    public String getCallSite() {
+        return callSite;
+    }
+
+    public QueryPlan getPlan() {
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", ExplainedQuery.class.getSimpleName() + "[", "]")
+                .add("observedAt=" + observedAt)
+                .add("duration=" + duration)
+                .add("callSite='" + callSite + "'")
+                .add("plan=" + plan)
+                .toString();
+    }
+}
@@ -0,0 +1,357 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.PluralAttribute;
+import org.hibernate.Hibernate;
+import org.hibernate.action.spi.AfterTransactionCompletionProcess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * Detects the same select executed repeatedly within one transaction, typically lazy associations
+ * initialized one by one in a loop over a DAO result.
+ * <p>
+ * Statements are counted per transaction by {@link SqlFingerprint}. When a count reaches the threshold, an incident
+ * is reported once per statement shape and transaction. A repeated lazy load is attributed to the most recent DAO call
+ * which loaded entities owning the lazy association, any other repeated statement to the DAO call issuing it.
+ * Depending on {@link NPlusOneDetectorConf#setReaction} the incident is counted by the {@code nPlusOne.detected} metric,
+ * logged at WARN level, or fails the statement with {@link NPlusOneQueryException}.
+ * <p>
+ * Tracking starts with the first DAO call in a transaction and requires {@link CapturingStatementInspector}
+ * registered in the persistence unit. Every tracked DAO call walks the stack to find its call site.
+ */
+public class NPlusOneDetector {
+
+    private static final Logger LOG = LoggerFactory.getLogger(NPlusOneDetector.class);
+
+    private static final Pattern QUERY_STATEMENT = Pattern.compile("^\\s*(?:select|with)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final ThreadLocal<Tracker> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Weak, so that closed factories can be collected. The listeners themselves do not reference any detector.
+     */
+    private static final Set<SessionFactoryImplementor> LISTENED_FACTORIES = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private static final class StatementCount {
+        private int count;
+        private boolean reported;
+    }
+
+    /**
+     * State of one transaction, bound to the thread which runs it.
+     */
+    private static final class Tracker {
+        private final NPlusOneDetector detector;
+        private final SessionImplementor session;
+        private final Tracker previous;
+        private final Map<Class<?>, DaoCallSite> daoLoads = new LinkedHashMap<>();
+        private final Map<String, StatementCount> statements = new HashMap<>();
+        private int daoDepth;
+        private String lazyEntityName;
+        private String lazyCollectionRole;
+        private String lazyCollectionOwner;
+
+        private Tracker(NPlusOneDetector detector, SessionImplementor session, Tracker previous) {
+            this.detector = detector;
+            this.session = session;
+            this.previous = previous;
+        }
+
+        private void daoLoad(Class<?> entityType, DaoCallSite callSite) {
+            daoLoads.remove(entityType);
+            daoLoads.put(entityType, callSite);
+        }
+
+        private void lazyLoad(String entityName, String collectionRole, String collectionOwner) {
+            if (daoDepth == 0) {
+                this.lazyEntityName = entityName;
+                this.lazyCollectionRole = collectionRole;
+                this.lazyCollectionOwner = collectionOwner;
+            }
+        }
+    }
+
+    private final NPlusOneDetectorConf.Reaction reaction;
+
+    private final int threshold;
+
+    private final int recentCapacity;
+
+    private final LongAdder detected;
+
+    private final Deque<NPlusOneIncident> recentIncidents = new ArrayDeque<>();
+
+    public NPlusOneDetector(NPlusOneDetectorConf conf, MetricRegistry metricRegistry) {
+        this.reaction = conf.getReaction();
+        this.threshold = conf.getThreshold();
+        this.recentCapacity = conf.getRecentCapacity();
+        this.detected = metricRegistry.counter("nPlusOne.detected");
+    }
+
+    /**
+     * Returns the most recent incidents, oldest first.
+     */
+    public List<NPlusOneIncident> getRecentIncidents() {
+        synchronized (recentIncidents) {
+            return new ArrayList<>(recentIncidents);
+        }
+    }
+
+    public void reset() {
+        synchronized (recentIncidents) {
+            recentIncidents.clear();
+        }
+    }
+
+    /**
+     * Runs a DAO call and remembers which entity type it loaded and where from.
+     * Outside of a transaction the call is not tracked.
+     */
+    public <R> R execute(EntityManager em, Supplier<R> call) {
+        Tracker tracker = CURRENT.get();
+        SessionImplementor session = null;
+        if (tracker == null || tracker.daoDepth == 0) {
+            session = em.unwrap(SessionImplementor.class);
+            if (tracker == null || tracker.session != session) {
+                if (!session.isTransactionInProgress()) {
+                    return call.get();
+                }
+                tracker = begin(session, tracker);
+            }
+        }
+        tracker.daoDepth++;
+        R result;
+        try {
+            result = call.get();
+        } finally {
+            tracker.daoDepth--;
+        }
+        if (tracker.daoDepth == 0) {
+            Class<?> entityType = entityType(session, result);
+            if (entityType != null) {
+                tracker.daoLoad(entityType, DaoCallSite.find());
+            }
+        }
+        return result;
+    }
+
+    private Tracker begin(SessionImplementor session, Tracker previous) {
+        listen(session.getFactory());
+        Tracker tracker = new Tracker(this, session, previous);
+        CURRENT.set(tracker);
+        session.getActionQueue().registerProcess((AfterTransactionCompletionProcess) (success, s) -> {
+            if (CURRENT.get() == tracker) {
+                if (tracker.previous == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(tracker.previous);
+                }
+            }
+        });
+        return tracker;
+    }
+
+    /**
+     * Lazy loads are recognized by listeners added to the session factory once, shared by all detectors;
+     * they do nothing on threads without a tracked transaction. Called once per tracked transaction.
+     */
+    private static void listen(SessionFactoryImplementor sessionFactory) {
+        synchronized (LISTENED_FACTORIES) {
+            if (!LISTENED_FACTORIES.add(sessionFactory)) {
+                return;
+            }
+            EventListenerRegistry registry = sessionFactory.getServiceRegistry().requireService(EventListenerRegistry.class);
+            registry.prependListeners(EventType.LOAD, (LoadEventListener) (event, loadType) -> {
+                Tracker tracker = CURRENT.get();
+                if (tracker != null && loadType == LoadEventListener.IMMEDIATE_LOAD) {
+                    tracker.lazyLoad(event.getEntityClassName(), null, null);
+                }
+            });
+            registry.prependListeners(EventType.INIT_COLLECTION, (InitializeCollectionEventListener) event -> {
+                Tracker tracker = CURRENT.get();
+                if (tracker != null && !event.getCollection().wasInitialized()) {
+                    tracker.lazyLoad(null, event.getCollection().getRole(), event.getAffectedOwnerEntityName());
+                }
+            });
+        }
+    }
+
+    /**
+     * Called by {@link CapturingStatementInspector} for every statement prepared on the current thread.
+     */
+    static void statementPrepared(String sql) {
+        Tracker tracker = CURRENT.get();
+        if (tracker != null) {
+            tracker.detector.count(tracker, sql);
+        }
+    }
+
+    private void count(Tracker tracker, String sql) {
+        String lazyEntityName = tracker.lazyEntityName;
+        String lazyCollectionRole = tracker.lazyCollectionRole;
+        String lazyCollectionOwner = tracker.lazyCollectionOwner;
+        tracker.lazyLoad(null, null, null);
+        if (!QUERY_STATEMENT.matcher(sql).find()) {
+            return;
+        }
+        String fingerprint = SqlFingerprint.normalize(sql);
+        StatementCount statementCount = tracker.statements.computeIfAbsent(fingerprint, k -> new StatementCount());
+        statementCount.count++;
+        if (statementCount.reported || statementCount.count < threshold) {
+            return;
+        }
+        statementCount.reported = true;
+
+        SessionFactoryImplementor sessionFactory = tracker.session.getFactory();
+        DaoCallSite loadedBy;
+        String lazyLoadedType;
+        if (lazyCollectionRole != null) {
+            lazyLoadedType = lazyCollectionRole;
+            loadedBy = findDaoLoad(tracker, entityClass(sessionFactory, lazyCollectionOwner), false);
+        } else if (lazyEntityName != null) {
+            lazyLoadedType = lazyEntityName;
+            loadedBy = findDaoLoad(tracker, entityClass(sessionFactory, lazyEntityName), true);
+        } else {
+            lazyLoadedType = null;
+            loadedBy = tracker.daoDepth > 0 ? DaoCallSite.find() : null;
+        }
+        NPlusOneIncident incident = new NPlusOneIncident(
+                Instant.now(),
+                SqlFingerprint.id(fingerprint),
+                sql,
+                statementCount.count,
+                lazyLoadedType,
+                loadedBy == null ? null : loadedBy.daoType,
+                loadedBy == null ? null : loadedBy.daoMethod,
+                loadedBy == null ? null : loadedBy.callSite,
+                DaoCallSite.findApplicationFrame()
+        );
+        detected.increment();
+        synchronized (recentIncidents) {
+            if (recentIncidents.size() >= recentCapacity) {
+                recentIncidents.pollFirst();
+            }
+            if (recentCapacity > 0) {
+                recentIncidents.addLast(incident);
+            }
+        }
+        if (reaction != NPlusOneDetectorConf.Reaction.METRIC) {
+            log(incident);
+        }
+        if (reaction == NPlusOneDetectorConf.Reaction.FAIL) {
+            throw new NPlusOneQueryException(incident);
+        }
+    }
+
+    protected void log(NPlusOneIncident incident) {
+        if (!LOG.isWarnEnabled()) {
+            return;
+        }
+        LOG.warn("N+1 query {} executed {} times in one transaction, lazy load of {}, loaded by {}.{} at {}, triggered at {}\n{}",
+                incident.getFingerprintId(),
+                incident.getCount(),
+                incident.getLazyLoadedType(),
+                incident.getLoadedByDaoType(),
+                incident.getLoadedByDaoMethod(),
+                incident.getLoadedByCallSite(),
+                incident.getTriggeredAt(),
+                incident.getSql());
+    }
+
+    /**
+     * Returns the most recent DAO load of the given type, or of a type with an association to it if {@code target}.
+     */
+    private static DaoCallSite findDaoLoad(Tracker tracker, Class<?> type, boolean target) {
+        if (type == null) {
+            return null;
+        }
+        List<Map.Entry<Class<?>, DaoCallSite>> loads = new ArrayList<>(tracker.daoLoads.entrySet());
+        for (int i = loads.size() - 1; i >= 0; i--) {
+            Class<?> loadedType = loads.get(i).getKey();
+            boolean match = target
+                    ? hasAssociation(tracker.session.getFactory(), loadedType, type)
+                    : type.isAssignableFrom(loadedType);
+            if (match) {
+                return loads.get(i).getValue();
+            }
+        }
+        return null;
+    }
+
+    private static boolean hasAssociation(SessionFactoryImplementor sessionFactory, Class<?> ownerType, Class<?> targetType) {
+        for (Attribute<?, ?> attribute : sessionFactory.getJpaMetamodel().entity(ownerType).getAttributes()) {
+            if (!attribute.isAssociation()) {
+                continue;
+            }
+            Class<?> associatedType = attribute instanceof PluralAttribute
+                    ? ((PluralAttribute<?, ?, ?>) attribute).getElementType().getJavaType()
+                    : attribute.getJavaType();
+            if (associatedType.isAssignableFrom(targetType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Class<?> entityClass(SessionFactoryImplementor sessionFactory, String entityName) {
+        if (entityName == null) {
+            return null;
+        }
+        EntityPersister persister = sessionFactory.getMappingMetamodel().findEntityDescriptor(entityName);
+        return persister == null ? null : persister.getMappedClass();
+    }
+
+    private static Class<?> entityType(SessionImplementor session, Object result) {
+        Object entity = result;
+        if (result instanceof Collection) {
+            Collection<?> collection = (Collection<?>) result;
+            entity = collection.isEmpty() ? null : collection.iterator().next();
+        }
+        if (entity == null) {
+            return null;
+        }
+        Class<?> type = Hibernate.getClass(entity);
+        return session.getFactory().getMappingMetamodel().findEntityDescriptor(type) == null ? null : type;
+    }
+}
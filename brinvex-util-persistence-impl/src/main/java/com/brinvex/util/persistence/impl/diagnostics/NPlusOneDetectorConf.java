@@ -0,0 +1,89 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+public class NPlusOneDetectorConf {
+
+    public enum Reaction {
+
+        /**
+         * Only count the detection in the {@code nPlusOne.detected} metric.
+         */
+        METRIC,
+
+        /**
+         * Count it and log it at WARN level.
+         */
+        WARN,
+
+        /**
+         * Count it, log it and throw {@link NPlusOneQueryException} from the statement which crossed the threshold.
+         * Meant for tests.
+         */
+        FAIL,
+
+    }
+
+    private int threshold = 5;
+    private Reaction reaction = Reaction.WARN;
+    private int recentCapacity = 100;
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * A select is reported when the same statement shape is executed this many times in one transaction.
+     */
+    public NPlusOneDetectorConf setThreshold(int threshold) {
+        if (threshold < 2) {
+            throw new IllegalArgumentException("Illegal threshold: " + threshold);
+        }
+        this.threshold = threshold;
+        return this;
+    }
+
+    public Reaction getReaction() {
+        return reaction;
+    }
+
+    public NPlusOneDetectorConf setReaction(Reaction reaction) {
+        this.reaction = requireNonNull(reaction);
+        return this;
+    }
+
+    public int getRecentCapacity() {
+        return recentCapacity;
+    }
+
+    public NPlusOneDetectorConf setRecentCapacity(int recentCapacity) {
+        this.recentCapacity = recentCapacity;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", NPlusOneDetectorConf.class.getSimpleName() + "[", "]")
+                .add("threshold=" + threshold)
+                .add("reaction=" + reaction)
+                .add("recentCapacity=" + recentCapacity)
+                .toString();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import java.time.Instant;
+import java.util.StringJoiner;
+
+/**
+ * A select statement executed repeatedly within one transaction, see {@link NPlusOneDetector}.
+ */
+public class NPlusOneIncident {
+
+    private final Instant observedAt;
+
+    private final String fingerprintId;
+
+    private final String sql;
+
+    private final int count;
+
+    private final String lazyLoadedType;
+
+    private final String loadedByDaoType;
+
+    private final String loadedByDaoMethod;
+
+    private final String loadedByCallSite;
+
+    private final String triggeredAt;
+
+    public NPlusOneIncident(
+            Instant observedAt,
+            String fingerprintId,
+            String sql,
+            int count,
+            String lazyLoadedType,
+            String loadedByDaoType,
+            String loadedByDaoMethod,
+            String loadedByCallSite,
+            String triggeredAt
+    ) {
+        this.observedAt = observedAt;
+        this.fingerprintId = fingerprintId;
+        this.sql = sql;
+        this.count = count;
+        this.lazyLoadedType = lazyLoadedType;
+        this.loadedByDaoType = loadedByDaoType;
+        this.loadedByDaoMethod = loadedByDaoMethod;
+        this.loadedByCallSite = loadedByCallSite;
+        this.triggeredAt = triggeredAt;
+    }
+
+    public Instant getObservedAt() {
+        return observedAt;
+    }
+
+    public String getFingerprintId() {
+        return fingerprintId;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Number of executions in the transaction when the threshold was reached.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * The entity or collection role initialized lazily by the statements, null if they were issued by DAO calls.
+     */
+    public String getLazyLoadedType() {
+        return lazyLoadedType;
+    }
+
+    /**
+     * The DAO class whose call loaded the entities owning the lazy association,
+     * or which issued the statements itself.
+     */
+    public String getLoadedByDaoType() {
+        return loadedByDaoType;
+    }
+
+    public String getLoadedByDaoMethod() {
+        return loadedByDaoMethod;
+    }
+
+    public String getLoadedByCallSite() {
+        return loadedByCallSite;
+    }
+
+    /**
+     * The application frame executing the statement which reached the threshold,
+     * e.g. the loop touching the lazy association.
+     */
+    public String getTriggeredAt() {
+        return triggeredAt;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", NPlusOneIncident.class.getSimpleName() + "[", "]")
+                .add("fingerprintId='" + fingerprintId + "'")
+                .add("count=" + count)
+                .add("lazyLoadedType='" + lazyLoadedType + "'")
+                .add("loadedBy='" + loadedByDaoType + "." + loadedByDaoMethod + "'")
+                .add("loadedByCallSite='" + loadedByCallSite + "'")
+                .add("triggeredAt='" + triggeredAt + "'")
+                .add("sql='" + sql + "'")
+                .toString();
+    }
+}
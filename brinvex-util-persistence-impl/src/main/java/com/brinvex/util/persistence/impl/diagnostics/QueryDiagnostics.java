@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import com.brinvex.util.persistence.impl.DatabaseCapabilities;
+import com.brinvex.util.persistence.impl.jfr.QueryEvent;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.query.spi.SqmQuery;
+import org.hibernate.query.sqm.tree.SqmDeleteOrUpdateStatement;
+import org.hibernate.query.sqm.tree.SqmStatement;
+import org.hibernate.query.sqm.tree.from.SqmRoot;
+import org.hibernate.query.sqm.tree.select.SqmSelectStatement;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Executes queries and entity loads through the slow query log, the N+1 query detector, the transaction profiler,
+ * auto-explain and JFR, each only if enabled. With everything disabled a call costs one JFR enabled check.
+ */
+public class QueryDiagnostics {
+
+    private final SlowQueryLog slowQueryLog;
+
+    private final NPlusOneDetector nPlusOneDetector;
+
+    private final TransactionProfiler transactionProfiler;
+
+    private final AutoExplain autoExplain;
+
+    private final boolean enabled;
+
+    /**
+     * Each argument is null if the corresponding diagnostic is not enabled.
+     */
+    public QueryDiagnostics(
+            SlowQueryLog slowQueryLog,
+            NPlusOneDetector nPlusOneDetector,
+            TransactionProfiler transactionProfiler,
+            AutoExplain autoExplain
+    ) {
+        this.slowQueryLog = slowQueryLog;
+        this.nPlusOneDetector = nPlusOneDetector;
+        this.transactionProfiler = transactionProfiler;
+        this.autoExplain = autoExplain;
+        this.enabled = slowQueryLog != null || nPlusOneDetector != null || transactionProfiler != null || autoExplain != null;
+    }
+
+    public SlowQueryLog getSlowQueryLog() {
+        return slowQueryLog;
+    }
+
+    public NPlusOneDetector getNPlusOneDetector() {
+        return nPlusOneDetector;
+    }
+
+    public TransactionProfiler getTransactionProfiler() {
+        return transactionProfiler;
+    }
+
+    public AutoExplain getAutoExplain() {
+        return autoExplain;
+    }
+
+    public <R> List<R> getResultList(EntityManager em, TypedQuery<R> typedQuery) {
+        QueryEvent event = new QueryEvent();
+        if (!enabled && !event.isEnabled()) {
+            return typedQuery.getResultList();
+        }
+        return diagnose(em, event, "getResultList", typedQuery, List::size, () -> slowQueryLog == null
+                ? typedQuery.getResultList()
+                : slowQueryLog.execute(em, typedQuery, typedQuery::getResultList, List::size));
+    }
+
+    public <R> R getSingleResult(EntityManager em, TypedQuery<R> typedQuery) {
+        QueryEvent event = new QueryEvent();
+        if (!enabled && !event.isEnabled()) {
+            return typedQuery.getSingleResult();
+        }
+        return diagnose(em, event, "getSingleResult", typedQuery, r -> 1, () -> slowQueryLog == null
+                ? typedQuery.getSingleResult()
+                : slowQueryLog.execute(em, typedQuery, typedQuery::getSingleResult, r -> 1));
+    }
+
+    public int executeUpdate(EntityManager em, Query query) {
+        QueryEvent event = new QueryEvent();
+        if (!enabled && !event.isEnabled()) {
+            return query.executeUpdate();
+        }
+        return diagnose(em, event, "executeUpdate", query, Integer::intValue, () -> slowQueryLog == null
+                ? query.executeUpdate()
+                : slowQueryLog.execute(em, query, query::executeUpdate, Integer::intValue));
+    }
+
+    /**
+     * Auto-explain does not apply, there is no query to explain.
+     */
+    public <ENTITY> ENTITY find(EntityManager em, Class<ENTITY> entityType, Object id, Supplier<ENTITY> load) {
+        QueryEvent event = new QueryEvent();
+        if (!enabled && !event.isEnabled()) {
+            return load.get();
+        }
+        return diagnose(em, event, "find", entityType, e -> e == null ? 0 : 1, () -> slowQueryLog == null
+                ? load.get()
+                : slowQueryLog.find(em, entityType, id, load));
+    }
+
+    /**
+     * Starts profiling the current transaction for writes which do not go through a query, e.g. persist.
+     */
+    public void touch(EntityManager em) {
+        if (transactionProfiler != null) {
+            transactionProfiler.touch(em);
+        }
+    }
+
+    /**
+     * The target is either the executed query or the loaded entity type.
+     */
+    private <R> R diagnose(
+            EntityManager em,
+            QueryEvent event,
+            String operation,
+            Object target,
+            ToLongFunction<R> rows,
+            Supplier<R> call
+    ) {
+        event.begin();
+        long startNanos = autoExplain == null ? 0 : System.nanoTime();
+        R result;
+        try {
+            result = transactionProfiler == null
+                    ? detect(em, call)
+                    : transactionProfiler.execute(em, () -> detect(em, call), rows);
+        } catch (RuntimeException e) {
+            if (event.isEnabled()) {
+                event.end(operation, entityType(target), -1, true);
+            }
+            throw e;
+        }
+        if (event.isEnabled()) {
+            event.end(operation, entityType(target), rows.applyAsLong(result), false);
+        }
+        if (autoExplain != null && target instanceof Query && DatabaseCapabilities.of(em.getEntityManagerFactory()).isPostgresql()) {
+            autoExplain.queryExecuted(em, (Query) target, System.nanoTime() - startNanos);
+        }
+        return result;
+    }
+
+    private <R> R detect(EntityManager em, Supplier<R> call) {
+        return nPlusOneDetector == null ? call.get() : nPlusOneDetector.execute(em, call);
+    }
+
+    /**
+     * Returns the first root of a select or the target of a delete or update, null for native queries.
+     */
+    private static Class<?> entityType(Object target) {
+        if (target instanceof Class) {
+            return (Class<?>) target;
+        }
+        if (!(target instanceof SqmQuery)) {
+            return null;
+        }
+        SqmStatement<?> statement = ((SqmQuery) target).getSqmStatement();
+        if (statement instanceof SqmSelectStatement) {
+            List<SqmRoot<?>> roots = ((SqmSelectStatement<?>) statement).getQuerySpec().getFromClause().getRoots();
+            return roots.isEmpty() ? null : roots.get(0).getJavaType();
+        }
+        if (statement instanceof SqmDeleteOrUpdateStatement) {
+            return ((SqmDeleteOrUpdateStatement<?>) statement).getTarget().getJavaType();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * A DAO call which took longer than the {@link SlowQueryLogConf#setThreshold threshold}.
+ */
+public class SlowQuery {
+
+    private final Instant observedAt;
+
+    private final String fingerprintId;
+
+    private final String sql;
+
+    private final List<String> statements;
+
+    private final List<String> binds;
+
+    private final Duration duration;
+
+    private final Duration executionDuration;
+
+    private final int rows;
+
+    private final String daoType;
+
+    private final String daoMethod;
+
+    private final String callSite;
+
+    private final String failure;
+
+    public SlowQuery(
+            Instant observedAt,
+            String fingerprintId,
+            String sql,
+            List<String> statements,
+            List<String> binds,
+            Duration duration,
+            Duration executionDuration,
+            int rows,
+            String daoType,
+            String daoMethod,
+            String callSite,
+            String failure
+    ) {
+        this.observedAt = observedAt;
+        this.fingerprintId = fingerprintId;
+        this.sql = sql;
+        this.statements = List.copyOf(statements);
+        this.binds = List.copyOf(binds);
+        this.duration = duration;
+        this.executionDuration = executionDuration;
+        this.rows = rows;
+        this.daoType = daoType;
+        this.daoMethod = daoMethod;
+        this.callSite = callSite;
+        this.failure = failure;
+    }
+
+    public Instant getObservedAt() {
+        return observedAt;
+    }
+
+    public String getFingerprintId() {
+        return fingerprintId;
+    }
+
+    /**
+     * The main statement of the call, or its HQL if the SQL was not captured,
+     * see {@link CapturingStatementInspector}.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * All statements issued by the call, e.g. including an auto-flush or secondary selects, in order.
+     */
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    /**
+     * Bound values of the main statement, redacted according to the configuration.
+     */
+    public List<String> getBinds() {
+        return binds;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Time spent in JDBC statement execution.
+     */
+    public Duration getExecutionDuration() {
+        return executionDuration;
+    }
+
+    /**
+     * The rest of the duration: statement preparation, reading the result set and hydrating entities.
+     */
+    public Duration getHydrationDuration() {
+        return duration.minus(executionDuration);
+    }
+
+    /**
+     * Number of rows returned or affected, -1 if the call failed.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Name of the {@link com.brinvex.util.persistence.api.AbstractEntityDao} class which issued the call, if any.
+     */
+    public String getDaoType() {
+        return daoType;
+    }
+
+    public String getDaoMethod() {
+        return daoMethod;
+    }
+
+    /**
+     * The frame calling into the persistence layer, e.g. {@code com.acme.SalaryDao.findByEmployeeId:42}.
+     */
+    public String getCallSite() {
+        return callSite;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", SlowQuery.class.getSimpleName() + "[", "]")
+                .add("observedAt=" + observedAt)
+                .add("fingerprintId='" + fingerprintId + "'")
+                .add("duration=" + duration)
+                .add("executionDuration=" + executionDuration)
+                .add("rows=" + rows)
+                .add("callSite='" + callSite + "'")
+                .add("sql='" + sql + "'")
+                .add("binds=" + binds)
+                .add("failure='" + failure + "'")
+                .toString();
+    }
+}
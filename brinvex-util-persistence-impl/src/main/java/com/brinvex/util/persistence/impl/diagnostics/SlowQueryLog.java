@@ -0,0 +1,418 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Parameter;
+import jakarta.persistence.Query;
+import org.hibernate.SessionEventListener;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.query.spi.SqmQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.regex.Pattern;
+
+/**
+ * Logs DAO calls slower than a threshold with their SQL, bound values, timing split and call site,
+ * and aggregates statistics of all calls by {@link SqlFingerprint}, to rank optimization targets.
+ * <p>
+ * Only calls which reached the database are recorded; entity and query cache hits are not.
+ * The SQL is known only if {@link CapturingStatementInspector} is registered in the persistence unit.
+ * Slow calls are logged at WARN level by the {@code com.brinvex.util.persistence.impl.diagnostics.SlowQueryLog}
+ * logger and counted by the {@code slowQuery.count} metric.
+ */
+public class SlowQueryLog {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SlowQueryLog.class);
+
+    private static final Pattern QUERY_STATEMENT = Pattern.compile("^\\s*(?:select|with)\\b", Pattern.CASE_INSENSITIVE);
+
+    private static final String REDACTED = "<redacted>";
+
+    private static final class FingerprintStats {
+        private final String fingerprint;
+        private final String fingerprintId;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder slowCount = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAdder executionNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private volatile String lastCallSite;
+
+        private FingerprintStats(String fingerprint) {
+            this.fingerprint = fingerprint;
+            this.fingerprintId = SqlFingerprint.id(fingerprint);
+        }
+
+        private SqlStatistics snapshot() {
+            return new SqlStatistics(
+                    fingerprint,
+                    fingerprintId,
+                    count.sum(),
+                    errors.sum(),
+                    slowCount.sum(),
+                    rows.sum(),
+                    totalNanos.sum(),
+                    executionNanos.sum(),
+                    maxNanos.get(),
+                    lastCallSite
+            );
+        }
+    }
+
+    /**
+     * Reports JDBC execution to the capture of the current thread.
+     * Registered once per session and forgotten when the session ends.
+     */
+    private static final class TimingListener implements SessionEventListener {
+
+        private final transient Set<SessionImplementor> listenedSessions;
+
+        private final transient SessionImplementor session;
+
+        private TimingListener(Set<SessionImplementor> listenedSessions, SessionImplementor session) {
+            this.listenedSessions = listenedSessions;
+            this.session = session;
+        }
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            SqlCapture capture = SqlCapture.CURRENT.get();
+            if (capture != null) {
+                capture.executeStart();
+            }
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            SqlCapture capture = SqlCapture.CURRENT.get();
+            if (capture != null) {
+                capture.executeEnd();
+            }
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            jdbcExecuteStatementStart();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            jdbcExecuteStatementEnd();
+        }
+
+        @Override
+        public void end() {
+            if (listenedSessions != null) {
+                listenedSessions.remove(session);
+            }
+        }
+    }
+
+    private final long thresholdNanos;
+
+    private final int recentCapacity;
+
+    private final int maxFingerprints;
+
+    private final boolean redactBinds;
+
+    private final Set<String> redactedParameterNames;
+
+    private final Set<Class<?>> redactedBindTypes;
+
+    private final int maxBindLength;
+
+    private final LongAdder slowQueries;
+
+    private final LongAdder droppedFingerprints;
+
+    private final Deque<SlowQuery> recentSlowQueries = new ArrayDeque<>();
+
+    private final ConcurrentMap<String, FingerprintStats> statistics = new ConcurrentHashMap<>();
+
+    private final Set<SessionImplementor> listenedSessions = ConcurrentHashMap.newKeySet();
+
+    public SlowQueryLog(SlowQueryLogConf conf, MetricRegistry metricRegistry) {
+        this.thresholdNanos = conf.getThreshold().toNanos();
+        this.recentCapacity = conf.getRecentCapacity();
+        this.maxFingerprints = conf.getMaxFingerprints();
+        this.redactBinds = conf.isRedactBinds();
+        this.redactedParameterNames = Set.copyOf(conf.getRedactedParameterNames());
+        this.redactedBindTypes = Set.copyOf(conf.getRedactedBindTypes());
+        this.maxBindLength = conf.getMaxBindLength();
+        this.slowQueries = metricRegistry.counter("slowQuery.count");
+        this.droppedFingerprints = metricRegistry.counter("slowQuery.droppedFingerprints");
+    }
+
+    /**
+     * Returns the most recent slow calls, oldest first.
+     */
+    public List<SlowQuery> getRecentSlowQueries() {
+        synchronized (recentSlowQueries) {
+            return new ArrayList<>(recentSlowQueries);
+        }
+    }
+
+    /**
+     * Returns statistics of all recorded statements, the ones with the highest total time first.
+     */
+    public List<SqlStatistics> getStatistics() {
+        List<SqlStatistics> result = new ArrayList<>(statistics.size());
+        for (FingerprintStats stats : statistics.values()) {
+            result.add(stats.snapshot());
+        }
+        result.sort(Comparator.comparingLong(SqlStatistics::getTotalNanos).reversed());
+        return result;
+    }
+
+    public void reset() {
+        statistics.clear();
+        synchronized (recentSlowQueries) {
+            recentSlowQueries.clear();
+        }
+    }
+
+    /**
+     * Runs a call executing the given query. Calls nested in another recorded call are part of the outer one.
+     */
+    public <R> R execute(EntityManager em, Query query, Supplier<R> execution, ToIntFunction<? super R> rowCounter) {
+        return record(em, query, null, null, execution, rowCounter);
+    }
+
+    /**
+     * Runs a call loading the entity with the given id.
+     */
+    public <ENTITY> ENTITY find(EntityManager em, Class<ENTITY> entityType, Object id, Supplier<ENTITY> execution) {
+        return record(em, null, entityType, id, execution, e -> e == null ? 0 : 1);
+    }
+
+    private <R> R record(
+            EntityManager em,
+            Query query,
+            Class<?> entityType,
+            Object id,
+            Supplier<R> execution,
+            ToIntFunction<? super R> rowCounter
+    ) {
+        if (SqlCapture.CURRENT.get() != null) {
+            return execution.get();
+        }
+        listen(em);
+        SqlCapture capture = new SqlCapture();
+        SqlCapture.CURRENT.set(capture);
+        long startNanos = System.nanoTime();
+        R result;
+        try {
+            result = execution.get();
+        } catch (RuntimeException e) {
+            recordCall(capture, System.nanoTime() - startNanos, -1, query, entityType, id, e);
+            throw e;
+        } finally {
+            SqlCapture.CURRENT.remove();
+        }
+        recordCall(capture, System.nanoTime() - startNanos, rowCounter.applyAsInt(result), query, entityType, id, null);
+        return result;
+    }
+
+    private void listen(EntityManager em) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        if (!listenedSessions.contains(session) && listenedSessions.add(session)) {
+            session.getEventListenerManager().addListener(new TimingListener(listenedSessions, session));
+        }
+    }
+
+    private void recordCall(
+            SqlCapture capture,
+            long nanos,
+            int rows,
+            Query query,
+            Class<?> entityType,
+            Object id,
+            RuntimeException failure
+    ) {
+        if (capture.executions == 0 && failure == null) {
+            return;
+        }
+        String sql = mainStatement(capture.statements);
+        if (sql == null) {
+            sql = query != null ? queryString(query) : "find " + entityType.getName();
+        }
+        String fingerprint = SqlFingerprint.normalize(sql);
+        FingerprintStats stats = statistics.get(fingerprint);
+        if (stats == null) {
+            if (statistics.size() < maxFingerprints) {
+                stats = statistics.computeIfAbsent(fingerprint, FingerprintStats::new);
+            } else {
+                droppedFingerprints.increment();
+            }
+        }
+        boolean slow = nanos >= thresholdNanos;
+        if (stats != null) {
+            stats.count.increment();
+            stats.totalNanos.add(nanos);
+            stats.executionNanos.add(capture.executionNanos);
+            stats.maxNanos.accumulate(nanos);
+            if (rows > 0) {
+                stats.rows.add(rows);
+            }
+            if (failure != null) {
+                stats.errors.increment();
+            }
+            if (slow) {
+                stats.slowCount.increment();
+            }
+        }
+        if (!slow) {
+            return;
+        }
+        DaoCallSite callSite = DaoCallSite.find();
+        String callSiteName = callSite == null ? null : callSite.callSite;
+        if (stats != null) {
+            stats.lastCallSite = callSiteName;
+        }
+        SlowQuery slowQuery = new SlowQuery(
+                Instant.now(),
+                SqlFingerprint.id(fingerprint),
+                sql,
+                capture.statements,
+                query != null ? renderBinds(query) : List.of(renderBind("id", id)),
+                Duration.ofNanos(nanos),
+                Duration.ofNanos(capture.executionNanos),
+                rows,
+                callSite == null ? null : callSite.daoType,
+                callSite == null ? null : callSite.daoMethod,
+                callSiteName,
+                failure == null ? null : failure.getClass().getName() + ": " + failure.getMessage()
+        );
+        slowQueries.increment();
+        synchronized (recentSlowQueries) {
+            if (recentSlowQueries.size() >= recentCapacity) {
+                recentSlowQueries.pollFirst();
+            }
+            if (recentCapacity > 0) {
+                recentSlowQueries.addLast(slowQuery);
+            }
+        }
+        log(slowQuery);
+    }
+
+    protected void log(SlowQuery slowQuery) {
+        if (!LOG.isWarnEnabled()) {
+            return;
+        }
+        LOG.warn("Slow query {} took {} ms (execution {} ms, hydration {} ms, rows {}) at {}{}\n{}\nbinds: {}",
+                slowQuery.getFingerprintId(),
+                slowQuery.getDuration().toMillis(),
+                slowQuery.getExecutionDuration().toMillis(),
+                slowQuery.getHydrationDuration().toMillis(),
+                slowQuery.getRows(),
+                slowQuery.getCallSite(),
+                slowQuery.getFailure() == null ? "" : ", failed with " + slowQuery.getFailure(),
+                slowQuery.getSql(),
+                slowQuery.getBinds());
+    }
+
+    private static String mainStatement(List<String> statements) {
+        for (String statement : statements) {
+            if (QUERY_STATEMENT.matcher(statement).find()) {
+                return statement;
+            }
+        }
+        return statements.isEmpty() ? null : statements.get(statements.size() - 1);
+    }
+
+    private static String queryString(Query query) {
+        if (query instanceof SqmQuery) {
+            return SqlFingerprint.normalizeAliases(((SqmQuery) query).getSqmStatement().toHqlString());
+        }
+        return query.toString();
+    }
+
+    private List<String> renderBinds(Query query) {
+        Set<Parameter<?>> parameters = query.getParameters();
+        List<Parameter<?>> sorted = new ArrayList<>(parameters);
+        sorted.sort(Comparator.comparing(Parameter::getPosition, Comparator.nullsLast(Comparator.naturalOrder())));
+        List<String> binds = new ArrayList<>(sorted.size());
+        for (int i = 0; i < sorted.size(); i++) {
+            Parameter<?> parameter = sorted.get(i);
+            String label = parameter.getName() != null ? ":" + parameter.getName()
+                    : parameter.getPosition() != null ? "?" + parameter.getPosition()
+                    : "#" + (i + 1);
+            Object value;
+            try {
+                value = query.isBound(parameter) ? query.getParameterValue(parameter) : "<unbound>";
+            } catch (RuntimeException e) {
+                value = "<unknown>";
+            }
+            binds.add(renderBind(label, value, parameter.getName()));
+        }
+        return binds;
+    }
+
+    private String renderBind(String label, Object value) {
+        return renderBind(label, value, null);
+    }
+
+    private String renderBind(String label, Object value, String parameterName) {
+        if (redactBinds || (parameterName != null && redactedParameterNames.contains(parameterName)) || isRedactedType(value)) {
+            return label + "=" + REDACTED;
+        }
+        String rendered = String.valueOf(value);
+        if (rendered.length() > maxBindLength) {
+            rendered = rendered.substring(0, maxBindLength) + "...";
+        }
+        return label + "=" + rendered;
+    }
+
+    private boolean isRedactedType(Object value) {
+        if (value == null || redactedBindTypes.isEmpty()) {
+            return false;
+        }
+        if (value instanceof Iterable) {
+            for (Object item : (Iterable<?>) value) {
+                if (isRedactedType(item)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        for (Class<?> redactedType : redactedBindTypes) {
+            if (redactedType.isInstance(value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+public class SlowQueryLogConf {
+
+    private Duration threshold = Duration.ofSeconds(1);
+    private int recentCapacity = 100;
+    private int maxFingerprints = 1_000;
+    private boolean redactBinds = false;
+    private final Set<String> redactedParameterNames = new LinkedHashSet<>();
+    private final Set<Class<?>> redactedBindTypes = new LinkedHashSet<>();
+    private int maxBindLength = 100;
+
+    public Duration getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Calls taking at least this long, from the DAO call to the hydrated result, are logged.
+     */
+    public SlowQueryLogConf setThreshold(Duration threshold) {
+        if (threshold.isNegative()) {
+            throw new IllegalArgumentException("Illegal threshold: " + threshold);
+        }
+        this.threshold = threshold;
+        return this;
+    }
+
+    public int getRecentCapacity() {
+        return recentCapacity;
+    }
+
+    public SlowQueryLogConf setRecentCapacity(int recentCapacity) {
+        this.recentCapacity = recentCapacity;
+        return this;
+    }
+
+    public int getMaxFingerprints() {
+        return maxFingerprints;
+    }
+
+    /**
+     * Maximum number of distinct statements with aggregated statistics. Statements seen after
+     * the limit is reached are still logged when slow, but not aggregated.
+     */
+    public SlowQueryLogConf setMaxFingerprints(int maxFingerprints) {
+        if (maxFingerprints < 1) {
+            throw new IllegalArgumentException("Illegal maxFingerprints: " + maxFingerprints);
+        }
+        this.maxFingerprints = maxFingerprints;
+        return this;
+    }
+
+    public boolean isRedactBinds() {
+        return redactBinds;
+    }
+
+    /**
+     * If enabled then no bound values are logged at all.
+     */
+    public SlowQueryLogConf setRedactBinds(boolean redactBinds) {
+        this.redactBinds = redactBinds;
+        return this;
+    }
+
+    public Set<String> getRedactedParameterNames() {
+        return Collections.unmodifiableSet(redactedParameterNames);
+    }
+
+    /**
+     * Values of named query parameters with this name are logged as {@code <redacted>}.
+     */
+    public SlowQueryLogConf addRedactedParameterName(String parameterName) {
+        this.redactedParameterNames.add(requireNonNull(parameterName));
+        return this;
+    }
+
+    public Set<Class<?>> getRedactedBindTypes() {
+        return Collections.unmodifiableSet(redactedBindTypes);
+    }
+
+    /**
+     * Values of this type or its subtypes are logged as {@code <redacted>}, e.g. {@code String.class}.
+     * Criteria queries bind their values as anonymous parameters, so redaction by type is the one
+     * which applies to them.
+     */
+    public SlowQueryLogConf addRedactedBindType(Class<?> bindType) {
+        this.redactedBindTypes.add(requireNonNull(bindType));
+        return this;
+    }
+
+    public int getMaxBindLength() {
+        return maxBindLength;
+    }
+
+    /**
+     * Logged values are truncated to this many characters.
+     */
+    public SlowQueryLogConf setMaxBindLength(int maxBindLength) {
+        if (maxBindLength < 1) {
+            throw new IllegalArgumentException("Illegal maxBindLength: " + maxBindLength);
+        }
+        this.maxBindLength = maxBindLength;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", SlowQueryLogConf.class.getSimpleName() + "[", "]")
+                .add("threshold=" + threshold)
+                .add("recentCapacity=" + recentCapacity)
+                .add("maxFingerprints=" + maxFingerprints)
+                .add("redactBinds=" + redactBinds)
+                .add("redactedParameterNames=" + redactedParameterNames)
+                .add("redactedBindTypes=" + redactedBindTypes)
+                .add("maxBindLength=" + maxBindLength)
+                .toString();
+    }
+}
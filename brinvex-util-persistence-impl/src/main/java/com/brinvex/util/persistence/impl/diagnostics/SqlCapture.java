@@ -0,0 +1,56 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statements and JDBC execution time collected on the current thread while a DAO call runs.
+ */
+final class SqlCapture {
+
+    static final ThreadLocal<SqlCapture> CURRENT = new ThreadLocal<>();
+
+    final List<String> statements = new ArrayList<>(2);
+
+    int executions;
+
+    long executionNanos;
+
+    private boolean executing;
+
+    private long executeStartNanos;
+
+    void statementPrepared(String sql) {
+        statements.add(sql);
+    }
+
+    void executeStart() {
+        if (!executing) {
+            executing = true;
+            executeStartNanos = System.nanoTime();
+        }
+    }
+
+    void executeEnd() {
+        if (executing) {
+            executing = false;
+            executions++;
+            executionNanos += System.nanoTime() - executeStartNanos;
+        }
+    }
+}
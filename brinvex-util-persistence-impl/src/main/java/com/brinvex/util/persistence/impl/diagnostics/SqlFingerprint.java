@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes SQL so that statements differing only in literals, in-list lengths or formatting share a fingerprint.
+ */
+public final class SqlFingerprint {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+    private static final Pattern PARAMETER_LIST = Pattern.compile(
+            "\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)", Pattern.CASE_INSENSITIVE);
+
+    private static final Pattern GENERATED_ALIAS = Pattern.compile("\\balias_-?\\d+\\b");
+
+    private static final int MAX_CACHED = 10_000;
+
+    private static final Map<String, String> CACHE = new ConcurrentHashMap<>();
+
+    private SqlFingerprint() {
+    }
+
+    public static String normalize(String sql) {
+        String normalized = CACHE.get(sql);
+        if (normalized == null) {
+            normalized = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+            normalized = STRING_LITERAL.matcher(normalized).replaceAll("?");
+            normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+            normalized = PARAMETER_LIST.matcher(normalized).replaceAll("in (?...)");
+            if (CACHE.size() >= MAX_CACHED) {
+                CACHE.clear();
+            }
+            CACHE.put(sql, normalized);
+        }
+        return normalized;
+    }
+
+    /**
+     * Criteria queries render with aliases derived from identity hash codes,
+     * so two equal queries built separately would differ without this.
+     */
+    public static String normalizeAliases(String hql) {
+        Matcher matcher = GENERATED_ALIAS.matcher(hql);
+        if (!matcher.find()) {
+            return hql;
+        }
+        Map<String, String> aliases = new HashMap<>();
+        StringBuilder sb = new StringBuilder(hql.length());
+        do {
+            String alias = aliases.computeIfAbsent(matcher.group(), a -> "a" + aliases.size());
+            matcher.appendReplacement(sb, alias);
+        } while (matcher.find());
+        matcher.appendTail(sb);
+        return sb.toString();
+    }
+
+    /**
+     * Returns a short stable identifier of a normalized statement, handy for grepping logs.
+     */
+    public static String id(String normalizedSql) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, n = normalizedSql.length(); i < n; i++) {
+            hash ^= normalizedSql.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        String hex = Long.toHexString(hash);
+        return "0".repeat(16 - hex.length()) + hex;
+    }
+}
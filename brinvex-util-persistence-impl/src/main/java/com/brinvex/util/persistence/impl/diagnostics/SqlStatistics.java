@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import java.util.StringJoiner;
+
+/**
+ * Aggregated statistics of all DAO calls whose main statement has the same {@link SqlFingerprint}.
+ */
+public class SqlStatistics {
+
+    private final String fingerprint;
+
+    private final String fingerprintId;
+
+    private final long count;
+
+    private final long errors;
+
+    private final long slowCount;
+
+    private final long rows;
+
+    private final long totalNanos;
+
+    private final long executionNanos;
+
+    private final long maxNanos;
+
+    private final String lastCallSite;
+
+    SqlStatistics(
+            String fingerprint,
+            String fingerprintId,
+            long count,
+            long errors,
+            long slowCount,
+            long rows,
+            long totalNanos,
+            long executionNanos,
+            long maxNanos,
+            String lastCallSite
+    ) {
+        this.fingerprint = fingerprint;
+        this.fingerprintId = fingerprintId;
+        this.count = count;
+        this.errors = errors;
+        this.slowCount = slowCount;
+        this.rows = rows;
+        this.totalNanos = totalNanos;
+        this.executionNanos = executionNanos;
+        this.maxNanos = maxNanos;
+        this.lastCallSite = lastCallSite;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getFingerprintId() {
+        return fingerprintId;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    public long getSlowCount() {
+        return slowCount;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getExecutionNanos() {
+        return executionNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * Call site of the most recent slow call, null if none was slow.
+     */
+    public String getLastCallSite() {
+        return lastCallSite;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", SqlStatistics.class.getSimpleName() + "[", "]")
+                .add("fingerprintId='" + fingerprintId + "'")
+                .add("count=" + count)
+                .add("totalNanos=" + totalNanos)
+                .add("meanNanos=" + getMeanNanos())
+                .add("maxNanos=" + maxNanos)
+                .add("rows=" + rows)
+                .add("slowCount=" + slowCount)
+                .add("errors=" + errors)
+                .add("fingerprint='" + fingerprint + "'")
+                .toString();
+    }
+}
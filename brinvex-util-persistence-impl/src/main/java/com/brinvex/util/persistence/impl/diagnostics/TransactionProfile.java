@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.StringJoiner;
+
+/**
+ * Where the time of one transaction went, from its first profiled DAO call until it committed or rolled back.
+ * <p>
+ * The durations do not overlap: {@link #getFlushDuration() flush} excludes the statements it executed,
+ * {@link #getHydrationDuration() hydration} excludes the statements and auto flushes of the DAO queries,
+ * and whatever remains, typically application code between DAO calls, is {@link #getOtherDuration() other}.
+ */
+public class TransactionProfile {
+
+    private final Instant startedAt;
+
+    private final boolean committed;
+
+    private final Duration duration;
+
+    private final Duration connectionAcquisitionDuration;
+
+    private final int connectionAcquisitions;
+
+    private final Duration statementPrepareDuration;
+
+    private final Duration jdbcExecuteDuration;
+
+    private final int statements;
+
+    private final int batches;
+
+    private final Duration hydrationDuration;
+
+    private final int daoQueries;
+
+    private final long rows;
+
+    private final Duration flushDuration;
+
+    private final int flushes;
+
+    private final int flushedEntities;
+
+    private final int flushedCollections;
+
+    private final int managedEntities;
+
+    private final int managedCollections;
+
+    public TransactionProfile(
+            Instant startedAt,
+            boolean committed,
+            Duration duration,
+            Duration connectionAcquisitionDuration,
+            int connectionAcquisitions,
+            Duration statementPrepareDuration,
+            Duration jdbcExecuteDuration,
+            int statements,
+            int batches,
+            Duration hydrationDuration,
+            int daoQueries,
+            long rows,
+            Duration flushDuration,
+            int flushes,
+            int flushedEntities,
+            int flushedCollections,
+            int managedEntities,
+            int managedCollections
+    ) {
+        this.startedAt = startedAt;
+        this.committed = committed;
+        this.duration = duration;
+        this.connectionAcquisitionDuration = connectionAcquisitionDuration;
+        this.connectionAcquisitions = connectionAcquisitions;
+        this.statementPrepareDuration = statementPrepareDuration;
+        this.jdbcExecuteDuration = jdbcExecuteDuration;
+        this.statements = statements;
+        this.batches = batches;
+        this.hydrationDuration = hydrationDuration;
+        this.daoQueries = daoQueries;
+        this.rows = rows;
+        this.flushDuration = flushDuration;
+        this.flushes = flushes;
+        this.flushedEntities = flushedEntities;
+        this.flushedCollections = flushedCollections;
+        this.managedEntities = managedEntities;
+        this.managedCollections = managedCollections;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * False if the transaction rolled back, or if the profile was taken while it was still in progress.
+     */
+    public boolean isCommitted() {
+        return committed;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    /**
+     * Connections acquired after the profile started. Usually zero, the connection of a resource-local transaction
+     * is acquired when it begins, before the first DAO call, see {@link TransactionProfiler}.
+     */
+    public Duration getConnectionAcquisitionDuration() {
+        return connectionAcquisitionDuration;
+    }
+
+    public int getConnectionAcquisitions() {
+        return connectionAcquisitions;
+    }
+
+    public Duration getStatementPrepareDuration() {
+        return statementPrepareDuration;
+    }
+
+    /**
+     * Time in JDBC {@code execute*} calls of statements and batches, including the ones executed by flushes.
+     */
+    public Duration getJdbcExecuteDuration() {
+        return jdbcExecuteDuration;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public int getBatches() {
+        return batches;
+    }
+
+    /**
+     * Time in DAO queries and loads spent outside the database: reading result sets, instantiating entities
+     * and resolving their associations.
+     */
+    public Duration getHydrationDuration() {
+        return hydrationDuration;
+    }
+
+    public int getDaoQueries() {
+        return daoQueries;
+    }
+
+    /**
+     * Results returned by the DAO queries and loads.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * Time in explicit, automatic and commit flushes, mostly dirty checking and cascading,
+     * without the statements they executed.
+     */
+    public Duration getFlushDuration() {
+        return flushDuration;
+    }
+
+    public int getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * Entities in the persistence context during the largest flush, all of which were dirty checked.
+     */
+    public int getFlushedEntities() {
+        return flushedEntities;
+    }
+
+    public int getFlushedCollections() {
+        return flushedCollections;
+    }
+
+    /**
+     * Entities in the persistence context when the transaction completed.
+     */
+    public int getManagedEntities() {
+        return managedEntities;
+    }
+
+    public int getManagedCollections() {
+        return managedCollections;
+    }
+
+    public Duration getDatabaseDuration() {
+        return connectionAcquisitionDuration.plus(statementPrepareDuration).plus(jdbcExecuteDuration);
+    }
+
+    public Duration getOtherDuration() {
+        Duration other = duration.minus(getDatabaseDuration()).minus(hydrationDuration).minus(flushDuration);
+        return other.isNegative() ? Duration.ZERO : other;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", TransactionProfile.class.getSimpleName() + "[", "]")
+                .add("startedAt=" + startedAt)
+                .add("committed=" + committed)
+                .add("duration=" + duration)
+                .add("connectionAcquisitionDuration=" + connectionAcquisitionDuration)
+                .add("connectionAcquisitions=" + connectionAcquisitions)
+                .add("statementPrepareDuration=" + statementPrepareDuration)
+                .add("jdbcExecuteDuration=" + jdbcExecuteDuration)
+                .add("statements=" + statements)
+                .add("batches=" + batches)
+                .add("hydrationDuration=" + hydrationDuration)
+                .add("daoQueries=" + daoQueries)
+                .add("rows=" + rows)
+                .add("flushDuration=" + flushDuration)
+                .add("flushes=" + flushes)
+                .add("flushedEntities=" + flushedEntities)
+                .add("flushedCollections=" + flushedCollections)
+                .add("managedEntities=" + managedEntities)
+                .add("managedCollections=" + managedCollections)
+                .toString();
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import com.brinvex.util.persistence.impl.metrics.LatencyHistogram;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionEventListener;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.stat.SessionStatistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Breaks the time of each transaction down into connection acquisition, statement preparation, JDBC execution,
+ * hydration of DAO query results, flushing and the rest, see {@link TransactionProfile}.
+ * <p>
+ * Profiling starts with the first DAO query, load, persist, merge or flush in a transaction and ends when it completes.
+ * Time before that is not profiled. In particular, beginning a resource-local transaction acquires the connection
+ * to switch off auto-commit, so connection acquisition is measured only for connections acquired lazily,
+ * e.g. with {@code hibernate.connection.provider_disables_autocommit=true}.
+ * JDBC and flush timings come from a Hibernate {@link SessionEventListener} registered once per session,
+ * entity counts from the session statistics.
+ * Completed profiles are passed to {@link TransactionProfilerConf#setListener the listener},
+ * recorded by the {@code txProfile.*} histograms, and those slower than the threshold are logged at WARN level
+ * by the {@code com.brinvex.util.persistence.impl.diagnostics.TransactionProfiler} logger
+ * and counted by the {@code txProfile.slow} metric.
+ */
+public class TransactionProfiler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TransactionProfiler.class);
+
+    /**
+     * Accumulators of one transaction.
+     */
+    private static final class Profile {
+        private final Instant startedAt = Instant.now();
+        private final long startNanos = System.nanoTime();
+        private long connectionNanos;
+        private int connectionAcquisitions;
+        private long prepareNanos;
+        private long executeNanos;
+        private int statements;
+        private int batches;
+        private long hydrationNanos;
+        private int daoQueries;
+        private long rows;
+        private long flushNanos;
+        private int flushes;
+        private int flushedEntities;
+        private int flushedCollections;
+
+        private long databaseNanos() {
+            return connectionNanos + prepareNanos + executeNanos;
+        }
+    }
+
+    /**
+     * Feeds the profile of the session's current transaction, if any, and completes it.
+     * Registered once per session and forgotten when the session ends.
+     */
+    private static final class ProfilingListener implements SessionEventListener {
+
+        private final transient TransactionProfiler profiler;
+
+        private final transient SessionImplementor session;
+
+        private transient Profile profile;
+
+        private transient long connectionStartNanos;
+
+        private transient long prepareStartNanos;
+
+        private transient long executeStartNanos;
+
+        private transient int flushDepth;
+
+        private transient long flushStartNanos;
+
+        private transient long flushStartDatabaseNanos;
+
+        private transient int queryDepth;
+
+        private ProfilingListener(TransactionProfiler profiler, SessionImplementor session) {
+            this.profiler = profiler;
+            this.session = session;
+        }
+
+        private void start() {
+            profile = new Profile();
+            flushDepth = 0;
+            queryDepth = 0;
+        }
+
+        @Override
+        public void jdbcConnectionAcquisitionStart() {
+            connectionStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcConnectionAcquisitionEnd() {
+            Profile p = profile;
+            if (p != null) {
+                p.connectionNanos += System.nanoTime() - connectionStartNanos;
+                p.connectionAcquisitions++;
+            }
+        }
+
+        @Override
+        public void jdbcPrepareStatementStart() {
+            prepareStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcPrepareStatementEnd() {
+            Profile p = profile;
+            if (p != null) {
+                p.prepareNanos += System.nanoTime() - prepareStartNanos;
+            }
+        }
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            executeStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            Profile p = profile;
+            if (p != null) {
+                p.executeNanos += System.nanoTime() - executeStartNanos;
+                p.statements++;
+            }
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            executeStartNanos = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            Profile p = profile;
+            if (p != null) {
+                p.executeNanos += System.nanoTime() - executeStartNanos;
+                p.batches++;
+            }
+        }
+
+        @Override
+        public void flushStart() {
+            Profile p = profile;
+            if (p != null && flushDepth++ == 0) {
+                flushStartNanos = System.nanoTime();
+                flushStartDatabaseNanos = p.databaseNanos();
+            }
+        }
+
+        @Override
+        public void flushEnd(int numberOfEntities, int numberOfCollections) {
+            Profile p = profile;
+            if (p == null || flushDepth == 0 || --flushDepth > 0) {
+                return;
+            }
+            p.flushNanos += System.nanoTime() - flushStartNanos - (p.databaseNanos() - flushStartDatabaseNanos);
+            p.flushes++;
+            p.flushedEntities = Math.max(p.flushedEntities, numberOfEntities);
+            p.flushedCollections = Math.max(p.flushedCollections, numberOfCollections);
+        }
+
+        @Override
+        public void partialFlushStart() {
+            flushStart();
+        }
+
+        @Override
+        public void partialFlushEnd(int numberOfEntities, int numberOfCollections) {
+            flushEnd(numberOfEntities, numberOfCollections);
+        }
+
+        @Override
+        public void transactionCompletion(boolean successful) {
+            Profile p = profile;
+            if (p != null) {
+                profile = null;
+                profiler.complete(session, p, successful);
+            }
+        }
+
+        @Override
+        public void end() {
+            profile = null;
+            profiler.listeners.remove(session);
+        }
+    }
+
+    private final long thresholdNanos;
+
+    private final int recentCapacity;
+
+    private final Consumer<TransactionProfile> listener;
+
+    private final LongAdder slowTransactions;
+
+    private final LatencyHistogram durations;
+
+    private final LatencyHistogram databaseDurations;
+
+    private final LatencyHistogram hydrationDurations;
+
+    private final LatencyHistogram flushDurations;
+
+    private final Deque<TransactionProfile> recentSlowProfiles = new ArrayDeque<>();
+
+    private final ConcurrentMap<SessionImplementor, ProfilingListener> listeners = new ConcurrentHashMap<>();
+
+    public TransactionProfiler(TransactionProfilerConf conf, MetricRegistry metricRegistry) {
+        this.thresholdNanos = conf.getThreshold().toNanos();
+        this.recentCapacity = conf.getRecentCapacity();
+        this.listener = conf.getListener();
+        this.slowTransactions = metricRegistry.counter("txProfile.slow");
+        this.durations = metricRegistry.histogram("txProfile.duration");
+        this.databaseDurations = metricRegistry.histogram("txProfile.database");
+        this.hydrationDurations = metricRegistry.histogram("txProfile.hydration");
+        this.flushDurations = metricRegistry.histogram("txProfile.flush");
+    }
+
+    /**
+     * Returns the most recent transactions slower than the threshold, oldest first.
+     */
+    public List<TransactionProfile> getRecentSlowProfiles() {
+        synchronized (recentSlowProfiles) {
+            return new ArrayList<>(recentSlowProfiles);
+        }
+    }
+
+    /**
+     * Returns the profile of the transaction in progress in the given entity manager so far,
+     * or null if it is not profiled. Meant to be called on the thread running the transaction, e.g. right before commit.
+     */
+    public TransactionProfile getCurrentProfile(EntityManager em) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        ProfilingListener listener = listeners.get(session);
+        Profile p = listener == null ? null : listener.profile;
+        return p == null ? null : snapshot(session, p, false);
+    }
+
+    public void reset() {
+        synchronized (recentSlowProfiles) {
+            recentSlowProfiles.clear();
+        }
+    }
+
+    /**
+     * Starts profiling the current transaction of the given entity manager, if not yet.
+     */
+    public void touch(EntityManager em) {
+        begin(em);
+    }
+
+    /**
+     * Runs a DAO query or load. The part of its duration not spent in the database or in auto flushes is hydration.
+     */
+    public <R> R execute(EntityManager em, Supplier<R> call, ToLongFunction<? super R> rowCounter) {
+        ProfilingListener listener = begin(em);
+        if (listener == null || listener.queryDepth > 0) {
+            return call.get();
+        }
+        Profile p = listener.profile;
+        long startNanos = System.nanoTime();
+        long startExcludedNanos = p.databaseNanos() + p.flushNanos;
+        listener.queryDepth++;
+        R result;
+        try {
+            result = call.get();
+        } finally {
+            listener.queryDepth--;
+            p.hydrationNanos += System.nanoTime() - startNanos - (p.databaseNanos() + p.flushNanos - startExcludedNanos);
+            p.daoQueries++;
+        }
+        p.rows += rowCounter.applyAsLong(result);
+        return result;
+    }
+
+    private ProfilingListener begin(EntityManager em) {
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        ProfilingListener listener = listeners.get(session);
+        if (listener != null && listener.profile != null) {
+            return listener;
+        }
+        if (!session.isTransactionInProgress()) {
+            return null;
+        }
+        if (listener == null) {
+            listener = new ProfilingListener(this, session);
+            listeners.put(session, listener);
+            session.getEventListenerManager().addListener(listener);
+        }
+        listener.start();
+        return listener;
+    }
+
+    private void complete(SessionImplementor session, Profile p, boolean committed) {
+        TransactionProfile profile = snapshot(session, p, committed);
+        durations.record(profile.getDuration().toNanos());
+        databaseDurations.record(profile.getDatabaseDuration().toNanos());
+        hydrationDurations.record(p.hydrationNanos);
+        flushDurations.record(p.flushNanos);
+        if (profile.getDuration().toNanos() >= thresholdNanos) {
+            slowTransactions.increment();
+            synchronized (recentSlowProfiles) {
+                if (recentSlowProfiles.size() >= recentCapacity) {
+                    recentSlowProfiles.pollFirst();
+                }
+                if (recentCapacity > 0) {
+                    recentSlowProfiles.addLast(profile);
+                }
+            }
+            log(profile);
+        }
+        if (listener != null) {
+            try {
+                listener.accept(profile);
+            } catch (RuntimeException e) {
+                LOG.warn("Transaction profile listener failed", e);
+            }
+        }
+    }
+
+    private static TransactionProfile snapshot(SessionImplementor session, Profile p, boolean committed) {
+        SessionStatistics statistics = session.isClosed() ? null : session.getStatistics();
+        return new TransactionProfile(
+                p.startedAt,
+                committed,
+                Duration.ofNanos(System.nanoTime() - p.startNanos),
+                Duration.ofNanos(p.connectionNanos),
+                p.connectionAcquisitions,
+                Duration.ofNanos(p.prepareNanos),
+                Duration.ofNanos(p.executeNanos),
+                p.statements,
+                p.batches,
+                Duration.ofNanos(p.hydrationNanos),
+                p.daoQueries,
+                p.rows,
+                Duration.ofNanos(p.flushNanos),
+                p.flushes,
+                p.flushedEntities,
+                p.flushedCollections,
+                statistics == null ? 0 : statistics.getEntityCount(),
+                statistics == null ? 0 : statistics.getCollectionCount()
+        );
+    }
+
+    protected void log(TransactionProfile profile) {
+        if (!LOG.isWarnEnabled()) {
+            return;
+        }
+        LOG.warn("Slow transaction {} after {} ms: database {} ms ({} statements, {} batches), "
+                 + "hydration {} ms ({} DAO queries, {} rows), flush {} ms ({} flushes, up to {} entities), "
+                 + "other {} ms, {} managed entities",
+                profile.isCommitted() ? "committed" : "rolled back",
+                profile.getDuration().toMillis(),
+                profile.getDatabaseDuration().toMillis(),
+                profile.getStatements(),
+                profile.getBatches(),
+                profile.getHydrationDuration().toMillis(),
+                profile.getDaoQueries(),
+                profile.getRows(),
+                profile.getFlushDuration().toMillis(),
+                profile.getFlushes(),
+                profile.getFlushedEntities(),
+                profile.getOtherDuration().toMillis(),
+                profile.getManagedEntities());
+    }
+}
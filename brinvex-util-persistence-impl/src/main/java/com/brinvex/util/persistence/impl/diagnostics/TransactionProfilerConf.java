@@ -0,0 +1,72 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.diagnostics;
+
+import java.time.Duration;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+public class TransactionProfilerConf {
+
+    private Duration threshold = Duration.ofSeconds(1);
+    private int recentCapacity = 100;
+    private Consumer<TransactionProfile> listener;
+
+    public Duration getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Transactions taking at least this long are logged and kept among the recent slow profiles.
+     */
+    public TransactionProfilerConf setThreshold(Duration threshold) {
+        this.threshold = requireNonNull(threshold);
+        return this;
+    }
+
+    public int getRecentCapacity() {
+        return recentCapacity;
+    }
+
+    public TransactionProfilerConf setRecentCapacity(int recentCapacity) {
+        this.recentCapacity = recentCapacity;
+        return this;
+    }
+
+    public Consumer<TransactionProfile> getListener() {
+        return listener;
+    }
+
+    /**
+     * Receives the profile of every profiled transaction right after it commits or rolls back,
+     * on the thread which completed it. Exceptions thrown by the listener are logged and ignored.
+     */
+    public TransactionProfilerConf setListener(Consumer<TransactionProfile> listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", TransactionProfilerConf.class.getSimpleName() + "[", "]")
+                .add("threshold=" + threshold)
+                .add("recentCapacity=" + recentCapacity)
+                .add("listener=" + listener)
+                .toString();
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.explain;
+
+import java.nio.file.Path;
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+public class PlanBaselineConf {
+
+    private Path baselineDirectory;
+    private double costTolerance = 0.2;
+    private boolean updateBaselines = false;
+
+    public Path getBaselineDirectory() {
+        return baselineDirectory;
+    }
+
+    /**
+     * Where the baselines are kept, one {@code <query name>.plan} file per registered query.
+     * Meant to be a directory under version control, e.g. {@code src/test/resources/plan-baselines}.
+     */
+    public PlanBaselineConf setBaselineDirectory(Path baselineDirectory) {
+        this.baselineDirectory = requireNonNull(baselineDirectory);
+        return this;
+    }
+
+    public double getCostTolerance() {
+        return costTolerance;
+    }
+
+    /**
+     * A plan whose estimated total cost exceeds the baseline cost by more than this fraction is reported,
+     * e.g. 0.2 (default) reports costs more than 20 % above the baseline.
+     */
+    public PlanBaselineConf setCostTolerance(double costTolerance) {
+        if (!(costTolerance >= 0)) {
+            throw new IllegalArgumentException("Illegal costTolerance: " + costTolerance);
+        }
+        this.costTolerance = costTolerance;
+        return this;
+    }
+
+    public boolean isUpdateBaselines() {
+        return updateBaselines;
+    }
+
+    /**
+     * If enabled then all baselines are overwritten by the current plans and nothing is reported.
+     * Used to accept an intended plan change.
+     */
+    public PlanBaselineConf setUpdateBaselines(boolean updateBaselines) {
+        this.updateBaselines = updateBaselines;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", PlanBaselineConf.class.getSimpleName() + "[", "]")
+                .add("baselineDirectory=" + baselineDirectory)
+                .add("costTolerance=" + costTolerance)
+                .add("updateBaselines=" + updateBaselines)
+                .toString();
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.explain;
+
+import com.brinvex.util.persistence.api.QueryPlan;
+import com.brinvex.util.persistence.api.QueryPlanNode;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Compares the plans of registered DAO queries with baselines kept in files, so that a schema, index
+ * or statistics change which makes a query take a worse plan is caught by a test rather than in production.
+ * <p>
+ * Each query is registered under a name together with a function which explains it, typically a DAO method
+ * built on {@code AbstractEntityDao.explain} without {@code ANALYZE}. Plans are normalized to their tree of
+ * node types, tables and indexes (see {@link #normalize}) plus the estimated total cost. A query is reported
+ * if its tree differs from the baseline or its cost exceeds the baseline cost by more than the tolerance.
+ * A missing baseline is recorded from the current plan. Estimated costs depend on table statistics,
+ * so the database should be seeded with representative data and analyzed before the gate runs.
+ */
+public class PlanBaselineGate {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PlanBaselineGate.class);
+
+    private static final Pattern QUERY_NAME = Pattern.compile("[A-Za-z0-9._-]+");
+
+    private static final String COST_PREFIX = "cost=";
+
+    private static final String SEQ_SCAN_PREFIX = "Seq Scan on ";
+
+    private final Path baselineDirectory;
+
+    private final double costTolerance;
+
+    private final boolean updateBaselines;
+
+    private final Map<String, Function<EntityManager, QueryPlan>> queries = new LinkedHashMap<>();
+
+    public PlanBaselineGate(PlanBaselineConf conf) {
+        this.baselineDirectory = requireNonNull(conf.getBaselineDirectory(), "baselineDirectory");
+        this.costTolerance = conf.getCostTolerance();
+        this.updateBaselines = conf.isUpdateBaselines();
+    }
+
+    /**
+     * Registers a query under a name which is also the name of its baseline file.
+     */
+    public PlanBaselineGate register(String queryName, Function<EntityManager, QueryPlan> explainer) {
+        if (!QUERY_NAME.matcher(queryName).matches()) {
+            throw new IllegalArgumentException("Illegal query name: " + queryName);
+        }
+        if (queries.putIfAbsent(queryName, requireNonNull(explainer)) != null) {
+            throw new IllegalArgumentException("Query already registered: " + queryName);
+        }
+        return this;
+    }
+
+    /**
+     * Explains all registered queries and returns those which regressed, in registration order.
+     */
+    public List<PlanRegression> check(EntityManager em) {
+        List<PlanRegression> regressions = new ArrayList<>();
+        for (Map.Entry<String, Function<EntityManager, QueryPlan>> e : queries.entrySet()) {
+            String queryName = e.getKey();
+            QueryPlan plan = e.getValue().apply(em);
+            String shape = normalize(plan);
+            double cost = plan.getTotalCost();
+            Path baselineFile = baselineDirectory.resolve(queryName + ".plan");
+            if (updateBaselines || !Files.exists(baselineFile)) {
+                writeBaseline(baselineFile, shape, cost);
+                LOG.info("Recorded plan baseline {}, cost {}\n{}", baselineFile, cost, shape);
+                continue;
+            }
+            List<String> baselineLines = readBaseline(baselineFile);
+            double baselineCost = Double.parseDouble(baselineLines.get(0).substring(COST_PREFIX.length()));
+            String baselineShape = String.join("\n", baselineLines.subList(1, baselineLines.size()));
+
+            PlanRegression.Kind kind;
+            if (!baselineShape.equals(shape)) {
+                kind = PlanRegression.Kind.SHAPE_CHANGED;
+            } else if (cost > baselineCost * (1 + costTolerance)) {
+                kind = PlanRegression.Kind.COST_INCREASED;
+            } else {
+                continue;
+            }
+            Set<String> newSequentialScans = sequentialScans(shape);
+            newSequentialScans.removeAll(sequentialScans(baselineShape));
+            regressions.add(new PlanRegression(
+                    queryName, kind, baselineShape, shape, baselineCost, cost, new ArrayList<>(newSequentialScans)));
+        }
+        return regressions;
+    }
+
+    /**
+     * Like {@link #check} but throws {@link PlanRegressionException} if any query regressed.
+     */
+    public void verify(EntityManager em) {
+        List<PlanRegression> regressions = check(em);
+        if (!regressions.isEmpty()) {
+            throw new PlanRegressionException(regressions);
+        }
+    }
+
+    /**
+     * Returns the plan tree, one node per line indented by two spaces per level, e.g.
+     * {@code Index Scan using salary_employee_idx on salary}. Costs, row estimates, aliases and conditions
+     * are left out, so the result changes only when the planner picks different operations.
+     */
+    public static String normalize(QueryPlan plan) {
+        StringBuilder sb = new StringBuilder();
+        appendNode(sb, plan.getRoot(), 0);
+        return sb.toString();
+    }
+
+    private static void appendNode(StringBuilder sb, QueryPlanNode node, int depth) {
+        if (sb.length() > 0) {
+            sb.append('\n');
+        }
+        sb.append("  ".repeat(depth)).append(node.getNodeType());
+        Object joinType = node.getProperties().get("Join Type");
+        if (joinType != null) {
+            sb.append(" (").append(joinType).append(')');
+        }
+        if (node.getIndexName() != null) {
+            sb.append(" using ").append(node.getIndexName());
+        }
+        if (node.getRelationName() != null) {
+            sb.append(" on ").append(node.getRelationName());
+        }
+        for (QueryPlanNode child : node.getChildren()) {
+            appendNode(sb, child, depth + 1);
+        }
+    }
+
+    private static Set<String> sequentialScans(String shape) {
+        Set<String> relations = new LinkedHashSet<>();
+        for (String line : shape.split("\n")) {
+            String node = line.trim();
+            if (node.startsWith(SEQ_SCAN_PREFIX)) {
+                relations.add(node.substring(SEQ_SCAN_PREFIX.length()));
+            }
+        }
+        return relations;
+    }
+
+    private static void writeBaseline(Path baselineFile, String shape, double cost) {
+        try {
+            Files.createDirectories(baselineFile.getParent());
+            Files.writeString(baselineFile, COST_PREFIX + cost + "\n" + shape + "\n", StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> readBaseline(Path baselineFile) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(baselineFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        lines.removeIf(String::isBlank);
+        if (lines.size() < 2 || !lines.get(0).startsWith(COST_PREFIX)) {
+            throw new IllegalStateException("Malformed plan baseline: " + baselineFile);
+        }
+        return lines;
+    }
+}
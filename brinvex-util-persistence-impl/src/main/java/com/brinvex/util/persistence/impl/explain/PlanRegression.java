@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.explain;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * A registered query whose current plan is worse than its baseline, found by {@link PlanBaselineGate}.
+ */
+public class PlanRegression {
+
+    public enum Kind {
+
+        /**
+         * The plan tree differs from the baseline, e.g. an index scan became a sequential scan.
+         */
+        SHAPE_CHANGED,
+
+        /**
+         * The plan tree is the same but its estimated total cost grew beyond the tolerance.
+         */
+        COST_INCREASED,
+
+    }
+
+    private final String queryName;
+
+    private final Kind kind;
+
+    private final String baselineShape;
+
+    private final String actualShape;
+
+    private final double baselineCost;
+
+    private final double actualCost;
+
+    private final List<String> newSequentialScans;
+
+    public PlanRegression(
+            String queryName,
+            Kind kind,
+            String baselineShape,
+            String actualShape,
+            double baselineCost,
+            double actualCost,
+            List<String> newSequentialScans
+    ) {
+        this.queryName = queryName;
+        this.kind = kind;
+        this.baselineShape = baselineShape;
+        this.actualShape = actualShape;
+        this.baselineCost = baselineCost;
+        this.actualCost = actualCost;
+        this.newSequentialScans = List.copyOf(newSequentialScans);
+    }
+
+    public String getQueryName() {
+        return queryName;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * The normalized plan tree of the baseline, one node per line, see {@link PlanBaselineGate#normalize}.
+     */
+    public String getBaselineShape() {
+        return baselineShape;
+    }
+
+    public String getActualShape() {
+        return actualShape;
+    }
+
+    public double getBaselineCost() {
+        return baselineCost;
+    }
+
+    public double getActualCost() {
+        return actualCost;
+    }
+
+    /**
+     * Tables scanned sequentially by the current plan but not by the baseline.
+     */
+    public List<String> getNewSequentialScans() {
+        return newSequentialScans;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", PlanRegression.class.getSimpleName() + "[", "]")
+                .add("queryName='" + queryName + "'")
+                .add("kind=" + kind)
+                .add("baselineCost=" + baselineCost)
+                .add("actualCost=" + actualCost)
+                .add("newSequentialScans=" + newSequentialScans)
+                .add("baselineShape=\n" + baselineShape)
+                .add("actualShape=\n" + actualShape)
+                .toString();
+    }
+}
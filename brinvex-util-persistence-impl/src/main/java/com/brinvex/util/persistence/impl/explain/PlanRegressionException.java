@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.explain;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+public class PlanRegressionException extends IllegalStateException {
+
+    private final List<PlanRegression> regressions;
+
+    public PlanRegressionException(List<PlanRegression> regressions) {
+        super(message(regressions));
+        this.regressions = List.copyOf(regressions);
+    }
+
+    public List<PlanRegression> getRegressions() {
+        return regressions;
+    }
+
+    private static String message(List<PlanRegression> regressions) {
+        StringJoiner message = new StringJoiner("\n", "Query plans regressed:\n", "");
+        for (PlanRegression regression : regressions) {
+            message.add(regression.toString());
+        }
+        return message.toString();
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.explain;
+
+import com.brinvex.util.persistence.api.ExplainOptions;
+import com.brinvex.util.persistence.api.QueryPlan;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.metamodel.mapping.MappingModelExpressible;
+import org.hibernate.query.sqm.internal.QuerySqmImpl;
+import org.hibernate.query.sqm.internal.SqmJdbcExecutionContextAdapter;
+import org.hibernate.query.sqm.internal.SqmUtil;
+import org.hibernate.query.sqm.spi.SqmParameterMappingModelResolutionAccess;
+import org.hibernate.query.sqm.sql.SqmTranslation;
+import org.hibernate.query.sqm.sql.SqmTranslator;
+import org.hibernate.query.sqm.tree.expression.SqmParameter;
+import org.hibernate.query.sqm.tree.select.SqmSelectStatement;
+import org.hibernate.sql.ast.tree.select.SelectStatement;
+import org.hibernate.sql.exec.spi.ExecutionContext;
+import org.hibernate.sql.exec.spi.JdbcOperationQuerySelect;
+import org.hibernate.sql.exec.spi.JdbcParameterBinder;
+import org.hibernate.sql.exec.spi.JdbcParameterBindings;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Runs PostgreSQL {@code EXPLAIN (FORMAT JSON)} for a Hibernate select query.
+ * <p>
+ * The query is translated to SQL the same way Hibernate does before executing it, and its parameters are bound
+ * by Hibernate's own binders, so the plan matches the one the query gets when executed with the same values.
+ * Locks and query hints are not applied. The statement runs on the session's connection and, inside a transaction,
+ * in a savepoint which is rolled back afterwards, also when it fails.
+ */
+public class QueryExplainer {
+
+    private static final int MAX_BIND_LENGTH = 200;
+
+    private static final class TranslatedSelect {
+        private final JdbcOperationQuerySelect jdbcSelect;
+        private final JdbcParameterBindings jdbcParameterBindings;
+
+        private TranslatedSelect(JdbcOperationQuerySelect jdbcSelect, JdbcParameterBindings jdbcParameterBindings) {
+            this.jdbcSelect = jdbcSelect;
+            this.jdbcParameterBindings = jdbcParameterBindings;
+        }
+    }
+
+    /**
+     * Returns true if the query can be explained, i.e. it is a select created from HQL or criteria.
+     */
+    public boolean isExplainable(Query query) {
+        return query instanceof QuerySqmImpl && ((QuerySqmImpl<?>) query).getSqmStatement() instanceof SqmSelectStatement;
+    }
+
+    /**
+     * Returns the SQL Hibernate executes for the query, without touching the database.
+     */
+    public String toSql(EntityManager em, Query query) {
+        return translate(em, query).jdbcSelect.getSqlString();
+    }
+
+    public QueryPlan explain(EntityManager em, Query query, ExplainOptions options) {
+        TranslatedSelect translated = translate(em, query);
+        QuerySqmImpl<?> sqmQuery = (QuerySqmImpl<?>) query;
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        JdbcOperationQuerySelect jdbcSelect = translated.jdbcSelect;
+        JdbcParameterBindings jdbcParameterBindings = translated.jdbcParameterBindings;
+        ExecutionContext executionContext = SqmJdbcExecutionContextAdapter.usingLockingAndPaging(sqmQuery);
+
+        String sql = jdbcSelect.getSqlString();
+        String explainSql = "explain (format json"
+                            + (options.isAnalyze() ? ", analyze" : "")
+                            + (options.isBuffers() ? ", buffers" : "")
+                            + ") " + sql;
+        List<String> binds = new ArrayList<>();
+        String rawPlan = session.doReturningWork(connection -> {
+            Savepoint savepoint = connection.getAutoCommit() ? null : connection.setSavepoint();
+            try (PreparedStatement statement = connection.prepareStatement(explainSql)) {
+                TreeMap<Integer, Object> boundValues = new TreeMap<>();
+                PreparedStatement recordingStatement = recording(statement, boundValues);
+                int position = 1;
+                for (JdbcParameterBinder binder : jdbcSelect.getParameterBinders()) {
+                    binder.bindParameterValue(recordingStatement, position++, jdbcParameterBindings, executionContext);
+                }
+                for (Object value : boundValues.values()) {
+                    binds.add(render(value));
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getString(1);
+                }
+            } finally {
+                if (savepoint != null) {
+                    connection.rollback(savepoint);
+                    connection.releaseSavepoint(savepoint);
+                }
+            }
+        });
+        return QueryPlanParser.parse(sql, binds, options, rawPlan);
+    }
+
+    private TranslatedSelect translate(EntityManager em, Query query) {
+        if (!isExplainable(query)) {
+            throw new IllegalArgumentException("Unsupported query type: " + query.getClass().getName());
+        }
+        QuerySqmImpl<?> sqmQuery = (QuerySqmImpl<?>) query;
+        SessionImplementor session = em.unwrap(SessionImplementor.class);
+        SessionFactoryImplementor sessionFactory = session.getFactory();
+        SqmSelectStatement<?> sqm = (SqmSelectStatement<?>) sqmQuery.getSqmStatement();
+
+        SqmTranslator<SelectStatement> translator = sessionFactory.getQueryEngine().getSqmTranslatorFactory().createSelectTranslator(
+                sqm,
+                sqmQuery.getQueryOptions(),
+                sqmQuery.getDomainParameterXref(),
+                sqmQuery.getQueryParameterBindings(),
+                session.getLoadQueryInfluencers(),
+                sessionFactory,
+                true
+        );
+        SqmTranslation<SelectStatement> translation = translator.translate();
+        JdbcParameterBindings jdbcParameterBindings = SqmUtil.createJdbcParameterBindings(
+                sqmQuery.getQueryParameterBindings(),
+                sqmQuery.getDomainParameterXref(),
+                SqmUtil.generateJdbcParamsXref(sqmQuery.getDomainParameterXref(), translation::getJdbcParamsBySqmParam),
+                sessionFactory.getRuntimeMetamodels().getMappingMetamodel(),
+                translation.getFromClauseAccess()::findTableGroup,
+                new SqmParameterMappingModelResolutionAccess() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <T> MappingModelExpressible<T> getResolvedMappingModelType(SqmParameter<T> parameter) {
+                        return (MappingModelExpressible<T>) translation.getSqmParameterMappingModelTypeResolutions().get(parameter);
+                    }
+                },
+                session
+        );
+        JdbcOperationQuerySelect jdbcSelect = sessionFactory.getJdbcServices().getJdbcEnvironment().getSqlAstTranslatorFactory()
+                .buildSelectTranslator(sessionFactory, translation.getSqlAst())
+                .translate(jdbcParameterBindings, sqmQuery.getQueryOptions());
+        return new TranslatedSelect(jdbcSelect, jdbcParameterBindings);
+    }
+
+    /**
+     * Returns a statement recording the values passed to its {@code set*(int, value, ...)} methods.
+     */
+    private static PreparedStatement recording(PreparedStatement statement, TreeMap<Integer, Object> boundValues) {
+        return (PreparedStatement) Proxy.newProxyInstance(
+                QueryExplainer.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    if (method.getName().startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        boundValues.put((Integer) args[0], method.getName().equals("setNull") ? null : args[1]);
+                    }
+                    try {
+                        return method.invoke(statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static String render(Object value) {
+        String rendered = String.valueOf(value);
+        return rendered.length() > MAX_BIND_LENGTH ? rendered.substring(0, MAX_BIND_LENGTH) + "..." : rendered;
+    }
+}
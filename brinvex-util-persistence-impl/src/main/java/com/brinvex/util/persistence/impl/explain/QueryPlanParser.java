@@ -0,0 +1,93 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.explain;
+
+import com.brinvex.util.persistence.api.ExplainOptions;
+import com.brinvex.util.persistence.api.QueryPlan;
+import com.brinvex.util.persistence.api.QueryPlanNode;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the output of PostgreSQL {@code EXPLAIN (FORMAT JSON)}.
+ */
+final class QueryPlanParser {
+
+    private QueryPlanParser() {
+    }
+
+    @SuppressWarnings("unchecked")
+    static QueryPlan parse(String sql, List<String> binds, ExplainOptions options, String rawPlan) {
+        Object parsed = Json.parse(rawPlan);
+        if (!(parsed instanceof List) || ((List<?>) parsed).isEmpty() || !(((List<?>) parsed).get(0) instanceof Map)) {
+            throw new IllegalArgumentException("Unexpected plan: " + rawPlan);
+        }
+        Map<String, Object> top = (Map<String, Object>) ((List<?>) parsed).get(0);
+        return new QueryPlan(
+                sql,
+                binds,
+                options,
+                node((Map<String, Object>) top.get("Plan")),
+                millis(top.get("Planning Time")),
+                millis(top.get("Execution Time")),
+                rawPlan
+        );
+    }
+
+    @SuppressWarnings("unchecked")
+    private static QueryPlanNode node(Map<String, Object> plan) {
+        if (plan == null) {
+            throw new IllegalArgumentException("Missing plan node");
+        }
+        Map<String, Object> properties = new LinkedHashMap<>(plan);
+        Object childPlans = properties.remove("Plans");
+        List<QueryPlanNode> children = new ArrayList<>();
+        if (childPlans instanceof List) {
+            for (Object childPlan : (List<?>) childPlans) {
+                children.add(node((Map<String, Object>) childPlan));
+            }
+        }
+        return new QueryPlanNode(
+                (String) plan.get("Node Type"),
+                (String) plan.get("Relation Name"),
+                (String) plan.get("Alias"),
+                (String) plan.get("Index Name"),
+                number(plan.get("Startup Cost")),
+                number(plan.get("Total Cost")),
+                number(plan.get("Plan Rows")),
+                number(plan.get("Actual Rows")),
+                number(plan.get("Actual Loops")),
+                number(plan.get("Actual Total Time")),
+                (long) number(plan.get("Shared Hit Blocks")),
+                (long) number(plan.get("Shared Read Blocks")),
+                Collections.unmodifiableMap(properties),
+                children
+        );
+    }
+
+    private static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : -1;
+    }
+
+    private static Duration millis(Object value) {
+        return value instanceof Number ? Duration.ofNanos((long) (((Number) value).doubleValue() * 1_000_000)) : null;
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(PersistenceEvents.NAME_PREFIX + "Bulk")
+@Label("DAO Bulk Operation")
+@Category(PersistenceEvents.CATEGORY)
+@Description("Bulk statement executed by a DAO, possibly in several chunks")
+@Enabled(false)
+public final class BulkEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Entity Type")
+    Class<?> entityType;
+
+    @Label("Ids")
+    long ids;
+
+    @Label("Rows")
+    @Description("Affected rows, -1 on failure")
+    long rows;
+
+    public void end(String operation, Class<?> entityType, long ids, long rows) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.entityType = entityType;
+            this.ids = ids;
+            this.rows = rows;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name(PersistenceEvents.NAME_PREFIX + "Flush")
+@Label("DAO Flush")
+@Category(PersistenceEvents.CATEGORY)
+@Description("Flush of the persistence context, optionally followed by clear")
+@Enabled(false)
+public final class FlushEvent extends jdk.jfr.Event {
+
+    @Label("Managed Entities")
+    @Description("Entities in the persistence context before the flush, all of which are dirty checked")
+    long managedEntities;
+
+    @Label("Clear")
+    boolean clear;
+
+    @Label("Failed")
+    boolean failed;
+
+    public void end(long managedEntities, boolean clear, boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.managedEntities = managedEntities;
+            this.clear = clear;
+            this.failed = failed;
+            commit();
+        }
+    }
+}
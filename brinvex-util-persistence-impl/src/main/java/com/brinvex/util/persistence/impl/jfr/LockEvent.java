@@ -0,0 +1,70 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * A pessimistic lock acquisition. On PostgreSQL, the duration of {@code getByIdForUpdate}
+ * and {@code getFirstResultForUpdate} includes setting and resetting the transaction-scoped lock timeout,
+ * see {@link LockTimeoutEvent}.
+ */
+@Name(PersistenceEvents.NAME_PREFIX + "Lock")
+@Label("DAO Lock")
+@Category(PersistenceEvents.CATEGORY)
+@Description("Pessimistic lock acquisition by a DAO")
+@Enabled(false)
+public final class LockEvent extends jdk.jfr.Event {
+
+    public static final String ACQUIRED = "acquired";
+
+    public static final String EMPTY = "empty";
+
+    public static final String TIMEOUT = "timeout";
+
+    public static final String FAILED = "failed";
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Entity Type")
+    Class<?> entityType;
+
+    @Label("Lock Timeout")
+    @Description("Requested lock timeout, -1 for skip-locked and no-wait variants")
+    @Timespan(Timespan.MILLISECONDS)
+    long lockTimeout;
+
+    @Label("Outcome")
+    @Description("acquired, empty (nothing found or all rows skipped), timeout (lock not available) or failed")
+    String outcome;
+
+    public void end(String operation, Class<?> entityType, long lockTimeoutMillis, String outcome) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.entityType = entityType;
+            this.lockTimeout = lockTimeoutMillis;
+            this.outcome = outcome;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+@Name(PersistenceEvents.NAME_PREFIX + "LockTimeout")
+@Label("DAO Lock Timeout")
+@Category(PersistenceEvents.CATEGORY)
+@Description("Round trip setting the transaction-scoped lock timeout around a pessimistic lock")
+@Enabled(false)
+public final class LockTimeoutEvent extends jdk.jfr.Event {
+
+    @Label("Lock Timeout")
+    @Timespan(Timespan.MILLISECONDS)
+    long lockTimeout;
+
+    public void end(long lockTimeoutMillis) {
+        end();
+        if (shouldCommit()) {
+            this.lockTimeout = lockTimeoutMillis;
+            commit();
+        }
+    }
+}
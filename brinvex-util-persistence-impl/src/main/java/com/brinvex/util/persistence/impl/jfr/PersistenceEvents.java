@@ -0,0 +1,77 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.jfr;
+
+import jdk.jfr.Configuration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+
+/**
+ * JDK Flight Recorder events emitted by {@link com.brinvex.util.persistence.impl.EntityDaoSupportImpl}.
+ * <p>
+ * All events are disabled by default and cost a single flag check when JFR is not recording them.
+ * They are enabled by the bundled settings file {@value #SETTINGS_RESOURCE}, e.g.
+ * <pre>
+ * Recording recording = new Recording(PersistenceEvents.getConfiguration());
+ * </pre>
+ * or by merging its {@code <event>} elements into a custom {@code .jfc} file
+ * used with {@code -XX:StartFlightRecording:settings=...}.
+ * <p>
+ * Events:
+ * <ul>
+ * <li>{@link QueryEvent} - queries and by-id loads
+ * <li>{@link FlushEvent} - flushes, with the number of dirty checked entities
+ * <li>{@link LockEvent} - pessimistic lock acquisitions
+ * <li>{@link LockTimeoutEvent} - {@code set local lock_timeout} round trips on PostgreSQL
+ * <li>{@link BulkEvent} - bulk deletes
+ * </ul>
+ */
+public final class PersistenceEvents {
+
+    public static final String NAME_PREFIX = "com.brinvex.persistence.";
+
+    public static final String CATEGORY = "Brinvex Persistence";
+
+    public static final String SETTINGS_RESOURCE = "/com/brinvex/util/persistence/impl/jfr/brinvex-persistence.jfc";
+
+    private PersistenceEvents() {
+    }
+
+    /**
+     * Returns the bundled settings which enable all events of this package with stack traces
+     * and a 1 ms threshold for queries, locks and flushes.
+     */
+    public static Configuration getConfiguration() {
+        try (InputStream in = PersistenceEvents.class.getResourceAsStream(SETTINGS_RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing resource: " + SETTINGS_RESOURCE);
+            }
+            try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+                return Configuration.create(reader);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid resource: " + SETTINGS_RESOURCE, e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A query or by-id load executed by {@link com.brinvex.util.persistence.impl.EntityDaoSupportImpl}.
+ */
+@Name(PersistenceEvents.NAME_PREFIX + "Query")
+@Label("DAO Query")
+@Category(PersistenceEvents.CATEGORY)
+@Description("Query or by-id load executed by a DAO, including hydration of the results")
+@Enabled(false)
+public final class QueryEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    @Description("getResultList, getSingleResult, executeUpdate or find")
+    String operation;
+
+    @Label("Entity Type")
+    @Description("Loaded entity type, or the first query root")
+    Class<?> entityType;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Failed")
+    boolean failed;
+
+    public void end(String operation, Class<?> entityType, long rows, boolean failed) {
+        end();
+        if (shouldCommit()) {
+            this.operation = operation;
+            this.entityType = entityType;
+            this.rows = rows;
+            this.failed = failed;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.listener;
+
+import com.brinvex.util.persistence.api.EntityDaoListener;
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.api.EntityDaoSupportDecorator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceLoader;
+
+/**
+ * Wraps the support returned by {@link com.brinvex.util.persistence.api.EntityDaoSupportFactory}
+ * into a {@link ListeningEntityDaoSupport} notifying the {@link EntityDaoListener}s found by {@link ServiceLoader}.
+ * Without listeners, the support is returned unchanged.
+ */
+public class ListenerDecorator implements EntityDaoSupportDecorator {
+
+    @Override
+    public EntityDaoSupport decorate(EntityDaoSupport entityDaoSupport) {
+        if (entityDaoSupport instanceof ListeningEntityDaoSupport) {
+            return entityDaoSupport;
+        }
+        List<EntityDaoListener> listeners = new ArrayList<>();
+        for (EntityDaoListener listener : ServiceLoader.load(EntityDaoListener.class)) {
+            listeners.add(listener);
+        }
+        return ListeningEntityDaoSupport.wrap(entityDaoSupport, listeners);
+    }
+}
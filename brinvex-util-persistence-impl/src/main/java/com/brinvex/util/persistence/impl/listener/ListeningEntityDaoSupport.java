@@ -0,0 +1,125 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.listener;
+
+import com.brinvex.util.persistence.api.EntityDaoEvent;
+import com.brinvex.util.persistence.api.EntityDaoListener;
+import com.brinvex.util.persistence.api.EntityDaoOperation;
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.impl.ForwardingEntityDaoSupport;
+
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Decorator notifying {@link EntityDaoListener}s around every database-bound method
+ * of another {@link EntityDaoSupport}.
+ * Methods which only build criteria expressions or do not touch the database, e.g. {@code getReference},
+ * are delegated without notification.
+ * <p>
+ * The listeners are copied into an array once; every notified call allocates one {@link EntityDaoEvent}
+ * and one context array. Use {@link #wrap} to get the given support itself when there are no listeners.
+ * To notify listeners of all DAOs created through {@link com.brinvex.util.persistence.api.EntityDaoSupportFactory},
+ * see {@link ListenerDecorator}.
+ */
+public class ListeningEntityDaoSupport extends ForwardingEntityDaoSupport {
+
+    private final EntityDaoListener[] listeners;
+
+    public ListeningEntityDaoSupport(EntityDaoSupport delegate, List<? extends EntityDaoListener> listeners) {
+        super(delegate);
+        if (listeners.isEmpty()) {
+            throw new IllegalArgumentException("No listeners");
+        }
+        this.listeners = listeners.toArray(new EntityDaoListener[0]);
+    }
+
+    /**
+     * Returns the given support unchanged if there are no listeners, otherwise a decorator notifying them.
+     */
+    public static EntityDaoSupport wrap(EntityDaoSupport delegate, List<? extends EntityDaoListener> listeners) {
+        return listeners.isEmpty() ? delegate : new ListeningEntityDaoSupport(delegate, listeners);
+    }
+
+    public List<EntityDaoListener> getListeners() {
+        return List.of(listeners);
+    }
+
+    @Override
+    protected <R> R intercept(
+            EntityDaoOperation operation,
+            Class<?> entityType,
+            int idCount,
+            Supplier<R> call,
+            ToLongFunction<? super R> rowCounter
+    ) {
+        EntityDaoEvent event = new EntityDaoEvent(operation, entityType, idCount);
+        Object[] contexts = new Object[listeners.length];
+        int started = 0;
+        try {
+            for (; started < listeners.length; started++) {
+                contexts[started] = listeners[started].before(event);
+            }
+        } catch (RuntimeException | Error e) {
+            event.complete(-1, 0, e);
+            after(event, contexts, started, e);
+            throw e;
+        }
+        long startNanos = System.nanoTime();
+        R result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            event.complete(-1, System.nanoTime() - startNanos, e);
+            after(event, contexts, started, e);
+            throw e;
+        }
+        event.complete(rowCounter.applyAsLong(result), System.nanoTime() - startNanos, null);
+        after(event, contexts, started, null);
+        return result;
+    }
+
+    /**
+     * Calls {@code after} of the given number of first listeners in reverse order, each even if a previous one threw.
+     * Exceptions of the listeners are added as suppressed to the given failure if there is one,
+     * otherwise the first one is thrown once all listeners have been called.
+     */
+    private void after(EntityDaoEvent event, Object[] contexts, int count, Throwable failure) {
+        Throwable listenerFailure = null;
+        for (int i = count - 1; i >= 0; i--) {
+            try {
+                listeners[i].after(event, contexts[i]);
+            } catch (RuntimeException | Error e) {
+                if (failure != null) {
+                    if (e != failure) {
+                        failure.addSuppressed(e);
+                    }
+                } else if (listenerFailure == null) {
+                    listenerFailure = e;
+                } else {
+                    listenerFailure.addSuppressed(e);
+                }
+            }
+        }
+        if (listenerFailure instanceof Error) {
+            throw (Error) listenerFailure;
+        }
+        if (listenerFailure != null) {
+            throw (RuntimeException) listenerFailure;
+        }
+    }
+}
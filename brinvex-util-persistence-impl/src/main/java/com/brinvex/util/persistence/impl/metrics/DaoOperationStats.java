@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.metrics;
+
+import java.util.StringJoiner;
+
+/**
+ * Point-in-time statistics of one {@link com.brinvex.util.persistence.api.EntityDaoSupport} method
+ * called for one entity type, see {@link InstrumentedEntityDaoSupport}.
+ */
+public class DaoOperationStats {
+
+    private final String operation;
+
+    private final String entityName;
+
+    private final HistogramSnapshot latency;
+
+    private final long rows;
+
+    private final long errors;
+
+    DaoOperationStats(String operation, String entityName, HistogramSnapshot latency, long rows, long errors) {
+        this.operation = operation;
+        this.entityName = entityName;
+        this.latency = latency;
+        this.rows = rows;
+        this.errors = errors;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    /**
+     * Simple name of the entity type, or of the query root type. Null for calls not bound to a type, e.g. flush.
+     */
+    public String getEntityName() {
+        return entityName;
+    }
+
+    /**
+     * Durations of all calls, including failed ones.
+     */
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+
+    /**
+     * Total number of rows returned by queries or deleted by bulk deletes.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", DaoOperationStats.class.getSimpleName() + "[", "]")
+                .add("operation='" + operation + "'")
+                .add("entityName='" + entityName + "'")
+                .add("latency=" + latency)
+                .add("rows=" + rows)
+                .add("errors=" + errors)
+                .toString();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.metrics;
+
+import java.util.StringJoiner;
+
+/**
+ * Immutable point-in-time copy of a {@link LatencyHistogram}. All values are in nanoseconds.
+ */
+public class HistogramSnapshot {
+
+    private final long[] bucketCounts;
+
+    private final long count;
+
+    private final long totalNanos;
+
+    private final long maxNanos;
+
+    HistogramSnapshot(long[] bucketCounts, long count, long totalNanos, long maxNanos) {
+        this.bucketCounts = bucketCounts;
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    public long getP50Nanos() {
+        return getPercentileNanos(50);
+    }
+
+    public long getP90Nanos() {
+        return getPercentileNanos(90);
+    }
+
+    public long getP99Nanos() {
+        return getPercentileNanos(99);
+    }
+
+    public long getP999Nanos() {
+        return getPercentileNanos(99.9);
+    }
+
+    /**
+     * Returns the highest value equivalent (within the histogram precision) to the value
+     * below which the given percentage of recorded values falls.
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Illegal percentile: " + percentile);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank) {
+                return Math.min(LatencyHistogram.bucketUpperBound(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", HistogramSnapshot.class.getSimpleName() + "[", "]")
+                .add("count=" + count)
+                .add("meanNanos=" + getMeanNanos())
+                .add("p50Nanos=" + getP50Nanos())
+                .add("p99Nanos=" + getP99Nanos())
+                .add("maxNanos=" + maxNanos)
+                .toString();
+    }
+}
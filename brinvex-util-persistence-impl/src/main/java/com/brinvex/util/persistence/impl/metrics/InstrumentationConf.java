@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.metrics;
+
+import java.util.StringJoiner;
+
+import static java.util.Objects.requireNonNull;
+
+public class InstrumentationConf {
+
+    private MetricRegistry metricRegistry = MetricRegistry.getDefault();
+    private boolean enabled = true;
+    private String jmxObjectName;
+
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    public InstrumentationConf setMetricRegistry(MetricRegistry metricRegistry) {
+        this.metricRegistry = requireNonNull(metricRegistry);
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Initial state, see {@link InstrumentedEntityDaoSupport#setEnabled}.
+     */
+    public InstrumentationConf setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    public String getJmxObjectName() {
+        return jmxObjectName;
+    }
+
+    /**
+     * If set then the support is registered in the platform MBean server under this name,
+     * replacing any MBean registered under it before. Null (default) disables JMX.
+     */
+    public InstrumentationConf setJmxObjectName(String jmxObjectName) {
+        this.jmxObjectName = jmxObjectName;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", InstrumentationConf.class.getSimpleName() + "[", "]")
+                .add("enabled=" + enabled)
+                .add("jmxObjectName='" + jmxObjectName + "'")
+                .toString();
+    }
+}
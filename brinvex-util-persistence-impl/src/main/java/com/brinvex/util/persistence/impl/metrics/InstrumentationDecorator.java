@@ -0,0 +1,42 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.metrics;
+
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.api.EntityDaoSupportDecorator;
+
+/**
+ * Wraps the support returned by {@link com.brinvex.util.persistence.api.EntityDaoSupportFactory}
+ * into an {@link InstrumentedEntityDaoSupport} if the system property {@value #ENABLED_PROPERTY} is {@code true}.
+ * The MBean name can be changed by the system property {@value #JMX_OBJECT_NAME_PROPERTY}.
+ */
+public class InstrumentationDecorator implements EntityDaoSupportDecorator {
+
+    public static final String ENABLED_PROPERTY = "brinvex.persistence.instrumentation";
+
+    public static final String JMX_OBJECT_NAME_PROPERTY = "brinvex.persistence.instrumentation.jmxObjectName";
+
+    public static final String DEFAULT_JMX_OBJECT_NAME = "com.brinvex.util.persistence:type=EntityDaoSupport";
+
+    @Override
+    public EntityDaoSupport decorate(EntityDaoSupport entityDaoSupport) {
+        if (!Boolean.getBoolean(ENABLED_PROPERTY) || entityDaoSupport instanceof InstrumentedEntityDaoSupport) {
+            return entityDaoSupport;
+        }
+        return new InstrumentedEntityDaoSupport(entityDaoSupport, new InstrumentationConf()
+                .setJmxObjectName(System.getProperty(JMX_OBJECT_NAME_PROPERTY, DEFAULT_JMX_OBJECT_NAME)));
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.metrics;
+
+import com.brinvex.util.persistence.api.EntityDaoOperation;
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.impl.ForwardingEntityDaoSupport;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Decorator recording the latency, returned rows and errors of every database-bound method
+ * of another {@link EntityDaoSupport}, per method and entity type.
+ * <p>
+ * Metrics, e.g. for {@code getResults} of a query with the root {@code Salary}:
+ * <ul>
+ * <li>{@code dao.latency.getResults.Salary} - histogram of the call duration, failed calls included
+ * <li>{@code dao.rows.getResults.Salary} - rows returned by queries or deleted by bulk deletes
+ * <li>{@code dao.errors.getResults.Salary} - calls which threw an exception
+ * </ul>
+ * Query methods are attributed to the type of the first query root. Methods which only build criteria
+ * expressions or do not touch the database, e.g. {@code getReference}, are delegated without recording.
+ * <p>
+ * While disabled, every call costs one extra volatile read and the call's lambda. To instrument all DAOs created through
+ * {@link com.brinvex.util.persistence.api.EntityDaoSupportFactory}, see {@link InstrumentationDecorator}.
+ */
+public class InstrumentedEntityDaoSupport extends ForwardingEntityDaoSupport implements InstrumentedEntityDaoSupportMXBean {
+
+    private static final class OperationMetrics {
+        private final String operation;
+        private final Class<?> entityType;
+        private final LatencyHistogram latency;
+        private final LongAdder rows;
+        private final LongAdder errors;
+
+        private OperationMetrics(MetricRegistry registry, String operation, Class<?> entityType) {
+            String suffix = "." + operation + (entityType == null ? "" : "." + entityType.getSimpleName());
+            this.operation = operation;
+            this.entityType = entityType;
+            this.latency = registry.histogram("dao.latency" + suffix);
+            this.rows = registry.counter("dao.rows" + suffix);
+            this.errors = registry.counter("dao.errors" + suffix);
+        }
+
+        private DaoOperationStats snapshot() {
+            return new DaoOperationStats(
+                    operation,
+                    entityType == null ? null : entityType.getSimpleName(),
+                    latency.snapshot(),
+                    rows.sum(),
+                    errors.sum()
+            );
+        }
+
+        private void reset() {
+            latency.reset();
+            rows.reset();
+            errors.reset();
+        }
+    }
+
+    private final MetricRegistry metricRegistry;
+
+    private final ObjectName jmxObjectName;
+
+    private volatile boolean enabled;
+
+    private final ClassValue<ConcurrentMap<String, OperationMetrics>> operationMetrics = new ClassValue<>() {
+        @Override
+        protected ConcurrentMap<String, OperationMetrics> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final ConcurrentMap<String, OperationMetrics> untypedOperationMetrics = new ConcurrentHashMap<>();
+
+    private final List<OperationMetrics> allOperationMetrics = new CopyOnWriteArrayList<>();
+
+    public InstrumentedEntityDaoSupport(EntityDaoSupport delegate) {
+        this(delegate, new InstrumentationConf());
+    }
+
+    public InstrumentedEntityDaoSupport(EntityDaoSupport delegate, InstrumentationConf conf) {
+        super(delegate);
+        this.metricRegistry = conf.getMetricRegistry();
+        this.enabled = conf.isEnabled();
+        this.jmxObjectName = conf.getJmxObjectName() == null ? null : registerMBean(conf.getJmxObjectName());
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Turns recording on or off at runtime. Metrics recorded so far are kept.
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Returns the statistics of all instrumented methods called so far, ordered by method and entity name.
+     */
+    @Override
+    public List<DaoOperationStats> getOperationStats() {
+        List<DaoOperationStats> result = new ArrayList<>(allOperationMetrics.size());
+        for (OperationMetrics metrics : allOperationMetrics) {
+            result.add(metrics.snapshot());
+        }
+        result.sort(Comparator.comparing(DaoOperationStats::getOperation)
+                .thenComparing(DaoOperationStats::getEntityName, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return result;
+    }
+
+    /**
+     * Returns the statistics of one method and entity type, or null if it has not been called yet.
+     */
+    public DaoOperationStats getOperationStats(String operation, Class<?> entityType) {
+        OperationMetrics metrics = (entityType == null ? untypedOperationMetrics : operationMetrics.get(entityType))
+                .get(operation);
+        return metrics == null ? null : metrics.snapshot();
+    }
+
+    /**
+     * Resets the metrics recorded by this instance.
+     */
+    @Override
+    public void reset() {
+        allOperationMetrics.forEach(OperationMetrics::reset);
+    }
+
+    /**
+     * Unregisters the MBean, if any. The support keeps working.
+     */
+    public void unregisterMBean() {
+        if (jmxObjectName == null) {
+            return;
+        }
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (mBeanServer.isRegistered(jmxObjectName)) {
+                mBeanServer.unregisterMBean(jmxObjectName);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Failed to unregister MBean: " + jmxObjectName, e);
+        }
+    }
+
+    @Override
+    protected <R> R intercept(
+            EntityDaoOperation operation,
+            Class<?> entityType,
+            int idCount,
+            Supplier<R> call,
+            ToLongFunction<? super R> rowCounter
+    ) {
+        if (!enabled) {
+            return call.get();
+        }
+        return record(operation.getMethodName(), entityType, call, rowCounter);
+    }
+
+    protected <R> R record(String operation, Class<?> entityType, Supplier<R> call, ToLongFunction<? super R> rowCounter) {
+        OperationMetrics metrics = operationMetrics(operation, entityType);
+        long startNanos = System.nanoTime();
+        R result;
+        try {
+            result = call.get();
+        } catch (RuntimeException | Error e) {
+            metrics.latency.record(System.nanoTime() - startNanos);
+            metrics.errors.increment();
+            throw e;
+        }
+        metrics.latency.record(System.nanoTime() - startNanos);
+        long rows = rowCounter.applyAsLong(result);
+        if (rows != 0) {
+            metrics.rows.add(rows);
+        }
+        return result;
+    }
+
+    private OperationMetrics operationMetrics(String operation, Class<?> entityType) {
+        ConcurrentMap<String, OperationMetrics> byOperation =
+                entityType == null ? untypedOperationMetrics : operationMetrics.get(entityType);
+        OperationMetrics metrics = byOperation.get(operation);
+        if (metrics == null) {
+            metrics = byOperation.computeIfAbsent(operation, op -> {
+                OperationMetrics newMetrics = new OperationMetrics(metricRegistry, op, entityType);
+                allOperationMetrics.add(newMetrics);
+                return newMetrics;
+            });
+        }
+        return metrics;
+    }
+
+    private ObjectName registerMBean(String objectName) {
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(objectName);
+            if (mBeanServer.isRegistered(name)) {
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(this, name);
+            return name;
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Failed to register MBean: " + objectName, e);
+        }
+    }
+}
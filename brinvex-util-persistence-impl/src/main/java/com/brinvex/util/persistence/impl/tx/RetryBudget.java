@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.tx;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket limiting retries to a fraction of successful executions.
+ * Tokens are kept in thousandths so that fractional deposits do not need floating point atomics.
+ */
+class RetryBudget {
+
+    private static final long SCALE = 1000;
+
+    private final long maxScaledTokens;
+
+    private final long scaledDeposit;
+
+    private final AtomicLong scaledTokens;
+
+    RetryBudget(int maxTokens, double depositPerSuccess) {
+        this.maxScaledTokens = Math.max(0, maxTokens) * SCALE;
+        this.scaledDeposit = Math.max(0, Math.round(depositPerSuccess * SCALE));
+        this.scaledTokens = new AtomicLong(maxScaledTokens);
+    }
+
+    boolean tryAcquire() {
+        while (true) {
+            long current = scaledTokens.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (scaledTokens.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    void deposit() {
+        if (scaledDeposit > 0) {
+            scaledTokens.accumulateAndGet(scaledDeposit, (current, deposit) -> Math.min(maxScaledTokens, current + deposit));
+        }
+    }
+
+    double getAvailableTokens() {
+        return scaledTokens.get() / (double) SCALE;
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.tx;
+
+import com.brinvex.util.persistence.impl.DatabaseCapabilities;
+import com.brinvex.util.persistence.impl.metrics.LatencyHistogram;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.EntityTransaction;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Executes work in a resource-local transaction and retries it
+ * when it fails because of a serialization failure, a deadlock or a lock timeout.
+ * <p>
+ * Every attempt runs in a new {@link EntityManager}, because the persistence context
+ * of a failed transaction cannot be reused. The work must therefore be free of side effects
+ * outside the database, or those side effects must be idempotent.
+ * <p>
+ * Backoff between attempts is exponential with full jitter:
+ * a random delay between zero and {@code min(maxBackoff, initialBackoff * multiplier^(attempt-1))}.
+ * Retries are further limited by {@link TxExecutorConf#setMaxRetryDuration} and by a retry budget
+ * shared by all executions of this executor.
+ * <p>
+ * Recorded metrics (prefix is configurable, {@code tx} by default):
+ * <ul>
+ * <li>{@code tx.executions}, {@code tx.attempts}, {@code tx.retries}, {@code tx.retries.<reason>}
+ * <li>{@code tx.failures.nonRetryable}, {@code tx.failures.exhausted}, {@code tx.failures.budget}
+ * <li>histograms {@code tx.duration} (all attempts including backoff) and {@code tx.backoff}
+ * </ul>
+ */
+public class TxExecutor {
+
+    private final EntityManagerFactory emf;
+
+    private final TxExecutorConf conf;
+
+    private final TxRetryClassifier retryClassifier;
+
+    private final RetryBudget retryBudget;
+
+    private final MetricRegistry metricRegistry;
+
+    private final String metricPrefix;
+
+    private final LongAdder executionCounter;
+
+    private final LongAdder attemptCounter;
+
+    private final LongAdder retryCounter;
+
+    private final LongAdder nonRetryableFailureCounter;
+
+    private final LongAdder exhaustedFailureCounter;
+
+    private final LongAdder budgetFailureCounter;
+
+    private final LatencyHistogram durationHistogram;
+
+    private final LatencyHistogram backoffHistogram;
+
+    private final String isolationLevelSql;
+
+    public TxExecutor(EntityManagerFactory emf) {
+        this(emf, new TxExecutorConf());
+    }
+
+    public TxExecutor(EntityManagerFactory emf, TxExecutorConf conf) {
+        this.emf = requireNonNull(emf);
+        this.conf = requireNonNull(conf);
+        this.retryClassifier = new TxRetryClassifier(conf.getAdditionalRetryableSqlStates(), conf.isRetryOnOptimisticLock());
+        this.retryBudget = new RetryBudget(conf.getRetryBudgetMaxTokens(), conf.getRetryBudgetRatio());
+        this.metricRegistry = conf.getMetricRegistry();
+        this.metricPrefix = conf.getMetricPrefix();
+        this.executionCounter = metricRegistry.counter(metricPrefix + ".executions");
+        this.attemptCounter = metricRegistry.counter(metricPrefix + ".attempts");
+        this.retryCounter = metricRegistry.counter(metricPrefix + ".retries");
+        this.nonRetryableFailureCounter = metricRegistry.counter(metricPrefix + ".failures.nonRetryable");
+        this.exhaustedFailureCounter = metricRegistry.counter(metricPrefix + ".failures.exhausted");
+        this.budgetFailureCounter = metricRegistry.counter(metricPrefix + ".failures.budget");
+        this.durationHistogram = metricRegistry.histogram(metricPrefix + ".duration");
+        this.backoffHistogram = metricRegistry.histogram(metricPrefix + ".backoff");
+        this.isolationLevelSql = conf.getIsolationLevel() == null ? null : isolationLevelSql(emf, conf.getIsolationLevel());
+    }
+
+    public <T> T doInTx(Function<EntityManager, T> work) {
+        requireNonNull(work);
+        executionCounter.increment();
+        long startNanos = System.nanoTime();
+        try {
+            for (int attempt = 1; ; attempt++) {
+                attemptCounter.increment();
+                try {
+                    T result = doInTxOnce(work);
+                    if (attempt == 1) {
+                        retryBudget.deposit();
+                    }
+                    return result;
+                } catch (RuntimeException e) {
+                    long backoffNanos = prepareRetry(e, attempt, startNanos);
+                    backoffHistogram.record(backoffNanos);
+                    sleepNanos(backoffNanos, e);
+                }
+            }
+        } finally {
+            durationHistogram.record(System.nanoTime() - startNanos);
+        }
+    }
+
+    public void doInTxWithoutResult(Consumer<EntityManager> work) {
+        requireNonNull(work);
+        doInTx(em -> {
+            work.accept(em);
+            return null;
+        });
+    }
+
+    public TxExecutorConf getConf() {
+        return conf;
+    }
+
+    public double getAvailableRetryBudget() {
+        return retryBudget.getAvailableTokens();
+    }
+
+    /**
+     * Returns the backoff before the next attempt or rethrows the failure if no retry should follow.
+     */
+    protected long prepareRetry(RuntimeException failure, int attempt, long startNanos) {
+        String retryReason = retryClassifier.getRetryReason(failure);
+        if (retryReason == null) {
+            nonRetryableFailureCounter.increment();
+            throw failure;
+        }
+        if (attempt >= conf.getMaxAttempts()) {
+            exhaustedFailureCounter.increment();
+            throw failure;
+        }
+        long backoffNanos = computeBackoffNanos(attempt);
+        Duration maxRetryDuration = conf.getMaxRetryDuration();
+        if (maxRetryDuration != null && System.nanoTime() - startNanos + backoffNanos > maxRetryDuration.toNanos()) {
+            exhaustedFailureCounter.increment();
+            throw failure;
+        }
+        if (!retryBudget.tryAcquire()) {
+            budgetFailureCounter.increment();
+            throw failure;
+        }
+        retryCounter.increment();
+        metricRegistry.counter(metricPrefix + ".retries." + retryReason).increment();
+        return backoffNanos;
+    }
+
+    protected long computeBackoffNanos(int attempt) {
+        double exponentialNanos = conf.getInitialBackoff().toNanos() * Math.pow(conf.getBackoffMultiplier(), attempt - 1);
+        long capNanos = (long) Math.min(conf.getMaxBackoff().toNanos(), exponentialNanos);
+        return capNanos <= 0 ? 0 : ThreadLocalRandom.current().nextLong(capNanos + 1);
+    }
+
+    /**
+     * A failed transaction is rolled back while its entity manager is still open.
+     */
+    protected <T> T doInTxOnce(Function<EntityManager, T> work) {
+        try (EntityManager em = emf.createEntityManager()) {
+            EntityTransaction tx = em.getTransaction();
+            tx.begin();
+            try {
+                if (isolationLevelSql != null) {
+                    em.createNativeQuery(isolationLevelSql).executeUpdate();
+                }
+                T result = work.apply(em);
+                if (!tx.getRollbackOnly()) {
+                    tx.commit();
+                } else {
+                    tx.rollback();
+                }
+                return result;
+            } catch (RuntimeException | Error e) {
+                if (tx.isActive()) {
+                    try {
+                        tx.rollback();
+                    } catch (RuntimeException rollbackFailure) {
+                        e.addSuppressed(rollbackFailure);
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    private static void sleepNanos(long nanos, RuntimeException failure) {
+        if (nanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.addSuppressed(e);
+            throw failure;
+        }
+    }
+
+    /**
+     * The statement must be the first one in the transaction and is scoped to it,
+     * so it never leaks to other transactions using the same pooled connection.
+     * On SQL Server the same statement would change the whole session, therefore only PostgreSQL is supported.
+     */
+    private static String isolationLevelSql(EntityManagerFactory emf, TxIsolationLevel isolationLevel) {
+        DatabaseCapabilities capabilities = DatabaseCapabilities.of(emf);
+        if (capabilities.isPostgresql()) {
+            return "set transaction isolation level " + isolationLevel.getSqlName();
+        } else {
+            throw new IllegalStateException("Isolation level is not supported for dialect: " + capabilities.getDialectName());
+        }
+    }
+
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.tx;
+
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.StringJoiner;
+
+public class TxExecutorConf {
+
+    private int maxAttempts = 5;
+    private Duration initialBackoff = Duration.ofMillis(20);
+    private Duration maxBackoff = Duration.ofSeconds(1);
+    private double backoffMultiplier = 2.0;
+    private Duration maxRetryDuration = Duration.ofSeconds(10);
+    private int retryBudgetMaxTokens = 100;
+    private double retryBudgetRatio = 0.1;
+    private boolean retryOnOptimisticLock = false;
+    private final Set<String> additionalRetryableSqlStates = new LinkedHashSet<>();
+    private TxIsolationLevel isolationLevel;
+    private MetricRegistry metricRegistry = MetricRegistry.getDefault();
+    private String metricPrefix = "tx";
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Maximum number of times the transaction is executed, including the first attempt.
+     */
+    public TxExecutorConf setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("Illegal maxAttempts: " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public TxExecutorConf setInitialBackoff(Duration initialBackoff) {
+        this.initialBackoff = initialBackoff;
+        return this;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public TxExecutorConf setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+        return this;
+    }
+
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    public TxExecutorConf setBackoffMultiplier(double backoffMultiplier) {
+        if (backoffMultiplier < 1) {
+            throw new IllegalArgumentException("Illegal backoffMultiplier: " + backoffMultiplier);
+        }
+        this.backoffMultiplier = backoffMultiplier;
+        return this;
+    }
+
+    public Duration getMaxRetryDuration() {
+        return maxRetryDuration;
+    }
+
+    /**
+     * No retry is started once this much time has elapsed since the first attempt.
+     * Null means no time limit.
+     */
+    public TxExecutorConf setMaxRetryDuration(Duration maxRetryDuration) {
+        this.maxRetryDuration = maxRetryDuration;
+        return this;
+    }
+
+    public int getRetryBudgetMaxTokens() {
+        return retryBudgetMaxTokens;
+    }
+
+    /**
+     * Every retry consumes one token of the budget shared by all executions of one {@link TxExecutor}.
+     * The budget starts full, so this is also the size of the largest burst of retries.
+     */
+    public TxExecutorConf setRetryBudgetMaxTokens(int retryBudgetMaxTokens) {
+        this.retryBudgetMaxTokens = retryBudgetMaxTokens;
+        return this;
+    }
+
+    public double getRetryBudgetRatio() {
+        return retryBudgetRatio;
+    }
+
+    /**
+     * Number of tokens added to the retry budget by every execution which succeeds at the first attempt.
+     * In the long run the number of retries is kept below this fraction of successful executions,
+     * so a database under heavy contention is not flooded with retries.
+     */
+    public TxExecutorConf setRetryBudgetRatio(double retryBudgetRatio) {
+        this.retryBudgetRatio = retryBudgetRatio;
+        return this;
+    }
+
+    public boolean isRetryOnOptimisticLock() {
+        return retryOnOptimisticLock;
+    }
+
+    public TxExecutorConf setRetryOnOptimisticLock(boolean retryOnOptimisticLock) {
+        this.retryOnOptimisticLock = retryOnOptimisticLock;
+        return this;
+    }
+
+    public Set<String> getAdditionalRetryableSqlStates() {
+        return additionalRetryableSqlStates;
+    }
+
+    public TxExecutorConf addRetryableSqlStates(Collection<String> sqlStates) {
+        this.additionalRetryableSqlStates.addAll(sqlStates);
+        return this;
+    }
+
+    public TxIsolationLevel getIsolationLevel() {
+        return isolationLevel;
+    }
+
+    /**
+     * Null means the database default.
+     */
+    public TxExecutorConf setIsolationLevel(TxIsolationLevel isolationLevel) {
+        this.isolationLevel = isolationLevel;
+        return this;
+    }
+
+    public MetricRegistry getMetricRegistry() {
+        return metricRegistry;
+    }
+
+    public TxExecutorConf setMetricRegistry(MetricRegistry metricRegistry) {
+        this.metricRegistry = metricRegistry;
+        return this;
+    }
+
+    public String getMetricPrefix() {
+        return metricPrefix;
+    }
+
+    public TxExecutorConf setMetricPrefix(String metricPrefix) {
+        this.metricPrefix = metricPrefix;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", TxExecutorConf.class.getSimpleName() + "[", "]")
+                .add("maxAttempts=" + maxAttempts)
+                .add("initialBackoff=" + initialBackoff)
+                .add("maxBackoff=" + maxBackoff)
+                .add("backoffMultiplier=" + backoffMultiplier)
+                .add("maxRetryDuration=" + maxRetryDuration)
+                .add("retryBudgetMaxTokens=" + retryBudgetMaxTokens)
+                .add("retryBudgetRatio=" + retryBudgetRatio)
+                .add("retryOnOptimisticLock=" + retryOnOptimisticLock)
+                .add("additionalRetryableSqlStates=" + additionalRetryableSqlStates)
+                .add("isolationLevel=" + isolationLevel)
+                .add("metricPrefix='" + metricPrefix + "'")
+                .toString();
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.tx;
+
+public enum TxIsolationLevel {
+
+    READ_COMMITTED("read committed"),
+
+    REPEATABLE_READ("repeatable read"),
+
+    SERIALIZABLE("serializable");
+
+    private final String sqlName;
+
+    TxIsolationLevel(String sqlName) {
+        this.sqlName = sqlName;
+    }
+
+    public String getSqlName() {
+        return sqlName;
+    }
+}
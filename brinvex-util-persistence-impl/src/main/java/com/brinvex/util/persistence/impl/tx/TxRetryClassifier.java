@@ -0,0 +1,108 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.tx;
+
+import com.brinvex.util.persistence.api.LockNotAvailableException;
+import jakarta.persistence.OptimisticLockException;
+import org.hibernate.StaleStateException;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Decides whether a failed transaction is worth retrying.
+ * <p>
+ * Retryable are the failures caused by concurrent transactions rather than by the data or the code:
+ * <ul>
+ * <li>40001 - serialization_failure (PostgreSQL), deadlock victim (SQL Server, error 1205)
+ * <li>40P01 - deadlock_detected (PostgreSQL)
+ * <li>55P03 - lock_not_available (PostgreSQL), raised when {@code lock_timeout} expires
+ * <li>SQL Server error 1222 - lock request time out period exceeded
+ * </ul>
+ * A {@link LockNotAvailableException} anywhere in the cause chain is never retried, the NOWAIT variants are meant to fail fast.
+ */
+public class TxRetryClassifier {
+
+    public static final String SERIALIZATION_FAILURE = "40001";
+
+    public static final String DEADLOCK_DETECTED = "40P01";
+
+    public static final String LOCK_NOT_AVAILABLE = "55P03";
+
+    private static final Set<String> RETRYABLE_SQL_STATES = Set.of(
+            SERIALIZATION_FAILURE,
+            DEADLOCK_DETECTED,
+            LOCK_NOT_AVAILABLE
+    );
+
+    private static final int SQLSERVER_DEADLOCK_VICTIM = 1205;
+
+    private static final int SQLSERVER_LOCK_TIMEOUT = 1222;
+
+    private static final int MAX_CAUSE_DEPTH = 32;
+
+    private final Set<String> additionalRetryableSqlStates;
+
+    private final boolean retryOnOptimisticLock;
+
+    public TxRetryClassifier(Collection<String> additionalRetryableSqlStates, boolean retryOnOptimisticLock) {
+        this.additionalRetryableSqlStates = Set.copyOf(additionalRetryableSqlStates);
+        this.retryOnOptimisticLock = retryOnOptimisticLock;
+    }
+
+    /**
+     * Returns a short reason (usually the SQL state) if the given failure is retryable, otherwise null.
+     */
+    public String getRetryReason(Throwable failure) {
+        Throwable t = failure;
+        for (int depth = 0; t != null && depth < MAX_CAUSE_DEPTH; depth++) {
+            if (t instanceof LockNotAvailableException) {
+                return null;
+            }
+            if (t instanceof SQLException) {
+                for (SQLException e = (SQLException) t; e != null; e = e.getNextException()) {
+                    String reason = getRetryReason(e);
+                    if (reason != null) {
+                        return reason;
+                    }
+                }
+            } else if (retryOnOptimisticLock
+                       && (t instanceof OptimisticLockException || t instanceof StaleStateException)) {
+                return "optimisticLock";
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+            t = t.getCause();
+        }
+        return null;
+    }
+
+    protected String getRetryReason(SQLException e) {
+        String sqlState = e.getSQLState();
+        if (sqlState != null
+            && (RETRYABLE_SQL_STATES.contains(sqlState) || additionalRetryableSqlStates.contains(sqlState))) {
+            return sqlState;
+        }
+        int errorCode = e.getErrorCode();
+        if (errorCode == SQLSERVER_DEADLOCK_VICTIM || errorCode == SQLSERVER_LOCK_TIMEOUT) {
+            return Integer.toString(errorCode);
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BatchLoaderTest extends AbstractTest {
+
+    private static class QueryCountingSupport extends EntityDaoSupportImpl {
+
+        private final AtomicInteger loadQueries = new AtomicInteger();
+
+        @Override
+        protected <ENTITY, ID extends Serializable> List<ENTITY> loadByIds(
+                EntityManager em,
+                Class<ENTITY> entityType,
+                Collection<ID> ids,
+                SingularAttribute<? super ENTITY, ID> idAttribute
+        ) {
+            loadQueries.incrementAndGet();
+            return super.loadByIds(em, entityType, ids, idAttribute);
+        }
+    }
+
+    private final List<Employee> employees = new ArrayList<>();
+    private final List<Salary> salaries = new ArrayList<>();
+
+    {
+        for (int i = 0; i < 5; i++) {
+            Employee employee = newEmployee("Employee " + i);
+            employees.add(employee);
+
+            Salary salary = newSalary(employee, "2023-02-01", "100");
+            salaries.add(salary);
+        }
+    }
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            employees.forEach(em::persist);
+            salaries.forEach(em::persist);
+        });
+    }
+
+    @Test
+    void batchBlock() {
+        QueryCountingSupport support = new QueryCountingSupport();
+        doInTx(em -> {
+            EmployeeDao employeeDao = new EmployeeDao(em, support);
+            List<CompletableFuture<Employee>> futures = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            employeeDao.batch(() -> {
+                for (Employee employee : employees) {
+                    futures.add(employeeDao.getByIdLater(employee.getId()));
+                    employeeDao.getByIdLater(employee.getId()).thenAccept(e -> names.add(e.getName()));
+                }
+                futures.add(employeeDao.getByIdLater(-1L));
+                assertFalse(futures.get(0).isDone());
+            });
+            assertEquals(1, support.loadQueries.get());
+            assertEquals("Employee 3", futures.get(3).join().getName());
+            assertNull(futures.get(5).join());
+            assertEquals(5, names.size());
+            assertSame(futures.get(0).join(), employeeDao.getById(employees.get(0).getId()));
+        });
+    }
+
+    @Test
+    void joinDispatchesAllPending() {
+        QueryCountingSupport support = new QueryCountingSupport();
+        doInTx(em -> {
+            EmployeeDao employeeDao = new EmployeeDao(em, support);
+            List<CompletableFuture<Employee>> futures = new ArrayList<>();
+            for (Employee employee : employees) {
+                futures.add(employeeDao.getByIdLater(employee.getId()));
+            }
+            assertEquals("Employee 0", futures.get(0).join().getName());
+            assertTrue(futures.stream().allMatch(CompletableFuture::isDone));
+            assertEquals(1, support.loadQueries.get());
+        });
+    }
+
+    @Test
+    void failedBlockFailsPending() {
+        QueryCountingSupport support = new QueryCountingSupport();
+        doInTx(em -> {
+            EmployeeDao employeeDao = new EmployeeDao(em, support);
+            List<CompletableFuture<Employee>> futures = new ArrayList<>();
+            IllegalStateException failure = assertThrows(IllegalStateException.class, () -> employeeDao.batch(() -> {
+                futures.add(employeeDao.getByIdLater(employees.get(0).getId()));
+                employeeDao.batch(() -> futures.add(employeeDao.getByIdLater(employees.get(1).getId())));
+                throw new IllegalStateException("Block failed");
+            }));
+            assertTrue(futures.stream().allMatch(CompletableFuture::isCompletedExceptionally));
+            assertSame(failure, assertThrows(CompletionException.class, () -> futures.get(0).join()).getCause());
+            assertEquals(0, support.loadQueries.get());
+        });
+    }
+
+    @Test
+    void lazyAssociationsInitializedInOneRoundTrip() {
+        QueryCountingSupport support = new QueryCountingSupport();
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            EmployeeDao employeeDao = new EmployeeDao(em, support);
+            List<Salary> loadedSalaries = salaryDao.findByIds(salaries.stream().map(Salary::getId).collect(Collectors.toList()));
+            assertTrue(loadedSalaries.stream().noneMatch(s -> Hibernate.isInitialized(s.getEmployee())));
+
+            employeeDao.batch(() -> loadedSalaries.forEach(s -> employeeDao.getByIdLater(s.getEmployee().getId())));
+            assertTrue(loadedSalaries.stream().allMatch(s -> Hibernate.isInitialized(s.getEmployee())));
+            assertEquals(2, support.loadQueries.get());
+        });
+    }
+
+}
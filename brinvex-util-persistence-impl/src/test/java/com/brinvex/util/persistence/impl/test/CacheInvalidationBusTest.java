@@ -0,0 +1,170 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.impl.EntityDaoSupportConf;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.cache.CacheInvalidationBus;
+import com.brinvex.util.persistence.impl.cache.CacheInvalidationConf;
+import com.brinvex.util.persistence.impl.cache.EntityCache;
+import com.brinvex.util.persistence.impl.cache.EntityCacheConf;
+import com.brinvex.util.persistence.impl.cache.IdFilterConf;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Persistence;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CacheInvalidationBusTest extends AbstractTest {
+
+    private final Employee emp1 = newEmployee("Alice");
+
+    private EntityManagerFactory otherNodeEmf;
+
+    private final List<EntityDaoSupportImpl> nodes = new ArrayList<>();
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+        });
+        otherNodeEmf = Persistence.createEntityManagerFactory(persistenceUnitName(),
+                Map.of("jakarta.persistence.schema-generation.database.action", "none"));
+    }
+
+    @AfterEach
+    void closeNodes() {
+        nodes.forEach(EntityDaoSupportImpl::close);
+        assertTrue(Thread.getAllStackTraces().keySet().stream()
+                        .noneMatch(t -> t.getName().equals("brinvex-cache-invalidation-listener")),
+                "Listener must release its connection when the support is closed");
+        otherNodeEmf.close();
+    }
+
+    private EntityDaoSupportImpl nodeSupport(String nodeId, EntityManagerFactory emf, MetricRegistry metrics) {
+        EntityDaoSupportImpl node = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .addEntityCache(new EntityCacheConf<>(Employee.class).setCopier(AbstractTest::copyEmployee))
+                .addIdFilter(new IdFilterConf<>(Employee.class).setExpectedSize(1_000))
+                .setCacheInvalidation(new CacheInvalidationConf()
+                        .setEntityManagerFactory(emf)
+                        .setChannel("brinvex_test_invalidation")
+                        .setNodeId(nodeId)
+                        .setPollTimeout(Duration.ofMillis(50))));
+        nodes.add(node);
+        return node;
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            sleep(0.05);
+        }
+    }
+
+    @Test
+    void invalidationPropagatesOnCommit() {
+        MetricRegistry metrics1 = new MetricRegistry();
+        MetricRegistry metrics2 = new MetricRegistry();
+        EntityDaoSupportImpl node1 = nodeSupport("node1", emf(), metrics1);
+        EntityDaoSupportImpl node2 = nodeSupport("node2", otherNodeEmf, metrics2);
+        CacheInvalidationBus bus2 = node2.getCacheInvalidationBus();
+        await(bus2::isListening);
+
+        try (EntityManager em = otherNodeEmf.createEntityManager()) {
+            assertEquals("Alice", new EmployeeDao(em, node2).getById(emp1.getId()).getName());
+        }
+        EntityCache<Employee> cache2 = node2.getEntityCache(otherNodeEmf, Employee.class);
+        assertEquals(1, cache2.size());
+
+        doInTx(em -> {
+            EmployeeDao employeeDao = new EmployeeDao(em, node1);
+            Employee employee = employeeDao.getById(emp1.getId());
+            employee.setName("Alice Smith");
+            employeeDao.merge(employee);
+        });
+        await(() -> cache2.size() == 0);
+
+        Employee emp2 = newEmployee("Bob");
+        doInTx(em -> {
+            new EmployeeDao(em, node1).persist(emp2);
+        });
+        await(() -> metrics2.getCount("invalidation.received") == 2);
+        try (EntityManager em = otherNodeEmf.createEntityManager()) {
+            EmployeeDao employeeDao = new EmployeeDao(em, node2);
+            assertEquals("Alice Smith", employeeDao.getById(emp1.getId()).getName());
+            assertNotNull(employeeDao.getById(emp2.getId()), "Id filter must learn about remote inserts");
+        }
+        assertEquals(2, metrics1.getCount("invalidation.published"));
+        assertEquals(0, metrics1.getCount("invalidation.received"), "Own notifications are ignored");
+    }
+
+    @Test
+    void rolledBackWritesAreNotPublished() {
+        MetricRegistry metrics1 = new MetricRegistry();
+        EntityDaoSupportImpl node1 = nodeSupport("node1", emf(), metrics1);
+
+        assertThrows(IllegalStateException.class, () -> doInTx(em -> {
+            EmployeeDao employeeDao = new EmployeeDao(em, node1);
+            employeeDao.merge(employeeDao.getById(emp1.getId()));
+            if (employeeDao.getById(emp1.getId()) != null) {
+                throw new IllegalStateException("Rollback");
+            }
+        }));
+        assertEquals(0, metrics1.getCount("invalidation.published"));
+    }
+
+    @Test
+    void factoryIsRequired() {
+        assertThrows(IllegalArgumentException.class, () -> new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setCacheInvalidation(new CacheInvalidationConf())));
+    }
+
+    @Test
+    void largeBatchIsSplit() {
+        MetricRegistry metrics1 = new MetricRegistry();
+        MetricRegistry metrics2 = new MetricRegistry();
+        EntityDaoSupportImpl node1 = nodeSupport("node1", emf(), metrics1);
+        EntityDaoSupportImpl node2 = nodeSupport("node2", otherNodeEmf, metrics2);
+        await(node2.getCacheInvalidationBus()::isListening);
+
+        List<Long> ids = LongStream.range(1_000_000_000L, 1_000_003_000L).boxed().collect(Collectors.toCollection(ArrayList::new));
+        doInTx(em -> {
+            new EmployeeDao(em, node1).bulkDeleteByIds(ids);
+        });
+        assertTrue(metrics1.getCount("invalidation.published") > 1);
+        await(() -> metrics2.getCount("invalidation.received") == metrics1.getCount("invalidation.published"));
+    }
+
+}
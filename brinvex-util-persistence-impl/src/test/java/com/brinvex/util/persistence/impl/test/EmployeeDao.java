@@ -16,6 +16,7 @@
 package com.brinvex.util.persistence.impl.test;
 
 import com.brinvex.util.persistence.api.AbstractEntityDao;
+import com.brinvex.util.persistence.api.EntityDaoSupport;
 import com.brinvex.util.persistence.impl.test.dm.Employee;
 import com.brinvex.util.persistence.impl.test.dm.Employee_;
 import jakarta.persistence.EntityManager;
@@ -35,6 +36,11 @@ public class EmployeeDao extends AbstractEntityDao<Employee, Long> {
         this.em = em;
     }
 
+    protected EmployeeDao(EntityManager em, EntityDaoSupport entityDaoSupport) {
+        super(Employee.class, Long.class, entityDaoSupport);
+        this.em = em;
+    }
+
     @Override
     protected EntityManager entityManager() {
         return em;
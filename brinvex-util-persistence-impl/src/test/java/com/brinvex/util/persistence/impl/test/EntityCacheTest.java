@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.impl.EntityDaoSupportConf;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.cache.EntityCache;
+import com.brinvex.util.persistence.impl.cache.EntityCacheConf;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EntityCacheTest extends AbstractTest {
+
+    private final Employee emp1 = newEmployee("Alice");
+    private final Employee emp2 = newEmployee("Bob");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+            em.persist(emp2);
+        });
+    }
+
+    private EntityDaoSupportImpl cachingSupport(MetricRegistry metrics, long maximumSize) {
+        return new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .addEntityCache(new EntityCacheConf<>(Employee.class)
+                        .setMaximumSize(maximumSize)
+                        .setTimeToLive(Duration.ofMinutes(1))
+                        .setCopier(AbstractTest::copyEmployee)));
+    }
+
+    @Test
+    void readThroughAndInvalidation() {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = cachingSupport(metrics, 100);
+        EntityCache<Employee> cache = support.getEntityCache(emf(), Employee.class);
+
+        Employee loaded = doInReadOnlyTx(em -> {
+            EmployeeDao employeeDao = new EmployeeDao(em, support);
+            Employee employee = employeeDao.getById(emp1.getId());
+            assertSame(employee, employeeDao.getById(emp1.getId()), "Managed instance must win over the cache");
+            return employee;
+        });
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0, cache.getHitCount());
+
+        Employee cached = doInReadOnlyTx(em -> {
+            return new EmployeeDao(em, support).getById(emp1.getId());
+        });
+        assertEquals(1, cache.getHitCount());
+        assertNotSame(loaded, cached);
+        assertEquals("Alice", cached.getName());
+
+        cached.setName("Changed outside");
+        assertEquals("Alice", doInReadOnlyTx(em -> {
+            return new EmployeeDao(em, support).getById(emp1.getId());
+        }).getName());
+
+        doInTx(em -> {
+            Employee employee = new EmployeeDao(em, support).getById(emp1.getId());
+            employee.setName("Alice Smith");
+            new EmployeeDao(em, support).merge(employee);
+        });
+        assertEquals(0, cache.size());
+        assertEquals("Alice Smith", doInReadOnlyTx(em -> {
+            return new EmployeeDao(em, support).getById(emp1.getId());
+        }).getName());
+
+        doInReadOnlyTx(em -> {
+            assertEquals(2, new EmployeeDao(em, support).findByIds(List.of(emp1.getId(), emp2.getId(), -1L)).size());
+        });
+        assertEquals(2, cache.size());
+
+        doInTx(em -> {
+            new EmployeeDao(em, support).bulkDeleteByIds(List.of(emp2.getId()));
+        });
+        assertEquals(1, cache.size());
+        doInTx(em -> {
+            assertNull(new EmployeeDao(em, support).getById(emp2.getId()));
+        });
+    }
+
+    @Test
+    void frequencyBasedAdmission() {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = cachingSupport(metrics, 1);
+        EntityCache<Employee> cache = support.getEntityCache(emf(), Employee.class);
+
+        for (int i = 0; i < 3; i++) {
+            doInReadOnlyTx(em -> {
+                return new EmployeeDao(em, support).getById(emp1.getId());
+            });
+        }
+        doInReadOnlyTx(em -> {
+            return new EmployeeDao(em, support).getById(emp2.getId());
+        });
+        assertEquals(1, cache.size());
+        assertEquals(1, metrics.getCount("cache.rejections.Employee"));
+        assertEquals(0, cache.getEvictionCount());
+        assertNotNull(cache.get(emp1.getId()));
+    }
+
+    @Test
+    void writeTransactionBypassesCache() {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = cachingSupport(metrics, 100);
+        EntityCache<Employee> cache = support.getEntityCache(emf(), Employee.class);
+        doInReadOnlyTx(em -> {
+            return new EmployeeDao(em, support).findByIds(List.of(emp1.getId(), emp2.getId()));
+        });
+        assertEquals(2, cache.size());
+
+        doInTx(em -> {
+            EmployeeDao employeeDao = new EmployeeDao(em, support);
+            Employee employee = employeeDao.getByIdAndCheckVersion(emp1.getId(), emp1.getVersion(), Employee::getVersion);
+            assertTrue(em.contains(employee));
+            employee.setName("Alice Smith");
+        });
+        doInTx(em -> {
+            Employee employee = new EmployeeDao(em, support).getById(emp2.getId());
+            assertTrue(em.contains(employee));
+            employee.setName("Bob Smith");
+        });
+        assertEquals(0, cache.getHitCount());
+
+        doInTx(em -> {
+            assertEquals("Alice Smith", em.find(Employee.class, emp1.getId()).getName());
+            assertEquals("Bob Smith", em.find(Employee.class, emp2.getId()).getName());
+        });
+    }
+
+    @Test
+    void mutableEntityRequiresCopier() {
+        assertThrows(IllegalArgumentException.class, () -> new EntityDaoSupportConf()
+                .addEntityCache(new EntityCacheConf<>(Employee.class)));
+    }
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.api.EntityDaoEvent;
+import com.brinvex.util.persistence.api.EntityDaoListener;
+import com.brinvex.util.persistence.api.EntityDaoOperation;
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.listener.ListenerDecorator;
+import com.brinvex.util.persistence.impl.listener.ListeningEntityDaoSupport;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class EntityDaoListenerTest extends AbstractTest {
+
+    private static class RecordingListener implements EntityDaoListener {
+
+        private final String name;
+
+        private final List<String> calls;
+
+        private final List<EntityDaoEvent> events = new ArrayList<>();
+
+        private RecordingListener(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Override
+        public Object before(EntityDaoEvent event) {
+            calls.add("before " + name + " " + event.getOperation());
+            return name + " context";
+        }
+
+        @Override
+        public void after(EntityDaoEvent event, Object context) {
+            assertEquals(name + " context", context);
+            calls.add("after " + name + " " + event.getOperation());
+            events.add(event);
+        }
+    }
+
+    private final Employee emp1 = newEmployee("Alice");
+    private final Salary salary1_1 = newSalary(emp1, "2023-02-01", "150");
+    private final Salary salary1_2 = newSalary(emp1, "2023-03-01", "160");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+            em.persist(salary1_1);
+            em.persist(salary1_2);
+        });
+    }
+
+    @Test
+    void events() {
+        List<String> calls = new ArrayList<>();
+        RecordingListener listener1 = new RecordingListener("l1", calls);
+        RecordingListener listener2 = new RecordingListener("l2", calls);
+        EntityDaoSupport support = ListeningEntityDaoSupport.wrap(new EntityDaoSupportImpl(), List.of(listener1, listener2));
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            EmployeeDao employeeDao = new EmployeeDao(em, support);
+            assertEquals(2, salaryDao.findByEmployeeId(emp1.getId(), false).size());
+            assertEquals(2, salaryDao.findByIds(List.of(salary1_1.getId(), salary1_2.getId(), -1L)).size());
+            assertEquals(salary1_1.getId(), salaryDao.getReference(salary1_1.getId()).getId());
+            assertThrows(OptimisticLockException.class,
+                    () -> employeeDao.getByIdAndCheckVersion(emp1.getId(), (short) (emp1.getVersion() + 1), Employee::getVersion));
+        });
+
+        assertEquals(List.of(
+                "before l1 GET_RESULTS", "before l2 GET_RESULTS", "after l2 GET_RESULTS", "after l1 GET_RESULTS",
+                "before l1 FIND_BY_IDS", "before l2 FIND_BY_IDS", "after l2 FIND_BY_IDS", "after l1 FIND_BY_IDS",
+                "before l1 GET_BY_ID_AND_CHECK_VERSION", "before l2 GET_BY_ID_AND_CHECK_VERSION",
+                "after l2 GET_BY_ID_AND_CHECK_VERSION", "after l1 GET_BY_ID_AND_CHECK_VERSION"
+        ), calls);
+
+        List<EntityDaoEvent> events = listener1.events;
+        assertEquals(3, events.size());
+        assertSame(events.get(0), listener2.events.get(0));
+
+        EntityDaoEvent query = events.get(0);
+        assertEquals(Salary.class, query.getEntityType());
+        assertEquals(0, query.getIdCount());
+        assertEquals(2, query.getRowCount());
+        assertTrue(query.getDurationNanos() > 0);
+        assertNull(query.getFailure());
+
+        EntityDaoEvent findByIds = events.get(1);
+        assertEquals(3, findByIds.getIdCount());
+        assertEquals(2, findByIds.getRowCount());
+
+        EntityDaoEvent failed = events.get(2);
+        assertEquals(Employee.class, failed.getEntityType());
+        assertEquals(1, failed.getIdCount());
+        assertEquals(-1, failed.getRowCount());
+        assertInstanceOf(OptimisticLockException.class, failed.getFailure());
+    }
+
+    @Test
+    void writes() {
+        List<String> calls = new ArrayList<>();
+        RecordingListener listener = new RecordingListener("l", calls);
+        EntityDaoSupport support = ListeningEntityDaoSupport.wrap(new EntityDaoSupportImpl(), List.of(listener));
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            Salary salary = newSalary(emp1, "2023-04-01", "170");
+            salaryDao.persist(salary);
+            salaryDao.flush();
+            assertEquals(2, salaryDao.bulkDeleteByIds(List.of(salary1_1.getId(), salary1_2.getId())));
+        });
+
+        List<EntityDaoEvent> events = listener.events;
+        assertEquals(3, events.size());
+        assertEquals(EntityDaoOperation.PERSIST, events.get(0).getOperation());
+        assertEquals(Salary.class, events.get(0).getEntityType());
+        assertTrue(events.get(0).getOperation().isWrite());
+        assertEquals(EntityDaoOperation.FLUSH, events.get(1).getOperation());
+        assertNull(events.get(1).getEntityType());
+        assertEquals(EntityDaoOperation.BULK_DELETE_BY_IDS, events.get(2).getOperation());
+        assertEquals(2, events.get(2).getIdCount());
+        assertEquals(2, events.get(2).getRowCount());
+    }
+
+    @Test
+    void listenerFailures() {
+        List<String> calls = new ArrayList<>();
+        RecordingListener listener1 = new RecordingListener("l1", calls);
+        EntityDaoListener failingBefore = new EntityDaoListener() {
+            @Override
+            public Object before(EntityDaoEvent event) {
+                if (event.getOperation() == EntityDaoOperation.GET_BY_ID) {
+                    throw new IllegalStateException("before");
+                }
+                return null;
+            }
+
+            @Override
+            public void after(EntityDaoEvent event, Object context) {
+                if (event.getOperation() == EntityDaoOperation.FIND_BY_IDS) {
+                    throw new IllegalStateException("after");
+                }
+            }
+        };
+        RecordingListener listener3 = new RecordingListener("l3", calls);
+        EntityDaoSupport support = ListeningEntityDaoSupport.wrap(new EntityDaoSupportImpl(),
+                List.of(listener1, failingBefore, listener3));
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            EmployeeDao employeeDao = new EmployeeDao(em, support);
+            assertEquals("before", assertThrows(IllegalStateException.class,
+                    () -> salaryDao.getById(salary1_1.getId())).getMessage());
+            assertEquals("after", assertThrows(IllegalStateException.class,
+                    () -> salaryDao.findByIds(List.of(salary1_1.getId()))).getMessage());
+            OptimisticLockException failure = assertThrows(OptimisticLockException.class,
+                    () -> employeeDao.getByIdAndCheckVersion(emp1.getId(), (short) (emp1.getVersion() + 1), Employee::getVersion));
+            assertEquals(0, failure.getSuppressed().length);
+        });
+
+        assertEquals(List.of(
+                "before l1 GET_BY_ID", "after l1 GET_BY_ID",
+                "before l1 FIND_BY_IDS", "before l3 FIND_BY_IDS", "after l3 FIND_BY_IDS", "after l1 FIND_BY_IDS",
+                "before l1 GET_BY_ID_AND_CHECK_VERSION", "before l3 GET_BY_ID_AND_CHECK_VERSION",
+                "after l3 GET_BY_ID_AND_CHECK_VERSION", "after l1 GET_BY_ID_AND_CHECK_VERSION"
+        ), calls);
+        assertEquals("before", listener1.events.get(0).getFailure().getMessage());
+    }
+
+    @Test
+    void noListeners() {
+        EntityDaoSupport support = new EntityDaoSupportImpl();
+        assertSame(support, ListeningEntityDaoSupport.wrap(support, List.of()));
+        assertSame(support, new ListenerDecorator().decorate(support));
+    }
+
+}
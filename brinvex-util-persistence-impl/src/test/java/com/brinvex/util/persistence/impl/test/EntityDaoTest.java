@@ -15,11 +15,20 @@
  */
 package com.brinvex.util.persistence.impl.test;
 
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.api.EntityDaoSupportFactory;
+import com.brinvex.util.persistence.api.EntityMetadata;
+import com.brinvex.util.persistence.api.LockNotAvailableException;
 import com.brinvex.util.persistence.api.NumberFilter;
+import com.brinvex.util.persistence.impl.DatabaseCapabilities;
 import com.brinvex.util.persistence.impl.test.dm.Employee;
 import com.brinvex.util.persistence.impl.test.dm.Employee_;
 import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.dm.Salary_;
 import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import com.brinvex.util.persistence.impl.test.infra.StatementRecording;
+import com.brinvex.util.persistence.test.StatementRecorder;
+import com.brinvex.util.persistence.test.StatementType;
 import jakarta.persistence.LockTimeoutException;
 import jakarta.persistence.OptimisticLockException;
 import jakarta.persistence.PessimisticLockException;
@@ -33,6 +42,7 @@ import org.junit.jupiter.api.Test;
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -47,7 +57,9 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class EntityDaoTest extends AbstractTest {
@@ -167,6 +179,54 @@ public class EntityDaoTest extends AbstractTest {
         }
     }
 
+    @SuppressWarnings("ResultOfMethodCallIgnored")
+    @StatementRecording
+    @Test
+    void statementCounts() {
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            StatementRecorder.record(emf(), () -> {
+                        for (Salary salary : salaryDao.findByEmployeeId(emp1.getId(), true)) {
+                            salary.getEmployee().getName();
+                        }
+                    })
+                    .assertStatementCount(1)
+                    .assertStatementCount(StatementType.SELECT, 1)
+                    .assertRowsFetched(3);
+        });
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            StatementRecorder.record(emf(), () -> {
+                        for (Salary salary : salaryDao.findByEmployeeId(emp1.getId(), false)) {
+                            salary.getEmployee().getName();
+                        }
+                    })
+                    .assertStatementCount(StatementType.SELECT, 2)
+                    .assertEntityFetches(1)
+                    .assertRowsFetched(4);
+        });
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            StatementRecorder.record(emf(), () -> salaryDao.findByIds(List.of(salary1_1.getId(), salary1_2.getId(), salary2_1.getId())))
+                    .assertStatementCount(1)
+                    .assertRowsFetched(3);
+        });
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            Salary salary = new Salary();
+            salary.setEmployee(salaryDao.getReference(Employee.class, emp2.getId()));
+            salary.setDate(parse("2023-05-01"));
+            salary.setAmount(new BigDecimal("300"));
+            StatementRecorder.record(emf(), () -> {
+                        salaryDao.persist(salary);
+                        salaryDao.flush();
+                    })
+                    .assertStatementCount(StatementType.INSERT, 1)
+                    .assertStatementCount(StatementType.UPDATE, 0)
+                    .assertRowsFetched(0);
+        });
+    }
+
     @Test
     void findByIdAsDto() {
         long salaryId = salary1_1.getId();
@@ -420,6 +480,79 @@ public class EntityDaoTest extends AbstractTest {
         }
     }
 
+    @Test
+    void getAndFindForUpdateNoWait() throws InterruptedException, ExecutionException {
+
+        Callable<Object> c1 = () -> doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            Salary salary = salaryDao.getByIdForUpdateNoWait(salary1_1.getId());
+            assertNotNull(salary);
+            sleep(3);
+            return null;
+        });
+
+        Callable<Object> c2 = () -> {
+            sleep(1);
+            long startNanos = System.nanoTime();
+            assertThrows(LockNotAvailableException.class, () -> doInTx(em -> {
+                return new SalaryDao(em).getByIdForUpdateNoWait(salary1_1.getId());
+            }));
+            assertThrows(LockNotAvailableException.class, () -> doInTx(em -> {
+                return new SalaryDao(em).findForUpdateNoWait(emp1.getId(), salary1_1.getDate());
+            }));
+            assertTrue(System.nanoTime() - startNanos < Duration.ofSeconds(1).toNanos());
+            return null;
+        };
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        List<Future<Object>> futures = executorService.invokeAll(List.of(c1, c2));
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+    }
+
+    @Test
+    void entityMetadata() {
+        EntityDaoSupport support = EntityDaoSupportFactory.INSTANCE.getEntityDaoSupport();
+        doInTx(em -> {
+            EntityMetadata<Salary, Long> salaryMetadata = support.getEntityMetadata(em, Salary.class, Long.class);
+            assertSame(salaryMetadata, support.getEntityMetadata(em, Salary.class, Long.class));
+            assertEquals("Salary", salaryMetadata.getEntityName());
+            assertEquals(Salary_.id, salaryMetadata.getIdAttribute());
+            assertNull(salaryMetadata.getVersionAttribute());
+            assertEquals("Salary", salaryMetadata.getTableName());
+            assertEquals(List.of("id"), salaryMetadata.getIdColumnNames());
+            assertEquals(List.of("employee_id"), salaryMetadata.getColumnNames().get("employee"));
+
+            EntityMetadata<Employee, Long> employeeMetadata = support.getEntityMetadata(em, Employee.class, Long.class);
+            assertEquals(Employee_.version, employeeMetadata.getVersionAttribute());
+            assertEquals(List.of("validFrom"), employeeMetadata.getColumnNames().get("validFrom"));
+
+            assertThrows(IllegalArgumentException.class, () -> support.getEntityMetadata(em, Salary.class, Integer.class));
+        });
+    }
+
+    @Test
+    void findAndDeleteByIdsAboveBindParameterLimit() {
+        DatabaseCapabilities capabilities = DatabaseCapabilities.of(emf());
+        assertTrue(capabilities.isPostgresql());
+        assertTrue(capabilities.isSupportsSkipLocked());
+        assertSame(capabilities, DatabaseCapabilities.of(emf()));
+
+        List<Long> ids = new ArrayList<>();
+        ids.add(salary1_1.getId());
+        ids.add(salary2_3.getId());
+        for (long id = -1; ids.size() <= capabilities.getMaxBindParameters(); id--) {
+            ids.add(id);
+        }
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em);
+            assertEquals(2, salaryDao.findByIds(ids).size());
+            assertEquals(2, salaryDao.bulkDeleteByIds(ids));
+            assertTrue(salaryDao.findByIds(ids).isEmpty());
+        });
+    }
+
     @Test
     void optimisticLocking() {
         {
@@ -0,0 +1,147 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.api.ExplainOptions;
+import com.brinvex.util.persistence.api.QueryPlan;
+import com.brinvex.util.persistence.api.QueryPlanNode;
+import com.brinvex.util.persistence.impl.EntityDaoSupportConf;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.diagnostics.AutoExplainConf;
+import com.brinvex.util.persistence.impl.diagnostics.ExplainedQuery;
+import com.brinvex.util.persistence.impl.explain.QueryExplainer;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExplainTest extends AbstractTest {
+
+    private final Employee emp1 = newEmployee("Alice");
+    private final Salary salary1_1 = newSalary(emp1, "2023-02-01", "150");
+    private final Salary salary1_2 = newSalary(emp1, "2023-03-01", "160");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+            em.persist(salary1_1);
+            em.persist(salary1_2);
+        });
+    }
+
+    @Test
+    void explain() {
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, new EntityDaoSupportImpl());
+            QueryPlan plan = salaryDao.explainFindByEmployeeId(emp1.getId(), new ExplainOptions());
+
+            assertTrue(plan.getSql().contains("?"));
+            assertEquals(List.of(String.valueOf(emp1.getId())), plan.getBinds());
+            assertTrue(plan.getTotalCost() > 0);
+            assertTrue(plan.getEstimatedRows() > 0);
+            assertEquals(-1, plan.getActualRows());
+            assertNull(plan.getExecutionTime());
+            assertTrue(plan.getRawPlan().startsWith("["));
+
+            QueryPlan analyzed = salaryDao.explainFindByEmployeeId(emp1.getId(), new ExplainOptions()
+                    .setAnalyze(true)
+                    .setBuffers(true));
+            assertEquals(2, analyzed.getActualRows());
+            assertNotNull(analyzed.getExecutionTime());
+            List<QueryPlanNode> seqScans = analyzed.getSequentialScans();
+            assertEquals(1, seqScans.size(), "tiny table is scanned sequentially");
+            assertEquals("salary", seqScans.get(0).getRelationName().toLowerCase());
+            assertTrue(seqScans.get(0).getSharedHitBlocks() + seqScans.get(0).getSharedReadBlocks() > 0);
+
+            assertEquals(2, salaryDao.findByEmployeeId(emp1.getId(), false).size(), "transaction still usable");
+        });
+    }
+
+    @Test
+    void toSql() {
+        doInTx(em -> {
+            String sql = new QueryExplainer().toSql(em, em.createQuery(
+                    "select s from Salary s where s.amount > :amount order by s.date", Salary.class)
+                    .setParameter("amount", BigDecimal.ONE)
+                    .setMaxResults(5));
+            assertTrue(sql.startsWith("select"), sql);
+            assertTrue(sql.contains("order by"), sql);
+            assertTrue(sql.contains("fetch first ? rows only"), sql);
+        });
+    }
+
+    @Test
+    void autoExplain() {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .setAutoExplain(new AutoExplainConf().setThreshold(Duration.ZERO).setMinInterval(Duration.ZERO)));
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            assertEquals(2, salaryDao.findByEmployeeId(emp1.getId(), true).size());
+            assertNotNull(salaryDao.findForUpdateSkipLocked(emp1.getId(), salary1_1.getDate()));
+            salaryDao.persist(new Salary());
+            assertEquals(0, salaryDao.bulkDeleteByIds(List.of(-1L)));
+        });
+
+        List<ExplainedQuery> explainedQueries = support.getAutoExplain().getRecentExplainedQueries();
+        assertEquals(2, explainedQueries.size(), "selects only");
+        assertEquals(2, metrics.getCount("autoExplain.count"));
+        assertEquals(0, metrics.getCount("autoExplain.failures"));
+
+        ExplainedQuery fetchJoin = explainedQueries.get(0);
+        assertTrue(fetchJoin.getCallSite().startsWith(SalaryDao.class.getName() + ".findByEmployeeId"));
+        assertFalse(fetchJoin.getPlan().getNodes().isEmpty());
+
+        QueryPlan firstResult = explainedQueries.get(1).getPlan();
+        assertEquals(1, firstResult.getEstimatedRows());
+        assertTrue(firstResult.getBinds().contains("1"), "limit is bound");
+    }
+
+    @Test
+    void autoExplainRateLimited() {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .setAutoExplain(new AutoExplainConf().setThreshold(Duration.ZERO).setMinInterval(Duration.ofHours(1))));
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            for (int i = 0; i < 3; i++) {
+                assertEquals(2, salaryDao.findByEmployeeId(emp1.getId(), true).size());
+            }
+        });
+
+        assertEquals(1, support.getAutoExplain().getRecentExplainedQueries().size());
+        assertEquals(1, metrics.getCount("autoExplain.count"));
+        assertEquals(2, metrics.getCount("autoExplain.skipped"));
+    }
+
+}
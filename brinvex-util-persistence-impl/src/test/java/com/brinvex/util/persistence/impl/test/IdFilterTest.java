@@ -0,0 +1,146 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.impl.EntityDaoSupportConf;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.cache.IdFilter;
+import com.brinvex.util.persistence.impl.cache.IdFilterConf;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IdFilterTest extends AbstractTest {
+
+    private final Employee emp1 = newEmployee("Alice");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+        });
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met in time");
+            sleep(0.05);
+        }
+    }
+
+    @Test
+    void missingIdsAnsweredInMemory() {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .addIdFilter(new IdFilterConf<>(Employee.class).setExpectedSize(1_000)));
+        IdFilter idFilter = support.getIdFilter(emf(), Employee.class);
+        await(idFilter::isReady);
+
+        doInTx(em -> {
+            EmployeeDao employeeDao = new EmployeeDao(em, support);
+            assertNotNull(employeeDao.getById(emp1.getId()));
+            assertNull(employeeDao.getById(-1L));
+            assertEquals(1, employeeDao.findByIds(List.of(emp1.getId(), -2L, -3L)).size());
+        });
+        assertEquals(1, metrics.getCount("idFilter.builds.Employee"));
+        assertEquals(3, idFilter.getNegativeCount());
+        assertTrue(idFilter.getFootprintBytes() > 0);
+        assertTrue(idFilter.getExpectedFalsePositiveRate() < 0.01);
+
+        Employee emp2 = newEmployee("Bob");
+        doInTx(em -> {
+            EmployeeDao employeeDao = new EmployeeDao(em, support);
+            employeeDao.persist(emp2);
+            assertNotNull(employeeDao.getById(emp2.getId()));
+        });
+        doInTx(em -> {
+            assertNotNull(new EmployeeDao(em, support).getById(emp2.getId()));
+        });
+
+        Employee emp3 = newEmployee("Carol");
+        doInTx(em -> {
+            em.persist(emp3);
+        });
+        doInTx(em -> {
+            assertNull(new EmployeeDao(em, support).getById(emp3.getId()), "Inserted bypassing the support");
+        });
+        assertTrue(support.rebuildIdFilter(emf(), Employee.class));
+        doInTx(em -> {
+            assertNotNull(new EmployeeDao(em, support).getById(emp3.getId()));
+        });
+        assertEquals(2, metrics.getCount("idFilter.builds.Employee"));
+    }
+
+    @Test
+    void periodicRebuild() {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .addIdFilter(new IdFilterConf<>(Employee.class)
+                        .setExpectedSize(1_000)
+                        .setRebuildInterval(Duration.ofMillis(100))));
+        IdFilter idFilter = support.getIdFilter(emf(), Employee.class);
+        await(idFilter::isReady);
+
+        Employee emp2 = newEmployee("Bob");
+        doInTx(em -> {
+            em.persist(emp2);
+        });
+        await(() -> !idFilter.mightContain(-1L) && idFilter.mightContain(emp2.getId()));
+        doInTx(em -> {
+            assertNotNull(new EmployeeDao(em, support).getById(emp2.getId()));
+        });
+        assertTrue(metrics.getCount("idFilter.builds.Employee") > 1);
+    }
+
+    @Test
+    void falsePositiveRate() {
+        IdFilter idFilter = new IdFilter(new IdFilterConf<>(Employee.class)
+                .setExpectedSize(10_000)
+                .setFalsePositiveRate(0.01), new MetricRegistry());
+        assertTrue(idFilter.rebuild(() -> 10_000, sink -> LongStream.range(0, 10_000).forEach(sink::accept)));
+
+        assertTrue(LongStream.range(0, 10_000).allMatch(idFilter::mightContain));
+        long falsePositives = LongStream.range(1_000_000, 1_100_000).filter(idFilter::mightContain).count();
+        assertTrue(falsePositives < 2_000, "falsePositives=" + falsePositives);
+        assertTrue(idFilter.getFootprintBytes() < 50_000, "footprint=" + idFilter.getFootprintBytes());
+    }
+
+    @Test
+    void invalidConf() {
+        assertThrows(IllegalArgumentException.class, () -> new IdFilterConf<>(Employee.class).setFalsePositiveRate(1));
+        assertThrows(IllegalArgumentException.class, () -> new IdFilterConf<>(Employee.class).setExpectedSize(0));
+        assertThrows(IllegalArgumentException.class, () -> new IdFilterConf<>(Employee.class).setRebuildInterval(Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> new EntityDaoSupportImpl()
+                .rebuildIdFilter(emf(), Employee.class));
+    }
+
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.metrics.DaoOperationStats;
+import com.brinvex.util.persistence.impl.metrics.InstrumentationConf;
+import com.brinvex.util.persistence.impl.metrics.InstrumentationDecorator;
+import com.brinvex.util.persistence.impl.metrics.InstrumentedEntityDaoSupport;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import jakarta.persistence.OptimisticLockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class InstrumentedEntityDaoSupportTest extends AbstractTest {
+
+    private final Employee emp1 = newEmployee("Alice");
+    private final Salary salary1_1 = newSalary(emp1, "2023-02-01", "150");
+    private final Salary salary1_2 = newSalary(emp1, "2023-03-01", "160");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+            em.persist(salary1_1);
+            em.persist(salary1_2);
+        });
+    }
+
+    @Test
+    void latencyRowsAndErrors() {
+        MetricRegistry metrics = new MetricRegistry();
+        InstrumentedEntityDaoSupport support = new InstrumentedEntityDaoSupport(
+                new EntityDaoSupportImpl(), new InstrumentationConf().setMetricRegistry(metrics));
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            EmployeeDao employeeDao = new EmployeeDao(em, support);
+            assertEquals(2, salaryDao.findByEmployeeId(emp1.getId(), false).size());
+            assertEquals(2, salaryDao.findByEmployeeId(emp1.getId(), true).size());
+            assertEquals(salary1_1.getId(), salaryDao.getById(salary1_1.getId()).getId());
+            assertNull(salaryDao.getById(-1L));
+            assertThrows(OptimisticLockException.class,
+                    () -> employeeDao.getByIdAndCheckVersion(emp1.getId(), (short) (emp1.getVersion() + 1), Employee::getVersion));
+        });
+
+        DaoOperationStats getResults = support.getOperationStats("getResults", Salary.class);
+        assertEquals("Salary", getResults.getEntityName());
+        assertEquals(2, getResults.getLatency().getCount());
+        assertTrue(getResults.getLatency().getMaxNanos() > 0);
+        assertEquals(4, getResults.getRows());
+        assertEquals(0, getResults.getErrors());
+
+        DaoOperationStats getById = support.getOperationStats("getById", Salary.class);
+        assertEquals(2, getById.getLatency().getCount());
+        assertEquals(1, getById.getRows());
+
+        assertEquals(1, metrics.getCount("dao.errors.getByIdAndCheckVersion.Employee"));
+        assertEquals(1, metrics.getHistograms().get("dao.latency.getByIdAndCheckVersion.Employee").getCount());
+        assertEquals(4, metrics.getCount("dao.rows.getResults.Salary"));
+        assertEquals(3, support.getOperationStats().size());
+
+        support.reset();
+        assertEquals(0, support.getOperationStats("getResults", Salary.class).getLatency().getCount());
+    }
+
+    @Test
+    void disabled() {
+        MetricRegistry metrics = new MetricRegistry();
+        InstrumentedEntityDaoSupport support = new InstrumentedEntityDaoSupport(
+                new EntityDaoSupportImpl(), new InstrumentationConf().setMetricRegistry(metrics).setEnabled(false));
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            assertEquals(2, salaryDao.findByEmployeeId(emp1.getId(), false).size());
+            support.setEnabled(true);
+            assertEquals(2, salaryDao.findByEmployeeId(emp1.getId(), false).size());
+        });
+
+        assertEquals(1, support.getOperationStats("getResults", Salary.class).getLatency().getCount());
+        assertTrue(metrics.getCounters().keySet().stream().allMatch(name -> name.endsWith("getResults.Salary")));
+    }
+
+    @Test
+    void jmx() throws JMException {
+        String objectName = "com.brinvex.util.persistence.test:type=EntityDaoSupport";
+        InstrumentedEntityDaoSupport support = new InstrumentedEntityDaoSupport(new EntityDaoSupportImpl(),
+                new InstrumentationConf().setMetricRegistry(new MetricRegistry()).setJmxObjectName(objectName));
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(objectName);
+        try {
+            doInTx(em -> {
+                new SalaryDao(em, support).findByEmployeeId(emp1.getId(), false);
+            });
+
+            assertEquals(true, mBeanServer.getAttribute(name, "Enabled"));
+            CompositeData[] stats = (CompositeData[]) mBeanServer.getAttribute(name, "OperationStats");
+            assertEquals(1, stats.length);
+            assertEquals("getResults", stats[0].get("operation"));
+            assertEquals("Salary", stats[0].get("entityName"));
+            assertEquals(2L, stats[0].get("rows"));
+            assertEquals(1L, ((CompositeData) stats[0].get("latency")).get("count"));
+
+            mBeanServer.setAttribute(name, new Attribute("Enabled", false));
+            assertFalse(support.isEnabled());
+        } finally {
+            support.unregisterMBean();
+        }
+        assertFalse(mBeanServer.isRegistered(name));
+    }
+
+    @Test
+    void decorator() {
+        EntityDaoSupport base = new EntityDaoSupportImpl();
+        InstrumentationDecorator decorator = new InstrumentationDecorator();
+        String objectName = "com.brinvex.util.persistence.test:type=DecoratedEntityDaoSupport";
+        assertSame(base, decorator.decorate(base));
+
+        System.setProperty(InstrumentationDecorator.ENABLED_PROPERTY, "true");
+        System.setProperty(InstrumentationDecorator.JMX_OBJECT_NAME_PROPERTY, objectName);
+        try {
+            EntityDaoSupport decorated = decorator.decorate(base);
+            assertInstanceOf(InstrumentedEntityDaoSupport.class, decorated);
+            assertSame(base, ((InstrumentedEntityDaoSupport) decorated).getDelegate());
+            assertSame(decorated, decorator.decorate(decorated));
+            ((InstrumentedEntityDaoSupport) decorated).unregisterMBean();
+        } finally {
+            System.clearProperty(InstrumentationDecorator.ENABLED_PROPERTY);
+            System.clearProperty(InstrumentationDecorator.JMX_OBJECT_NAME_PROPERTY);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.impl.EntityDaoSupportConf;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.LockWaitObservation;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import com.brinvex.util.persistence.impl.test.infra.StatementRecording;
+import com.brinvex.util.persistence.test.StatementRecorder;
+import jakarta.persistence.PessimisticLockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LockContentionMonitorTest extends AbstractTest {
+
+    private final Employee emp1 = newEmployee("Alice");
+    private final Salary salary1_1 = newSalary(emp1, "2023-02-01", "150");
+    private final Salary salary1_2 = newSalary(emp1, "2023-03-01", "160");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+            em.persist(salary1_1);
+            em.persist(salary1_2);
+        });
+    }
+
+    @StatementRecording
+    @Test
+    void backendPidQueriedOncePerTransaction() {
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(new MetricRegistry())
+                .setLockBlockerProbeDelay(Duration.ofSeconds(10)));
+        for (int i = 0; i < 2; i++) {
+            doInTx(em -> {
+                SalaryDao salaryDao = new SalaryDao(em, support);
+                StatementRecorder.record(emf(), () -> salaryDao.getByIdForUpdate(salary1_1.getId(), Duration.ofSeconds(1)))
+                        .assertStatementCount(4);
+                StatementRecorder.record(emf(), () -> salaryDao.getByIdForUpdate(salary1_2.getId(), Duration.ofSeconds(1)))
+                        .assertStatementCount(3);
+            });
+        }
+    }
+
+    @Test
+    void lockTimeoutWithBlockerObservation() throws InterruptedException, ExecutionException {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .setLockBlockerProbeDelay(Duration.ofMillis(300)));
+
+        Callable<Object> c1 = () -> doInTx(em -> {
+            new SalaryDao(em, support).getByIdForUpdate(salary1_1.getId(), Duration.ofSeconds(2));
+            sleep(2);
+            return null;
+        });
+
+        Callable<Object> c2 = () -> {
+            sleep(0.5);
+            return assertThrows(PessimisticLockException.class, () -> doInTx(em -> {
+                return new SalaryDao(em, support).getByIdForUpdate(salary1_1.getId(), Duration.ofMillis(800));
+            }));
+        };
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        List<Future<Object>> futures = executorService.invokeAll(List.of(c1, c2));
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+
+        assertEquals(2, metrics.getHistograms().get("lock.wait.getByIdForUpdate.Salary").getCount());
+        assertEquals(1, metrics.getCount("lock.timeouts.getByIdForUpdate.Salary"));
+        assertEquals(1, metrics.getCount("lock.blocked.getByIdForUpdate.Salary"));
+
+        List<LockWaitObservation> observations = support.getLockContentionMonitor().getRecentObservations();
+        assertEquals(1, observations.size());
+        LockWaitObservation observation = observations.get(0);
+        assertEquals(Salary.class, observation.getEntityType());
+        assertEquals(1, observation.getBlockingSessions().size());
+        assertTrue(observation.getWaitedSoFar().compareTo(Duration.ofMillis(300)) >= 0);
+    }
+
+    @Test
+    void skipLockedRowProbe() throws InterruptedException, ExecutionException {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .setSkipLockedRowProbe(true));
+
+        Callable<Object> c1 = () -> doInTx(em -> {
+            new SalaryDao(em, support).getByIdForUpdate(salary1_1.getId(), Duration.ofSeconds(2));
+            sleep(1.5);
+            return null;
+        });
+
+        Callable<Object> c2 = () -> {
+            sleep(0.5);
+            return doInTx(em -> {
+                SalaryDao salaryDao = new SalaryDao(em, support);
+                assertNull(salaryDao.getByIdForUpdateSkipLocked(salary1_1.getId()));
+                assertNull(salaryDao.getByIdForUpdateSkipLocked(-1L));
+                assertNull(salaryDao.findForUpdateSkipLocked(emp1.getId(), salary1_1.getDate()));
+                return null;
+            });
+        };
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        List<Future<Object>> futures = executorService.invokeAll(List.of(c1, c2));
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+
+        assertEquals(2, metrics.getCount("lock.empty.getByIdForUpdateSkipLocked.Salary"));
+        assertEquals(1, metrics.getCount("lock.skipped.getByIdForUpdateSkipLocked.Salary"));
+        assertEquals(1, metrics.getCount("lock.empty.getFirstResultForUpdateSkipLocked.Salary"));
+        assertEquals(0, metrics.getCount("lock.timeouts.getByIdForUpdate.Salary"));
+    }
+
+}
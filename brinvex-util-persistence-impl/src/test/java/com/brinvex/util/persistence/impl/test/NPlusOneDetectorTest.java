@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.impl.EntityDaoSupportConf;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.diagnostics.NPlusOneDetector;
+import com.brinvex.util.persistence.impl.diagnostics.NPlusOneDetectorConf;
+import com.brinvex.util.persistence.impl.diagnostics.NPlusOneIncident;
+import com.brinvex.util.persistence.impl.diagnostics.NPlusOneQueryException;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NPlusOneDetectorTest extends AbstractTest {
+
+    private final List<Employee> employees = new ArrayList<>();
+    private final List<Salary> salaries = new ArrayList<>();
+
+    {
+        for (int i = 0; i < 5; i++) {
+            Employee emp = newEmployee("Employee" + i);
+            employees.add(emp);
+
+            Salary salary = newSalary(emp, "2023-02-01", "150");
+            salaries.add(salary);
+        }
+    }
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            employees.forEach(em::persist);
+            salaries.forEach(em::persist);
+        });
+    }
+
+    private List<Long> salaryIds() {
+        List<Long> ids = new ArrayList<>();
+        for (Salary salary : salaries) {
+            ids.add(salary.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    void lazyLoadsAttributedToDaoCall() {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .setNPlusOneDetector(new NPlusOneDetectorConf().setThreshold(3)));
+        NPlusOneDetector detector = support.getNPlusOneDetector();
+
+        for (List<Long> ids : List.of(salaryIds().subList(0, 2), salaryIds().subList(2, 4))) {
+            doInTx(em -> {
+                for (Salary salary : new SalaryDao(em, support).findByIds(ids)) {
+                    assertNotNull(salary.getEmployee().getName());
+                }
+            });
+        }
+        assertEquals(0, metrics.getCount("nPlusOne.detected"));
+
+        doInTx(em -> {
+            for (Salary salary : new SalaryDao(em, support).findByIds(salaryIds())) {
+                assertNotNull(salary.getEmployee().getName());
+            }
+        });
+        assertEquals(1, metrics.getCount("nPlusOne.detected"));
+
+        List<NPlusOneIncident> incidents = detector.getRecentIncidents();
+        assertEquals(1, incidents.size());
+        NPlusOneIncident incident = incidents.get(0);
+        assertEquals(3, incident.getCount());
+        assertEquals(Employee.class.getName(), incident.getLazyLoadedType());
+        assertEquals("findByIds", incident.getLoadedByDaoMethod());
+        assertTrue(incident.getLoadedByCallSite().startsWith(NPlusOneDetectorTest.class.getName() + ".lambda$"),
+                incident.getLoadedByCallSite());
+        assertTrue(incident.getTriggeredAt().startsWith(NPlusOneDetectorTest.class.getName() + ".lambda$"),
+                incident.getTriggeredAt());
+        assertTrue(incident.getSql().toLowerCase().contains("from employee"), incident.getSql());
+    }
+
+    @Test
+    void repeatedDaoCalls() {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .setNPlusOneDetector(new NPlusOneDetectorConf()
+                        .setThreshold(5)
+                        .setReaction(NPlusOneDetectorConf.Reaction.METRIC)));
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            for (Employee employee : employees) {
+                for (Salary salary : salaryDao.findByEmployeeId(employee.getId(), true)) {
+                    assertNotNull(salary.getEmployee().getName());
+                }
+            }
+        });
+
+        List<NPlusOneIncident> incidents = support.getNPlusOneDetector().getRecentIncidents();
+        assertEquals(1, incidents.size());
+        NPlusOneIncident incident = incidents.get(0);
+        assertNull(incident.getLazyLoadedType());
+        assertEquals(SalaryDao.class.getName(), incident.getLoadedByDaoType());
+        assertEquals("findByEmployeeId", incident.getLoadedByDaoMethod());
+        assertEquals(1, metrics.getCount("nPlusOne.detected"));
+    }
+
+    @Test
+    void failReaction() {
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(new MetricRegistry())
+                .setNPlusOneDetector(new NPlusOneDetectorConf()
+                        .setThreshold(2)
+                        .setReaction(NPlusOneDetectorConf.Reaction.FAIL)));
+
+        NPlusOneQueryException e = assertThrows(NPlusOneQueryException.class, () -> doInTx(em -> {
+            for (Salary salary : new SalaryDao(em, support).findByIds(salaryIds())) {
+                assertNotNull(salary.getEmployee().getName());
+            }
+        }));
+        assertEquals(Employee.class.getName(), e.getIncident().getLazyLoadedType());
+        assertEquals(2, e.getIncident().getCount());
+    }
+
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.jfr.LockEvent;
+import com.brinvex.util.persistence.impl.jfr.PersistenceEvents;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PersistenceEventsTest extends AbstractTest {
+
+    private final Employee emp1 = newEmployee("Alice");
+    private final Salary salary1_1 = newSalary(emp1, "2023-02-01", "150");
+    private final Salary salary1_2 = newSalary(emp1, "2023-03-01", "160");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+            em.persist(salary1_1);
+            em.persist(salary1_2);
+        });
+    }
+
+    @Test
+    void events() throws IOException {
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl();
+
+        List<RecordedEvent> events = record(() -> doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            assertEquals(2, salaryDao.findByEmployeeId(emp1.getId(), false).size());
+            salaryDao.getByIdForUpdate(salary1_1.getId(), Duration.ofSeconds(1));
+            assertNull(salaryDao.getByIdForUpdateSkipLocked(-1L));
+            salaryDao.flush();
+            assertEquals(1, salaryDao.bulkDeleteByIds(List.of(salary1_2.getId(), -1L)));
+        }));
+
+        Map<String, List<RecordedEvent>> byType = events.stream()
+                .collect(Collectors.groupingBy(e -> e.getEventType().getName()));
+
+        RecordedEvent query = byType.get("com.brinvex.persistence.Query").get(0);
+        assertEquals("getResultList", query.getString("operation"));
+        assertEquals(Salary.class.getName(), query.getClass("entityType").getName());
+        assertEquals(2, query.getLong("rows"));
+        assertFalse(query.getBoolean("failed"));
+
+        List<RecordedEvent> locks = byType.get("com.brinvex.persistence.Lock");
+        assertEquals(2, locks.size());
+        RecordedEvent forUpdate = locks.get(0);
+        assertEquals("getByIdForUpdate", forUpdate.getString("operation"));
+        assertEquals(Salary.class.getName(), forUpdate.getClass("entityType").getName());
+        assertEquals(1000, forUpdate.getLong("lockTimeout"));
+        assertEquals(LockEvent.ACQUIRED, forUpdate.getString("outcome"));
+        RecordedEvent skipLocked = locks.get(1);
+        assertEquals("getByIdForUpdateSkipLocked", skipLocked.getString("operation"));
+        assertEquals(-1, skipLocked.getLong("lockTimeout"));
+        assertEquals(LockEvent.EMPTY, skipLocked.getString("outcome"));
+
+        List<RecordedEvent> lockTimeouts = byType.get("com.brinvex.persistence.LockTimeout");
+        assertEquals(List.of(1000L, 0L), lockTimeouts.stream().map(e -> e.getLong("lockTimeout")).collect(Collectors.toList()));
+        assertTrue(lockTimeouts.stream().allMatch(e -> !forUpdate.getStartTime().isAfter(e.getStartTime())
+                                                        && !e.getEndTime().isAfter(forUpdate.getEndTime())));
+
+        RecordedEvent flush = byType.get("com.brinvex.persistence.Flush").get(0);
+        assertTrue(flush.getLong("managedEntities") >= 1);
+        assertFalse(flush.getBoolean("clear"));
+
+        RecordedEvent bulk = byType.get("com.brinvex.persistence.Bulk").get(0);
+        assertEquals("bulkDeleteByIds", bulk.getString("operation"));
+        assertEquals(Salary.class.getName(), bulk.getClass("entityType").getName());
+        assertEquals(2, bulk.getLong("ids"));
+        assertEquals(1, bulk.getLong("rows"));
+    }
+
+    private List<RecordedEvent> record(Runnable work) throws IOException {
+        Map<String, String> settings = new HashMap<>(PersistenceEvents.getConfiguration().getSettings());
+        settings.replaceAll((name, value) -> name.endsWith("#threshold") ? "0 ms" : value);
+        Path file = Files.createTempFile("brinvex-persistence", ".jfr");
+        try (Recording recording = new Recording(settings)) {
+            recording.start();
+            work.run();
+            recording.stop();
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().startsWith(PersistenceEvents.NAME_PREFIX))
+                    .filter(e -> e.getThread() != null && e.getThread().getJavaThreadId() == Thread.currentThread().getId())
+                    .collect(Collectors.toList());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+}
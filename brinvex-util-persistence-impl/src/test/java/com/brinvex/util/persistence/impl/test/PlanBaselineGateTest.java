@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.api.ExplainOptions;
+import com.brinvex.util.persistence.impl.explain.PlanBaselineConf;
+import com.brinvex.util.persistence.impl.explain.PlanBaselineGate;
+import com.brinvex.util.persistence.impl.explain.PlanRegression;
+import com.brinvex.util.persistence.impl.explain.PlanRegressionException;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import com.brinvex.util.persistence.impl.test.infra.TxVoidFunction;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Statement;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PlanBaselineGateTest extends AbstractTest {
+
+    @TempDir
+    Path baselineDirectory;
+
+    private long employeeId;
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            for (int i = 0; i < 50; i++) {
+                Employee employee = newEmployee("Employee " + i);
+                em.persist(employee);
+                employeeId = employee.getId();
+            }
+            em.flush();
+            em.createNativeQuery("insert into Salary (id, employee_id, date, amount) " +
+                                 "select -(e.id * 1000 + g), e.id, date '2023-01-01' + g, 100 " +
+                                 "from Employee e, generate_series(1, 100) g")
+                    .executeUpdate();
+            execute(em, "create index salary_employee_idx on Salary (employee_id)");
+            execute(em, "analyze Salary");
+        });
+    }
+
+    @Test
+    void indexDropped() throws IOException {
+        PlanBaselineGate gate = newGate(new PlanBaselineConf().setBaselineDirectory(baselineDirectory));
+
+        doInTx(em -> {
+            assertTrue(gate.check(em).isEmpty(), "baseline recorded");
+            gate.verify(em);
+        });
+        String baseline = Files.readString(baselineDirectory.resolve("salary.findByEmployeeId.plan"));
+        assertTrue(baseline.startsWith("cost="));
+        assertTrue(baseline.contains("using salary_employee_idx"), baseline);
+
+        doInTx((TxVoidFunction) em -> {
+            execute(em, "drop index salary_employee_idx");
+            PlanRegressionException e = assertThrows(PlanRegressionException.class, () -> gate.verify(em));
+            List<PlanRegression> regressions = e.getRegressions();
+            assertEquals(1, regressions.size());
+            PlanRegression regression = regressions.get(0);
+            assertEquals("salary.findByEmployeeId", regression.getQueryName());
+            assertEquals(PlanRegression.Kind.SHAPE_CHANGED, regression.getKind());
+            assertEquals(List.of("salary"), regression.getNewSequentialScans());
+            em.getTransaction().setRollbackOnly();
+        });
+
+        doInTx(em -> {
+            assertTrue(gate.check(em).isEmpty(), "index is back after rollback");
+        });
+    }
+
+    @Test
+    void costTolerance() throws IOException {
+        PlanBaselineGate gate = newGate(new PlanBaselineConf().setBaselineDirectory(baselineDirectory));
+        doInTx(em -> {
+            gate.check(em);
+        });
+
+        Path baselineFile = baselineDirectory.resolve("salary.findByEmployeeId.plan");
+        List<String> lines = Files.readAllLines(baselineFile);
+        double cost = Double.parseDouble(lines.get(0).substring("cost=".length()));
+        lines.set(0, "cost=" + cost / 2);
+        Files.write(baselineFile, lines);
+
+        doInTx(em -> {
+            List<PlanRegression> regressions = gate.check(em);
+            assertEquals(1, regressions.size());
+            assertEquals(PlanRegression.Kind.COST_INCREASED, regressions.get(0).getKind());
+            assertTrue(regressions.get(0).getNewSequentialScans().isEmpty());
+
+            PlanBaselineGate tolerantGate = newGate(new PlanBaselineConf()
+                    .setBaselineDirectory(baselineDirectory)
+                    .setCostTolerance(1.5));
+            assertTrue(tolerantGate.check(em).isEmpty());
+
+            PlanBaselineGate updatingGate = newGate(new PlanBaselineConf()
+                    .setBaselineDirectory(baselineDirectory)
+                    .setUpdateBaselines(true));
+            assertTrue(updatingGate.check(em).isEmpty());
+            assertTrue(gate.check(em).isEmpty(), "baseline updated");
+        });
+    }
+
+    private PlanBaselineGate newGate(PlanBaselineConf conf) {
+        return new PlanBaselineGate(conf)
+                .register("salary.findByEmployeeId",
+                        em -> new SalaryDao(em).explainFindByEmployeeId(employeeId, new ExplainOptions()));
+    }
+
+    private static void execute(EntityManager em, String sql) {
+        em.unwrap(Session.class).doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(sql);
+            }
+        });
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.api.QueryCacheMode;
+import com.brinvex.util.persistence.impl.EntityDaoSupportConf;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.cache.QueryCacheRegion;
+import com.brinvex.util.persistence.impl.cache.QueryCacheRegionConf;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.hibernate.CacheMode;
+import org.hibernate.jpa.HibernateHints;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class QueryCacheRegionTest extends AbstractTest {
+
+    private static class CacheModeRecordingSupport extends EntityDaoSupportImpl {
+
+        private final List<Object> cacheModes = new ArrayList<>();
+
+        private CacheModeRecordingSupport(EntityDaoSupportConf conf) {
+            super(conf);
+        }
+
+        @Override
+        protected <R> void applyQueryCacheHint(
+                EntityManager em,
+                TypedQuery<R> typedQuery,
+                QueryCacheMode queryCacheMode,
+                String queryCacheRegion
+        ) {
+            super.applyQueryCacheHint(em, typedQuery, queryCacheMode, queryCacheRegion);
+            cacheModes.add(typedQuery.getHints().get(HibernateHints.HINT_CACHE_MODE));
+        }
+    }
+
+    private final Employee emp1 = newEmployee("Alice");
+    private final Employee emp2 = newEmployee("Bob");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+            em.persist(emp2);
+            Salary salary = newSalary(emp1, "2023-02-01", "150");
+            em.persist(salary);
+        });
+    }
+
+    private List<Salary> findSalaries(EntityDaoSupportImpl support, Employee employee, QueryCacheMode mode, String region) {
+        return doInTx(em -> {
+            return new SalaryDao(em, support).findByEmployeeId(employee.getId(), mode, region);
+        });
+    }
+
+    @Test
+    void cacheModes() {
+        CacheModeRecordingSupport support = new CacheModeRecordingSupport(new EntityDaoSupportConf()
+                .setMetricRegistry(new MetricRegistry()));
+
+        for (QueryCacheMode mode : QueryCacheMode.values()) {
+            if (mode != QueryCacheMode.REFRESH) {
+                assertEquals(1, findSalaries(support, emp1, mode, "salaries").size());
+            }
+        }
+        assertEquals(
+                List.of(CacheMode.GET, CacheMode.PUT),
+                support.cacheModes.subList(2, 4));
+        assertNull(support.cacheModes.get(0));
+        assertNull(support.cacheModes.get(1));
+        assertNull(support.getQueryCacheRegion(emf(), "salaries"));
+        assertThrows(IllegalArgumentException.class, () -> findSalaries(support, emp1, QueryCacheMode.REFRESH, "salaries"));
+    }
+
+    @Test
+    void refreshOverwritesOnlyCachedQueries() {
+        CacheModeRecordingSupport support = new CacheModeRecordingSupport(new EntityDaoSupportConf()
+                .setMetricRegistry(new MetricRegistry())
+                .addQueryCacheRegion(new QueryCacheRegionConf("salaries")));
+
+        findSalaries(support, emp1, QueryCacheMode.REFRESH, "salaries");
+        assertEquals(0, support.getQueryCacheRegion(emf(), "salaries").size());
+        findSalaries(support, emp1, QueryCacheMode.USE_QUERY_CACHE, "salaries");
+        findSalaries(support, emp1, QueryCacheMode.REFRESH, "salaries");
+        assertEquals(1, support.getQueryCacheRegion(emf(), "salaries").size());
+        assertEquals(CacheMode.IGNORE, support.cacheModes.get(0));
+        assertEquals(CacheMode.REFRESH, support.cacheModes.get(2));
+    }
+
+    @Test
+    void timeToLiveRefresh() {
+        MetricRegistry metrics = new MetricRegistry();
+        CacheModeRecordingSupport support = new CacheModeRecordingSupport(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .addQueryCacheRegion(new QueryCacheRegionConf("salaries")
+                        .setTimeToLive(Duration.ofMillis(200))));
+
+        findSalaries(support, emp1, QueryCacheMode.USE_QUERY_CACHE, "salaries");
+        findSalaries(support, emp1, QueryCacheMode.USE_QUERY_CACHE, "salaries");
+        assertEquals(0, metrics.getCount("queryCache.refreshes.salaries"));
+
+        sleep(0.3);
+        findSalaries(support, emp1, QueryCacheMode.USE_QUERY_CACHE, "salaries");
+        findSalaries(support, emp1, QueryCacheMode.USE_QUERY_CACHE, "salaries");
+        assertEquals(1, metrics.getCount("queryCache.refreshes.salaries"));
+        assertEquals(CacheMode.REFRESH, support.cacheModes.get(2));
+        assertNull(support.cacheModes.get(3));
+        assertEquals(1, support.getQueryCacheRegion(emf(), "salaries").size());
+    }
+
+    @Test
+    void getOnlyMissesExpiredResult() {
+        CacheModeRecordingSupport support = new CacheModeRecordingSupport(new EntityDaoSupportConf()
+                .setMetricRegistry(new MetricRegistry())
+                .addQueryCacheRegion(new QueryCacheRegionConf("salaries")
+                        .setTimeToLive(Duration.ofMillis(200))));
+
+        findSalaries(support, emp1, QueryCacheMode.USE_QUERY_CACHE, "salaries");
+        findSalaries(support, emp1, QueryCacheMode.GET_ONLY, "salaries");
+        sleep(0.3);
+        assertEquals(1, findSalaries(support, emp1, QueryCacheMode.GET_ONLY, "salaries").size());
+        assertEquals(List.of(CacheMode.GET, CacheMode.IGNORE), support.cacheModes.subList(1, 3));
+    }
+
+    @Test
+    void flushThresholdFlushesRegion() {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .addQueryCacheRegion(new QueryCacheRegionConf("salaries").setFlushThreshold(1)));
+        QueryCacheRegion region = support.getQueryCacheRegion(emf(), "salaries");
+
+        findSalaries(support, emp1, QueryCacheMode.USE_QUERY_CACHE, "salaries");
+        findSalaries(support, emp1, QueryCacheMode.PUT_ONLY, "salaries");
+        assertEquals(0, metrics.getCount("queryCache.flushes.salaries"));
+
+        findSalaries(support, emp2, QueryCacheMode.USE_QUERY_CACHE, "salaries");
+        assertEquals(1, metrics.getCount("queryCache.flushes.salaries"));
+        assertEquals(1, region.size());
+    }
+
+    @Test
+    void invalidRegionConf() {
+        assertThrows(IllegalArgumentException.class, () -> new QueryCacheRegionConf("salaries").setFlushThreshold(0));
+        assertThrows(IllegalArgumentException.class, () -> new QueryCacheRegionConf("salaries").setTimeToLive(Duration.ZERO));
+    }
+
+}
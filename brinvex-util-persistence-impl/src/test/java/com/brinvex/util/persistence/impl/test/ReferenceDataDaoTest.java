@@ -0,0 +1,159 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.api.ReferenceDataDao;
+import com.brinvex.util.persistence.api.ReferenceDataSnapshot;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Employee_;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ReferenceDataDaoTest extends AbstractTest {
+
+    private class EmployeeReferenceDao extends ReferenceDataDao<Employee, Long> {
+
+        private EmployeeReferenceDao(Duration refreshInterval, Duration versionCheckInterval, ScheduledExecutorService scheduler) {
+            super(Employee.class, Long.class, refreshInterval, versionCheckInterval, scheduler);
+        }
+
+        @Override
+        protected EntityManagerFactory entityManagerFactory() {
+            return emf();
+        }
+
+        @Override
+        protected List<SingularAttribute<? super Employee, ?>> indexedAttributes() {
+            return List.of(Employee_.name);
+        }
+    }
+
+    private class CopyingEmployeeReferenceDao extends EmployeeReferenceDao {
+
+        private CopyingEmployeeReferenceDao() {
+            super(null, null, null);
+        }
+
+        @Override
+        protected Employee copy(Employee entity) {
+            return copyEmployee(entity);
+        }
+    }
+
+    private final Employee emp1 = newEmployee("Alice");
+    private final Employee emp2 = newEmployee("Bob");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+            em.persist(emp2);
+        });
+    }
+
+    @Test
+    void lookups() {
+        EmployeeReferenceDao dao = new EmployeeReferenceDao(null, null, null);
+
+        assertEquals("Alice", dao.getById(emp1.getId()).getName());
+        assertNull(dao.getById(-1L));
+        assertEquals(2, dao.getAll().size());
+        assertEquals(1, dao.findByIds(List.of(emp2.getId(), -1L)).size());
+        assertEquals(emp2.getId(), dao.getUniqueBy(Employee_.name, "Bob").getId());
+        assertNull(dao.getUniqueBy(Employee_.name, "Carol"));
+        assertThrows(IllegalArgumentException.class, () -> dao.findBy(Employee_.validFrom, emp1.getValidFrom()));
+        assertThrows(UnsupportedOperationException.class, () -> dao.getAll().clear());
+
+        doInTx(em -> {
+            em.persist(newEmployee("Bob"));
+        });
+        assertEquals(1, dao.findBy(Employee_.name, "Bob").size(), "No database access until refreshed");
+        dao.refresh();
+        assertEquals(2, dao.findBy(Employee_.name, "Bob").size());
+        assertThrows(IllegalStateException.class, () -> dao.getUniqueBy(Employee_.name, "Bob"));
+    }
+
+    @Test
+    void copies() {
+        EmployeeReferenceDao sharingDao = new EmployeeReferenceDao(null, null, null);
+        assertSame(sharingDao.getById(emp1.getId()), sharingDao.getById(emp1.getId()));
+
+        CopyingEmployeeReferenceDao dao = new CopyingEmployeeReferenceDao();
+        Employee employee = dao.getById(emp1.getId());
+        assertNotSame(employee, dao.getById(emp1.getId()));
+        assertNotSame(employee, dao.getUniqueBy(Employee_.name, "Alice"));
+        employee.setName("Alice Smith");
+        assertEquals("Alice", dao.getById(emp1.getId()).getName());
+        assertEquals("Alice", dao.findByIds(List.of(emp1.getId())).get(0).getName());
+        assertEquals("Alice", dao.snapshot().getById(emp1.getId()).getName());
+    }
+
+    @Test
+    void refreshOnVersionChange() {
+        EmployeeReferenceDao dao = new EmployeeReferenceDao(null, null, null);
+        ReferenceDataSnapshot<Employee, Long> snapshot1 = dao.snapshot();
+        assertFalse(dao.refreshIfChanged());
+        assertSame(snapshot1, dao.snapshot());
+
+        doInTx(em -> {
+            em.find(Employee.class, emp1.getId()).setName("Alice Smith");
+        });
+        assertTrue(dao.refreshIfChanged());
+        assertNotSame(snapshot1, dao.snapshot());
+        assertEquals("Alice Smith", dao.getById(emp1.getId()).getName());
+        assertEquals("Alice", snapshot1.getById(emp1.getId()).getName(), "Old snapshot is not modified");
+    }
+
+    @Test
+    void backgroundRefresh() {
+        assertThrows(IllegalArgumentException.class, () -> new EmployeeReferenceDao(null, Duration.ofMillis(50), null));
+
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try (EmployeeReferenceDao dao = new EmployeeReferenceDao(null, Duration.ofMillis(50), scheduler)) {
+            dao.start();
+            assertEquals(2, dao.getAll().size());
+
+            doInTx(em -> {
+                em.persist(newEmployee("Carol"));
+            });
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (dao.getAll().size() != 3) {
+                assertTrue(System.nanoTime() < deadline, "Snapshot not refreshed in time");
+                sleep(0.05);
+            }
+            assertNull(dao.getLastRefreshFailure());
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+}
@@ -16,7 +16,11 @@
 package com.brinvex.util.persistence.impl.test;
 
 import com.brinvex.util.persistence.api.AbstractEntityDao;
+import com.brinvex.util.persistence.api.EntityDaoSupport;
+import com.brinvex.util.persistence.api.ExplainOptions;
 import com.brinvex.util.persistence.api.NumberFilter;
+import com.brinvex.util.persistence.api.QueryCacheMode;
+import com.brinvex.util.persistence.api.QueryPlan;
 import com.brinvex.util.persistence.impl.test.dm.Employee;
 import com.brinvex.util.persistence.impl.test.dm.Employee_;
 import com.brinvex.util.persistence.impl.test.dm.Salary;
@@ -41,6 +45,11 @@ public class SalaryDao extends AbstractEntityDao<Salary, Long> {
         this.em = em;
     }
 
+    protected SalaryDao(EntityManager em, EntityDaoSupport entityDaoSupport) {
+        super(Salary.class, Long.class, entityDaoSupport);
+        this.em = em;
+    }
+
     @Override
     protected EntityManager entityManager() {
         return em;
@@ -60,6 +69,22 @@ public class SalaryDao extends AbstractEntityDao<Salary, Long> {
         return getResults(q);
     }
 
+    public List<Salary> findByEmployeeId(long employeeId, QueryCacheMode queryCacheMode, String queryCacheRegion) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.where(cb.equal(r.get(Salary_.employee).get(Employee_.id), employeeId));
+        return getResults(q, queryCacheMode, queryCacheRegion);
+    }
+
+    public QueryPlan explainFindByEmployeeId(long employeeId, ExplainOptions options) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        q.where(cb.equal(r.get(Salary_.employee).get(Employee_.id), employeeId));
+        return explain(q, options);
+    }
+
     public List<Salary> findByNumberFilter(long employeeId, NumberFilter salaryFilter) {
         CriteriaBuilder cb = this.cb();
         CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
@@ -108,6 +133,18 @@ public class SalaryDao extends AbstractEntityDao<Salary, Long> {
         return getFirstResultForUpdateSkipLocked(q);
     }
 
+    public Salary findForUpdateNoWait(long employeeId, LocalDate date) {
+        CriteriaBuilder cb = this.cb();
+        CriteriaQuery<Salary> q = cb.createQuery(Salary.class);
+        Root<Salary> r = q.from(Salary.class);
+        Join<Salary, Employee> employeeJoin = fetchJoin(r, Salary_.employee);
+        q.where(
+                cb.equal(employeeJoin.get(Employee_.id), employeeId),
+                cb.equal(r.get(Salary_.date), date)
+        );
+        return getFirstResultForUpdateNoWait(q);
+    }
+
     public List<Integer> findDays(long employeeId) {
         CriteriaBuilder cb = this.cb();
         CriteriaQuery<Integer> q = cb.createQuery(Integer.class);
@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.impl.EntityDaoSupportConf;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.cache.EntityCache;
+import com.brinvex.util.persistence.impl.cache.EntityCacheConf;
+import com.brinvex.util.persistence.impl.cache.SingleFlight;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SingleFlightTest extends AbstractTest {
+
+    private static class SlowLoadingSupport extends EntityDaoSupportImpl {
+
+        private final AtomicInteger loads = new AtomicInteger();
+
+        private SlowLoadingSupport(EntityDaoSupportConf conf) {
+            super(conf);
+        }
+
+        @Override
+        protected <ENTITY, ID extends Serializable> ENTITY loadAndCache(
+                EntityManager em,
+                EntityCache<ENTITY> cache,
+                Class<ENTITY> entityType,
+                ID id
+        ) {
+            loads.incrementAndGet();
+            sleep(0.5);
+            return super.loadAndCache(em, cache, entityType, id);
+        }
+    }
+
+    private final Employee emp1 = newEmployee("Alice");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+        });
+    }
+
+    @Test
+    void concurrentGetByIdIsCoalesced() throws InterruptedException, ExecutionException {
+        MetricRegistry metrics = new MetricRegistry();
+        SlowLoadingSupport support = new SlowLoadingSupport(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .setRequestCoalescing(true)
+                .addEntityCache(new EntityCacheConf<>(Employee.class).setCopier(AbstractTest::copyEmployee)));
+
+        int threads = 5;
+        for (Long id : new Long[]{emp1.getId(), -1L}) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Callable<Boolean>> callables = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                callables.add(() -> {
+                    start.await();
+                    return doInReadOnlyTx(em -> {
+                        Employee employee = new EmployeeDao(em, support).getById(id);
+                        if (employee == null) {
+                            return null;
+                        }
+                        assertEquals("Alice", employee.getName());
+                        return em.contains(employee);
+                    });
+                });
+            }
+            ExecutorService executorService = Executors.newFixedThreadPool(threads);
+            List<Future<Boolean>> futures = new ArrayList<>();
+            for (Callable<Boolean> callable : callables) {
+                futures.add(executorService.submit(callable));
+            }
+            start.countDown();
+            int managed = 0;
+            for (Future<Boolean> future : futures) {
+                Boolean result = future.get();
+                if (id < 0) {
+                    assertNull(result);
+                } else if (result) {
+                    managed++;
+                }
+            }
+            executorService.shutdown();
+            if (id > 0) {
+                assertEquals(1, managed, "Only the leader gets a managed instance");
+            }
+        }
+
+        assertEquals(2, support.loads.get());
+        assertEquals(2, metrics.getCount("singleFlight.leaders.Employee"));
+        assertEquals(8, metrics.getCount("singleFlight.followers.Employee"));
+        SingleFlight singleFlight = support.getSingleFlight(emf());
+        assertEquals(0.8, singleFlight.getCoalescingRate("Employee"), 1e-9);
+        assertEquals(0, singleFlight.getInFlightCount());
+    }
+
+    @Test
+    void followerLoadsItselfWhenLeaderFails() throws InterruptedException {
+        MetricRegistry metrics = new MetricRegistry();
+        SingleFlight singleFlight = new SingleFlight(metrics, Duration.ofSeconds(5));
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        Future<?> leader = executorService.submit(() -> singleFlight.execute("test", "key", () -> {
+            leaderStarted.countDown();
+            sleep(0.3);
+            throw new IllegalStateException("Leader failure");
+        }, r -> r));
+        leaderStarted.await();
+        assertEquals("own", singleFlight.execute("test", "key", () -> "own", r -> "shared"));
+        assertThrows(ExecutionException.class, leader::get);
+        executorService.shutdown();
+        assertEquals(0, metrics.getCount("singleFlight.followers.test"));
+        assertEquals(0, singleFlight.getInFlightCount());
+        assertEquals(0, singleFlight.getCoalescingRate("missing"));
+    }
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.impl.EntityDaoSupportConf;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.diagnostics.SlowQuery;
+import com.brinvex.util.persistence.impl.diagnostics.SlowQueryLog;
+import com.brinvex.util.persistence.impl.diagnostics.SlowQueryLogConf;
+import com.brinvex.util.persistence.impl.diagnostics.SqlFingerprint;
+import com.brinvex.util.persistence.impl.diagnostics.SqlStatistics;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import jakarta.persistence.Query;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SlowQueryLogTest extends AbstractTest {
+
+    private final Employee emp1 = newEmployee("Alice");
+    private final Salary salary1_1 = newSalary(emp1, "2023-02-01", "150");
+    private final Salary salary1_2 = newSalary(emp1, "2023-03-01", "160");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+            em.persist(salary1_1);
+            em.persist(salary1_2);
+        });
+    }
+
+    @Test
+    void slowQueryDetails() {
+        MetricRegistry metrics = new MetricRegistry();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .setSlowQueryLog(new SlowQueryLogConf().setThreshold(Duration.ZERO)));
+        SlowQueryLog slowQueryLog = support.getSlowQueryLog();
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            assertEquals(2, salaryDao.findByEmployeeId(emp1.getId(), false).size());
+            assertNotNull(salaryDao.getById(salary1_1.getId()));
+        });
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            assertNotNull(salaryDao.getById(salary1_1.getId()));
+            assertNotNull(salaryDao.getById(salary1_1.getId()));
+        });
+
+        List<SlowQuery> slowQueries = slowQueryLog.getRecentSlowQueries();
+        assertEquals(2, slowQueries.size());
+        assertEquals(2, metrics.getCount("slowQuery.count"));
+
+        SlowQuery query = slowQueries.get(0);
+        assertTrue(query.getSql().toLowerCase().contains("from salary"), query.getSql());
+        assertEquals(List.of("#1=" + emp1.getId()), query.getBinds());
+        assertEquals(2, query.getRows());
+        assertEquals(SalaryDao.class.getName(), query.getDaoType());
+        assertEquals("findByEmployeeId", query.getDaoMethod());
+        assertTrue(query.getCallSite().startsWith(SalaryDao.class.getName() + ".findByEmployeeId:"));
+        assertTrue(query.getExecutionDuration().compareTo(query.getDuration()) <= 0);
+        assertTrue(query.getExecutionDuration().toNanos() > 0);
+
+        SlowQuery find = slowQueries.get(1);
+        assertEquals(List.of("id=" + salary1_1.getId()), find.getBinds());
+        assertEquals(1, find.getRows());
+        assertEquals("getById", find.getDaoMethod());
+        assertTrue(find.getCallSite().startsWith(getClass().getName()), find.getCallSite());
+    }
+
+    @Test
+    void redactionAndStatistics() {
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(new MetricRegistry())
+                .setSlowQueryLog(new SlowQueryLogConf()
+                        .setThreshold(Duration.ZERO)
+                        .addRedactedBindType(Long.class)));
+        SlowQueryLog slowQueryLog = support.getSlowQueryLog();
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            salaryDao.findByIds(List.of(salary1_1.getId(), -2L));
+            salaryDao.findByIds(List.of(salary1_1.getId(), salary1_2.getId()));
+            salaryDao.findByIds(List.of(salary1_1.getId(), salary1_2.getId(), -1L));
+        });
+
+        SlowQuery last = slowQueryLog.getRecentSlowQueries().get(2);
+        assertEquals(List.of("#1=<redacted>", "#2=<redacted>", "#3=<redacted>"), last.getBinds());
+
+        List<SqlStatistics> statistics = slowQueryLog.getStatistics();
+        assertEquals(1, statistics.size());
+        SqlStatistics findByIds = statistics.get(0);
+        assertEquals(3, findByIds.getCount());
+        assertEquals(5, findByIds.getRows());
+        assertEquals(3, findByIds.getSlowCount());
+        assertTrue(findByIds.getFingerprint().contains("in (?...)"), findByIds.getFingerprint());
+        assertEquals(SqlFingerprint.id(findByIds.getFingerprint()), findByIds.getFingerprintId());
+        assertEquals(last.getFingerprintId(), findByIds.getFingerprintId());
+    }
+
+    @Test
+    void captureEndsWhenCallThrowsError() {
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(new MetricRegistry())
+                .setSlowQueryLog(new SlowQueryLogConf().setThreshold(Duration.ZERO)));
+        SlowQueryLog slowQueryLog = support.getSlowQueryLog();
+
+        doInTx(em -> {
+            Query query = em.createQuery("select s from Salary s");
+            assertThrows(AssertionError.class, () -> slowQueryLog.execute(em, query, () -> {
+                throw new AssertionError("failure");
+            }, r -> 0));
+            assertEquals(2, new SalaryDao(em, support).findByEmployeeId(emp1.getId(), false).size());
+        });
+
+        assertEquals(1, slowQueryLog.getRecentSlowQueries().size());
+    }
+
+    @Test
+    void fastQueriesAreOnlyAggregated() {
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(new MetricRegistry())
+                .setSlowQueryLog(new SlowQueryLogConf().setThreshold(Duration.ofMinutes(1))));
+        SlowQueryLog slowQueryLog = support.getSlowQueryLog();
+
+        doInTx(em -> {
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            salaryDao.findByEmployeeId(emp1.getId(), false);
+            salaryDao.findByEmployeeId(emp1.getId(), true);
+        });
+
+        assertTrue(slowQueryLog.getRecentSlowQueries().isEmpty());
+        List<SqlStatistics> statistics = slowQueryLog.getStatistics();
+        assertEquals(2, statistics.size());
+        assertTrue(statistics.get(0).getTotalNanos() >= statistics.get(1).getTotalNanos());
+        assertEquals(0, statistics.get(0).getSlowCount());
+
+        assertEquals("select x from T where a = ? and b in (?...) and c = ?",
+                SqlFingerprint.normalize("select x\n  from T where a = 42 and b in (?, ?,?) and c = 'it''s'"));
+    }
+
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.impl.EntityDaoSupportConf;
+import com.brinvex.util.persistence.impl.EntityDaoSupportImpl;
+import com.brinvex.util.persistence.impl.diagnostics.TransactionProfile;
+import com.brinvex.util.persistence.impl.diagnostics.TransactionProfiler;
+import com.brinvex.util.persistence.impl.diagnostics.TransactionProfilerConf;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import com.brinvex.util.persistence.impl.test.infra.TxVoidFunction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TransactionProfilerTest extends AbstractTest {
+
+    private final Employee emp1 = newEmployee("Alice");
+    private final Salary salary1_1 = newSalary(emp1, "2023-02-01", "150");
+    private final Salary salary1_2 = newSalary(emp1, "2023-03-01", "160");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+            em.persist(salary1_1);
+            em.persist(salary1_2);
+        });
+    }
+
+    @Test
+    void breakdown() {
+        MetricRegistry metrics = new MetricRegistry();
+        List<TransactionProfile> profiles = new ArrayList<>();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(metrics)
+                .setTransactionProfiler(new TransactionProfilerConf()
+                        .setThreshold(Duration.ofMillis(200))
+                        .setListener(profiles::add)));
+        TransactionProfiler profiler = support.getTransactionProfiler();
+
+        doInTx(em -> {
+            assertNull(profiler.getCurrentProfile(em));
+            SalaryDao salaryDao = new SalaryDao(em, support);
+            List<Salary> salaries = salaryDao.findByEmployeeId(emp1.getId(), true);
+            assertEquals(2, salaries.size());
+            salaries.get(0).setAmount(new BigDecimal("155"));
+            salaryDao.flush();
+            sleep(0.3);
+
+            TransactionProfile current = profiler.getCurrentProfile(em);
+            assertNotNull(current);
+            assertFalse(current.isCommitted());
+            assertEquals(1, current.getDaoQueries());
+        });
+
+        assertEquals(1, profiles.size());
+        TransactionProfile profile = profiles.get(0);
+        assertTrue(profile.isCommitted());
+        assertEquals(1, profile.getDaoQueries());
+        assertEquals(2, profile.getRows());
+        assertTrue(profile.getFlushes() >= 2, "auto, explicit and commit flushes");
+        assertEquals(3, profile.getFlushedEntities());
+        assertEquals(3, profile.getManagedEntities());
+        assertTrue(profile.getStatements() + profile.getBatches() >= 2);
+        assertTrue(profile.getJdbcExecuteDuration().toNanos() > 0);
+        assertTrue(profile.getHydrationDuration().toNanos() > 0);
+        assertTrue(profile.getFlushDuration().toNanos() > 0);
+        assertTrue(profile.getOtherDuration().compareTo(Duration.ofMillis(300)) >= 0);
+        assertTrue(profile.getDuration().compareTo(profile.getDatabaseDuration()
+                .plus(profile.getHydrationDuration())
+                .plus(profile.getFlushDuration())
+                .plus(profile.getOtherDuration())) >= 0);
+
+        assertEquals(List.of(profile), profiler.getRecentSlowProfiles());
+        assertEquals(1, metrics.getCount("txProfile.slow"));
+        assertEquals(1, metrics.getHistograms().get("txProfile.duration").getCount());
+    }
+
+    @Test
+    void rollback() {
+        List<TransactionProfile> profiles = new ArrayList<>();
+        EntityDaoSupportImpl support = new EntityDaoSupportImpl(new EntityDaoSupportConf()
+                .setMetricRegistry(new MetricRegistry())
+                .setTransactionProfiler(new TransactionProfilerConf()
+                        .setListener(profiles::add)));
+
+        assertThrows(IllegalStateException.class, () -> doInTx((TxVoidFunction) em -> {
+            new SalaryDao(em, support).getById(salary1_1.getId());
+            throw new IllegalStateException("Rollback");
+        }));
+        doInTx(em -> {
+            new SalaryDao(em, support).getById(salary1_2.getId());
+        });
+
+        assertEquals(2, profiles.size());
+        assertFalse(profiles.get(0).isCommitted());
+        assertTrue(profiles.get(1).isCommitted());
+        assertEquals(1, profiles.get(1).getRows());
+        assertTrue(support.getTransactionProfiler().getRecentSlowProfiles().isEmpty());
+    }
+
+}
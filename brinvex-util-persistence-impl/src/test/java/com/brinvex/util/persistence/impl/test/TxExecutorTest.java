@@ -0,0 +1,161 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.impl.test;
+
+import com.brinvex.util.persistence.api.LockNotAvailableException;
+import com.brinvex.util.persistence.impl.metrics.MetricRegistry;
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.impl.test.infra.AbstractTest;
+import com.brinvex.util.persistence.impl.tx.TxExecutor;
+import com.brinvex.util.persistence.impl.tx.TxExecutorConf;
+import com.brinvex.util.persistence.impl.tx.TxIsolationLevel;
+import com.brinvex.util.persistence.impl.tx.TxRetryClassifier;
+import jakarta.persistence.PersistenceException;
+import jakarta.persistence.PessimisticLockException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TxExecutorTest extends AbstractTest {
+
+    private final Employee emp1 = newEmployee("Alice");
+    private final Salary salary1_1 = newSalary(emp1, "2023-02-01", "150");
+
+    @BeforeEach
+    void initData() {
+        doInTx(em -> {
+            em.persist(emp1);
+            em.persist(salary1_1);
+        });
+    }
+
+    @Test
+    void retryAfterLockTimeout() throws InterruptedException, ExecutionException {
+        MetricRegistry metrics = new MetricRegistry();
+        TxExecutor txExecutor = new TxExecutor(emf(), new TxExecutorConf()
+                .setMaxAttempts(20)
+                .setInitialBackoff(Duration.ofMillis(100))
+                .setMaxBackoff(Duration.ofMillis(300))
+                .setMetricRegistry(metrics));
+
+        Callable<Object> c1 = () -> doInTx(em -> {
+            new SalaryDao(em).getByIdForUpdate(salary1_1.getId(), Duration.ofSeconds(2));
+            sleep(2);
+            return null;
+        });
+
+        Callable<Object> c2 = () -> {
+            sleep(0.5);
+            return txExecutor.doInTx(em -> {
+                SalaryDao salaryDao = new SalaryDao(em);
+                Salary salary = salaryDao.getByIdForUpdate(salary1_1.getId(), Duration.ofMillis(300));
+                salary.setAmount(salary.getAmount().add(BigDecimal.ONE));
+                return salary;
+            });
+        };
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        List<Future<Object>> futures = executorService.invokeAll(List.of(c1, c2));
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+        assertNotNull(futures.get(1).get());
+
+        assertEquals(1, metrics.getCount("tx.executions"));
+        assertTrue(metrics.getCount("tx.retries") >= 1);
+        assertEquals(metrics.getCount("tx.retries"), metrics.getCount("tx.retries.55P03"));
+        assertEquals(metrics.getCount("tx.attempts"), metrics.getCount("tx.retries") + 1);
+        assertEquals(0, new BigDecimal("151").compareTo(doInTx(em -> {
+            return new SalaryDao(em).getById(salary1_1.getId()).getAmount();
+        })));
+    }
+
+    @Test
+    void retryAttemptsExhausted() throws InterruptedException, ExecutionException {
+        MetricRegistry metrics = new MetricRegistry();
+        TxExecutor txExecutor = new TxExecutor(emf(), new TxExecutorConf()
+                .setMaxAttempts(2)
+                .setInitialBackoff(Duration.ofMillis(10))
+                .setMetricRegistry(metrics));
+
+        Callable<Object> c1 = () -> doInTx(em -> {
+            new SalaryDao(em).getByIdForUpdate(salary1_1.getId(), Duration.ofSeconds(2));
+            sleep(3);
+            return null;
+        });
+
+        Callable<Object> c2 = () -> {
+            sleep(0.5);
+            return assertThrows(PessimisticLockException.class, () -> txExecutor.doInTx(em -> {
+                return new SalaryDao(em).getByIdForUpdate(salary1_1.getId(), Duration.ofMillis(200));
+            }));
+        };
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        List<Future<Object>> futures = executorService.invokeAll(List.of(c1, c2));
+        for (Future<Object> future : futures) {
+            future.get();
+        }
+
+        assertEquals(2, metrics.getCount("tx.attempts"));
+        assertEquals(1, metrics.getCount("tx.retries"));
+        assertEquals(1, metrics.getCount("tx.failures.exhausted"));
+    }
+
+    @Test
+    void lockNotAvailableIsNeverRetried() {
+        TxRetryClassifier classifier = new TxRetryClassifier(List.of(), false);
+        SQLException lockNotAvailable = new SQLException("lock not available", TxRetryClassifier.LOCK_NOT_AVAILABLE);
+
+        assertEquals(TxRetryClassifier.LOCK_NOT_AVAILABLE,
+                classifier.getRetryReason(new PessimisticLockException("timeout", lockNotAvailable)));
+        assertNull(classifier.getRetryReason(new LockNotAvailableException("nowait", lockNotAvailable)));
+        assertNull(classifier.getRetryReason(new PersistenceException("wrapped",
+                new LockNotAvailableException("nowait", lockNotAvailable))));
+    }
+
+    @Test
+    void nonRetryableFailure() {
+        MetricRegistry metrics = new MetricRegistry();
+        TxExecutor txExecutor = new TxExecutor(emf(), new TxExecutorConf()
+                .setIsolationLevel(TxIsolationLevel.SERIALIZABLE)
+                .setMetricRegistry(metrics));
+
+        assertThrows(IllegalArgumentException.class, () -> txExecutor.doInTxWithoutResult(em -> {
+            new SalaryDao(em).getById(null);
+        }));
+        assertEquals(1, metrics.getCount("tx.attempts"));
+        assertEquals(0, metrics.getCount("tx.retries"));
+        assertEquals(1, metrics.getCount("tx.failures.nonRetryable"));
+    }
+
+}
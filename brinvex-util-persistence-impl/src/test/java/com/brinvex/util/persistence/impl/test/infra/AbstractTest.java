@@ -15,24 +15,44 @@
  */
 package com.brinvex.util.persistence.impl.test.infra;
 
+import com.brinvex.util.persistence.impl.test.dm.Employee;
+import com.brinvex.util.persistence.impl.test.dm.Salary;
+import com.brinvex.util.persistence.test.RecordingStatisticsFactory;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.EntityManagerFactory;
 import jakarta.persistence.EntityTransaction;
 import jakarta.persistence.Persistence;
+import org.hibernate.Session;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.TestInfo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static java.time.LocalDate.parse;
+
 public abstract class AbstractTest {
 
+    private static final Map<String, Object> STATEMENT_RECORDING_PROPERTIES = Map.of(
+            "hibernate.generate_statistics", "true",
+            "hibernate.session.events.log", "false",
+            "hibernate.stats.factory", RecordingStatisticsFactory.class.getName()
+    );
+
     protected final Logger LOG = LoggerFactory.getLogger(getClass());
 
     private EntityManagerFactory emf;
 
     @BeforeEach
-    void init() {
-        emf = Persistence.createEntityManagerFactory(persistenceUnitName());
+    void init(TestInfo testInfo) {
+        boolean statementRecording = testInfo.getTestMethod()
+                .map(method -> method.isAnnotationPresent(StatementRecording.class))
+                .orElse(false);
+        emf = Persistence.createEntityManagerFactory(persistenceUnitName(),
+                statementRecording ? STATEMENT_RECORDING_PROPERTIES : Map.of());
     }
 
     @AfterEach
@@ -40,6 +60,10 @@ public abstract class AbstractTest {
         emf.close();
     }
 
+    protected EntityManagerFactory emf() {
+        return emf;
+    }
+
     protected String persistenceUnitName() {
         return "brinvex-local-persistence-unit";
     }
@@ -106,6 +130,56 @@ public abstract class AbstractTest {
         }
     }
 
+    protected <T> T doInReadOnlyTx(TxFunction<T> function) {
+        return doInTx(em -> {
+            em.unwrap(Session.class).setDefaultReadOnly(true);
+            return function.apply(em);
+        });
+    }
+
+    protected void doInReadOnlyTx(TxVoidFunction function) {
+        doInTx((TxVoidFunction) em -> {
+            em.unwrap(Session.class).setDefaultReadOnly(true);
+            function.accept(em);
+        });
+    }
+
+    /**
+     * Not persisted yet, valid from 2023-01-01 on.
+     */
+    protected static Employee newEmployee(String name) {
+        Employee employee = new Employee();
+        employee.setName(name);
+        employee.setValidFrom(parse("2023-01-01").atStartOfDay());
+        employee.setValidTo(parse("2200-01-01").atStartOfDay());
+        return employee;
+    }
+
+    /**
+     * Not persisted yet.
+     */
+    protected static Salary newSalary(Employee employee, String date, String amount) {
+        Salary salary = new Salary();
+        salary.setEmployee(employee);
+        salary.setDate(parse(date));
+        salary.setAmount(new BigDecimal(amount));
+        return salary;
+    }
+
+    /**
+     * Copier for entity caches.
+     */
+    protected static Employee copyEmployee(Employee e) {
+        Employee copy = new Employee();
+        copy.setId(e.getId());
+        copy.setName(e.getName());
+        copy.setValidFrom(e.getValidFrom());
+        copy.setValidTo(e.getValidTo());
+        copy.setPhoneNumbers(e.getPhoneNumbers() == null ? null : e.getPhoneNumbers().clone());
+        copy.setVersion(e.getVersion());
+        return copy;
+    }
+
     protected static void sleep(double seconds) {
         try {
             Thread.sleep((long) (seconds * 1000));
@@ -0,0 +1,142 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.test;
+
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Statements and rows recorded by {@link StatementRecorder}. The assertion methods throw {@link AssertionError}
+ * listing the recorded statements and return this instance, so they can be chained.
+ * <p>
+ * Statements are recorded when Hibernate prepares them, not when they are executed. With JDBC batching enabled,
+ * an insert or update batch counts once, however many rows it writes; assert such counts with batching disabled.
+ */
+public class RecordedStatements {
+
+    private final List<String> statements;
+
+    private final long queryRows;
+
+    private final long entityFetches;
+
+    private final long collectionFetches;
+
+    RecordedStatements(List<String> statements, long queryRows, long entityFetches, long collectionFetches) {
+        this.statements = List.copyOf(statements);
+        this.queryRows = queryRows;
+        this.entityFetches = entityFetches;
+        this.collectionFetches = collectionFetches;
+    }
+
+    /**
+     * Returns the SQL of the statements in the order they were prepared.
+     */
+    public List<String> getStatements() {
+        return statements;
+    }
+
+    public int getStatementCount() {
+        return statements.size();
+    }
+
+    public int getStatementCount(StatementType type) {
+        int count = 0;
+        for (String statement : statements) {
+            if (StatementType.of(statement) == type) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Rows returned by HQL and criteria queries.
+     */
+    public long getQueryRows() {
+        return queryRows;
+    }
+
+    /**
+     * Entities fetched by a statement of their own, e.g. by id or by initializing a lazy proxy.
+     */
+    public long getEntityFetches() {
+        return entityFetches;
+    }
+
+    /**
+     * Collections fetched by a statement of their own.
+     */
+    public long getCollectionFetches() {
+        return collectionFetches;
+    }
+
+    /**
+     * Returns {@link #getQueryRows()} plus {@link #getEntityFetches()}.
+     */
+    public long getRowsFetched() {
+        return queryRows + entityFetches;
+    }
+
+    public RecordedStatements assertStatementCount(int expected) {
+        if (getStatementCount() != expected) {
+            throw new AssertionError(failure("statements", expected, getStatementCount()));
+        }
+        return this;
+    }
+
+    public RecordedStatements assertStatementCount(StatementType type, int expected) {
+        int actual = getStatementCount(type);
+        if (actual != expected) {
+            throw new AssertionError(failure(type + " statements", expected, actual));
+        }
+        return this;
+    }
+
+    public RecordedStatements assertRowsFetched(long expected) {
+        if (getRowsFetched() != expected) {
+            throw new AssertionError(failure("rows fetched", expected, getRowsFetched()));
+        }
+        return this;
+    }
+
+    public RecordedStatements assertEntityFetches(long expected) {
+        if (entityFetches != expected) {
+            throw new AssertionError(failure("entity fetches", expected, entityFetches));
+        }
+        return this;
+    }
+
+    private String failure(String what, long expected, long actual) {
+        StringBuilder sb = new StringBuilder()
+                .append("Expected ").append(expected).append(" ").append(what)
+                .append(" but was ").append(actual).append(", recorded statements:");
+        for (int i = 0; i < statements.size(); i++) {
+            sb.append("\n").append(i + 1).append(": ").append(statements.get(i));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return new StringJoiner(", ", RecordedStatements.class.getSimpleName() + "[", "]")
+                .add("statements=" + statements.size())
+                .add("queryRows=" + queryRows)
+                .add("entityFetches=" + entityFetches)
+                .add("collectionFetches=" + collectionFetches)
+                .toString();
+    }
+}
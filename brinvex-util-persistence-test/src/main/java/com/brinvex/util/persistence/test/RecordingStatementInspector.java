@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.test;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Hands the SQL generated by Hibernate to the {@link StatementRecorder}. Register it in the test persistence unit:
+ * <pre>
+ * &lt;property name="hibernate.session_factory.statement_inspector"
+ *           value="com.brinvex.util.persistence.test.RecordingStatementInspector"/&gt;
+ * </pre>
+ * If the application registers its own inspector, extend this class and pass it to the constructor.
+ */
+public class RecordingStatementInspector implements StatementInspector {
+
+    private final StatementInspector delegate;
+
+    public RecordingStatementInspector() {
+        this(null);
+    }
+
+    /**
+     * The delegate inspects the SQL first; the recorder sees the SQL returned by it.
+     */
+    protected RecordingStatementInspector(StatementInspector delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        String inspected = delegate == null ? sql : delegate.inspect(sql);
+        if (inspected != null) {
+            StatementRecorder.statementPrepared(inspected);
+        }
+        return inspected;
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.test;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.internal.StatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+
+/**
+ * Builds Hibernate statistics which also report rows fetched to the {@link StatementRecorder}.
+ * Register it in the test persistence unit together with statistics generation:
+ * <pre>
+ * &lt;property name="hibernate.generate_statistics" value="true"/&gt;
+ * &lt;property name="hibernate.stats.factory"
+ *           value="com.brinvex.util.persistence.test.RecordingStatisticsFactory"/&gt;
+ * </pre>
+ */
+public class RecordingStatisticsFactory implements StatisticsFactory {
+
+    static final class RecordingStatistics extends StatisticsImpl {
+
+        private RecordingStatistics(SessionFactoryImplementor sessionFactory) {
+            super(sessionFactory);
+        }
+
+        @Override
+        public void queryExecuted(String hql, int rows, long time) {
+            StatementRecorder.queryExecuted(rows);
+            super.queryExecuted(hql, rows, time);
+        }
+
+        @Override
+        public void fetchEntity(String entityName) {
+            StatementRecorder.entityFetched();
+            super.fetchEntity(entityName);
+        }
+
+        @Override
+        public void fetchCollection(String role) {
+            StatementRecorder.collectionFetched();
+            super.fetchCollection(role);
+        }
+    }
+
+    @Override
+    public StatisticsImplementor buildStatistics(SessionFactoryImplementor sessionFactory) {
+        return new RecordingStatistics(sessionFactory);
+    }
+}
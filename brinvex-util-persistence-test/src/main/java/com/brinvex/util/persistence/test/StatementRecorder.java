@@ -0,0 +1,114 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.test;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the statements executed and the rows fetched by a block of code, so that tests can assert them:
+ * <pre>
+ * StatementRecorder.record(emf, () -&gt; salaryDao.findByEmployeeId(employeeId, true))
+ *         .assertStatementCount(StatementType.SELECT, 1)
+ *         .assertRowsFetched(2);
+ * </pre>
+ * Only the current thread is recorded. Requires {@link RecordingStatementInspector}
+ * and {@link RecordingStatisticsFactory} registered in the persistence unit.
+ */
+public final class StatementRecorder {
+
+    private static final ThreadLocal<Recording> CURRENT = new ThreadLocal<>();
+
+    private static final class Recording {
+        private final Recording outer;
+        private final List<String> statements = new ArrayList<>();
+        private long queryRows;
+        private long entityFetches;
+        private long collectionFetches;
+
+        private Recording(Recording outer) {
+            this.outer = outer;
+        }
+    }
+
+    private StatementRecorder() {
+    }
+
+    /**
+     * Runs the block and returns what it executed. Recordings can be nested; the outer one sees everything.
+     */
+    public static RecordedStatements record(EntityManagerFactory emf, Runnable block) {
+        checkConfiguration(emf);
+        Recording recording = new Recording(CURRENT.get());
+        CURRENT.set(recording);
+        try {
+            block.run();
+        } finally {
+            if (recording.outer == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(recording.outer);
+            }
+        }
+        return new RecordedStatements(
+                recording.statements,
+                recording.queryRows,
+                recording.entityFetches,
+                recording.collectionFetches
+        );
+    }
+
+    private static void checkConfiguration(EntityManagerFactory emf) {
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        if (!(sessionFactory.getSessionFactoryOptions().getStatementInspector() instanceof RecordingStatementInspector)) {
+            throw new IllegalStateException("Statement inspector is not a "
+                                            + RecordingStatementInspector.class.getName());
+        }
+        Statistics statistics = sessionFactory.getStatistics();
+        if (!(statistics instanceof RecordingStatisticsFactory.RecordingStatistics) || !statistics.isStatisticsEnabled()) {
+            throw new IllegalStateException("Statistics are not enabled or not built by "
+                                            + RecordingStatisticsFactory.class.getName());
+        }
+    }
+
+    static void statementPrepared(String sql) {
+        for (Recording r = CURRENT.get(); r != null; r = r.outer) {
+            r.statements.add(sql);
+        }
+    }
+
+    static void queryExecuted(int rows) {
+        for (Recording r = CURRENT.get(); r != null; r = r.outer) {
+            r.queryRows += rows;
+        }
+    }
+
+    static void entityFetched() {
+        for (Recording r = CURRENT.get(); r != null; r = r.outer) {
+            r.entityFetches++;
+        }
+    }
+
+    static void collectionFetched() {
+        for (Recording r = CURRENT.get(); r != null; r = r.outer) {
+            r.collectionFetches++;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright © 2023 Brinvex (dev@brinvex.com)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.brinvex.util.persistence.test;
+
+import java.util.Locale;
+
+public enum StatementType {
+
+    SELECT,
+
+    INSERT,
+
+    UPDATE,
+
+    DELETE,
+
+    OTHER;
+
+    /**
+     * Classifies a statement by its first keyword, skipping leading comments. A {@code with} query counts as a select.
+     */
+    public static StatementType of(String sql) {
+        int i = 0;
+        int length = sql.length();
+        while (i < length) {
+            if (Character.isWhitespace(sql.charAt(i))) {
+                i++;
+            } else if (sql.startsWith("/*", i)) {
+                int end = sql.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+            } else if (sql.startsWith("--", i)) {
+                int end = sql.indexOf('\n', i + 2);
+                i = end < 0 ? length : end + 1;
+            } else {
+                break;
+            }
+        }
+        int end = i;
+        while (end < length && Character.isLetter(sql.charAt(end))) {
+            end++;
+        }
+        switch (sql.substring(i, end).toLowerCase(Locale.ROOT)) {
+            case "select":
+            case "with":
+                return SELECT;
+            case "insert":
+                return INSERT;
+            case "update":
+                return UPDATE;
+            case "delete":
+                return DELETE;
+            default:
+                return OTHER;
+        }
+    }
+}